@@ -35,6 +35,8 @@ class AmbariClientCommon {
     static final String AMBARI_SERVICECONFIGS_URI =
                                     AMBARI_CLUSTERS_URI + "/%s/configurations/service_config_versions?is_current=true";
 
+    static final String AMBARI_DESIRED_CONFIGS_URI = AMBARI_CLUSTERS_URI + "/%s?fields=Clusters/desired_configs";
+
     private static final AmbariServiceDiscoveryMessages log = MessagesFactory.get(AmbariServiceDiscoveryMessages.class);
 
     private RESTInvoker restClient;
@@ -99,4 +101,35 @@ class AmbariClientCommon {
     }
 
 
+    /**
+     * Get the desired configuration versions for the specified cluster. This is a lightweight request, which does not
+     * include any configuration properties, so it can be used to determine whether the service configurations need to
+     * be fetched again.
+     *
+     * @return A Map of configuration types and their corresponding versions, or null if the request failed.
+     */
+    Map<String, String> getDesiredConfigVersions(String clusterName, ServiceDiscoveryConfig config) {
+        Map<String, String> configVersions = null;
+
+        String desiredConfigsURL = String.format("%s" + AMBARI_DESIRED_CONFIGS_URI, config.getAddress(), clusterName);
+
+        JSONObject desiredConfigsJSON = restClient.invoke(desiredConfigsURL, config.getUser(), config.getPasswordAlias());
+        if (desiredConfigsJSON != null) {
+            JSONObject clusterJSON = (JSONObject) desiredConfigsJSON.get("Clusters");
+            if (clusterJSON != null) {
+                JSONObject desiredConfigs = (JSONObject) clusterJSON.get("desired_configs");
+                if (desiredConfigs != null) {
+                    configVersions = new HashMap<>();
+                    for (String configType : desiredConfigs.keySet()) {
+                        JSONObject desiredConfig = (JSONObject) desiredConfigs.get(configType);
+                        configVersions.put(configType, desiredConfig.get("tag") + ":" + desiredConfig.get("version"));
+                    }
+                }
+            }
+        }
+
+        return configVersions;
+    }
+
+
 }
@@ -33,6 +33,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -53,13 +60,19 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
 
     static final String INTERVAL_PROPERTY_NAME = "org.apache.hadoop.gateway.topology.discovery.ambari.monitor.interval";
 
+    static final String THREADS_PROPERTY_NAME = "org.apache.hadoop.gateway.topology.discovery.ambari.monitor.threads";
+
+    private static final int DEFAULT_POLLING_INTERVAL = 60;
+
+    private static final int DEFAULT_POLLING_THREADS = 4;
+
 
     private static final AmbariServiceDiscoveryMessages log = MessagesFactory.get(AmbariServiceDiscoveryMessages.class);
 
     // Ambari address
     //    clusterName -> ServiceDiscoveryConfig
     //
-    Map<String, Map<String, ServiceDiscoveryConfig>> clusterMonitorConfigurations = new HashMap<>();
+    Map<String, Map<String, ServiceDiscoveryConfig>> clusterMonitorConfigurations = new ConcurrentHashMap<>();
 
     // Ambari address
     //    clusterName
@@ -69,11 +82,22 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
 
     ReadWriteLock configVersionsLock = new ReentrantReadWriteLock();
 
-    private List<ConfigurationChangeListener> changeListeners = new ArrayList<>();
+    // Ambari address
+    //    clusterName -> desired configuration versions observed when the recorded versions were last found current
+    //
+    private Map<String, Map<String, Map<String, String>>> verifiedDesiredConfigVersions = new ConcurrentHashMap<>();
+
+    private List<ConfigurationChangeListener> changeListeners = new CopyOnWriteArrayList<>();
 
     private AmbariClientCommon ambariClient;
 
-    PollingConfigAnalyzer internalMonitor;
+    // Polling interval in seconds
+    private volatile int interval = Integer.getInteger(INTERVAL_PROPERTY_NAME, DEFAULT_POLLING_INTERVAL);
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    // Ambari address + cluster name -> scheduled poll of that cluster
+    private final Map<String, ScheduledFuture<?>> clusterPolls = new HashMap<>();
 
     GatewayConfig gatewayConfig = null;
 
@@ -84,7 +108,6 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
     AmbariConfigurationMonitor(GatewayConfig config, AliasService aliasService) {
         this.gatewayConfig   = config;
         this.ambariClient    = new AmbariClientCommon(aliasService);
-        this.internalMonitor = new PollingConfigAnalyzer(this);
 
         // Override the default polling interval if it has been configured
         int interval = config.getClusterMonitorPollingInterval(getType());
@@ -95,9 +118,22 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
         init();
     }
 
+    /**
+     * Set the polling interval, rescheduling the checks of the monitored clusters if the monitor is running.
+     */
     @Override
-    public void setPollingInterval(int interval) {
-        internalMonitor.setInterval(interval);
+    public synchronized void setPollingInterval(int interval) {
+        if (interval == this.interval) {
+            return;
+        }
+        this.interval = interval;
+        if (scheduler != null) {
+            for (ScheduledFuture<?> poll : clusterPolls.values()) {
+                poll.cancel(false);
+            }
+            clusterPolls.clear();
+            scheduleClusterPolls();
+        }
     }
 
     private void init() {
@@ -257,14 +293,75 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
         } finally {
             configVersionsLock.writeLock().unlock();
         }
+        schedulePoll(address, clusterName);
+    }
+
+    public synchronized void start() {
+        if (scheduler == null) {
+            int threads = Math.max(1, Integer.getInteger(THREADS_PROPERTY_NAME, DEFAULT_POLLING_THREADS));
+            AtomicInteger threadCount = new AtomicInteger();
+            scheduler = new ScheduledThreadPoolExecutor(threads, r -> {
+                Thread t = new Thread(r, "AmbariConfigurationMonitor-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+
+            log.startedAmbariConfigMonitor(interval);
+
+            scheduleClusterPolls();
+        }
+    }
+
+    private synchronized void scheduleClusterPolls() {
+        for (Map.Entry<String, List<String>> entry : getClusterNames().entrySet()) {
+            for (String clusterName : entry.getValue()) {
+                schedulePoll(entry.getKey(), clusterName);
+            }
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            clusterPolls.clear();
+        }
     }
 
-    public void start() {
-        (new Thread(internalMonitor, "AmbariConfigurationMonitor")).start();
+    /**
+     * Schedule the periodic checking of the specified cluster, if the monitor is running and the cluster is not already
+     * being checked. The first check of each cluster is delayed by a random fraction of the polling interval, so the
+     * requests for many clusters are spread across the interval rather than issued in bursts.
+     */
+    private synchronized void schedulePoll(String address, String clusterName) {
+        if (scheduler != null) {
+            String key = address + "#" + clusterName;
+            if (!clusterPolls.containsKey(key)) {
+                long period = TimeUnit.SECONDS.toMillis(Math.max(1, interval));
+                long jitter = ThreadLocalRandom.current().nextLong(period / 4 + 1);
+                clusterPolls.put(key, scheduler.scheduleWithFixedDelay(() -> pollCluster(address, clusterName),
+                                                                       jitter,
+                                                                       period,
+                                                                       TimeUnit.MILLISECONDS));
+            }
+        }
     }
 
-    public void stop() {
-        internalMonitor.stop();
+    private synchronized void cancelPoll(String address, String clusterName) {
+        ScheduledFuture<?> poll = clusterPolls.remove(address + "#" + clusterName);
+        if (poll != null) {
+            poll.cancel(false);
+        }
+    }
+
+    private void pollCluster(String address, String clusterName) {
+        try {
+            checkClusterConfiguration(address, clusterName);
+        } catch (Exception e) {
+            // Exceptions must not escape, or the scheduled checking of this cluster would be suppressed
+            log.clusterConfigurationCheckError(clusterName, address, e);
+        }
     }
 
     @Override
@@ -280,7 +377,8 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
      * @param config      The associated service discovery configuration.
      */
     void addDiscoveryConfig(String clusterName, ServiceDiscoveryConfig config) {
-        clusterMonitorConfigurations.computeIfAbsent(config.getAddress(), k -> new HashMap<>()).put(clusterName, config);
+        clusterMonitorConfigurations.computeIfAbsent(config.getAddress(), k -> new ConcurrentHashMap<>())
+                                    .put(clusterName, config);
     }
 
 
@@ -328,6 +426,7 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
         }
 
         persistClusterVersionData(discoveryConfig.getAddress(), clusterName, configVersions);
+        clearVerifiedDesiredConfigVersions(discoveryConfig.getAddress(), clusterName);
         addClusterConfigVersions(discoveryConfig.getAddress(), clusterName, configVersions);
     }
 
@@ -351,6 +450,8 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
         } finally {
             configVersionsLock.writeLock().unlock();
         }
+        cancelPoll(address, clusterName);
+        clearVerifiedDesiredConfigVersions(address, clusterName);
 
         // Delete the associated persisted record
         File persisted = getConfigVersionsPersistenceFile(address, clusterName);
@@ -374,8 +475,9 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
 
         configVersionsLock.readLock().lock();
         try {
-            if (ambariClusterConfigVersions.containsKey(address)) {
-                result.putAll(ambariClusterConfigVersions.get(address).get(clusterName));
+            Map<String, Map<String, String>> clusterConfigVersions = ambariClusterConfigVersions.get(address);
+            if (clusterConfigVersions != null && clusterConfigVersions.containsKey(clusterName)) {
+                result.putAll(clusterConfigVersions.get(clusterName));
             }
         } finally {
             configVersionsLock.readLock().unlock();
@@ -412,10 +514,14 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
     /**
      * Notify registered change listeners.
      *
+     * The listeners are notified without holding the monitor's lock, so a slow listener does not hold up the polling
+     * of other clusters. Since clusters are polled by several threads, listeners may be notified concurrently.
+     *
      * @param source      The address of the Ambari instance from which the cluster details were determined.
      * @param clusterName The name of the cluster whose configuration details have changed.
      */
     void notifyChangeListeners(String source, String clusterName) {
+        // The listener list is copied on write, so this iterates over a snapshot
         for (ConfigurationChangeListener listener : changeListeners) {
             listener.onConfigurationChange(source, clusterName);
         }
@@ -447,78 +553,77 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
 
 
     /**
-     * The thread that polls Ambari for configuration details for clusters associated with discovered topologies,
-     * compares them with the current recorded values, and notifies any listeners when differences are discovered.
+     * Request the current desired configuration version info from Ambari. This is much cheaper than requesting the
+     * active service configurations, since no configuration properties are included in the response.
+     *
+     * @param address     The Ambari instance address.
+     * @param clusterName The name of the cluster for which the details are desired.
+     *
+     * @return A Map of configuration types and their corresponding versions, or null if they could not be determined.
      */
-    static final class PollingConfigAnalyzer implements Runnable {
-
-        private static final int DEFAULT_POLLING_INTERVAL = 60;
-
-        // Polling interval in seconds
-        private int interval = DEFAULT_POLLING_INTERVAL;
-
-        private AmbariConfigurationMonitor delegate;
+    Map<String, String> getDesiredConfigVersions(String address, String clusterName) {
+        return ambariClient.getDesiredConfigVersions(clusterName, getDiscoveryConfig(address, clusterName));
+    }
 
-        private boolean isActive = false;
 
-        PollingConfigAnalyzer(AmbariConfigurationMonitor delegate) {
-            this.delegate = delegate;
-            this.interval = Integer.getInteger(INTERVAL_PROPERTY_NAME, PollingConfigAnalyzer.DEFAULT_POLLING_INTERVAL);
+    /**
+     * Compare the recorded configuration versions for the specified cluster with the current versions, and notify the
+     * listeners when they differ. The active service configurations are only requested when the desired configuration
+     * versions have changed since the recorded versions were last found to be current.
+     *
+     * @param address     The Ambari instance address.
+     * @param clusterName The name of the cluster to check.
+     */
+    void checkClusterConfiguration(String address, String clusterName) {
+        Map<String, String> configVersions = getClusterConfigVersions(address, clusterName);
+        if (configVersions == null || configVersions.isEmpty()) {
+            return;
         }
 
-        void setInterval(int interval) {
-            this.interval = interval;
+        Map<String, String> desiredVersions = getDesiredConfigVersions(address, clusterName);
+        if (desiredVersions != null && desiredVersions.equals(getVerifiedDesiredConfigVersions(address, clusterName))) {
+            return; // Nothing has changed since the recorded versions were last verified
         }
 
+        Map<String, String> updatedVersions = getUpdatedConfigVersions(address, clusterName);
+        if (updatedVersions != null && !updatedVersions.isEmpty()) {
+            boolean configHasChanged = false;
+
+            // If the config sets don't match in size, then something has changed
+            if (updatedVersions.size() != configVersions.size()) {
+                configHasChanged = true;
+            } else {
+                // Perform the comparison of all the config versions
+                for (Map.Entry<String, String> configVersion : configVersions.entrySet()) {
+                    if (!configVersion.getValue().equals(updatedVersions.get(configVersion.getKey()))) {
+                        configHasChanged = true;
+                        break;
+                    }
+                }
+            }
 
-        void stop() {
-            isActive = false;
+            if (configHasChanged) {
+                // Verify the full configuration again on the next check, until the recorded versions have been updated
+                clearVerifiedDesiredConfigVersions(address, clusterName);
+                notifyChangeListeners(address, clusterName);
+            } else if (desiredVersions != null) {
+                verifiedDesiredConfigVersions.computeIfAbsent(address, k -> new ConcurrentHashMap<>())
+                                             .put(clusterName, desiredVersions);
+            }
         }
+    }
 
-        @Override
-        public void run() {
-            isActive = true;
 
-            log.startedAmbariConfigMonitor(interval);
+    private Map<String, String> getVerifiedDesiredConfigVersions(String address, String clusterName) {
+        Map<String, Map<String, String>> clusterVersions = verifiedDesiredConfigVersions.get(address);
+        return clusterVersions != null ? clusterVersions.get(clusterName) : null;
+    }
 
-            while (isActive) {
-                for (Map.Entry<String, List<String>> entry : delegate.getClusterNames().entrySet()) {
-                    String address = entry.getKey();
-                    for (String clusterName : entry.getValue()) {
-                        Map<String, String> configVersions = delegate.getClusterConfigVersions(address, clusterName);
-                        if (configVersions != null && !configVersions.isEmpty()) {
-                            Map<String, String> updatedVersions = delegate.getUpdatedConfigVersions(address, clusterName);
-                            if (updatedVersions != null && !updatedVersions.isEmpty()) {
-                                boolean configHasChanged = false;
-
-                                // If the config sets don't match in size, then something has changed
-                                if (updatedVersions.size() != configVersions.size()) {
-                                    configHasChanged = true;
-                                } else {
-                                    // Perform the comparison of all the config versions
-                                    for (Map.Entry<String, String> configVersion : configVersions.entrySet()) {
-                                        if (!updatedVersions.get(configVersion.getKey()).equals(configVersion.getValue())) {
-                                            configHasChanged = true;
-                                            break;
-                                        }
-                                    }
-                                }
-
-                                // If a change has occurred, notify the listeners
-                                if (configHasChanged) {
-                                    delegate.notifyChangeListeners(address, clusterName);
-                                }
-                            }
-                        }
-                    }
-                }
 
-                try {
-                    Thread.sleep(interval * 1000);
-                } catch (InterruptedException e) {
-                    // Ignore
-                }
-            }
+    private void clearVerifiedDesiredConfigVersions(String address, String clusterName) {
+        Map<String, Map<String, String>> clusterVersions = verifiedDesiredConfigVersions.get(address);
+        if (clusterVersions != null) {
+            clusterVersions.remove(clusterName);
         }
     }
 
@@ -19,9 +19,17 @@ package org.apache.hadoop.gateway.topology.discovery.ambari;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
@@ -48,6 +56,11 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
     private static final String COMPONENT_CONFIG_MAPPING_FILE =
                                                         "ambari-service-discovery-component-config-mapping.properties";
 
+    static final String DISCOVERY_THREADS_PROPERTY_NAME =
+                                                "org.apache.hadoop.gateway.topology.discovery.ambari.discovery.threads";
+
+    private static final int DEFAULT_DISCOVERY_THREADS = 8;
+
     private static final String GATEWAY_SERVICES_ACCESSOR_CLASS  = "org.apache.hadoop.gateway.GatewayServer";
     private static final String GATEWAY_SERVICES_ACCESSOR_METHOD = "getGatewayServices";
 
@@ -67,6 +80,9 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
         }
     }
 
+    // Bounded executor shared by all discovery instances for issuing the Ambari requests concurrently
+    private static final ExecutorService discoveryExecutor = createDiscoveryExecutor();
+
     @GatewayService
     private AliasService aliasService;
 
@@ -92,7 +108,7 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
      * construction time. This is called internally prior to discovery invocations to make sure the clients have been
      * initialized.
      */
-    private void init() {
+    private synchronized void init() {
         if (!isInitialized) {
             if (this.restClient == null) {
                 this.restClient = new RESTInvoker(aliasService);
@@ -155,15 +171,21 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
 
         JSONObject json = restClient.invoke(clustersDiscoveryURL, config.getUser(), config.getPasswordAlias());
 
-        // Parse the cluster names from the response, and perform the cluster discovery
+        // Parse the cluster names from the response, and perform the cluster discoveries concurrently
+        Map<String, FutureTask<Cluster>> discoveries = new LinkedHashMap<>();
         JSONArray clusterItems = (JSONArray) json.get("items");
         for (Object clusterItem : clusterItems) {
             String clusterName = (String) ((JSONObject)((JSONObject) clusterItem).get("Clusters")).get("cluster_name");
+            FutureTask<Cluster> discovery = new FutureTask<>(() -> discover(config, clusterName));
+            discoveryExecutor.execute(discovery);
+            discoveries.put(clusterName, discovery);
+        }
+
+        for (Map.Entry<String, FutureTask<Cluster>> discovery : discoveries.entrySet()) {
             try {
-                Cluster c = discover(config, clusterName);
-                clusters.put(clusterName, c);
+                clusters.put(discovery.getKey(), await(discovery.getValue()));
             } catch (Exception e) {
-                log.clusterDiscoveryError(clusterName, e);
+                log.clusterDiscoveryError(discovery.getKey(), e);
             }
         }
 
@@ -183,6 +205,14 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
         String discoveryUser = config.getUser();
         String discoveryPwdAlias = config.getPasswordAlias();
 
+        // Request the service configurations while the host roles are being processed
+        FutureTask<Map<String, Map<String, AmbariCluster.ServiceConfiguration>>> serviceConfigsRequest =
+                    new FutureTask<>(() -> ambariClient.getActiveServiceConfigurations(discoveryAddress,
+                                                                                       clusterName,
+                                                                                       discoveryUser,
+                                                                                       discoveryPwdAlias));
+        discoveryExecutor.execute(serviceConfigsRequest);
+
         Map<String, List<String>> componentHostNames = new HashMap<>();
         String hostRolesURL = String.format("%s" + AMBARI_HOSTROLES_URI, discoveryAddress, clusterName);
         JSONObject hostRolesJSON = restClient.invoke(hostRolesURL, discoveryUser, discoveryPwdAlias);
@@ -222,10 +252,7 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
 
         // Service configurations
         Map<String, Map<String, AmbariCluster.ServiceConfiguration>> serviceConfigurations =
-                                                        ambariClient.getActiveServiceConfigurations(discoveryAddress,
-                                                                                                    clusterName,
-                                                                                                    discoveryUser,
-                                                                                                    discoveryPwdAlias);
+                                                                                        await(serviceConfigsRequest);
         for (String serviceName : serviceConfigurations.keySet()) {
             for (Map.Entry<String, AmbariCluster.ServiceConfiguration> serviceConfig : serviceConfigurations.get(serviceName).entrySet()) {
                 cluster.addServiceConfiguration(serviceName, serviceConfig.getKey(), serviceConfig.getValue());
@@ -259,4 +286,41 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
         return cluster;
     }
 
+
+    /**
+     * Get the result of a task which has been handed to the discovery executor. If no executor thread has picked up the
+     * task yet, it is run on the calling thread, so tasks waiting on other tasks can never starve the bounded executor.
+     */
+    private static <T> T await(FutureTask<T> task) {
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+
+    private static ExecutorService createDiscoveryExecutor() {
+        int threads = Math.max(1, Integer.getInteger(DISCOVERY_THREADS_PROPERTY_NAME, DEFAULT_DISCOVERY_THREADS));
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor =
+                    new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "AmbariServiceDiscovery-" + threadCount.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
 }
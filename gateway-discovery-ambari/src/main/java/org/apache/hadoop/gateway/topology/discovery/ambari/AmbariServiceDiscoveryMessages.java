@@ -145,4 +145,11 @@ public interface AmbariServiceDiscoveryMessages {
              text = "Started Ambari cluster configuration monitor (checking every {0} seconds)")
     void startedAmbariConfigMonitor(final long pollingInterval);
 
+
+    @Message(level = MessageLevel.ERROR,
+             text = "Encountered an error checking the configuration of cluster {0} @ {1}: {2}")
+    void clusterConfigurationCheckError(final String clusterName,
+                                        final String address,
+                                        @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
 }
@@ -27,6 +27,8 @@ import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
 
@@ -41,7 +43,12 @@ class RESTInvoker {
 
     private AliasService aliasService = null;
 
-    private CloseableHttpClient httpClient = org.apache.http.impl.client.HttpClients.createDefault();
+    // Discovery and monitoring requests are issued concurrently, so connections to each Ambari instance are pooled
+    // and kept alive rather than re-established for every request.
+    private static final int MAX_CONNECTIONS           = 64;
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 16;
+
+    private CloseableHttpClient httpClient = createHttpClient();
 
 
     RESTInvoker(AliasService aliasService) {
@@ -133,4 +140,12 @@ class RESTInvoker {
         return result;
     }
 
+
+    private static CloseableHttpClient createHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        return HttpClients.custom().setConnectionManager(connectionManager).build();
+    }
+
 }
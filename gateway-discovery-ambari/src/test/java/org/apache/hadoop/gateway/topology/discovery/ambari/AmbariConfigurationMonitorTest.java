@@ -25,6 +25,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -35,6 +36,7 @@ import java.util.UUID;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class AmbariConfigurationMonitorTest {
 
@@ -202,6 +204,101 @@ public class AmbariConfigurationMonitorTest {
     }
 
 
+    @Test
+    public void testDesiredConfigVersionsGateFullConfigRequests() throws Exception {
+        final String address = "http://host1:8080";
+        final String clusterName = "Cluster_One";
+
+        GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+        EasyMock.expect(config.getGatewayDataDir()).andReturn(dataDir.getAbsolutePath()).anyTimes();
+        EasyMock.replay(config);
+
+        TestableAmbariConfigurationMonitor monitor = new TestableAmbariConfigurationMonitor(config);
+
+        final List<String> notifications = new ArrayList<>();
+        monitor.addListener((src, cname) -> notifications.add(cname));
+
+        Map<String, Map<String, AmbariCluster.ServiceConfiguration>> serviceConfigs = new HashMap<>();
+        serviceConfigs.put("ZOOKEEPER", Collections.singletonMap("zoo.cfg", createTestServiceConfig("zoo.cfg", "1")));
+        serviceConfigs.put("HIVE", Collections.singletonMap("hive-site", createTestServiceConfig("hive-site", "1")));
+        monitor.addClusterConfigVersions(createTestCluster(clusterName, serviceConfigs), createTestDiscoveryConfig(address));
+
+        monitor.addTestConfigVersion(address, clusterName, "zoo.cfg", "1");
+        monitor.addTestConfigVersion(address, clusterName, "hive-site", "1");
+
+        // The first check must request the service configurations to verify the recorded versions
+        monitor.checkClusterConfiguration(address, clusterName);
+        assertEquals(1, monitor.updatedConfigRequests);
+        assertTrue(notifications.isEmpty());
+
+        // The desired config versions have not changed, so the service configurations should not be requested again
+        monitor.checkClusterConfiguration(address, clusterName);
+        monitor.checkClusterConfiguration(address, clusterName);
+        assertEquals(1, monitor.updatedConfigRequests);
+        assertEquals(3, monitor.desiredConfigRequests);
+
+        // Change the cluster configuration
+        monitor.updateTestConfigVersion(address, clusterName, "hive-site", "2");
+        monitor.checkClusterConfiguration(address, clusterName);
+        assertEquals(2, monitor.updatedConfigRequests);
+        assertEquals(1, notifications.size());
+
+        // Until the recorded versions are updated, every check must verify the service configurations
+        monitor.checkClusterConfiguration(address, clusterName);
+        assertEquals(3, monitor.updatedConfigRequests);
+        assertEquals(2, notifications.size());
+
+        // Record the new versions, as the topology regeneration would
+        Map<String, Map<String, AmbariCluster.ServiceConfiguration>> updatedConfigs = new HashMap<>(serviceConfigs);
+        updatedConfigs.put("HIVE", Collections.singletonMap("hive-site", createTestServiceConfig("hive-site", "2")));
+        monitor.addClusterConfigVersions(createTestCluster(clusterName, updatedConfigs), createTestDiscoveryConfig(address));
+
+        monitor.checkClusterConfiguration(address, clusterName);
+        monitor.checkClusterConfiguration(address, clusterName);
+        assertEquals(4, monitor.updatedConfigRequests);
+        assertEquals(2, notifications.size());
+
+        // If the desired config versions cannot be determined, then the service configurations must always be checked
+        monitor.desiredConfigsAvailable = false;
+        monitor.checkClusterConfiguration(address, clusterName);
+        assertEquals(5, monitor.updatedConfigRequests);
+        assertEquals(2, notifications.size());
+    }
+
+
+    @Test
+    public void testPollingIntervalChangeReschedulesRunningMonitor() throws Exception {
+        final String address = "http://host1:8080";
+        final String clusterName = "Cluster_One";
+
+        GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+        EasyMock.expect(config.getGatewayDataDir()).andReturn(dataDir.getAbsolutePath()).anyTimes();
+        EasyMock.replay(config);
+
+        TestableAmbariConfigurationMonitor monitor = new TestableAmbariConfigurationMonitor(config);
+        monitor.setPollingInterval(3600);
+
+        Map<String, Map<String, AmbariCluster.ServiceConfiguration>> serviceConfigs = new HashMap<>();
+        serviceConfigs.put("ZOOKEEPER", Collections.singletonMap("zoo.cfg", createTestServiceConfig("zoo.cfg", "1")));
+        monitor.addTestConfigVersion(address, clusterName, "zoo.cfg", "1");
+
+        try {
+            monitor.start();
+            monitor.addClusterConfigVersions(createTestCluster(clusterName, serviceConfigs), createTestDiscoveryConfig(address));
+
+            // At an hour the cluster would not be checked during the test, unless the new interval applies at once
+            monitor.setPollingInterval(1);
+            long expiration = System.currentTimeMillis() + (1000 * 10);
+            while (monitor.desiredConfigRequests < 2 && System.currentTimeMillis() < expiration) {
+                Thread.sleep(10);
+            }
+        } finally {
+            monitor.stop();
+        }
+        assertTrue(monitor.desiredConfigRequests >= 2);
+    }
+
+
     private static boolean areChangeUpdatesExhausted(Map<String, Map<String, List<List<AmbariCluster.ServiceConfiguration>>>> updates,
                                               Map<String, Map<String, Integer>> configChangeIndeces) {
         boolean isExhausted = true;
@@ -267,6 +364,12 @@ public class AmbariConfigurationMonitorTest {
 
         Map<String, Map<String, Map<String, String>>> configVersionData = new HashMap<>();
 
+        boolean desiredConfigsAvailable = true;
+
+        volatile int desiredConfigRequests = 0;
+
+        int updatedConfigRequests = 0;
+
         TestableAmbariConfigurationMonitor(GatewayConfig config) {
             super(config, null);
         }
@@ -306,8 +409,19 @@ public class AmbariConfigurationMonitorTest {
             }
         }
 
+        @Override
+        Map<String, String> getDesiredConfigVersions(String address, String clusterName) {
+            desiredConfigRequests++;
+            Map<String, Map<String, String>> clusterConfigVersions = configVersionData.get(address);
+            if (desiredConfigsAvailable && clusterConfigVersions != null && clusterConfigVersions.containsKey(clusterName)) {
+                return new HashMap<>(clusterConfigVersions.get(clusterName));
+            }
+            return null;
+        }
+
         @Override
         Map<String, String> getUpdatedConfigVersions(String address, String clusterName) {
+            updatedConfigRequests++;
             Map<String, Map<String, String>> clusterConfigVersions = configVersionData.get(address);
             if (clusterConfigVersions != null) {
                 return clusterConfigVersions.get(clusterName);
@@ -16,6 +16,7 @@
  */
 package org.apache.hadoop.gateway.topology.discovery.ambari;
 
+import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import net.minidev.json.JSONValue;
 import org.apache.hadoop.gateway.topology.discovery.ServiceDiscovery;
@@ -26,6 +27,7 @@ import org.junit.Test;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertEquals;
@@ -85,6 +87,34 @@ public class AmbariServiceDiscoveryTest {
     }
 
 
+    @Test
+    public void testConcurrentMultiClusterDiscovery() throws Exception {
+        final String discoveryAddress = "http://ambarihost:8080";
+        final String[] clusterNames = {"clusterOne", "clusterTwo", "clusterThree", "clusterFour"};
+        ConcurrencyTrackingRESTInvoker restClient = new ConcurrencyTrackingRESTInvoker(clusterNames);
+        ServiceDiscovery sd = new TestAmbariServiceDiscovery(restClient);
+
+        ServiceDiscoveryConfig sdc = EasyMock.createNiceMock(ServiceDiscoveryConfig.class);
+        EasyMock.expect(sdc.getAddress()).andReturn(discoveryAddress).anyTimes();
+        EasyMock.expect(sdc.getUser()).andReturn(null).anyTimes();
+        EasyMock.replay(sdc);
+
+        Map<String, ServiceDiscovery.Cluster> clusters = sd.discover(sdc);
+        assertNotNull(clusters);
+        assertEquals(clusterNames.length, clusters.size());
+        for (String clusterName : clusterNames) {
+            ServiceDiscovery.Cluster cluster = clusters.get(clusterName);
+            assertNotNull(cluster);
+            assertEquals(clusterName, cluster.getName());
+            assertEquals(6, ((AmbariCluster) cluster).getComponents().size());
+        }
+
+        // 1 cluster list request, and a host roles and service configs request for each cluster
+        assertEquals(1 + (2 * clusterNames.length), restClient.invocations.get());
+        assertTrue("Expected the cluster requests to be issued concurrently.", restClient.maxConcurrency.get() > 1);
+    }
+
+
     private static void printServiceURLs(ServiceDiscovery.Cluster cluster) {
         final String[] services = new String[]{"NAMENODE",
                                                "JOBTRACKER",
@@ -125,6 +155,10 @@ public class AmbariServiceDiscoveryTest {
             super(new TestRESTInvoker(clusterName));
         }
 
+        TestAmbariServiceDiscovery(RESTInvoker restClient) {
+            super(restClient);
+        }
+
     }
 
     private static final class TestRESTInvoker extends RESTInvoker {
@@ -155,6 +189,61 @@ public class AmbariServiceDiscoveryTest {
         }
     }
 
+    /**
+     * RESTInvoker serving the canned responses for multiple clusters, which records how many requests are in progress
+     * at the same time.
+     */
+    private static final class ConcurrencyTrackingRESTInvoker extends RESTInvoker {
+
+        private Map<String, TestRESTInvoker> clusterInvokers = new HashMap<>();
+
+        private JSONObject clustersResponse = new JSONObject();
+
+        final AtomicInteger invocations = new AtomicInteger();
+
+        final AtomicInteger maxConcurrency = new AtomicInteger();
+
+        private final AtomicInteger concurrency = new AtomicInteger();
+
+        ConcurrencyTrackingRESTInvoker(String...clusterNames) {
+            super(null);
+
+            JSONArray items = new JSONArray();
+            for (String clusterName : clusterNames) {
+                clusterInvokers.put(clusterName, new TestRESTInvoker(clusterName));
+                JSONObject clusterInfo = new JSONObject();
+                clusterInfo.put("cluster_name", clusterName);
+                JSONObject item = new JSONObject();
+                item.put("Clusters", clusterInfo);
+                items.add(item);
+            }
+            clustersResponse.put("items", items);
+        }
+
+        @Override
+        JSONObject invoke(String url, String username, String passwordAlias) {
+            invocations.incrementAndGet();
+            int current = concurrency.incrementAndGet();
+            maxConcurrency.accumulateAndGet(current, Math::max);
+            try {
+                // Simulate the latency of the Ambari API
+                Thread.sleep(50);
+
+                String uri = url.substring(url.indexOf("/api"));
+                if (uri.equals(AmbariServiceDiscovery.AMBARI_CLUSTERS_URI)) {
+                    return clustersResponse;
+                }
+                String clusterName = uri.substring(AmbariServiceDiscovery.AMBARI_CLUSTERS_URI.length() + 1);
+                clusterName = clusterName.substring(0, clusterName.indexOf('/'));
+                return clusterInvokers.get(clusterName).invoke(url, username, passwordAlias);
+            } catch (InterruptedException e) {
+                return null;
+            } finally {
+                concurrency.decrementAndGet();
+            }
+        }
+    }
+
 
     ////////////////////////////////////////////////////////////////////////
     //  JSON response templates, based on actual response content excerpts
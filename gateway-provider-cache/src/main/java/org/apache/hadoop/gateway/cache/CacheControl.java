@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The directives of one or more Cache-Control header values.
+ */
+public class CacheControl {
+
+  private final Map<String, String> directives = new HashMap<>();
+
+  private CacheControl() {
+  }
+
+  public static CacheControl parse(Collection<String> values) {
+    CacheControl control = new CacheControl();
+    if (values != null) {
+      for (String value : values) {
+        if (value != null) {
+          for (String directive : value.split(",")) {
+            int equals = directive.indexOf('=');
+            String name;
+            String argument = null;
+            if (equals < 0) {
+              name = directive;
+            } else {
+              name = directive.substring(0, equals);
+              argument = directive.substring(equals + 1).trim();
+              if (argument.length() > 1 && argument.startsWith("\"") && argument.endsWith("\"")) {
+                argument = argument.substring(1, argument.length() - 1);
+              }
+            }
+            name = name.trim().toLowerCase(Locale.ROOT);
+            if (!name.isEmpty()) {
+              control.directives.put(name, argument);
+            }
+          }
+        }
+      }
+    }
+    return control;
+  }
+
+  public boolean has(String directive) {
+    return directives.containsKey(directive);
+  }
+
+  /**
+   * @return The number of seconds given for the directive, or -1 if it is absent or invalid.
+   */
+  public long getSeconds(String directive) {
+    String argument = directives.get(directive);
+    if (argument != null) {
+      try {
+        return Math.max(0, Long.parseLong(argument));
+      } catch (NumberFormatException e) {
+        // Treated as absent
+      }
+    }
+    return -1;
+  }
+
+}
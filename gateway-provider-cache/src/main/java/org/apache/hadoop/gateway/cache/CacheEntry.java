@@ -0,0 +1,219 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache;
+
+import org.apache.http.client.utils.DateUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A response stored in the cache, along with what is needed to decide whether it can be served to a request.
+ */
+public class CacheEntry {
+
+  private static final int OVERHEAD = 256;
+
+  private final int status;
+  private final List<String[]> headers;
+  private final String contentType;
+  private final byte[] body;
+  private final Map<String, String> vary;
+  private final long date;
+  private final long expires;
+
+  /**
+   * @param headers The name and value of each header of the response.
+   * @param vary The values of the request headers the response varies by, keyed by lower case header name.
+   * @param now The time the response was received.
+   * @param maxTtl The longest time in milliseconds the response may be served without revalidating it.
+   */
+  public CacheEntry(int status, List<String[]> headers, String contentType, byte[] body, Map<String, String> vary, long now, long maxTtl) {
+    this.status = status;
+    this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+    this.contentType = contentType;
+    this.body = body;
+    this.vary = Collections.unmodifiableMap(vary);
+    this.date = now;
+    this.expires = now + getFreshnessLifetime(this.headers, now, maxTtl);
+  }
+
+  /**
+   * @return The lifetime in milliseconds the headers allow the response to be served without revalidation.
+   */
+  static long getFreshnessLifetime(List<String[]> headers, long now, long maxTtl) {
+    CacheControl control = CacheControl.parse(getHeaders(headers, "Cache-Control"));
+    long lifetime = 0;
+    if (!control.has("no-cache")) {
+      long seconds = control.getSeconds("s-maxage");
+      if (seconds < 0) {
+        seconds = control.getSeconds("max-age");
+      }
+      if (seconds >= 0) {
+        lifetime = seconds * 1000L;
+      } else {
+        String expires = getHeader(headers, "Expires");
+        if (expires != null) {
+          Date expiresDate = DateUtils.parseDate(expires);
+          if (expiresDate != null) {
+            String date = getHeader(headers, "Date");
+            Date dateDate = date == null ? null : DateUtils.parseDate(date);
+            lifetime = expiresDate.getTime() - (dateDate == null ? now : dateDate.getTime());
+          }
+        }
+      }
+    }
+    return Math.max(0, Math.min(lifetime, maxTtl));
+  }
+
+  /**
+   * @return Whether a response with these headers may be stored at all.
+   */
+  public static boolean isStorable(int status, List<String[]> headers) {
+    if (status != 200 || getHeader(headers, "Set-Cookie") != null) {
+      return false;
+    }
+    if (CacheControl.parse(getHeaders(headers, "Cache-Control")).has("no-store")) {
+      return false;
+    }
+    return !getVaryHeaderNames(headers).contains("*");
+  }
+
+  /**
+   * @return The lower case names of the request headers the response varies by.
+   */
+  public static Set<String> getVaryHeaderNames(List<String[]> headers) {
+    Set<String> names = new HashSet<>();
+    for (String value : getHeaders(headers, "Vary")) {
+      for (String name : value.split(",")) {
+        name = name.trim().toLowerCase(Locale.ROOT);
+        if (!name.isEmpty()) {
+          names.add(name);
+        }
+      }
+    }
+    return names;
+  }
+
+  static String getHeader(List<String[]> headers, String name) {
+    for (String[] header : headers) {
+      if (header[0].equalsIgnoreCase(name)) {
+        return header[1];
+      }
+    }
+    return null;
+  }
+
+  static List<String> getHeaders(List<String[]> headers, String name) {
+    List<String> values = new ArrayList<>();
+    for (String[] header : headers) {
+      if (header[0].equalsIgnoreCase(name)) {
+        values.add(header[1]);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @return A copy of this entry with the headers of a 304 response to a revalidation merged in.
+   */
+  public CacheEntry revalidate(List<String[]> notModifiedHeaders, long now, long maxTtl) {
+    List<String[]> updates = new ArrayList<>();
+    Set<String> replaced = new HashSet<>();
+    for (String[] header : notModifiedHeaders) {
+      // The headers describing the stored body are kept from the original response
+      if (!"Content-Length".equalsIgnoreCase(header[0]) && !"Content-Type".equalsIgnoreCase(header[0])) {
+        updates.add(header);
+        replaced.add(header[0].toLowerCase(Locale.ROOT));
+      }
+    }
+    List<String[]> merged = new ArrayList<>();
+    for (String[] header : headers) {
+      if (!replaced.contains(header[0].toLowerCase(Locale.ROOT))) {
+        merged.add(header);
+      }
+    }
+    merged.addAll(updates);
+    return new CacheEntry(status, merged, contentType, body, vary, now, maxTtl);
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public List<String[]> getHeaders() {
+    return headers;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public byte[] getBody() {
+    return body;
+  }
+
+  public Map<String, String> getVary() {
+    return vary;
+  }
+
+  public String getETag() {
+    return getHeader(headers, "ETag");
+  }
+
+  public String getLastModified() {
+    return getHeader(headers, "Last-Modified");
+  }
+
+  public boolean hasValidator() {
+    return getETag() != null || getLastModified() != null;
+  }
+
+  public boolean isFresh(long now) {
+    return now < expires;
+  }
+
+  public long getExpires() {
+    return expires;
+  }
+
+  /**
+   * @return The age of the response in seconds.
+   */
+  public long getAge(long now) {
+    return Math.max(0, (now - date) / 1000L);
+  }
+
+  /**
+   * @return An estimate of the memory the entry occupies, in bytes.
+   */
+  public long getSize() {
+    long size = OVERHEAD + (body == null ? 0 : body.length);
+    for (String[] header : headers) {
+      size += 2 * (header[0].length() + header[1].length());
+    }
+    return size;
+  }
+
+}
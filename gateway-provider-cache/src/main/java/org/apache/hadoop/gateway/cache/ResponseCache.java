@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in memory store of responses, bounded by the total size of the entries. The least recently used entries are
+ * evicted first.
+ *
+ * Hits, misses, revalidations and evictions are counted in the metric registry under cache.&lt;topology&gt;.
+ * The cache is shared by the filters that retain it, and its entries and gauges are dropped once the last of them
+ * releases it.
+ */
+public class ResponseCache {
+
+  private final long maxSize;
+  private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long size;
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter revalidations;
+  private final Counter evictions;
+
+  private final MetricRegistry registry;
+  private final Gauge<Integer> entriesGauge;
+  private final Gauge<Long> sizeGauge;
+  private int users;
+
+  public ResponseCache(long maxSize, MetricRegistry registry, String topology) {
+    this.maxSize = maxSize;
+    hits = registry.counter(MetricRegistry.name("cache", topology, "hits"));
+    misses = registry.counter(MetricRegistry.name("cache", topology, "misses"));
+    revalidations = registry.counter(MetricRegistry.name("cache", topology, "revalidations"));
+    evictions = registry.counter(MetricRegistry.name("cache", topology, "evictions"));
+    String entriesName = MetricRegistry.name("cache", topology, "entries");
+    String sizeName = MetricRegistry.name("cache", topology, "size");
+    // A redeployed topology replaces the gauges of its previous cache
+    registry.remove(entriesName);
+    registry.remove(sizeName);
+    this.registry = registry;
+    entriesGauge = registry.register(entriesName, new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return getEntryCount();
+      }
+    });
+    sizeGauge = registry.register(sizeName, new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return getSize();
+      }
+    });
+  }
+
+  public synchronized void retain() {
+    users++;
+  }
+
+  /**
+   * Drops the entries and removes the gauges from the registry once no filter retains the cache.
+   *
+   * @return True if this was the last filter retaining the cache.
+   */
+  public synchronized boolean release() {
+    if (--users > 0) {
+      return false;
+    }
+    entries.clear();
+    size = 0;
+    // Only our own gauges, since those of a redeployed topology may already have replaced them
+    registry.removeMatching(new MetricFilter() {
+      @Override
+      public boolean matches(String name, Metric metric) {
+        return metric == entriesGauge || metric == sizeGauge;
+      }
+    });
+    return true;
+  }
+
+  public synchronized CacheEntry get(String key) {
+    return entries.get(key);
+  }
+
+  public synchronized void put(String key, CacheEntry entry) {
+    long entrySize = entry.getSize();
+    remove(key);
+    if (entrySize > maxSize) {
+      return;
+    }
+    Iterator<Map.Entry<String, CacheEntry>> eldest = entries.entrySet().iterator();
+    while (size + entrySize > maxSize && eldest.hasNext()) {
+      size -= eldest.next().getValue().getSize();
+      eldest.remove();
+      evictions.inc();
+    }
+    entries.put(key, entry);
+    size += entrySize;
+  }
+
+  public synchronized void remove(String key) {
+    CacheEntry removed = entries.remove(key);
+    if (removed != null) {
+      size -= removed.getSize();
+    }
+  }
+
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public void recordHit() {
+    hits.inc();
+  }
+
+  public void recordMiss() {
+    misses.inc();
+  }
+
+  public void recordRevalidation() {
+    revalidations.inc();
+  }
+
+  public long getHitCount() {
+    return hits.getCount();
+  }
+
+  public long getMissCount() {
+    return misses.getCount();
+  }
+
+  public long getRevalidationCount() {
+    return revalidations.getCount();
+  }
+
+}
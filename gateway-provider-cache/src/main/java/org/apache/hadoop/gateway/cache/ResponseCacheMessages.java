@@ -0,0 +1,42 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache;
+
+import org.apache.hadoop.gateway.i18n.messages.Message;
+import org.apache.hadoop.gateway.i18n.messages.MessageLevel;
+import org.apache.hadoop.gateway.i18n.messages.Messages;
+
+@Messages(logger="org.apache.hadoop.gateway.provider.cache")
+public interface ResponseCacheMessages {
+
+  @Message( level = MessageLevel.INFO, text = "Caching responses of topology {0} in at most {1} bytes, for at most {2}ms each." )
+  void initializedResponseCache( String topology, long maxSize, long maxTtl );
+
+  @Message( level = MessageLevel.WARN, text = "Invalid value {1} for response cache parameter {0}, using {2}." )
+  void invalidCacheParameter( String name, String value, long defaultValue );
+
+  @Message( level = MessageLevel.DEBUG, text = "Serving {0} from the response cache." )
+  void servingCachedResponse( String url );
+
+  @Message( level = MessageLevel.DEBUG, text = "Revalidated the cached response for {0}." )
+  void revalidatedCachedResponse( String url );
+
+  @Message( level = MessageLevel.DEBUG, text = "Cached the response for {0} for {1}ms." )
+  void cachedResponse( String url, long lifetime );
+
+}
@@ -0,0 +1,316 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache.filter;
+
+import org.apache.hadoop.gateway.filter.GatewayResponse;
+import org.apache.hadoop.gateway.filter.GatewayResponseWrapper;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.http.client.utils.DateUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Captures the response the dispatch writes, so it can be stored.
+ *
+ * The status and headers are held back until the body is streamed, which lets the filter swallow a 304 response to a
+ * revalidation and serve the cached body instead. The body is read from the backend once; it is buffered while it
+ * fits in an entry and streamed on to the wrapped response, which rewrites it as usual.
+ */
+class CachingResponse extends GatewayResponseWrapper {
+
+  private static final int STREAM_COPY_BUFFER_SIZE = 4096;
+
+  private final long maxEntrySize;
+  private final List<String[]> headers = new ArrayList<>();
+  private int status = SC_OK;
+  private String contentType;
+  private byte[] body;
+  private boolean committed;
+  private boolean storable = true;
+
+  CachingResponse(HttpServletResponse response, long maxEntrySize) {
+    super(response);
+    this.maxEntrySize = maxEntrySize;
+  }
+
+  /**
+   * @return Whether the response was written in a way that allows it to be stored.
+   */
+  boolean isStorable() {
+    return storable;
+  }
+
+  List<String[]> getRecordedHeaders() {
+    return headers;
+  }
+
+  byte[] getBody() {
+    return body;
+  }
+
+  /**
+   * Passes the status and headers on to the wrapped response, unless that has already happened.
+   */
+  void commit() {
+    if (!committed) {
+      committed = true;
+      HttpServletResponse response = (HttpServletResponse) getResponse();
+      response.setStatus(status);
+      for (String[] header : headers) {
+        response.addHeader(header[0], header[1]);
+      }
+      if (contentType != null) {
+        response.setContentType(contentType);
+      }
+    }
+  }
+
+  @Override
+  public void streamResponse(InputStream input) throws IOException {
+    commit();
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    byte[] chunk = new byte[STREAM_COPY_BUFFER_SIZE];
+    int read;
+    while (buffer.size() <= maxEntrySize && (read = input.read(chunk)) != -1) {
+      buffer.write(chunk, 0, read);
+    }
+    if (buffer.size() > maxEntrySize) {
+      storable = false;
+      stream((HttpServletResponse) getResponse(), new SequenceInputStream(new ByteArrayInputStream(buffer.toByteArray()), input));
+    } else {
+      body = buffer.toByteArray();
+      stream((HttpServletResponse) getResponse(), new ByteArrayInputStream(body));
+    }
+  }
+
+  /**
+   * Writes a body to a response, through the response's rewriting if it has any.
+   */
+  static void stream(HttpServletResponse response, InputStream input) throws IOException {
+    if (response instanceof GatewayResponse) {
+      ((GatewayResponse) response).streamResponse(input);
+    } else {
+      OutputStream output = response.getOutputStream();
+      IOUtils.copyBytes(input, output, STREAM_COPY_BUFFER_SIZE);
+      output.close();
+    }
+  }
+
+  @Override
+  public OutputStream getRawOutputStream() throws IOException {
+    return getOutputStream();
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    storable = false;
+    commit();
+    return super.getOutputStream();
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    storable = false;
+    commit();
+    return super.getWriter();
+  }
+
+  @Override
+  public void sendError(int sc) throws IOException {
+    storable = false;
+    committed = true;
+    super.sendError(sc);
+  }
+
+  @Override
+  public void sendError(int sc, String msg) throws IOException {
+    storable = false;
+    committed = true;
+    super.sendError(sc, msg);
+  }
+
+  @Override
+  public void sendRedirect(String location) throws IOException {
+    storable = false;
+    committed = true;
+    super.sendRedirect(location);
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    commit();
+    super.flushBuffer();
+  }
+
+  @Override
+  public boolean isCommitted() {
+    return committed || super.isCommitted();
+  }
+
+  @Override
+  public void setStatus(int sc) {
+    if (committed) {
+      super.setStatus(sc);
+    } else {
+      status = sc;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public void setStatus(int sc, String sm) {
+    setStatus(sc);
+  }
+
+  @Override
+  public int getStatus() {
+    return committed ? super.getStatus() : status;
+  }
+
+  @Override
+  public void setContentType(String type) {
+    if (committed) {
+      super.setContentType(type);
+    } else {
+      contentType = type;
+    }
+  }
+
+  @Override
+  public String getContentType() {
+    return committed ? super.getContentType() : contentType;
+  }
+
+  @Override
+  public void setContentLength(int len) {
+    setHeader("Content-Length", String.valueOf(len));
+  }
+
+  @Override
+  public void setContentLengthLong(long len) {
+    setHeader("Content-Length", String.valueOf(len));
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    if (committed) {
+      super.addHeader(name, value);
+    } else {
+      headers.add(new String[]{name, value});
+    }
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    if (committed) {
+      super.setHeader(name, value);
+    } else {
+      removeHeader(name);
+      headers.add(new String[]{name, value});
+    }
+  }
+
+  @Override
+  public void addIntHeader(String name, int value) {
+    addHeader(name, String.valueOf(value));
+  }
+
+  @Override
+  public void setIntHeader(String name, int value) {
+    setHeader(name, String.valueOf(value));
+  }
+
+  @Override
+  public void addDateHeader(String name, long date) {
+    addHeader(name, DateUtils.formatDate(new Date(date)));
+  }
+
+  @Override
+  public void setDateHeader(String name, long date) {
+    setHeader(name, DateUtils.formatDate(new Date(date)));
+  }
+
+  @Override
+  public boolean containsHeader(String name) {
+    return getHeader(name) != null;
+  }
+
+  @Override
+  public String getHeader(String name) {
+    if (committed) {
+      return super.getHeader(name);
+    }
+    for (String[] header : headers) {
+      if (header[0].equalsIgnoreCase(name)) {
+        return header[1];
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Collection<String> getHeaders(String name) {
+    if (committed) {
+      return super.getHeaders(name);
+    }
+    List<String> values = new ArrayList<>();
+    for (String[] header : headers) {
+      if (header[0].equalsIgnoreCase(name)) {
+        values.add(header[1]);
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public Collection<String> getHeaderNames() {
+    if (committed) {
+      return super.getHeaderNames();
+    }
+    Set<String> names = new LinkedHashSet<>();
+    for (String[] header : headers) {
+      names.add(header[0]);
+    }
+    return names;
+  }
+
+  private void removeHeader(String name) {
+    Iterator<String[]> iterator = headers.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next()[0].equalsIgnoreCase(name)) {
+        iterator.remove();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache.filter;
+
+import org.apache.hadoop.gateway.cache.CacheEntry;
+import org.apache.http.client.utils.DateUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds the validators of a cached response to a request, so the backend can answer 304 if it is still current.
+ */
+class ConditionalRequest extends HttpServletRequestWrapper {
+
+  private final Map<String, String> conditions = new LinkedHashMap<>();
+
+  ConditionalRequest(HttpServletRequest request, CacheEntry entry) {
+    super(request);
+    if (entry.getETag() != null) {
+      conditions.put("If-None-Match", entry.getETag());
+    }
+    if (entry.getLastModified() != null) {
+      conditions.put("If-Modified-Since", entry.getLastModified());
+    }
+  }
+
+  private String getCondition(String name) {
+    for (Map.Entry<String, String> condition : conditions.entrySet()) {
+      if (condition.getKey().equalsIgnoreCase(name)) {
+        return condition.getValue();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String getHeader(String name) {
+    String condition = getCondition(name);
+    return condition != null ? condition : super.getHeader(name);
+  }
+
+  @Override
+  public Enumeration<String> getHeaders(String name) {
+    String condition = getCondition(name);
+    return condition != null ? Collections.enumeration(Collections.singletonList(condition)) : super.getHeaders(name);
+  }
+
+  @Override
+  public Enumeration<String> getHeaderNames() {
+    List<String> names = new ArrayList<>(conditions.keySet());
+    Enumeration<String> headerNames = super.getHeaderNames();
+    while (headerNames != null && headerNames.hasMoreElements()) {
+      String name = headerNames.nextElement();
+      if (getCondition(name) == null) {
+        names.add(name);
+      }
+    }
+    return Collections.enumeration(names);
+  }
+
+  @Override
+  public long getDateHeader(String name) {
+    String condition = getCondition(name);
+    if (condition == null) {
+      return super.getDateHeader(name);
+    }
+    Date date = DateUtils.parseDate(condition);
+    if (date == null) {
+      throw new IllegalArgumentException(condition);
+    }
+    return date.getTime();
+  }
+
+}
@@ -0,0 +1,304 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache.filter;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.hadoop.gateway.cache.CacheControl;
+import org.apache.hadoop.gateway.cache.CacheEntry;
+import org.apache.hadoop.gateway.cache.ResponseCache;
+import org.apache.hadoop.gateway.cache.ResponseCacheMessages;
+import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.security.SubjectUtils;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves GET requests from a cache of earlier backend responses, honouring the Cache-Control, Expires, ETag and
+ * Last-Modified headers of the backend. Stale responses that carry a validator are revalidated with a conditional
+ * request rather than fetched again.
+ *
+ * Responses are stored before they are rewritten and are keyed by the effective user and the credentials sent with the
+ * request, so a response is only ever served to the user it was fetched for, rewritten for the request at hand. All the
+ * services of a topology share one cache, which is bounded by the max.size parameter. No response is served for longer
+ * than max.ttl seconds without revalidating it.
+ */
+public class ResponseCacheFilter extends AbstractGatewayFilter {
+
+  private static final ResponseCacheMessages LOG = MessagesFactory.get(ResponseCacheMessages.class);
+
+  static final String CACHE_ATTRIBUTE = ResponseCache.class.getName();
+
+  public static final String MAX_SIZE_PARAM = "max.size";
+  public static final String MAX_ENTRY_SIZE_PARAM = "max.entry.size";
+  public static final String MAX_TTL_PARAM = "max.ttl";
+
+  static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+  static final long DEFAULT_MAX_ENTRY_SIZE = 1024L * 1024;
+  static final long DEFAULT_MAX_TTL = 300L;
+
+  private ResponseCache cache;
+  private long maxEntrySize;
+  private long maxTtl;
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    super.init(filterConfig);
+    maxEntrySize = getLongParam(filterConfig, MAX_ENTRY_SIZE_PARAM, DEFAULT_MAX_ENTRY_SIZE);
+    maxTtl = getLongParam(filterConfig, MAX_TTL_PARAM, DEFAULT_MAX_TTL) * 1000L;
+    cache = getCache(filterConfig);
+  }
+
+  private ResponseCache getCache(FilterConfig filterConfig) {
+    ServletContext context = filterConfig.getServletContext();
+    synchronized (context) {
+      ResponseCache shared = (ResponseCache) context.getAttribute(CACHE_ATTRIBUTE);
+      if (shared == null) {
+        String topology = (String) context.getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE);
+        if (topology == null) {
+          topology = "default";
+        }
+        long maxSize = getLongParam(filterConfig, MAX_SIZE_PARAM, DEFAULT_MAX_SIZE);
+        shared = new ResponseCache(maxSize, getMetricRegistry(context), topology);
+        context.setAttribute(CACHE_ATTRIBUTE, shared);
+        LOG.initializedResponseCache(topology, maxSize, maxTtl);
+      }
+      shared.retain();
+      return shared;
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (cache != null) {
+      ServletContext context = getConfig().getServletContext();
+      synchronized (context) {
+        if (cache.release() && context.getAttribute(CACHE_ATTRIBUTE) == cache) {
+          context.removeAttribute(CACHE_ATTRIBUTE);
+        }
+      }
+      cache = null;
+    }
+  }
+
+  private static MetricRegistry getMetricRegistry(ServletContext context) {
+    MetricRegistry registry = MetricsService.getMetricRegistry(
+        (GatewayServices) context.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE));
+    return registry != null ? registry : new MetricRegistry();
+  }
+
+  private static long getLongParam(FilterConfig filterConfig, String name, long defaultValue) {
+    String value = filterConfig.getInitParameter(name);
+    if (value != null) {
+      try {
+        long parsed = Long.parseLong(value.trim());
+        if (parsed >= 0) {
+          return parsed;
+        }
+      } catch (NumberFormatException e) {
+        // Reported below
+      }
+      LOG.invalidCacheParameter(name, value, defaultValue);
+    }
+    return defaultValue;
+  }
+
+  @Override
+  protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    CacheControl requestControl = CacheControl.parse(list(request.getHeaders("Cache-Control")));
+    if (!"GET".equalsIgnoreCase(request.getMethod())
+        || requestControl.has("no-store")
+        || request.getHeader("Range") != null) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    String key = getKey(request);
+    long now = System.currentTimeMillis();
+    CacheEntry entry = cache.get(key);
+    if (entry != null && !getVary(request, entry.getVary().keySet()).equals(entry.getVary())) {
+      entry = null;
+    }
+
+    boolean revalidate = requestControl.has("no-cache") || requestControl.getSeconds("max-age") == 0
+        || "no-cache".equalsIgnoreCase(request.getHeader("Pragma"));
+    if (entry != null && !revalidate && entry.isFresh(now)) {
+      cache.recordHit();
+      LOG.servingCachedResponse(key);
+      replay(request, response, entry, now);
+      return;
+    }
+
+    // A conditional request from the client is answered by the backend, since its validators may not be ours
+    boolean conditional = request.getHeader("If-None-Match") != null || request.getHeader("If-Modified-Since") != null;
+    if (entry != null && entry.hasValidator() && !conditional) {
+      CachingResponse capture = new CachingResponse(response, maxEntrySize);
+      chain.doFilter(new ConditionalRequest(request, entry), capture);
+      if (capture.getStatus() == HttpServletResponse.SC_NOT_MODIFIED && !capture.isCommitted()) {
+        CacheEntry revalidated = entry.revalidate(capture.getRecordedHeaders(), now, maxTtl);
+        cache.put(key, revalidated);
+        cache.recordRevalidation();
+        LOG.revalidatedCachedResponse(key);
+        replay(request, response, revalidated, now);
+      } else {
+        cache.recordMiss();
+        store(key, request, capture, now);
+      }
+      return;
+    }
+
+    cache.recordMiss();
+    if (entry != null) {
+      cache.remove(key);
+    }
+    if (conditional) {
+      chain.doFilter(request, response);
+    } else {
+      CachingResponse capture = new CachingResponse(response, maxEntrySize);
+      chain.doFilter(request, capture);
+      store(key, request, capture, now);
+    }
+  }
+
+  private void store(String key, HttpServletRequest request, CachingResponse capture, long now) {
+    capture.commit();
+    List<String[]> headers = capture.getRecordedHeaders();
+    int status = capture.getStatus();
+    if (capture.isStorable() && CacheEntry.isStorable(status, headers)) {
+      Map<String, String> vary = getVary(request, CacheEntry.getVaryHeaderNames(headers));
+      CacheEntry entry = new CacheEntry(status, headers, capture.getContentType(), capture.getBody(), vary, now, maxTtl);
+      if (entry.isFresh(now) || entry.hasValidator()) {
+        cache.put(key, entry);
+        LOG.cachedResponse(key, entry.getExpires() - now);
+        return;
+      }
+    }
+    cache.remove(key);
+  }
+
+  private static void replay(HttpServletRequest request, HttpServletResponse response, CacheEntry entry, long now)
+      throws IOException {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    String etag = entry.getETag();
+    if (etag != null && ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      response.setHeader("ETag", etag);
+      return;
+    }
+    response.setStatus(entry.getStatus());
+    for (String[] header : entry.getHeaders()) {
+      if (!"Age".equalsIgnoreCase(header[0])) {
+        response.addHeader(header[0], header[1]);
+      }
+    }
+    response.setHeader("Age", String.valueOf(entry.getAge(now)));
+    if (entry.getContentType() != null) {
+      response.setContentType(entry.getContentType());
+    }
+    if (entry.getBody() != null) {
+      CachingResponse.stream(response, new ByteArrayInputStream(entry.getBody()));
+    }
+  }
+
+  /**
+   * Responses are only ever shared by requests for the same URL made as the same user with the same credentials. The
+   * Authorization and Cookie headers are forwarded to the backend and may select a private response, so a digest of
+   * them is part of the key (RFC 7234 section 3.2).
+   */
+  static String getKey(HttpServletRequest request) {
+    StringBuilder key = new StringBuilder();
+    String user = SubjectUtils.getCurrentEffectivePrincipalName();
+    if (user != null) {
+      key.append(user);
+    }
+    String credentials = getCredentialsDigest(request);
+    if (credentials != null) {
+      key.append(':').append(credentials);
+    }
+    key.append('@').append(request.getRequestURL());
+    String query = request.getQueryString();
+    if (query != null) {
+      key.append('?').append(query);
+    }
+    return key.toString();
+  }
+
+  // The key is logged so the credentials themselves must not be part of it.
+  private static String getCredentialsDigest(HttpServletRequest request) {
+    List<String> authorization = list(request.getHeaders("Authorization"));
+    List<String> cookies = list(request.getHeaders("Cookie"));
+    if (authorization.isEmpty() && cookies.isEmpty()) {
+      return null;
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (String value : authorization) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+      }
+      digest.update((byte) 0);
+      for (String value : cookies) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+      }
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Map<String, String> getVary(HttpServletRequest request, Set<String> names) {
+    Map<String, String> vary = new HashMap<>();
+    for (String name : names) {
+      StringBuilder values = new StringBuilder();
+      for (String value : list(request.getHeaders(name))) {
+        if (values.length() > 0) {
+          values.append(',');
+        }
+        values.append(value);
+      }
+      vary.put(name, values.toString());
+    }
+    return vary;
+  }
+
+  private static List<String> list(Enumeration<String> values) {
+    return values == null ? Collections.<String>emptyList() : Collections.list(values);
+  }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.http.client.utils.DateUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CacheEntryTest {
+
+  private static final long MAX_TTL = 300000L;
+
+  private static List<String[]> headers(String... namesAndValues) {
+    List<String[]> headers = new ArrayList<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      headers.add(new String[]{namesAndValues[i], namesAndValues[i + 1]});
+    }
+    return headers;
+  }
+
+  @Test
+  public void testFreshnessLifetime() {
+    long now = System.currentTimeMillis();
+    assertThat(CacheEntry.getFreshnessLifetime(headers("Cache-Control", "max-age=60"), now, MAX_TTL), is(60000L));
+    assertThat(CacheEntry.getFreshnessLifetime(headers("Cache-Control", "max-age=60, s-maxage=10"), now, MAX_TTL), is(10000L));
+    assertThat(CacheEntry.getFreshnessLifetime(headers("Cache-Control", "max-age=3600"), now, MAX_TTL), is(MAX_TTL));
+    assertThat(CacheEntry.getFreshnessLifetime(headers("Cache-Control", "no-cache, max-age=60"), now, MAX_TTL), is(0L));
+    assertThat(CacheEntry.getFreshnessLifetime(headers("Cache-Control", "max-age=bogus"), now, MAX_TTL), is(0L));
+    assertThat(CacheEntry.getFreshnessLifetime(headers(), now, MAX_TTL), is(0L));
+
+    Date date = new Date(1500000000000L);
+    Date expires = new Date(date.getTime() + 30000L);
+    assertThat(CacheEntry.getFreshnessLifetime(
+        headers("Date", DateUtils.formatDate(date), "Expires", DateUtils.formatDate(expires)), now, MAX_TTL), is(30000L));
+    assertThat(CacheEntry.getFreshnessLifetime(headers("Expires", "0"), now, MAX_TTL), is(0L));
+  }
+
+  @Test
+  public void testStorable() {
+    assertThat(CacheEntry.isStorable(200, headers("Cache-Control", "max-age=60")), is(true));
+    assertThat(CacheEntry.isStorable(404, headers("Cache-Control", "max-age=60")), is(false));
+    assertThat(CacheEntry.isStorable(200, headers("Cache-Control", "private, no-store")), is(false));
+    assertThat(CacheEntry.isStorable(200, headers("Set-Cookie", "hadoop.auth=x")), is(false));
+    assertThat(CacheEntry.isStorable(200, headers("Vary", "*")), is(false));
+    assertThat(CacheEntry.getVaryHeaderNames(headers("Vary", "Accept, Accept-Encoding", "Vary", "X-Other")),
+        is((Set<String>) new HashSet<>(Arrays.asList("accept", "accept-encoding", "x-other"))));
+  }
+
+  @Test
+  public void testRevalidate() {
+    long now = System.currentTimeMillis();
+    CacheEntry entry = new CacheEntry(200, headers("ETag", "\"1\"", "Content-Length", "5", "X-Old", "a"),
+        "text/plain", "hello".getBytes(), Collections.<String, String>emptyMap(), now - 10000L, MAX_TTL);
+    assertThat(entry.isFresh(now), is(false));
+    assertThat(entry.hasValidator(), is(true));
+
+    CacheEntry revalidated = entry.revalidate(headers("Cache-Control", "max-age=60", "Content-Length", "0", "X-Old", "b"), now, MAX_TTL);
+    assertThat(revalidated.isFresh(now), is(true));
+    assertThat(revalidated.getETag(), is("\"1\""));
+    assertThat(CacheEntry.getHeader(revalidated.getHeaders(), "Content-Length"), is("5"));
+    assertThat(CacheEntry.getHeaders(revalidated.getHeaders(), "X-Old"), is(Collections.singletonList("b")));
+    assertThat(new String(revalidated.getBody()), is("hello"));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesEvicted() {
+    long now = System.currentTimeMillis();
+    CacheEntry entry = new CacheEntry(200, headers(), null, new byte[1000], Collections.<String, String>emptyMap(), now, MAX_TTL);
+    MetricRegistry registry = new MetricRegistry();
+    ResponseCache cache = new ResponseCache(entry.getSize() * 2, registry, "sandbox");
+    cache.put("a", entry);
+    cache.put("b", entry);
+    cache.get("a");
+    cache.put("c", entry);
+    assertThat(cache.getEntryCount(), is(2));
+    assertThat(cache.get("a") != null, is(true));
+    assertThat(cache.get("b") == null, is(true));
+    assertThat(cache.getSize(), is(entry.getSize() * 2));
+    assertThat(registry.counter("cache.sandbox.evictions").getCount(), is(1L));
+
+    // An entry larger than the whole cache is never stored
+    cache.put("d", new CacheEntry(200, headers(), null, new byte[5000], Collections.<String, String>emptyMap(), now, MAX_TTL));
+    assertThat(cache.get("d") == null, is(true));
+    assertThat(cache.getEntryCount(), is(2));
+  }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ResponseCacheTest {
+
+  @Test
+  public void testReleaseRemovesOwnGauges() {
+    MetricRegistry registry = new MetricRegistry();
+    ResponseCache previous = new ResponseCache(1024, registry, "sandbox");
+    previous.retain();
+    previous.put("key", new CacheEntry(200, Collections.<String[]>emptyList(), null, new byte[10],
+        Collections.<String, String>emptyMap(), 0, 1000));
+    assertThat(registry.getGauges().get("cache.sandbox.entries").getValue(), is((Object) 1));
+
+    // A redeployed topology registers the gauges of its new cache before the previous one is released
+    ResponseCache current = new ResponseCache(1024, registry, "sandbox");
+    current.retain();
+    current.retain();
+    assertThat(previous.release(), is(true));
+    assertThat(previous.getEntryCount(), is(0));
+    assertThat(previous.getSize(), is(0L));
+    assertThat(registry.getGauges().get("cache.sandbox.entries").getValue(), is((Object) 0));
+
+    assertThat(current.release(), is(false));
+    assertThat(registry.getGauges().size(), is(2));
+    assertThat(current.release(), is(true));
+    assertThat(registry.getGauges().isEmpty(), is(true));
+  }
+
+}
@@ -0,0 +1,418 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.cache.filter;
+
+import org.apache.hadoop.gateway.cache.ResponseCache;
+import org.apache.hadoop.gateway.security.PrimaryPrincipal;
+import org.apache.hadoop.test.mock.MockFilterConfig;
+import org.apache.hadoop.test.mock.MockHttpServletRequest;
+import org.apache.hadoop.test.mock.MockHttpServletResponse;
+import org.apache.hadoop.test.mock.MockServletContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.security.auth.Subject;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ResponseCacheFilterTest {
+
+  private Map<String, Object> attributes;
+  private Map<String, String> params;
+  private Backend backend;
+
+  @Before
+  public void setUp() {
+    attributes = new HashMap<>();
+    params = new HashMap<>();
+    backend = new Backend();
+  }
+
+  @Test
+  public void testFreshResponseServedFromCache() throws Exception {
+    backend.headers.put("Cache-Control", "max-age=60");
+    ResponseCacheFilter filter = createFilter();
+
+    TestResponse first = get(filter, "alice", new TestRequest("/webhdfs/v1/tmp?op=LISTSTATUS"));
+    TestResponse second = get(filter, "alice", new TestRequest("/webhdfs/v1/tmp?op=LISTSTATUS"));
+
+    assertThat(backend.requests, is(1));
+    assertThat(first.getBody(), is("backend-1"));
+    assertThat(second.getBody(), is("backend-1"));
+    assertThat(second.getStatus(), is(200));
+    assertThat(second.getHeader("Cache-Control"), is("max-age=60"));
+    assertThat(second.getHeader("Age") != null, is(true));
+    assertThat(getCache().getHitCount(), is(1L));
+    assertThat(getCache().getMissCount(), is(1L));
+
+    // A different query is a different resource
+    get(filter, "alice", new TestRequest("/webhdfs/v1/tmp?op=GETFILESTATUS"));
+    assertThat(backend.requests, is(2));
+  }
+
+  @Test
+  public void testResponsesAreNotSharedBetweenUsers() throws Exception {
+    backend.headers.put("Cache-Control", "max-age=60");
+    ResponseCacheFilter filter = createFilter();
+
+    assertThat(get(filter, "alice", new TestRequest("/resource")).getBody(), is("backend-1"));
+    assertThat(get(filter, "bob", new TestRequest("/resource")).getBody(), is("backend-2"));
+    assertThat(get(filter, "alice", new TestRequest("/resource")).getBody(), is("backend-1"));
+    assertThat(backend.requests, is(2));
+  }
+
+  @Test
+  public void testResponsesAreNotSharedBetweenCredentials() throws Exception {
+    backend.headers.put("Cache-Control", "max-age=60");
+    ResponseCacheFilter filter = createFilter();
+
+    assertThat(get(filter, "alice", new TestRequest("/resource").header("Cookie", "session=1")).getBody(),
+        is("backend-1"));
+    assertThat(get(filter, "alice", new TestRequest("/resource").header("Cookie", "session=2")).getBody(),
+        is("backend-2"));
+    assertThat(get(filter, "alice", new TestRequest("/resource").header("Authorization", "Bearer a")).getBody(),
+        is("backend-3"));
+    assertThat(get(filter, "alice", new TestRequest("/resource").header("Authorization", "Bearer b")).getBody(),
+        is("backend-4"));
+    assertThat(get(filter, "alice", new TestRequest("/resource")).getBody(), is("backend-5"));
+    assertThat(backend.requests, is(5));
+
+    // The same credentials share the response, and do not appear in the key
+    assertThat(get(filter, "alice", new TestRequest("/resource").header("Cookie", "session=1")).getBody(),
+        is("backend-1"));
+    assertThat(get(filter, "alice", new TestRequest("/resource").header("Authorization", "Bearer b")).getBody(),
+        is("backend-4"));
+    assertThat(backend.requests, is(5));
+    String key = ResponseCacheFilter.getKey(new TestRequest("/resource").header("Authorization", "Bearer secret"));
+    assertThat(key.contains("secret"), is(false));
+  }
+
+  @Test
+  public void testStaleResponseRevalidated() throws Exception {
+    backend.headers.put("Cache-Control", "max-age=0");
+    backend.headers.put("ETag", "\"v1\"");
+    ResponseCacheFilter filter = createFilter();
+
+    get(filter, "alice", new TestRequest("/resource"));
+    assertThat(backend.ifNoneMatch, nullValue());
+    TestResponse response = get(filter, "alice", new TestRequest("/resource"));
+
+    assertThat(backend.requests, is(2));
+    assertThat(backend.ifNoneMatch, is("\"v1\""));
+    assertThat(response.getStatus(), is(200));
+    assertThat(response.getBody(), is("backend-1"));
+    assertThat(getCache().getRevalidationCount(), is(1L));
+
+    // Once the backend changes the resource the new response replaces the stored one
+    backend.headers.put("ETag", "\"v2\"");
+    assertThat(get(filter, "alice", new TestRequest("/resource")).getBody(), is("backend-3"));
+    assertThat(get(filter, "alice", new TestRequest("/resource")).getBody(), is("backend-3"));
+    assertThat(backend.ifNoneMatch, is("\"v2\""));
+  }
+
+  @Test
+  public void testClientRevalidationAnsweredFromCache() throws Exception {
+    backend.headers.put("Cache-Control", "max-age=60");
+    backend.headers.put("ETag", "\"v1\"");
+    ResponseCacheFilter filter = createFilter();
+
+    get(filter, "alice", new TestRequest("/resource"));
+    TestResponse response = get(filter, "alice", new TestRequest("/resource").header("If-None-Match", "\"v1\""));
+    assertThat(response.getStatus(), is(304));
+    assertThat(response.getBody(), is(""));
+    assertThat(backend.requests, is(1));
+
+    // The client can insist on the backend being asked
+    get(filter, "alice", new TestRequest("/resource").header("Cache-Control", "no-cache"));
+    assertThat(backend.requests, is(2));
+  }
+
+  @Test
+  public void testUncacheableResponsesNotStored() throws Exception {
+    ResponseCacheFilter filter = createFilter();
+
+    // No freshness and no validator
+    get(filter, "alice", new TestRequest("/none"));
+    get(filter, "alice", new TestRequest("/none"));
+    assertThat(backend.requests, is(2));
+
+    backend.headers.put("Cache-Control", "max-age=60, no-store");
+    get(filter, "alice", new TestRequest("/no-store"));
+    get(filter, "alice", new TestRequest("/no-store"));
+    assertThat(backend.requests, is(4));
+
+    backend.headers.put("Cache-Control", "max-age=60");
+    backend.status = 500;
+    get(filter, "alice", new TestRequest("/error"));
+    get(filter, "alice", new TestRequest("/error"));
+    assertThat(backend.requests, is(6));
+
+    backend.status = 200;
+    TestRequest post = new TestRequest("/resource");
+    post.setMethod("POST");
+    get(filter, "alice", post);
+    get(filter, "alice", post);
+    assertThat(backend.requests, is(8));
+    assertThat(getCache().getEntryCount(), is(0));
+  }
+
+  @Test
+  public void testResponsesVaryByRequestHeaders() throws Exception {
+    backend.headers.put("Cache-Control", "max-age=60");
+    backend.headers.put("Vary", "Accept");
+    ResponseCacheFilter filter = createFilter();
+
+    get(filter, "alice", new TestRequest("/resource").header("Accept", "application/json"));
+    get(filter, "alice", new TestRequest("/resource").header("Accept", "application/json"));
+    assertThat(backend.requests, is(1));
+    get(filter, "alice", new TestRequest("/resource").header("Accept", "application/xml"));
+    assertThat(backend.requests, is(2));
+  }
+
+  @Test
+  public void testLargeResponsesStreamedButNotStored() throws Exception {
+    params.put(ResponseCacheFilter.MAX_ENTRY_SIZE_PARAM, "4");
+    backend.headers.put("Cache-Control", "max-age=60");
+    ResponseCacheFilter filter = createFilter();
+
+    assertThat(get(filter, "alice", new TestRequest("/resource")).getBody(), is("backend-1"));
+    assertThat(get(filter, "alice", new TestRequest("/resource")).getBody(), is("backend-2"));
+    assertThat(getCache().getEntryCount(), is(0));
+  }
+
+  @Test
+  public void testFiltersOfTopologyShareCache() throws Exception {
+    backend.headers.put("Cache-Control", "max-age=60");
+    ResponseCacheFilter first = createFilter();
+    ResponseCacheFilter second = createFilter();
+
+    get(first, "alice", new TestRequest("/resource"));
+    assertThat(get(second, "alice", new TestRequest("/resource")).getBody(), is("backend-1"));
+    assertThat(backend.requests, is(1));
+  }
+
+  @Test
+  public void testCacheDroppedWithLastFilter() throws Exception {
+    backend.headers.put("Cache-Control", "max-age=60");
+    ResponseCacheFilter first = createFilter();
+    ResponseCacheFilter second = createFilter();
+    get(first, "alice", new TestRequest("/resource"));
+    ResponseCache cache = getCache();
+
+    first.destroy();
+    assertThat(getCache(), is(cache));
+    assertThat(get(second, "alice", new TestRequest("/resource")).getBody(), is("backend-1"));
+
+    second.destroy();
+    assertThat(getCache(), nullValue());
+    assertThat(cache.getEntryCount(), is(0));
+  }
+
+  private ResponseCacheFilter createFilter() throws Exception {
+    final ServletContext context = new MockServletContext() {
+      @Override
+      public Object getAttribute(String name) {
+        return attributes.get(name);
+      }
+
+      @Override
+      public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+      }
+
+      @Override
+      public void removeAttribute(String name) {
+        attributes.remove(name);
+      }
+    };
+    ResponseCacheFilter filter = new ResponseCacheFilter();
+    filter.init(new MockFilterConfig() {
+      @Override
+      public ServletContext getServletContext() {
+        return context;
+      }
+
+      @Override
+      public String getInitParameter(String name) {
+        return params.get(name);
+      }
+    });
+    return filter;
+  }
+
+  private ResponseCache getCache() {
+    return (ResponseCache) attributes.get(ResponseCacheFilter.CACHE_ATTRIBUTE);
+  }
+
+  private TestResponse get(final ResponseCacheFilter filter, String user, final TestRequest request) throws Exception {
+    final TestResponse response = new TestResponse();
+    Subject subject = new Subject();
+    subject.getPrincipals().add(new PrimaryPrincipal(user));
+    Subject.doAs(subject, new PrivilegedExceptionAction<Void>() {
+      @Override
+      public Void run() throws Exception {
+        filter.doFilter(request, response, backend);
+        return null;
+      }
+    });
+    return response;
+  }
+
+  /**
+   * Stands in for the dispatch, answering conditional requests that match the current ETag with a 304.
+   */
+  private static class Backend implements FilterChain {
+    int requests;
+    int status = 200;
+    String ifNoneMatch;
+    Map<String, String> headers = new HashMap<>();
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse) throws IOException {
+      HttpServletRequest request = (HttpServletRequest) servletRequest;
+      HttpServletResponse response = (HttpServletResponse) servletResponse;
+      requests++;
+      ifNoneMatch = request.getHeader("If-None-Match");
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        response.setHeader(header.getKey(), header.getValue());
+      }
+      if (ifNoneMatch != null && ifNoneMatch.equals(headers.get("ETag"))) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      }
+      response.setStatus(status);
+      response.setContentType("text/plain");
+      CachingResponse.stream(response, new ByteArrayInputStream(("backend-" + requests).getBytes(StandardCharsets.UTF_8)));
+    }
+  }
+
+  private static class TestRequest extends MockHttpServletRequest {
+    private final String path;
+    private final Map<String, List<String>> headers = new HashMap<>();
+
+    TestRequest(String uri) {
+      int query = uri.indexOf('?');
+      this.path = query < 0 ? uri : uri.substring(0, query);
+      setQueryString(query < 0 ? null : uri.substring(query + 1));
+      setMethod("GET");
+    }
+
+    TestRequest header(String name, String value) {
+      String key = name.toLowerCase(Locale.ROOT);
+      if (!headers.containsKey(key)) {
+        headers.put(key, new ArrayList<String>());
+      }
+      headers.get(key).add(value);
+      return this;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+      return new StringBuffer("https://localhost:8443/gateway/sandbox").append(path);
+    }
+
+    @Override
+    public String getHeader(String name) {
+      List<String> values = headers.get(name.toLowerCase(Locale.ROOT));
+      return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+      List<String> values = headers.get(name.toLowerCase(Locale.ROOT));
+      return Collections.enumeration(values == null ? Collections.<String>emptyList() : values);
+    }
+  }
+
+  private static class TestResponse extends MockHttpServletResponse {
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final Map<String, String> headers = new HashMap<>();
+    private int status = 200;
+
+    String getBody() {
+      return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void setStatus(int status) {
+      this.status = status;
+    }
+
+    @Override
+    public int getStatus() {
+      return status;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      headers.put(name.toLowerCase(Locale.ROOT), value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      setHeader(name, value);
+    }
+
+    @Override
+    public String getHeader(String name) {
+      return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      return new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+          body.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+        }
+      };
+    }
+  }
+
+}
@@ -44,7 +44,7 @@ public class HaProviderDeploymentContributor extends ProviderDeploymentContribut
 
    private static final String PROVIDER_IMPL_NAME = "HaProvider";
 
-   private static final String HA_DESCRIPTOR_NAME = "ha.provider.descriptor";
+   public static final String HA_DESCRIPTOR_NAME = "ha.provider.descriptor";
 
    private static final HaMessages LOG = MessagesFactory.get(HaMessages.class);
 
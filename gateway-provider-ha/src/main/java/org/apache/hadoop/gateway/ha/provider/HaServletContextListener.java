@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.gateway.ha.provider;
 
+import org.apache.hadoop.gateway.deploy.DeploymentContext;
+import org.apache.hadoop.gateway.ha.deploy.HaProviderDeploymentContributor;
 import org.apache.hadoop.gateway.ha.provider.impl.DefaultHaProvider;
 import org.apache.hadoop.gateway.ha.provider.impl.HaDescriptorManager;
 import org.apache.hadoop.gateway.ha.provider.impl.i18n.HaMessages;
@@ -44,18 +46,24 @@ public class HaServletContextListener implements ServletContextListener {
 
    public static final String DESCRIPTOR_DEFAULT_LOCATION = "/WEB-INF/" + DESCRIPTOR_DEFAULT_FILE_NAME;
 
+   public static final String DESCRIPTOR_ATTRIBUTE_NAME = DeploymentContext.DESCRIPTOR_ATTRIBUTE_PREFIX + HaProviderDeploymentContributor.HA_DESCRIPTOR_NAME;
+
    private static final HaMessages LOG = MessagesFactory.get(HaMessages.class);
 
 
    @Override
    public void contextInitialized(ServletContextEvent event) {
-      HaDescriptor descriptor;
       ServletContext servletContext = event.getServletContext();
-      try {
-         URL url = locateDescriptor(servletContext);
-         descriptor = loadDescriptor(url);
-      } catch (IOException e) {
-         throw new IllegalStateException(e);
+      HaDescriptor descriptor = (HaDescriptor) servletContext.getAttribute(DESCRIPTOR_ATTRIBUTE_NAME);
+      if (descriptor != null) {
+         servletContext.removeAttribute(DESCRIPTOR_ATTRIBUTE_NAME);
+      } else {
+         try {
+            URL url = locateDescriptor(servletContext);
+            descriptor = loadDescriptor(url);
+         } catch (IOException e) {
+            throw new IllegalStateException(e);
+         }
       }
       setupHaProvider(descriptor, servletContext);
    }
@@ -18,10 +18,21 @@
 package org.apache.hadoop.gateway.ha.provider.impl;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
 import org.apache.hadoop.gateway.ha.provider.URLManager;
 import org.apache.hadoop.gateway.ha.provider.impl.i18n.HaMessages;
@@ -30,6 +41,7 @@ import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
 import com.google.common.collect.Lists;
 
@@ -40,6 +52,11 @@ import com.google.common.collect.Lists;
  * 
  * When configuring the HAProvider in the topology, the zookeeperEnsemble attribute must be set to a
  * comma delimited list of the host and port number, i.e. host1:2181,host2:2181. 
+ * 
+ * Zookeeper is accessed through a shared, watched registry, so lookups are answered from memory
+ * until Zookeeper reports a change, at which point the URLs are refreshed. Hosts are validated
+ * concurrently and the outcome is cached for a short time, so a refresh only probes the hosts whose
+ * health is unknown or suspect.
  */
 public abstract class BaseZookeeperURLManager implements URLManager {
 	protected static final HaMessages LOG = MessagesFactory.get(HaMessages.class);
@@ -47,10 +64,31 @@ public abstract class BaseZookeeperURLManager implements URLManager {
 	 * Host Ping Timeout
 	 */
 	private static final int TIMEOUT = 2000;
+	/**
+	 * How long the outcome of a host validation is trusted
+	 */
+	private static final long HEALTHY_TTL = 30000;
+	private static final long UNHEALTHY_TTL = 5000;
+	/**
+	 * Maximum number of concurrent host validations
+	 */
+	private static final int VALIDATION_THREADS = 8;
+
+	private static final CloseableHttpClient HTTP_CLIENT = createHttpClient();
+	private static final ExecutorService VALIDATOR = createValidator();
+	private static final ConcurrentMap<String, HostHealth> HEALTH = new ConcurrentHashMap<String, HostHealth>();
 
 	private String zooKeeperEnsemble;
 	private ConcurrentLinkedQueue<String> urls = new ConcurrentLinkedQueue<String>();
 
+	// Held by the manager since the registry only references its listeners weakly
+	private final ZookeeperHostRegistry.Listener refresher = new ZookeeperHostRegistry.Listener() {
+		@Override
+		public void hostsChanged(String path) {
+			setURLs(lookupURLs());
+		}
+	};
+
 	// -------------------------------------------------------------------------------------
 	// URLManager interface methods
 	// -------------------------------------------------------------------------------------
@@ -100,6 +138,10 @@ public abstract class BaseZookeeperURLManager implements URLManager {
 		// Capture complete URL of active host
 		String topURL = getActiveURL();
 
+		// Make sure the failed host is probed again rather than trusted from the cache
+		invalidateHealth(url);
+		invalidateHealth(topURL);
+
 		// Refresh URLs from ZooKeeper
 		setURLs(lookupURLs());
 
@@ -138,6 +180,24 @@ public abstract class BaseZookeeperURLManager implements URLManager {
 	protected String getZookeeperEnsemble() {
 		return zooKeeperEnsemble;
 	}
+
+	/**
+	 * @param path Zookeeper path (required)
+	 * 
+	 * @return The names of the children of the path, which are watched for changes
+	 */
+	protected List<String> getZookeeperChildren(String path) throws Exception {
+		return ZookeeperHostRegistry.get(zooKeeperEnsemble).getChildren(path, refresher);
+	}
+
+	/**
+	 * @param path Zookeeper path (required)
+	 * 
+	 * @return The data of each child of the path keyed by child name, which are watched for changes
+	 */
+	protected Map<String, byte[]> getZookeeperChildData(String path) throws Exception {
+		return ZookeeperHostRegistry.get(zooKeeperEnsemble).getChildData(path, refresher);
+	}
 	
 	/**
 	 * Validate access to hosts using simple light weight ping style REST call.
@@ -148,48 +208,144 @@ public abstract class BaseZookeeperURLManager implements URLManager {
 	 * 
 	 * @return Hosts with successful access
 	 */
-	protected List<String> validateHosts(List<String> hosts, String suffix, String acceptHeader) {
+	protected List<String> validateHosts(List<String> hosts, final String suffix, final String acceptHeader) {
 		List<String> result = new ArrayList<String>();
-		
-		CloseableHttpClient client = null;
-		
-		try {
-			// Construct a HttpClient with short term timeout
-			RequestConfig.Builder requestBuilder = RequestConfig.custom()
-					.setConnectTimeout(TIMEOUT)
-					.setSocketTimeout(TIMEOUT)
-					.setConnectionRequestTimeout(TIMEOUT);
-
-			client = HttpClientBuilder.create()
-					.setDefaultRequestConfig(requestBuilder.build())
-					.build();
-			
-			for(String host: hosts) {
-				try	{
-					HttpGet get = new HttpGet(host + suffix);
-					
-					if (acceptHeader != null) {
-						get.setHeader("Accept", acceptHeader);
-					}
-					
-					String response = client.execute(get, new StringResponseHandler());
-					
-					if (response != null) {
-						result.add(host);
+
+		// Probe all the hosts without a trusted outcome at once
+		long now = System.currentTimeMillis();
+		expireHealth(now);
+		Map<String, Boolean> known = new LinkedHashMap<String, Boolean>();
+		Map<String, Future<Boolean>> probes = new LinkedHashMap<String, Future<Boolean>>();
+		for (final String host : hosts) {
+			HostHealth health = HEALTH.get(host + suffix);
+			if (health != null && health.expires > now) {
+				known.put(host, health.healthy);
+			} else if (!probes.containsKey(host)) {
+				probes.put(host, VALIDATOR.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						return probe(host, suffix, acceptHeader);
 					}
+				}));
+			}
+		}
+
+		for (String host : hosts) {
+			Boolean healthy = known.get(host);
+			Future<Boolean> probe = probes.get(host);
+			if (probe != null) {
+				try {
+					healthy = probe.get(TIMEOUT * 2, TimeUnit.MILLISECONDS);
 				}
 				catch (Exception ex) {
 					// ignore host
+					probe.cancel(true);
+					healthy = false;
 				}
 			}
+			if (Boolean.TRUE.equals(healthy)) {
+				result.add(host);
+			}
+		}
+		
+		return result;
+	}
+
+	// -------------------------------------------------------------------------------------
+	// Private methods
+	// -------------------------------------------------------------------------------------
+
+	private static boolean probe(String host, String suffix, String acceptHeader) {
+		boolean healthy = false;
+		try	{
+			HttpGet get = new HttpGet(host + suffix);
+			
+			if (acceptHeader != null) {
+				get.setHeader("Accept", acceptHeader);
+			}
+			
+			healthy = HTTP_CLIENT.execute(get, new StringResponseHandler()) != null;
 		}
 		catch (Exception ex) {
-			// Ignore errors
+			// ignore host
 		}
-		finally	{
-			IOUtils.closeQuietly(client);
+		HEALTH.put(host + suffix, new HostHealth(host, healthy));
+		return healthy;
+	}
+
+	/**
+	 * Forget the validation outcome of the host serving the URL.
+	 */
+	private static void invalidateHealth(String url) {
+		if (url == null) {
+			return;
+		}
+		Iterator<HostHealth> health = HEALTH.values().iterator();
+		while (health.hasNext()) {
+			String host = health.next().host;
+			if (url.startsWith(host) && (url.length() == host.length() || url.charAt(host.length()) == '/')) {
+				health.remove();
+			}
+		}
+	}
+
+	/**
+	 * Forget the validation outcomes that are no longer trusted, so only the hosts validated recently are kept.
+	 */
+	static void expireHealth(long now) {
+		Iterator<Map.Entry<String, HostHealth>> health = HEALTH.entrySet().iterator();
+		while (health.hasNext()) {
+			Map.Entry<String, HostHealth> entry = health.next();
+			if (entry.getValue().expires <= now) {
+				HEALTH.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	static int getHealthCount() {
+		return HEALTH.size();
+	}
+
+	private static CloseableHttpClient createHttpClient() {
+		// Short term timeouts, and connections kept alive between validations
+		RequestConfig.Builder requestBuilder = RequestConfig.custom()
+				.setConnectTimeout(TIMEOUT)
+				.setSocketTimeout(TIMEOUT)
+				.setConnectionRequestTimeout(TIMEOUT);
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(VALIDATION_THREADS * 4);
+		connectionManager.setDefaultMaxPerRoute(2);
+
+		return HttpClientBuilder.create()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestBuilder.build())
+				.build();
+	}
+
+	private static ExecutorService createValidator() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(VALIDATION_THREADS, VALIDATION_THREADS,
+				60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "ZookeeperURLManager-validator");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static final class HostHealth {
+		private final String host;
+		private final boolean healthy;
+		private final long expires;
+
+		HostHealth(String host, boolean healthy) {
+			this.host = host;
+			this.healthy = healthy;
+			this.expires = System.currentTimeMillis() + (healthy ? HEALTHY_TTL : UNHEALTHY_TTL);
 		}
-		
-		return result;
 	}
 }
@@ -17,10 +17,6 @@
  */
 package org.apache.hadoop.gateway.ha.provider.impl;
 
-import org.apache.curator.framework.CuratorFramework;
-import org.apache.curator.framework.CuratorFrameworkFactory;
-import org.apache.curator.retry.ExponentialBackoffRetry;
-
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -86,16 +82,9 @@ public class HBaseZookeeperURLManager extends BaseZookeeperURLManager {
 	{
 		List<String> serverHosts = new ArrayList<>();
 		
-		CuratorFramework zooKeeperClient = CuratorFrameworkFactory.builder()
-				.connectString(getZookeeperEnsemble())
-				.retryPolicy(new ExponentialBackoffRetry(1000, 3))
-				.build();
-		
 		try {
-			zooKeeperClient.start();
-			
 			// Retrieve list of all region server hosts
-			List<String> serverNodes = zooKeeperClient.getChildren().forPath("/" + zookeeperNamespace + "/rs");
+			List<String> serverNodes = getZookeeperChildren("/" + zookeeperNamespace + "/rs");
 			
 			for (String serverNode : serverNodes) {
 				String serverURL = constructURL(serverNode);
@@ -104,11 +93,6 @@ public class HBaseZookeeperURLManager extends BaseZookeeperURLManager {
 		} catch (Exception e) {
 			LOG.failedToGetZookeeperUrls(e);
 			throw new RuntimeException(e);
-		} finally {
-			// Close the client connection with ZooKeeper
-			if (zooKeeperClient != null) {
-				zooKeeperClient.close();
-			}
 		}
 		
 		return serverHosts;
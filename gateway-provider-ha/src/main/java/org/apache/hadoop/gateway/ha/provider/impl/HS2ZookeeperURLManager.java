@@ -17,9 +17,6 @@
  */
 package org.apache.hadoop.gateway.ha.provider.impl;
 
-import org.apache.curator.framework.CuratorFramework;
-import org.apache.curator.framework.CuratorFrameworkFactory;
-import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
 import org.apache.hadoop.gateway.ha.provider.impl.i18n.HaMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
@@ -29,6 +26,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,6 +42,14 @@ public class HS2ZookeeperURLManager extends DefaultURLManager {
 
   private HashSet<String> failedSet;
 
+  // Held by the manager since the registry only references its listeners weakly
+  private final ZookeeperHostRegistry.Listener refresher = new ZookeeperHostRegistry.Listener() {
+    @Override
+    public void hostsChanged(String path) {
+      setURLs(lookupURLs());
+    }
+  };
+
   public HS2ZookeeperURLManager() {
     failedSet = new LinkedHashSet<>();
   }
@@ -70,28 +76,18 @@ public class HS2ZookeeperURLManager extends DefaultURLManager {
 
   public List<String> lookupURLs() {
     List<String> serverHosts = new ArrayList<>();
-    CuratorFramework zooKeeperClient =
-        CuratorFrameworkFactory.builder().connectString(zooKeeperEnsemble)
-            .retryPolicy(new ExponentialBackoffRetry(1000, 3)).build();
     try {
-      zooKeeperClient.start();
-      List<String> serverNodes = zooKeeperClient.getChildren().forPath("/" + zooKeeperNamespace);
-      for ( String serverNode : serverNodes ) {
-        String serverInfo =
-            new String(
-                zooKeeperClient.getData().forPath("/" + zooKeeperNamespace + "/" + serverNode),
-                Charset.forName("UTF-8"));
+      // Served from the shared registry, which refreshes the URLs when instances come and go
+      Map<String, byte[]> serverNodes =
+          ZookeeperHostRegistry.get(zooKeeperEnsemble).getChildData("/" + zooKeeperNamespace, refresher);
+      for ( byte[] serverNode : serverNodes.values() ) {
+        String serverInfo = new String(serverNode, Charset.forName("UTF-8"));
         String serverURL = constructURL(serverInfo);
         serverHosts.add(serverURL);
       }
     } catch ( Exception e ) {
       LOG.failedToGetZookeeperUrls(e);
       throw new RuntimeException(e);
-    } finally {
-      // Close the client connection with ZooKeeper
-      if ( zooKeeperClient != null ) {
-        zooKeeperClient.close();
-      }
     }
     return serverHosts;
   }
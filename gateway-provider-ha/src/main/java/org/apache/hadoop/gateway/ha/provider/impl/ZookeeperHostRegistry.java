@@ -0,0 +1,263 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.ha.provider.impl;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.hadoop.gateway.ha.provider.impl.i18n.HaMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the registrations that the ZooKeeper based URL managers look up, using a single client per ensemble.
+ *
+ * Children and data are read once and then served from memory. A watch is left on everything that is read, so a
+ * cached entry is dropped as soon as ZooKeeper reports a change to it, and the listeners registered for the affected
+ * path are told to refresh their URLs. Listeners are held weakly so URL managers of undeployed topologies are not
+ * retained.
+ */
+class ZookeeperHostRegistry {
+
+  private static final HaMessages LOG = MessagesFactory.get(HaMessages.class);
+
+  private static final ConcurrentMap<String, ZookeeperHostRegistry> REGISTRIES = new ConcurrentHashMap<>();
+
+  private static final ExecutorService NOTIFIER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "ZookeeperHostRegistry");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /**
+   * Notified when the children of a path, or the data of one of them, have changed.
+   */
+  interface Listener {
+    void hostsChanged(String path);
+  }
+
+  private final String ensemble;
+  private final CuratorFramework client;
+  private final CuratorWatcher watcher;
+  private final Map<String, List<String>> children = new ConcurrentHashMap<>();
+  private final Map<String, byte[]> data = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Set<Listener>> listeners = new ConcurrentHashMap<>();
+
+  /**
+   * @return The shared registry for the ensemble, which is created and connected if necessary.
+   */
+  static synchronized ZookeeperHostRegistry get(String ensemble) {
+    ZookeeperHostRegistry registry = REGISTRIES.get(ensemble);
+    if (registry == null) {
+      registry = new ZookeeperHostRegistry(ensemble);
+      REGISTRIES.put(ensemble, registry);
+    }
+    return registry;
+  }
+
+  private ZookeeperHostRegistry(String ensemble) {
+    this.ensemble = ensemble;
+    this.client = CuratorFrameworkFactory.builder()
+        .connectString(ensemble)
+        .retryPolicy(new ExponentialBackoffRetry(1000, 3))
+        .build();
+    this.watcher = new CuratorWatcher() {
+      @Override
+      public void process(WatchedEvent event) {
+        onEvent(event);
+      }
+    };
+    this.client.getConnectionStateListenable().addListener(new ConnectionStateListener() {
+      @Override
+      public void stateChanged(CuratorFramework client, ConnectionState state) {
+        onStateChange(state);
+      }
+    });
+    this.client.start();
+  }
+
+  /**
+   * @param path The parent path.
+   * @param listener Notified when the children change, or null.
+   * @return The names of the children of the path, in ZooKeeper order.
+   */
+  List<String> getChildren(String path, Listener listener) throws Exception {
+    addListener(path, listener);
+    List<String> result = children.get(path);
+    if (result == null) {
+      long generation = getGeneration(path);
+      result = Collections.unmodifiableList(new ArrayList<>(client.getChildren().usingWatcher(watcher).forPath(path)));
+      cacheIfCurrent(children, path, result, generation);
+    }
+    return result;
+  }
+
+  /**
+   * @param path The parent path.
+   * @param listener Notified when the children or their data change, or null.
+   * @return The data of each child of the path keyed by child name, in ZooKeeper order.
+   */
+  Map<String, byte[]> getChildData(String path, Listener listener) throws Exception {
+    Map<String, byte[]> result = new LinkedHashMap<>();
+    for (String child : getChildren(path, listener)) {
+      String childPath = path + "/" + child;
+      byte[] value = data.get(childPath);
+      if (value == null) {
+        long generation = getGeneration(childPath);
+        value = client.getData().usingWatcher(watcher).forPath(childPath);
+        if (value == null) {
+          value = new byte[0];
+        }
+        cacheIfCurrent(data, childPath, value, generation);
+      }
+      result.put(child, value);
+    }
+    return result;
+  }
+
+  private void addListener(String path, Listener listener) {
+    if (listener != null) {
+      Set<Listener> pathListeners = listeners.get(path);
+      if (pathListeners == null) {
+        pathListeners = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Listener, Boolean>()));
+        Set<Listener> existing = listeners.putIfAbsent(path, pathListeners);
+        if (existing != null) {
+          pathListeners = existing;
+        }
+      }
+      pathListeners.add(listener);
+    }
+  }
+
+  private long getGeneration(String path) {
+    return getGenerationCounter(path).get();
+  }
+
+  private AtomicLong getGenerationCounter(String path) {
+    AtomicLong generation = generations.get(path);
+    if (generation == null) {
+      generation = new AtomicLong();
+      AtomicLong existing = generations.putIfAbsent(path, generation);
+      if (existing != null) {
+        generation = existing;
+      }
+    }
+    return generation;
+  }
+
+  // A watch that fires while the value is being read invalidates the value that is about to be cached.
+  private <T> void cacheIfCurrent(Map<String, T> cache, String path, T value, long generation) {
+    cache.put(path, value);
+    if (getGeneration(path) != generation) {
+      cache.remove(path);
+    }
+  }
+
+  private void invalidate(String path) {
+    getGenerationCounter(path).incrementAndGet();
+    children.remove(path);
+    data.remove(path);
+  }
+
+  private void onEvent(WatchedEvent event) {
+    String path = event.getPath();
+    if (path == null || event.getType() == Watcher.Event.EventType.None) {
+      return;
+    }
+    invalidate(path);
+    if (event.getType() == Watcher.Event.EventType.NodeChildrenChanged) {
+      notifyListeners(path);
+    } else {
+      // The data of a registered host changed, so the parent's listeners must reevaluate
+      int index = path.lastIndexOf('/');
+      if (index > 0) {
+        notifyListeners(path.substring(0, index));
+      }
+    }
+  }
+
+  private void onStateChange(ConnectionState state) {
+    if (state == ConnectionState.RECONNECTED || state == ConnectionState.LOST) {
+      // Watches may not have survived, so nothing cached can be trusted
+      for (String path : new ArrayList<>(generations.keySet())) {
+        invalidate(path);
+      }
+      for (String path : new ArrayList<>(listeners.keySet())) {
+        notifyListeners(path);
+      }
+    }
+    if (state == ConnectionState.LOST) {
+      // Drop the registry, so the next lookup starts over with a new client
+      synchronized (ZookeeperHostRegistry.class) {
+        REGISTRIES.remove(ensemble, this);
+      }
+      NOTIFIER.execute(new Runnable() {
+        @Override
+        public void run() {
+          client.close();
+        }
+      });
+    }
+  }
+
+  private void notifyListeners(final String path) {
+    Set<Listener> pathListeners = listeners.get(path);
+    if (pathListeners != null) {
+      final List<Listener> targets;
+      synchronized (pathListeners) {
+        targets = new ArrayList<>(pathListeners);
+      }
+      LOG.zookeeperHostsChanged(ensemble, path);
+      NOTIFIER.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (Listener listener : targets) {
+            try {
+              listener.hostsChanged(path);
+            } catch (RuntimeException e) {
+              LOG.failedToGetZookeeperUrls(e);
+            }
+          }
+        }
+      });
+    }
+  }
+
+}
@@ -42,4 +42,7 @@ public interface HaMessages {
   @Message(level = MessageLevel.ERROR, text = "Failed to get Zookeeper URLs : {0}")
   void failedToGetZookeeperUrls(Exception e);
 
+  @Message(level = MessageLevel.DEBUG, text = "Zookeeper {0} reported a change to {1}, refreshing URLs")
+  void zookeeperHostsChanged(String ensemble, String path);
+
 }
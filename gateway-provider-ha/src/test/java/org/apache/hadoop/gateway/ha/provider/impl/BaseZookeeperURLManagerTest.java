@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.ha.provider.impl;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Simple unit tests for the host validation of BaseZookeeperURLManager.
+ *
+ * @see BaseZookeeperURLManager
+ */
+public class BaseZookeeperURLManagerTest {
+
+  @Test
+  public void testExpiredHealthIsDropped() {
+    TestURLManager manager = new TestURLManager();
+    int before = BaseZookeeperURLManager.getHealthCount();
+    // Nothing listens on port 1, so the host is found unhealthy at once
+    List<String> healthy = manager.validateHosts(Collections.singletonList("http://localhost:1"), "/expire-test", null);
+    assertTrue(healthy.isEmpty());
+    assertEquals(before + 1, BaseZookeeperURLManager.getHealthCount());
+
+    BaseZookeeperURLManager.expireHealth(System.currentTimeMillis() + 60000L);
+    assertEquals(0, BaseZookeeperURLManager.getHealthCount());
+  }
+
+  private static class TestURLManager extends BaseZookeeperURLManager {
+    @Override
+    protected List<String> lookupURLs() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    protected String getServiceName() {
+      return "TEST";
+    }
+  }
+
+}
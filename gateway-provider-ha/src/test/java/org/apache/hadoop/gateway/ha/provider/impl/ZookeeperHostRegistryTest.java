@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.ha.provider.impl;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ZookeeperHostRegistryTest {
+
+  private TestingServer server;
+  private CuratorFramework zooKeeperClient;
+
+  @Before
+  public void setup() throws Exception {
+    server = new TestingServer();
+    zooKeeperClient = CuratorFrameworkFactory.builder().connectString(server.getConnectString())
+        .retryPolicy(new ExponentialBackoffRetry(1000, 3)).build();
+    zooKeeperClient.start();
+    zooKeeperClient.create().forPath("/hosts");
+    zooKeeperClient.create().forPath("/hosts/host1", "one".getBytes());
+    zooKeeperClient.create().forPath("/hosts/host2", "two".getBytes());
+  }
+
+  @After
+  public void teardown() throws IOException {
+    zooKeeperClient.close();
+    server.close();
+  }
+
+  @Test
+  public void testChildrenAreWatched() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    ZookeeperHostRegistry registry = ZookeeperHostRegistry.get(server.getConnectString());
+    assertEquals(Arrays.asList("host1", "host2"), sorted(registry.getChildren("/hosts", listener)));
+
+    zooKeeperClient.create().forPath("/hosts/host3", "three".getBytes());
+    assertEquals("/hosts", listener.changes.poll(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("host1", "host2", "host3"), sorted(registry.getChildren("/hosts", listener)));
+
+    zooKeeperClient.delete().forPath("/hosts/host1");
+    assertEquals("/hosts", listener.changes.poll(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("host2", "host3"), sorted(registry.getChildren("/hosts", listener)));
+  }
+
+  @Test
+  public void testChildDataIsWatched() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    ZookeeperHostRegistry registry = ZookeeperHostRegistry.get(server.getConnectString());
+    Map<String, byte[]> data = registry.getChildData("/hosts", listener);
+    assertEquals("one", new String(data.get("host1"), Charset.forName("UTF-8")));
+
+    zooKeeperClient.setData().forPath("/hosts/host1", "uno".getBytes());
+    assertEquals("/hosts", listener.changes.poll(10, TimeUnit.SECONDS));
+    data = registry.getChildData("/hosts", listener);
+    assertEquals("uno", new String(data.get("host1"), Charset.forName("UTF-8")));
+    assertEquals("two", new String(data.get("host2"), Charset.forName("UTF-8")));
+  }
+
+  @Test
+  public void testLookupsAreServedFromMemory() throws Exception {
+    ZookeeperHostRegistry registry = ZookeeperHostRegistry.get(server.getConnectString());
+    registry.getChildData("/hosts", null);
+
+    // Nothing has changed, so the lookup must not need the server
+    server.stop();
+    assertEquals(2, registry.getChildData("/hosts", null).size());
+  }
+
+  @Test
+  public void testURLManagerFollowsRegistrations() throws Exception {
+    zooKeeperClient.create().forPath("/live_nodes");
+    zooKeeperClient.create().forPath("/live_nodes/host1:8983_solr");
+
+    SOLRZookeeperURLManager manager = new SOLRZookeeperURLManager();
+    HaServiceConfig config = new DefaultHaServiceConfig("SOLR");
+    config.setEnabled(true);
+    config.setZookeeperEnsemble(server.getConnectString());
+    manager.setConfig(config);
+    assertEquals(Arrays.asList("http://host1:8983/solr"), manager.getURLs());
+
+    // A newly registered instance is picked up without any failure having to occur
+    zooKeeperClient.create().forPath("/live_nodes/host2:8983_solr");
+    long expiration = System.currentTimeMillis() + 10000;
+    while (manager.getURLs().size() < 2 && System.currentTimeMillis() < expiration) {
+      Thread.sleep(10);
+    }
+    assertEquals(Arrays.asList("http://host1:8983/solr", "http://host2:8983/solr"), sorted(manager.getURLs()));
+    assertFalse(manager.getURLs().isEmpty());
+    assertTrue(manager.getURLs().contains(manager.getActiveURL()));
+  }
+
+  private static List<String> sorted(List<String> values) {
+    String[] array = values.toArray(new String[values.size()]);
+    Arrays.sort(array);
+    return Arrays.asList(array);
+  }
+
+  private static class RecordingListener implements ZookeeperHostRegistry.Listener {
+    final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+
+    @Override
+    public void hostsChanged(String path) {
+      changes.add(path);
+    }
+  }
+
+}
@@ -97,26 +97,70 @@ public abstract class AbstractIdentityAssertionFilter extends
   protected void continueChainAsPrincipal(HttpServletRequestWrapper request, ServletResponse response,
       FilterChain chain, String mappedPrincipalName, String[] groups) throws IOException,
       ServletException {
+        // look up the current Java Subject and assosciated group principals
+        Subject currentSubject = Subject.getSubject(AccessController.getContext());
+        Subject subject = createSubject(request, currentSubject, mappedPrincipalName, groups);
+        continueChainAsPrincipal(request, response, chain, mappedPrincipalName, groups, subject);
+      }
+
+  /**
+   * Continues the chain as a Subject previously returned by createSubject. This allows
+   * the Subject to be reused for requests with the same identity.
+   * @param request
+   * @param response
+   * @param chain
+   * @param mappedPrincipalName
+   * @param groups
+   * @param subject the Subject to continue the chain as or null to keep the current Subject.
+   */
+  protected void continueChainAsPrincipal(HttpServletRequestWrapper request, ServletResponse response,
+      FilterChain chain, String mappedPrincipalName, String[] groups, Subject subject) throws IOException,
+      ServletException {
+        if (subject != null) {
+          if (!subject.getPrincipals(ImpersonatedPrincipal.class).isEmpty()) {
+            Principal primaryPrincipal = subject.getPrincipals(PrimaryPrincipal.class).iterator().next();
+            auditService.getContext().setProxyUsername( mappedPrincipalName );
+            auditor.audit( Action.IDENTITY_MAPPING, primaryPrincipal.getName(),
+                ResourceType.PRINCIPAL, ActionOutcome.SUCCESS, RES.effectiveUser(mappedPrincipalName) );
+          }
+          if (groups != null) {
+            auditor.audit( Action.IDENTITY_MAPPING, mappedPrincipalName, ResourceType.PRINCIPAL,
+                ActionOutcome.SUCCESS, RES.groupsList( Arrays.toString( groups ) ) );
+          }
+          doAs(request, response, chain, subject);
+        }
+        else {
+          doFilterInternal(request, response, chain);
+        }
+      }
+
+  /**
+   * Creates the read-only Subject to continue the chain as, which carries the primary
+   * principal and groups of the current Subject along with the impersonated principal
+   * and the mapped groups.
+   * @param request
+   * @param currentSubject the Subject from the authentication event.
+   * @param mappedPrincipalName
+   * @param groups
+   * @return the new Subject or null if the current Subject is sufficient.
+   */
+  protected Subject createSubject(HttpServletRequest request, Subject currentSubject,
+      String mappedPrincipalName, String[] groups) {
         Subject subject = null;
         Principal impersonationPrincipal = null;
         Principal primaryPrincipal = null;
         
-        // get the current subject and determine whether we need another doAs with 
-        // an impersonatedPrincipal and/or mapped group principals
+        // determine whether we need another doAs with an impersonatedPrincipal
+        // and/or mapped group principals
         boolean impersonationNeeded = false;
         boolean groupsMapped = false;
         
-        // look up the current Java Subject and assosciated group principals
-        Subject currentSubject = Subject.getSubject(AccessController.getContext());
         Set<?> currentGroups = currentSubject.getPrincipals(GroupPrincipal.class);
         
         primaryPrincipal = (PrimaryPrincipal) currentSubject.getPrincipals(PrimaryPrincipal.class).toArray()[0];
         if (primaryPrincipal != null) {
           if (!primaryPrincipal.getName().equals(mappedPrincipalName)) {
             impersonationNeeded = true;
-            auditService.getContext().setProxyUsername( mappedPrincipalName );
-            auditor.audit( Action.IDENTITY_MAPPING, primaryPrincipal.getName(), 
-                ResourceType.PRINCIPAL, ActionOutcome.SUCCESS, RES.effectiveUser(mappedPrincipalName) );
           }
         }
         else {
@@ -124,7 +168,7 @@ public abstract class AbstractIdentityAssertionFilter extends
           // before identity assertion and should have ensured that the appropriate
           // principals were added to the current subject
           // TODO: log as appropriate
-          primaryPrincipal = new PrimaryPrincipal(((HttpServletRequest) request).getUserPrincipal().getName());
+          primaryPrincipal = new PrimaryPrincipal(request.getUserPrincipal().getName());
         }
         
         groupsMapped = groups != null || !currentGroups.isEmpty();
@@ -142,16 +186,16 @@ public abstract class AbstractIdentityAssertionFilter extends
           
           if (impersonationNeeded) {
             impersonationPrincipal = new ImpersonatedPrincipal(mappedPrincipalName);
-            subject.getPrincipals().add(impersonationPrincipal);
+            principals.add(impersonationPrincipal);
           }
-          if (groupsMapped) {
-            addMappedGroupsToSubject(mappedPrincipalName, groups, subject);
+          if (groups != null) {
+            for (int i = 0; i < groups.length; i++) {
+              principals.add(new GroupPrincipal(groups[i]));
+            }
           }
-          doAs(request, response, chain, subject);
-        }
-        else {
-          doFilterInternal(request, response, chain);
+          subject.setReadOnly();
         }
+        return subject;
       }
 
   private void doAs(final ServletRequest request, final ServletResponse response, final FilterChain chain, Subject subject)
@@ -180,17 +224,6 @@ public abstract class AbstractIdentityAssertionFilter extends
     }
   }
 
-  private void addMappedGroupsToSubject(String mappedPrincipalName, String[] groups, Subject subject) {
-    if (groups != null) {
-      auditor.audit( Action.IDENTITY_MAPPING, mappedPrincipalName, ResourceType.PRINCIPAL, 
-          ActionOutcome.SUCCESS, RES.groupsList( Arrays.toString( groups ) ) );
-
-      for (int i = 0; i < groups.length; i++) {
-        subject.getPrincipals().add(new GroupPrincipal(groups[i]));
-      }
-    }
-  }
-
   private void doFilterInternal(ServletRequest request, ServletResponse response, FilterChain chain)
       throws IOException, ServletException {
     chain.doFilter(request, response);
@@ -28,16 +28,25 @@ import javax.servlet.http.HttpServletRequestWrapper;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.hadoop.gateway.identityasserter.common.filter.AbstractIdentityAssertionFilter;
+import org.apache.hadoop.gateway.security.GroupPrincipal;
 import org.apache.hadoop.gateway.security.principal.PrincipalMappingException;
 import org.apache.hadoop.gateway.security.principal.SimplePrincipalMapper;
 
 import java.io.IOException;
 import java.security.AccessController;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilter {
   private static final String GROUP_PRINCIPAL_MAPPING = "group.principal.mapping";
   private static final String PRINCIPAL_MAPPING = "principal.mapping";
+  private static final String OUTCOME_CACHE_SIZE = "identity.cache.size";
+  private static final int DEFAULT_OUTCOME_CACHE_SIZE = 1000;
   private SimplePrincipalMapper mapper = new SimplePrincipalMapper();
+  private Map<OutcomeKey, Outcome> outcomes = createOutcomeCache(DEFAULT_OUTCOME_CACHE_SIZE);
 
   /* (non-Javadoc)
    * @see javax.servlet.Filter#init(javax.servlet.FilterConfig)
@@ -59,6 +68,14 @@ public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilt
         throw new ServletException("Unable to load principal mapping table.", e);
       }
     }
+    String outcomeCacheSize = filterConfig.getInitParameter(OUTCOME_CACHE_SIZE);
+    if (outcomeCacheSize != null && !outcomeCacheSize.isEmpty()) {
+      try {
+        outcomes = createOutcomeCache(Integer.parseInt(outcomeCacheSize.trim()));
+      } catch (NumberFormatException e) {
+        throw new ServletException("Invalid " + OUTCOME_CACHE_SIZE + ": " + outcomeCacheSize, e);
+      }
+    }
   }
 
   /* (non-Javadoc)
@@ -66,12 +83,17 @@ public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilt
    */
   @Override
   public void destroy() {
+    if (outcomes != null) {
+      outcomes.clear();
+    }
   }
 
   /**
    * Obtain the standard javax.security.auth.Subject, retrieve the caller principal, map
    * to the identity to be asserted as appropriate and create the provider specific
    * assertion token. Add the assertion token to the request.
+   * The outcome of the mapping is remembered for the authenticated principal and groups,
+   * so that requests from the same identity skip the mapping and reuse the Subject.
    */
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) 
       throws IOException, ServletException {
@@ -79,16 +101,52 @@ public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilt
 
     String principalName = getPrincipalName(subject);
 
-    String mappedPrincipalName = mapUserPrincipalBase(principalName);
-    mappedPrincipalName = mapUserPrincipal(mappedPrincipalName);
-    String[] mappedGroups = mapGroupPrincipals(mappedPrincipalName, subject);
-    String[] groups = mapGroupPrincipals(mappedPrincipalName, subject);
-    groups = combineGroupMappings(mappedGroups, groups);
+    Map<OutcomeKey, Outcome> cache = principalName != null && isOutcomeCacheable() ? outcomes : null;
+    OutcomeKey key = null;
+    Outcome outcome = null;
+    if (cache != null) {
+      key = new OutcomeKey(principalName, subject);
+      outcome = cache.get(key);
+    }
+    if (outcome == null) {
+      String mappedPrincipalName = mapUserPrincipalBase(principalName);
+      mappedPrincipalName = mapUserPrincipal(mappedPrincipalName);
+      String[] mappedGroups = mapGroupPrincipals(mappedPrincipalName, subject);
+      String[] groups = mapGroupPrincipals(mappedPrincipalName, subject);
+      groups = combineGroupMappings(mappedGroups, groups);
+      outcome = new Outcome(mappedPrincipalName, groups,
+          createSubject((HttpServletRequest)request, subject, mappedPrincipalName, groups));
+      if (cache != null) {
+        cache.put(key, outcome);
+      }
+    }
 
     HttpServletRequestWrapper wrapper = wrapHttpServletRequest(
-        request, mappedPrincipalName);
+        request, outcome.principalName);
 
-    continueChainAsPrincipal(wrapper, response, chain, mappedPrincipalName, groups);
+    continueChainAsPrincipal(wrapper, response, chain, outcome.principalName, outcome.groups, outcome.subject);
+  }
+
+  /**
+   * Whether the outcome of mapping an identity depends only on the authenticated principal,
+   * its groups and the configuration of this filter, so that it may be remembered.
+   * Implementations that consult an external source should return false.
+   * @return true if the outcome may be cached.
+   */
+  protected boolean isOutcomeCacheable() {
+    return true;
+  }
+
+  private static Map<OutcomeKey, Outcome> createOutcomeCache(final int maxSize) {
+    if (maxSize <= 0) {
+      return null;
+    }
+    return Collections.synchronizedMap(new LinkedHashMap<OutcomeKey, Outcome>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<OutcomeKey, Outcome> eldest) {
+        return size() > maxSize;
+      }
+    });
   }
 
   /**
@@ -141,4 +199,42 @@ public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilt
     // NOP
     return principalName;
   }
+
+  private static class OutcomeKey {
+    private final String principalName;
+    private final Set<String> groups = new TreeSet<>();
+
+    OutcomeKey(String principalName, Subject subject) {
+      this.principalName = principalName;
+      for (GroupPrincipal group : subject.getPrincipals(GroupPrincipal.class)) {
+        groups.add(group.getName());
+      }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof OutcomeKey)) {
+        return false;
+      }
+      OutcomeKey key = (OutcomeKey)other;
+      return principalName.equals(key.principalName) && groups.equals(key.groups);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * principalName.hashCode() + groups.hashCode();
+    }
+  }
+
+  private static class Outcome {
+    private final String principalName;
+    private final String[] groups;
+    private final Subject subject;
+
+    Outcome(String principalName, String[] groups, Subject subject) {
+      this.principalName = principalName;
+      this.groups = groups;
+      this.subject = subject;
+    }
+  }
 }
@@ -18,12 +18,16 @@
 package org.apache.hadoop.gateway.identityasserter.filter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.PrivilegedActionException;
+import java.security.AccessController;
 import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.security.auth.Subject;
 import javax.servlet.Filter;
@@ -35,8 +39,10 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
 import org.apache.hadoop.gateway.identityasserter.common.filter.CommonIdentityAssertionFilter;
 import org.apache.hadoop.gateway.security.GroupPrincipal;
+import org.apache.hadoop.gateway.security.ImpersonatedPrincipal;
 import org.apache.hadoop.gateway.security.PrimaryPrincipal;
 import org.easymock.EasyMock;
 import org.junit.Before;
@@ -127,4 +133,67 @@ public class CommonIdentityAssertionFilterTest {
     assertTrue(mappedGroups[1], mappedGroups[1].equals("USERS") || mappedGroups[1].equals("ADMIN"));
   }
 
+  @Test
+  public void testOutcomeIsCached() throws Exception {
+    final AtomicInteger mappings = new AtomicInteger();
+    Filter cachingFilter = new CommonIdentityAssertionFilter() {
+      @Override
+      public String mapUserPrincipal(String principalName) {
+        mappings.incrementAndGet();
+        return principalName.toUpperCase();
+      }
+    };
+    AuditServiceFactory.getAuditService().createContext();
+
+    Subject larry = new Subject();
+    larry.getPrincipals().add(new PrimaryPrincipal("larry"));
+    larry.getPrincipals().add(new GroupPrincipal("users"));
+
+    Subject first = doFilterAs(cachingFilter, larry);
+    Subject second = doFilterAs(cachingFilter, larry);
+    assertEquals(1, mappings.get());
+    assertSame(first, second);
+    assertTrue(first.isReadOnly());
+    assertEquals("LARRY", first.getPrincipals(ImpersonatedPrincipal.class).iterator().next().getName());
+    assertEquals("users", first.getPrincipals(GroupPrincipal.class).iterator().next().getName());
+
+    // Different source groups are a different identity
+    Subject larryAdmin = new Subject();
+    larryAdmin.getPrincipals().add(new PrimaryPrincipal("larry"));
+    larryAdmin.getPrincipals().add(new GroupPrincipal("admin"));
+    Subject third = doFilterAs(cachingFilter, larryAdmin);
+    assertEquals(2, mappings.get());
+    assertNotSame(first, third);
+    assertEquals("admin", third.getPrincipals(GroupPrincipal.class).iterator().next().getName());
+
+    // A redeployed topology starts over
+    cachingFilter.destroy();
+    doFilterAs(cachingFilter, larry);
+    assertEquals(3, mappings.get());
+  }
+
+  private Subject doFilterAs(final Filter filter, Subject subject) throws Exception {
+    final HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.replay( request );
+    final HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+    final Subject[] asserted = new Subject[1];
+    final FilterChain chain = new FilterChain() {
+      @Override
+      public void doFilter(ServletRequest request, ServletResponse response)
+          throws IOException, ServletException {
+        asserted[0] = Subject.getSubject(AccessController.getContext());
+      }
+    };
+    Subject.doAs(
+      subject,
+      new PrivilegedExceptionAction<Object>() {
+        public Object run() throws Exception {
+          filter.doFilter(request, response, chain);
+          return null;
+        }
+      });
+    return asserted[0];
+  }
+
 }
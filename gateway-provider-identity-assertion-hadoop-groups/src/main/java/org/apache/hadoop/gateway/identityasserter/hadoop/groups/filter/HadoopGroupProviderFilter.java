@@ -18,8 +18,12 @@
 package org.apache.hadoop.gateway.identityasserter.hadoop.groups.filter;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.security.auth.Subject;
 import javax.servlet.FilterConfig;
@@ -28,6 +32,9 @@ import javax.servlet.ServletException;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.identityasserter.common.filter.CommonIdentityAssertionFilter;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.security.GroupResolutionService;
+import org.apache.hadoop.gateway.services.security.GroupResolutionService.GroupLookup;
 import org.apache.hadoop.security.GroupMappingServiceProvider;
 import org.apache.hadoop.security.Groups;
 
@@ -51,9 +58,17 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
   private Configuration hadoopConfig;
 
   /**
-   * Hadoop Groups implementation.
+   * Looks up groups through Hadoop {@link Groups}, cached by the gateway if
+   * possible.
    */
-  private Groups hadoopGroups;
+  private GroupLookup groupLookup;
+
+  /**
+   * The service caching the groups and the source they are cached under, if
+   * any, so the cached groups can be dropped when the topology goes away.
+   */
+  private GroupResolutionService groupResolutionService;
+  private String groupSource;
 
   /* create an instance */
   public HadoopGroupProviderFilter() {
@@ -78,7 +93,21 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
         }
 
       }
-      hadoopGroups = new Groups(hadoopConfig);
+      groupLookup = new HadoopGroupLookup(hadoopConfig);
+
+      /* share cached groups with the topologies that map groups the same way */
+      final GatewayServices services = (GatewayServices) filterConfig
+          .getServletContext()
+          .getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
+      if (services != null) {
+        groupResolutionService = services
+            .getService(GatewayServices.GROUP_RESOLUTION_SERVICE);
+        if (groupResolutionService != null) {
+          groupSource = getSource(hadoopConfig);
+          groupLookup = groupResolutionService
+              .getCachingLookup(groupSource, groupLookup);
+        }
+      }
 
     } catch (final Exception e) {
       throw new ServletException(e);
@@ -86,6 +115,30 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
 
   }
 
+  @Override
+  public void destroy() {
+    super.destroy();
+    if (groupSource != null) {
+      groupResolutionService.releaseCachingLookup(groupSource);
+      groupSource = null;
+    }
+  }
+
+  /**
+   * Identifies the group mapping by its configuration, leaving out secrets
+   * such as the LDAP bind password, since the source is kept for as long as
+   * the topology is deployed.
+   */
+  private static String getSource(final Configuration config) {
+    final Map<String, String> properties = new TreeMap<String, String>();
+    for (final Map.Entry<String, String> property : config) {
+      if (!property.getKey().toLowerCase(Locale.ROOT).contains("password")) {
+        properties.put(property.getKey(), property.getValue());
+      }
+    }
+    return HadoopGroupProviderFilter.class.getName() + properties;
+  }
+
   /**
    * Query the Hadoop implementation of {@link Groups} to retrieve groups for
    * provided user.
@@ -95,19 +148,19 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
     /* return the groups as seen by Hadoop */
     String[] groups = null;
     try {
-      final List<String> groupList = hadoopGroups
+      final List<String> groupList = groupLookup
           .getGroups(mappedPrincipalName);
-      LOG.groupsFound(mappedPrincipalName, groupList.toString());
-      groups = groupList.toArray(new String[0]);
-
-    } catch (final IOException e) {
-      if (e.toString().contains("No groups found for user")) {
+      if (groupList.isEmpty()) {
         /* no groups found move on */
         LOG.noGroupsFound(mappedPrincipalName);
       } else {
-        /* Log the error and return empty group */
-        LOG.errorGettingUserGroups(mappedPrincipalName, e);
+        LOG.groupsFound(mappedPrincipalName, groupList.toString());
       }
+      groups = groupList.toArray(new String[0]);
+
+    } catch (final IOException e) {
+      /* Log the error and return empty group */
+      LOG.errorGettingUserGroups(mappedPrincipalName, e);
       groups = new String[0];
     }
     return groups;
@@ -118,4 +171,55 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
     return principalName;
   }
 
+  /**
+   * Groups come from an external source whose cache has its own expiry and
+   * invalidation, so the mapping outcome must not be remembered here.
+   */
+  @Override
+  protected boolean isOutcomeCacheable() {
+    return false;
+  }
+
+  /**
+   * Adapts {@link Groups} to a {@link GroupLookup}, reporting users without
+   * groups with an empty list rather than an exception so they can be cached.
+   *
+   * The {@link Groups} are only built on the first lookup, since topologies
+   * that share a group source only ever use the lookup of the first of them.
+   */
+  private static class HadoopGroupLookup implements GroupLookup {
+
+    private final Configuration config;
+    private Groups groups;
+
+    HadoopGroupLookup(final Configuration config) {
+      this.config = config;
+    }
+
+    private synchronized Groups getHadoopGroups() throws IOException {
+      if (groups == null) {
+        try {
+          groups = new Groups(config);
+        } catch (final RuntimeException e) {
+          throw new IOException(e);
+        }
+      }
+      return groups;
+    }
+
+    @Override
+    public List<String> getGroups(final String user) throws IOException {
+      final Groups groups = getHadoopGroups();
+      try {
+        return groups.getGroups(user);
+      } catch (final IOException e) {
+        if (e.toString().contains("No groups found for user")) {
+          return Collections.emptyList();
+        }
+        throw e;
+      }
+    }
+
+  }
+
 }
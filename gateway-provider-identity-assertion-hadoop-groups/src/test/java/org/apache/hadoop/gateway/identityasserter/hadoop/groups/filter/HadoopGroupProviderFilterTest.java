@@ -24,6 +24,7 @@ import java.security.Principal;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.security.auth.Subject;
 import javax.servlet.FilterConfig;
@@ -31,8 +32,14 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 
 import org.apache.hadoop.gateway.security.PrimaryPrincipal;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.security.GroupResolutionService;
+import org.apache.hadoop.gateway.services.security.GroupResolutionService.GroupLookup;
+import org.apache.hadoop.security.GroupMappingServiceProvider;
 import org.apache.hadoop.security.LdapGroupsMapping;
 import org.apache.hadoop.security.ShellBasedUnixGroupsMapping;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
@@ -215,4 +222,99 @@ public class HadoopGroupProviderFilterTest {
 
   }
 
+  /**
+   * Test that the groups are looked up through the gateway's group
+   * resolution service, keyed by the group mapping configuration without its
+   * secrets, and released when the filter is destroyed. The group mapping is
+   * only built for the lookup the service actually uses.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testGroupResolutionService() throws Exception {
+    final Capture<String> sources = Capture.newInstance(CaptureType.ALL);
+    final Capture<GroupLookup> lookups = Capture.newInstance(CaptureType.ALL);
+    final Capture<String> released = Capture.newInstance(CaptureType.ALL);
+    final GroupResolutionService groupResolutionService = EasyMock.createNiceMock(GroupResolutionService.class);
+    EasyMock.expect(groupResolutionService.getCachingLookup(EasyMock.capture(sources), EasyMock.capture(lookups)))
+        .andReturn(new GroupLookup() {
+          @Override
+          public List<String> getGroups(final String user) {
+            return Arrays.asList("cached-" + user);
+          }
+        }).anyTimes();
+    groupResolutionService.releaseCachingLookup(EasyMock.capture(released));
+    EasyMock.expectLastCall().anyTimes();
+    final GatewayServices services = EasyMock.createNiceMock(GatewayServices.class);
+    EasyMock.expect(services.getService(GatewayServices.GROUP_RESOLUTION_SERVICE))
+        .andReturn(groupResolutionService).anyTimes();
+    EasyMock.replay(groupResolutionService, services);
+
+    for (final String mapping : Arrays.asList("one", "one", "two")) {
+      final FilterConfig config = EasyMock.createNiceMock(FilterConfig.class);
+      final ServletContext context = EasyMock.createNiceMock(ServletContext.class);
+      EasyMock.expect(config.getServletContext()).andReturn(context).anyTimes();
+      EasyMock.expect(context.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE)).andReturn(services).anyTimes();
+      EasyMock.expect(config.getInitParameterNames())
+          .andReturn(Collections.enumeration(Arrays.asList("hadoop.security.group.mapping", "mapping.name",
+              "hadoop.security.group.mapping.ldap.bind.password"))).anyTimes();
+      EasyMock.expect(config.getInitParameter("hadoop.security.group.mapping"))
+          .andReturn(StubGroupMapping.class.getName()).anyTimes();
+      EasyMock.expect(config.getInitParameter("mapping.name")).andReturn(mapping).anyTimes();
+      EasyMock.expect(config.getInitParameter("hadoop.security.group.mapping.ldap.bind.password"))
+          .andReturn("secret-" + released.getValues().size()).anyTimes();
+      EasyMock.replay(config, context);
+
+      final HadoopGroupProviderFilter filter = new HadoopGroupProviderFilter();
+      filter.init(config);
+      assertThat(filter.mapGroupPrincipals("alice", new Subject()), is(new String[] { "cached-alice" }));
+      filter.destroy();
+    }
+
+    /* identical group mappings share a source */
+    assertThat(sources.getValues().get(0), is(sources.getValues().get(1)));
+    assertThat(sources.getValues().get(0).equals(sources.getValues().get(2)), is(false));
+    for (final String source : sources.getValues()) {
+      assertThat(source.contains("secret"), is(false));
+    }
+    assertThat(released.getValues(), is(sources.getValues()));
+
+    /* no group mapping was built for lookups the service did not use */
+    assertThat(StubGroupMapping.instances.get(), is(0));
+
+    /* the lookup handed to the service asks hadoop and reports users without groups as empty */
+    assertThat(lookups.getValues().get(0).getGroups("alice"), is(Arrays.asList("alice-group")));
+    assertThat(lookups.getValues().get(0).getGroups("nobody"), is(Collections.<String>emptyList()));
+    assertThat(StubGroupMapping.instances.get(), is(1));
+  }
+
+  /**
+   * A group mapping that knows every user but "nobody".
+   */
+  public static class StubGroupMapping implements GroupMappingServiceProvider {
+
+    static final AtomicInteger instances = new AtomicInteger();
+
+    public StubGroupMapping() {
+      instances.incrementAndGet();
+    }
+
+    @Override
+    public List<String> getGroups(final String user) {
+      if ("nobody".equals(user)) {
+        return Collections.emptyList();
+      }
+      return Collections.singletonList(user + "-group");
+    }
+
+    @Override
+    public void cacheGroupsRefresh() {
+    }
+
+    @Override
+    public void cacheGroupsAdd(final List<String> groups) {
+    }
+
+  }
+
 }
@@ -21,6 +21,7 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import org.apache.hadoop.gateway.deploy.DeploymentContext;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 
@@ -38,18 +39,24 @@ public class UrlRewriteServletContextListener implements ServletContextListener
   public static final String DESCRIPTOR_LOCATION_INIT_PARAM_NAME = "rewriteDescriptorLocation";
   public static final String DESCRIPTOR_DEFAULT_FILE_NAME = "rewrite.xml";
   public static final String DESCRIPTOR_DEFAULT_LOCATION = "/WEB-INF/" + DESCRIPTOR_DEFAULT_FILE_NAME;
+  public static final String DESCRIPTOR_ATTRIBUTE_NAME = DeploymentContext.DESCRIPTOR_ATTRIBUTE_PREFIX + "rewrite";
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
 
   @Override
   public void contextInitialized( ServletContextEvent event ) {
-    UrlRewriteRulesDescriptor descriptor = null;
-    try {
-      URL url = locateDescriptor( event.getServletContext() );
-      descriptor = loadDescriptor( url );
-    } catch( IOException e ) {
-      throw new IllegalStateException( e );
-    }
     ServletContext context = event.getServletContext();
+    UrlRewriteRulesDescriptor descriptor = (UrlRewriteRulesDescriptor)context.getAttribute( DESCRIPTOR_ATTRIBUTE_NAME );
+    if( descriptor != null ) {
+      // Handed over in memory by the deployment so there is no need to parse the archived copy.
+      context.removeAttribute( DESCRIPTOR_ATTRIBUTE_NAME );
+    } else {
+      try {
+        URL url = locateDescriptor( context );
+        descriptor = loadDescriptor( url );
+      } catch( IOException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
     UrlRewriteEnvironment environment = new UrlRewriteServletEnvironment( context );
     UrlRewriteProcessor processor = new UrlRewriteProcessor();
     processor.initialize( environment, descriptor );
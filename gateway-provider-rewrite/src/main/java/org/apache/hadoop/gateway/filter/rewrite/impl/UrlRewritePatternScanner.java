@@ -0,0 +1,437 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the matches of all the apply selectors of a content filter in a single pass.
+ *
+ * A literal that every match must contain is extracted from each pattern and all of them are
+ * searched for at once with an Aho-Corasick automaton.  Patterns that start with their literal
+ * are only tried where the literal occurs and the others are only searched for when their
+ * literal occurs somewhere in the input.  Where matches of different selectors overlap the one
+ * starting first wins and on a tie the selector configured first.
+ */
+public class UrlRewritePatternScanner {
+
+  private static final Map<UrlRewriteFilterContentDescriptor, UrlRewritePatternScanner> SCANNERS =
+      Collections.synchronizedMap( new WeakHashMap<UrlRewriteFilterContentDescriptor, UrlRewritePatternScanner>() );
+
+  private static final String META_CHARS = ".[]{}()*+?|^$\\";
+  private static final String QUANTIFIERS = "*?{+";
+
+  private final int selectors;
+  private final Pattern[] patterns;
+  private final String[] rules;
+  private final String[] literals;
+  private final boolean[] anchored;
+  private final Node root;
+
+  private UrlRewritePatternScanner( int selectors, List<Pattern> patterns, List<String> rules ) {
+    this.selectors = selectors;
+    this.patterns = patterns.toArray( new Pattern[ patterns.size() ] );
+    this.rules = rules.toArray( new String[ rules.size() ] );
+    this.literals = new String[ this.patterns.length ];
+    this.anchored = new boolean[ this.patterns.length ];
+    this.root = new Node();
+    for( int i = 0; i < this.patterns.length; i++ ) {
+      String pattern = this.patterns[ i ].pattern();
+      if( this.patterns[ i ].flags() == 0 ) {
+        String prefix = extractPrefix( pattern );
+        if( !prefix.isEmpty() ) {
+          literals[ i ] = prefix;
+          anchored[ i ] = true;
+        } else {
+          literals[ i ] = extractLiteral( pattern );
+        }
+      }
+      if( literals[ i ] != null ) {
+        root.add( literals[ i ], i );
+      }
+    }
+    root.link();
+  }
+
+  /**
+   * @return The scanner for the apply selectors of the content filter, compiled on first use.
+   */
+  public static UrlRewritePatternScanner compile( UrlRewriteFilterContentDescriptor config, UrlRewriteFilterPathDescriptor.Compiler<Pattern> regexCompiler ) {
+    UrlRewritePatternScanner scanner = SCANNERS.get( config );
+    if( scanner == null || scanner.selectors != config.getSelectors().size() ) {
+      List<Pattern> patterns = new ArrayList<>();
+      List<String> rules = new ArrayList<>();
+      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+        if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
+          UrlRewriteFilterApplyDescriptor apply = (UrlRewriteFilterApplyDescriptor)selector;
+          patterns.add( (Pattern)apply.compiledPath( regexCompiler ) );
+          rules.add( apply.rule() );
+        }
+      }
+      scanner = new UrlRewritePatternScanner( config.getSelectors().size(), patterns, rules );
+      SCANNERS.put( config, scanner );
+    }
+    return scanner;
+  }
+
+  /**
+   * Appends the input to the output with every match replaced by the value filtered with the
+   * rule of the matching selector.  Anchors and boundaries of the patterns apply to the input as
+   * a whole.
+   */
+  public void scan( CharSequence input, UrlRewriteFilterReader filterReader, StringBuilder output ) {
+    int length = input.length();
+    boolean[] present = new boolean[ patterns.length ];
+    long[] hits = new long[ 16 ];
+    int hitCount = 0;
+    Node node = root;
+    for( int i = 0; i < length; i++ ) {
+      node = node.next( input.charAt( i ) );
+      for( int index : node.outputs ) {
+        if( anchored[ index ] ) {
+          if( hitCount == hits.length ) {
+            hits = Arrays.copyOf( hits, hitCount * 2 );
+          }
+          hits[ hitCount++ ] = ( (long)( i - literals[ index ].length() + 1 ) << 24 ) | index;
+        } else {
+          present[ index ] = true;
+        }
+      }
+    }
+    Arrays.sort( hits, 0, hitCount );
+
+    Matcher[] matchers = new Matcher[ patterns.length ];
+    int[] starts = new int[ patterns.length ];
+    int[] ends = new int[ patterns.length ];
+    for( int i = 0; i < patterns.length; i++ ) {
+      // Patterns without a literal always need to be searched for.
+      starts[ i ] = anchored[ i ] || ( literals[ i ] != null && !present[ i ] ) ? -1 : -2;
+    }
+
+    int position = 0;
+    int hit = 0;
+    while( position <= length ) {
+      int bestStart = -1;
+      int bestEnd = -1;
+      int best = -1;
+      for( int i = 0; i < patterns.length; i++ ) {
+        if( starts[ i ] == -2 || ( starts[ i ] >= 0 && starts[ i ] < position ) ) {
+          Matcher matcher = matcher( matchers, i, input );
+          matcher.region( position, length );
+          if( matcher.find() ) {
+            starts[ i ] = matcher.start();
+            ends[ i ] = matcher.end();
+          } else {
+            starts[ i ] = -1;
+          }
+        }
+        if( starts[ i ] >= 0 && ( best < 0 || starts[ i ] < bestStart ) ) {
+          bestStart = starts[ i ];
+          bestEnd = ends[ i ];
+          best = i;
+        }
+      }
+      for( int h = hit; h < hitCount; h++ ) {
+        if( hits[ h ] < 0 ) {
+          continue;
+        }
+        int start = (int)( hits[ h ] >>> 24 );
+        int index = (int)( hits[ h ] & 0xFFFFFF );
+        if( start < position ) {
+          hits[ h ] = -1;
+          continue;
+        }
+        if( best >= 0 && ( start > bestStart || ( start == bestStart && index > best ) ) ) {
+          break;
+        }
+        Matcher matcher = matcher( matchers, index, input );
+        matcher.region( start, length );
+        hits[ h ] = -1;
+        if( matcher.lookingAt() ) {
+          bestStart = start;
+          bestEnd = matcher.end();
+          best = index;
+          break;
+        }
+      }
+      while( hit < hitCount && hits[ hit ] < 0 ) {
+        hit++;
+      }
+      if( best < 0 ) {
+        break;
+      }
+      output.append( input, position, bestStart );
+      String value = input.subSequence( bestStart, bestEnd ).toString();
+      output.append( filterReader.filterValueString( null, value, rules[ best ] ) );
+      if( bestEnd > bestStart ) {
+        position = bestEnd;
+      } else {
+        // Step over an empty match like Matcher.find() does.
+        if( bestEnd < length ) {
+          output.append( input.charAt( bestEnd ) );
+        }
+        position = bestEnd + 1;
+      }
+    }
+    if( position < length ) {
+      output.append( input, position, length );
+    }
+  }
+
+  private Matcher matcher( Matcher[] matchers, int index, CharSequence input ) {
+    Matcher matcher = matchers[ index ];
+    if( matcher == null ) {
+      matcher = patterns[ index ].matcher( input );
+      matcher.useTransparentBounds( true );
+      matcher.useAnchoringBounds( false );
+      matchers[ index ] = matcher;
+    }
+    return matcher;
+  }
+
+  // The literal every match starts with or an empty string.
+  static String extractPrefix( String pattern ) {
+    if( hasTopLevelAlternation( pattern ) || hasComplexSyntax( pattern ) ) {
+      return "";
+    }
+    StringBuilder prefix = new StringBuilder();
+    int i = 0;
+    while( i < pattern.length() ) {
+      char c = pattern.charAt( i );
+      int next = i + 1;
+      if( c == '\\' ) {
+        if( next >= pattern.length() || Character.isLetterOrDigit( pattern.charAt( next ) ) ) {
+          break;
+        }
+        c = pattern.charAt( next );
+        next++;
+      } else if( META_CHARS.indexOf( c ) >= 0 ) {
+        break;
+      }
+      if( next < pattern.length() && QUANTIFIERS.indexOf( pattern.charAt( next ) ) >= 0 ) {
+        break;
+      }
+      prefix.append( c );
+      i = next;
+    }
+    return prefix.toString();
+  }
+
+  // The longest literal outside of groups and classes that every match contains or null.
+  static String extractLiteral( String pattern ) {
+    if( hasTopLevelAlternation( pattern ) || hasComplexSyntax( pattern ) ) {
+      return null;
+    }
+    String longest = "";
+    StringBuilder literal = new StringBuilder();
+    int depth = 0;
+    int i = 0;
+    while( i < pattern.length() ) {
+      char c = pattern.charAt( i );
+      int next = i + 1;
+      boolean isLiteral = false;
+      if( c == '\\' ) {
+        if( next < pattern.length() && !Character.isLetterOrDigit( pattern.charAt( next ) ) ) {
+          c = pattern.charAt( next );
+          isLiteral = depth == 0;
+        }
+        next++;
+      } else if( c == '[' ) {
+        next = skipClass( pattern, i );
+      } else if( c == '{' ) {
+        int close = pattern.indexOf( '}', i );
+        next = close < 0 ? pattern.length() : close + 1;
+      } else if( c == '(' ) {
+        depth++;
+      } else if( c == ')' ) {
+        depth--;
+      } else {
+        isLiteral = depth == 0 && META_CHARS.indexOf( c ) < 0;
+      }
+      boolean quantified = next < pattern.length() && QUANTIFIERS.indexOf( pattern.charAt( next ) ) >= 0;
+      if( isLiteral && !quantified ) {
+        literal.append( c );
+      } else {
+        if( literal.length() > longest.length() ) {
+          longest = literal.toString();
+        }
+        literal.setLength( 0 );
+      }
+      i = next;
+    }
+    if( literal.length() > longest.length() ) {
+      longest = literal.toString();
+    }
+    return longest.isEmpty() ? null : longest;
+  }
+
+  private static int skipClass( String pattern, int start ) {
+    int i = start + 1;
+    if( i < pattern.length() && pattern.charAt( i ) == '^' ) {
+      i++;
+    }
+    if( i < pattern.length() && pattern.charAt( i ) == ']' ) {
+      i++;
+    }
+    int depth = 1;
+    while( i < pattern.length() && depth > 0 ) {
+      char c = pattern.charAt( i );
+      if( c == '\\' ) {
+        i++;
+      } else if( c == '[' ) {
+        depth++;
+      } else if( c == ']' ) {
+        depth--;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  // Flags change how literals match and some escapes stand for more than the next character.
+  private static boolean hasComplexSyntax( String pattern ) {
+    for( int i = 0; i < pattern.length() - 1; i++ ) {
+      char c = pattern.charAt( i );
+      char next = pattern.charAt( i + 1 );
+      if( c == '\\' ) {
+        if( "pPxuc0123456789kNQ".indexOf( next ) >= 0 ) {
+          return true;
+        }
+        i++;
+      } else if( c == '(' && next == '?' && i + 2 < pattern.length() &&
+          ( Character.isLetter( pattern.charAt( i + 2 ) ) || pattern.charAt( i + 2 ) == '-' ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasTopLevelAlternation( String pattern ) {
+    int depth = 0;
+    for( int i = 0; i < pattern.length(); i++ ) {
+      char c = pattern.charAt( i );
+      if( c == '\\' ) {
+        i++;
+      } else if( c == '[' ) {
+        i = skipClass( pattern, i ) - 1;
+      } else if( c == '(' ) {
+        depth++;
+      } else if( c == ')' ) {
+        depth--;
+      } else if( c == '|' && depth == 0 ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class Node {
+
+    private static final int[] NONE = new int[ 0 ];
+
+    private char[] chars = new char[ 0 ];
+    private Node[] children = new Node[ 0 ];
+    private Node fail;
+    private int[] outputs = NONE;
+
+    private Node child( char c ) {
+      for( int i = 0; i < chars.length; i++ ) {
+        if( chars[ i ] == c ) {
+          return children[ i ];
+        }
+      }
+      return null;
+    }
+
+    private void add( String literal, int index ) {
+      Node node = this;
+      for( int i = 0; i < literal.length(); i++ ) {
+        char c = literal.charAt( i );
+        Node child = node.child( c );
+        if( child == null ) {
+          child = new Node();
+          node.chars = Arrays.copyOf( node.chars, node.chars.length + 1 );
+          node.children = Arrays.copyOf( node.children, node.children.length + 1 );
+          node.chars[ node.chars.length - 1 ] = c;
+          node.children[ node.children.length - 1 ] = child;
+        }
+        node = child;
+      }
+      node.outputs = append( node.outputs, new int[]{ index } );
+    }
+
+    // Computes the failure links breadth first and merges the outputs reachable through them.
+    private void link() {
+      Queue<Node> queue = new ArrayDeque<>();
+      for( Node child : children ) {
+        child.fail = this;
+        queue.add( child );
+      }
+      while( !queue.isEmpty() ) {
+        Node node = queue.remove();
+        for( int i = 0; i < node.chars.length; i++ ) {
+          Node child = node.children[ i ];
+          Node fail = node.fail;
+          while( fail != null && fail.child( node.chars[ i ] ) == null ) {
+            fail = fail.fail;
+          }
+          child.fail = fail == null ? this : fail.child( node.chars[ i ] );
+          child.outputs = append( child.outputs, child.fail.outputs );
+          queue.add( child );
+        }
+      }
+    }
+
+    private Node next( char c ) {
+      Node node = this;
+      while( true ) {
+        Node child = node.child( c );
+        if( child != null ) {
+          return child;
+        } else if( node.fail == null ) {
+          return node;
+        }
+        node = node.fail;
+      }
+    }
+
+    private static int[] append( int[] left, int[] right ) {
+      if( right.length == 0 ) {
+        return left;
+      }
+      int[] merged = Arrays.copyOf( left, left.length + right.length );
+      System.arraycopy( right, 0, merged, left.length, right.length );
+      return merged;
+    }
+
+  }
+
+}
@@ -21,33 +21,47 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescr
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
-import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewritePatternScanner;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.regex.Pattern;
 
+/**
+ * Rewrites the matches of the apply selectors line by line.  Lines are scanned in place within
+ * the input buffer and are only held back while their end has not been read yet.
+ */
 public abstract class JavaScriptFilterReader extends Reader implements UrlRewriteFilterReader {
 
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
 
-  private BufferedReader reader;
+  private static final int INPUT_BUFFER_SIZE = 8192;
+
+  private Reader reader;
+  private char[] input;
+  private int inputStart;
+  private int inputEnd;
+  private boolean eof;
   private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
-  private UrlRewriteFilterContentDescriptor config;
+  private StringBuilder buffer;
+  private UrlRewritePatternScanner scanner;
 
   protected JavaScriptFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
-    this.reader = new BufferedReader( reader );
-    this.config = config;
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
+    this.reader = reader;
+    input = new char[ INPUT_BUFFER_SIZE ];
+    inputStart = 0;
+    inputEnd = 0;
+    eof = false;
+    buffer = new StringBuilder();
     offset = 0;
+    if( config != null && !config.getSelectors().isEmpty() ) {
+      scanner = UrlRewritePatternScanner.compile( config, REGEX_COMPILER );
+    }
   }
 
   @Override
@@ -57,13 +71,8 @@ public abstract class JavaScriptFilterReader extends Reader implements UrlRewrit
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
     int available = buffer.length() - offset;
-    String cbuff;
     if( available == 0 ) {
-      cbuff = reader.readLine();
-      if( cbuff != null ) {
-        count = cbuff.length();
-        writer.write( UrlRewriteUtil.filterJavaScript( cbuff, config, this, REGEX_COMPILER ) );
-        writer.write( '\n' );
+      if( fill() ) {
         available = buffer.length() - offset;
       } else {
         count = -1;
@@ -83,9 +92,67 @@ public abstract class JavaScriptFilterReader extends Reader implements UrlRewrit
     return count;
   }
 
+  // Filters all the complete lines read so far, reading more input until there is at least one.
+  private boolean fill() throws IOException {
+    while( true ) {
+      int lineStart = inputStart;
+      for( int i = inputStart; i < inputEnd; i++ ) {
+        char c = input[ i ];
+        if( c == '\n' || c == '\r' ) {
+          if( c == '\r' && i + 1 == inputEnd && !eof ) {
+            // Need the next character to know if this is a CRLF.
+            break;
+          }
+          filterLine( lineStart, i );
+          if( c == '\r' && i + 1 < inputEnd && input[ i + 1 ] == '\n' ) {
+            i++;
+          }
+          lineStart = i + 1;
+        }
+      }
+      inputStart = lineStart;
+      if( buffer.length() > 0 ) {
+        return true;
+      } else if( eof ) {
+        if( inputStart < inputEnd ) {
+          filterLine( inputStart, inputEnd );
+          inputStart = inputEnd;
+          return true;
+        }
+        return false;
+      }
+      readInput();
+    }
+  }
+
+  private void readInput() throws IOException {
+    if( inputStart > 0 ) {
+      System.arraycopy( input, inputStart, input, 0, inputEnd - inputStart );
+      inputEnd -= inputStart;
+      inputStart = 0;
+    }
+    if( inputEnd == input.length ) {
+      input = Arrays.copyOf( input, input.length * 2 );
+    }
+    int count = reader.read( input, inputEnd, input.length - inputEnd );
+    if( count < 0 ) {
+      eof = true;
+    } else {
+      inputEnd += count;
+    }
+  }
+
+  private void filterLine( int start, int end ) {
+    if( scanner == null ) {
+      buffer.append( input, start, end - start );
+    } else {
+      scanner.scan( CharBuffer.wrap( input, start, end - start ), this, buffer );
+    }
+    buffer.append( '\n' );
+  }
+
   @Override
   public void close() throws IOException {
     reader.close();
-    writer.close();
   }
 }
@@ -63,9 +63,19 @@ import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
+/**
+ * Rewrites an XML stream according to the selectors of a content filter.
+ *
+ * When every selector outside of buffer descriptors can be compiled to an {@link XmlStreamPath}
+ * the selectors are matched against the stack of open elements and only the elements selected by
+ * buffer descriptors are built as DOM subtrees.  Otherwise a DOM mirroring the open elements is
+ * maintained and the selectors are evaluated as XPath expressions against it.
+ */
 public abstract class XmlFilterReader extends Reader {
 
   private static final UrlRewriteResources RES = ResourcesFactory.get( UrlRewriteResources.class );
@@ -75,6 +85,9 @@ public abstract class XmlFilterReader extends Reader {
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
   private static final UrlRewriteFilterPathDescriptor.Compiler<XPathExpression> XPATH_COMPILER = new XmlPathCompiler();
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
+  private static final Map<String, XmlStreamPath> STREAM_PATHS = new ConcurrentHashMap<>();
+  // Selectors within a buffer that may reach outside of the buffered element.
+  private static final Pattern NON_LOCAL_PATH = Pattern.compile( "^\\s*/|[\\[(,=|!<>\\s]\\s*/|\\.\\.|::|\\bid\\s*\\(" );
 
   private Reader reader;
   private UrlRewriteFilterContentDescriptor config;
@@ -86,10 +99,19 @@ public abstract class XmlFilterReader extends Reader {
   private Document document;
   private Stack<Level> stack;
   private boolean isEmptyElement;
+  private boolean streaming;
 
   protected XmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException, XMLStreamException {
+    this( reader, config, true );
+  }
+
+  /**
+   * @param streaming False to always evaluate the selectors against a DOM of the open elements.
+   */
+  protected XmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config, boolean streaming ) throws IOException, XMLStreamException {
     this.reader = reader;
     this.config = config;
+    this.streaming = streaming && ( config == null || isStreamable( config ) );
     writer = new StringWriter();
     buffer = writer.getBuffer();
     offset = 0;
@@ -187,8 +209,13 @@ public abstract class XmlFilterReader extends Reader {
     //System.out.println( "SD=" + event );
     String s;
 
-    document = XmlUtils.createDocument( false );
-    pushLevel( null, event, document, document, config );
+    if( streaming ) {
+      document = null;
+      pushLevel( null, event, null, null, config );
+    } else {
+      document = XmlUtils.createDocument( false );
+      pushLevel( null, event, document, document, config );
+    }
 
     writer.write( "<?xml" );
 
@@ -219,9 +246,14 @@ public abstract class XmlFilterReader extends Reader {
     document = null;
   }
 
-  private void processStartElement( StartElement event ) throws XPathExpressionException {
+  private void processStartElement( StartElement event ) throws XPathExpressionException, ParserConfigurationException {
     //System.out.println( "SE=" + event );
 
+    if( streaming && !currentlyBuffering() ) {
+      processStreamedStartElement( event );
+      return;
+    }
+
     // Create a new "empty" element and add it to the document.
     Element element = bufferElement( event );
     Level parent = stack.peek();
@@ -260,6 +292,29 @@ public abstract class XmlFilterReader extends Reader {
     }
   }
 
+  // Matches the selectors against the open elements and only builds a DOM for buffered elements.
+  private void processStreamedStartElement( StartElement event ) throws XPathExpressionException, ParserConfigurationException {
+    Level parent = stack.peek();
+    Level level = pushLevel( parent, event, null, null, parent.scopeConfig );
+    UrlRewriteFilterPathDescriptor descriptor = pickFirstMatchingPath( parent, null );
+    if( descriptor instanceof UrlRewriteFilterBufferDescriptor ) {
+      document = XmlUtils.createDocument( false );
+      Element element = bufferElement( event );
+      document.appendChild( element );
+      level.node = element;
+      level.scopeNode = element;
+      level.scopeConfig = (UrlRewriteFilterBufferDescriptor)descriptor;
+      level.buffered = true;
+      bufferAttributes( event, element );
+    } else {
+      if( descriptor instanceof UrlRewriteFilterScopeDescriptor ) {
+        level.scopeConfig = (UrlRewriteFilterScopeDescriptor)descriptor;
+        level.scope = stack.size() - 1;
+      }
+      streamElement( event, null );
+    }
+  }
+
   private void processEndElement( EndElement event ) throws XPathExpressionException, IOException {
     //System.out.println( "EE=" + event );
     boolean buffering = currentlyBuffering();
@@ -267,6 +322,9 @@ public abstract class XmlFilterReader extends Reader {
     if( buffering ) {
       if( child.node == child.scopeNode ) {
         processBufferedElement( child );
+        if( streaming ) {
+          document = null;
+        }
       }
     } else {
       if( ! isEmptyElement ) {
@@ -280,7 +338,9 @@ public abstract class XmlFilterReader extends Reader {
         writer.write( n.getLocalPart() );
         writer.write( ">" );
       }
-      child.node.getParentNode().removeChild( child.node );
+      if( child.node != null ) {
+        child.node.getParentNode().removeChild( child.node );
+      }
     }
   }
 
@@ -408,6 +468,10 @@ public abstract class XmlFilterReader extends Reader {
     return qname;
   }
 
+  private QName extractQName( Level level ) {
+    return level.element == null ? new QName( "#document" ) : level.element.getName();
+  }
+
   private void bufferAttributes( StartElement event, Element element ) {
     Iterator attributes = event.getAttributes();
     while( attributes.hasNext() ) {
@@ -459,11 +523,13 @@ public abstract class XmlFilterReader extends Reader {
   }
 
   private void streamAttribute( Element element, Attribute attribute ) throws XPathExpressionException {
-    Attr node;
+    Attr node = null;
     QName name = attribute.getName();
     String prefix = name.getPrefix();
     String uri = name.getNamespaceURI();
-    if( uri == null || uri.isEmpty() ) {
+    if( element == null ) {
+      // Streamed elements are not mirrored in a DOM.
+    } else if( uri == null || uri.isEmpty() ) {
       node = document.createAttribute( name.getLocalPart() );
       element.setAttributeNode( node );
     } else {
@@ -478,13 +544,11 @@ public abstract class XmlFilterReader extends Reader {
     Level level = stack.peek();
     if( ( level.scopeConfig ) == null || ( level.scopeConfig.getSelectors().isEmpty() ) ) {
       value = filterAttribute( null, attribute.getName(), value, null );
-      node.setValue( value );
     } else {
-      UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level );
+      UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level, attribute );
       if( path instanceof UrlRewriteFilterApplyDescriptor ) {
         String rule = ((UrlRewriteFilterApplyDescriptor)path).rule();
         value = filterAttribute( null, attribute.getName(), value, rule );
-        node.setValue( value );
       }
     }
 
@@ -502,14 +566,19 @@ public abstract class XmlFilterReader extends Reader {
     writer.write( "=\"" );
     writer.write( value );
     writer.write( "\"" );
-    element.removeAttributeNode( node );
+    if( node != null ) {
+      element.removeAttributeNode( node );
+    }
   }
 
   private void processCharacters( Characters event ) throws XPathExpressionException {
     //System.out.println( "T[" + event.isCData() + "," + event.isWhiteSpace() + "," + event.isIgnorableWhiteSpace() + "]=" + event );
     Level level = stack.peek();
     Node node = stack.peek().node;
-    if( event.isCData() ) {
+    level.text = true;
+    if( node == null ) {
+      // Streamed elements are not mirrored in a DOM.
+    } else if( event.isCData() ) {
       node.appendChild( document.createCDATASection( event.getData() ) );
     } else {
       node.appendChild( document.createTextNode( event.getData() ) );
@@ -517,13 +586,14 @@ public abstract class XmlFilterReader extends Reader {
     if( !currentlyBuffering() ) {
       String value = event.getData();
       if( !event.isWhiteSpace() ) {
+        QName name = node == null ? extractQName( level ) : extractQName( node );
         if( level.scopeConfig == null || level.scopeConfig.getSelectors().isEmpty() ) {
-          value = filterText( extractQName( node ), value, null );
+          value = filterText( name, value, null );
         } else {
-          UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level );
+          UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level, null );
           if( path instanceof UrlRewriteFilterApplyDescriptor ) {
             String rule = ((UrlRewriteFilterApplyDescriptor)path).rule();
-            value = filterText( extractQName( node ), value, rule );
+            value = filterText( name, value, rule );
           }
         }
       }
@@ -579,6 +649,68 @@ public abstract class XmlFilterReader extends Reader {
     return match;
   }
 
+  private UrlRewriteFilterPathDescriptor pickFirstMatchingPath( Level level, Attribute attribute ) {
+    if( !streaming ) {
+      return pickFirstMatchingPath( level );
+    }
+    UrlRewriteFilterPathDescriptor match = null;
+    if( level.scopeConfig != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : level.scopeConfig.getSelectors() ) {
+        if( compileStreamPath( selector.path() ).matches( stack, level.scope, attribute ) ) {
+          match = selector;
+          break;
+        }
+      }
+    }
+    return match;
+  }
+
+  private static XmlStreamPath compileStreamPath( String expression ) {
+    XmlStreamPath path = null;
+    if( expression != null ) {
+      path = STREAM_PATHS.get( expression );
+      if( path == null ) {
+        path = XmlStreamPath.compile( expression );
+        if( path != null ) {
+          STREAM_PATHS.put( expression, path );
+        }
+      }
+    }
+    return path;
+  }
+
+  // Buffered elements are built without their ancestors so selectors within buffers must stay local.
+  private static boolean isStreamable( UrlRewriteFilterGroupDescriptor group ) {
+    for( UrlRewriteFilterPathDescriptor selector : group.getSelectors() ) {
+      if( compileStreamPath( selector.path() ) == null ) {
+        return false;
+      } else if( selector instanceof UrlRewriteFilterBufferDescriptor ) {
+        if( !isBufferable( (UrlRewriteFilterBufferDescriptor)selector ) ) {
+          return false;
+        }
+      } else if( selector instanceof UrlRewriteFilterScopeDescriptor ) {
+        if( !isStreamable( (UrlRewriteFilterScopeDescriptor)selector ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean isBufferable( UrlRewriteFilterGroupDescriptor group ) {
+    for( UrlRewriteFilterPathDescriptor selector : group.getSelectors() ) {
+      String path = selector.path();
+      if( path == null || NON_LOCAL_PATH.matcher( path ).find() ) {
+        return false;
+      } else if( selector instanceof UrlRewriteFilterGroupDescriptor ) {
+        if( !isBufferable( (UrlRewriteFilterGroupDescriptor)selector ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   private boolean currentlyBuffering() {
     return stack.peek().buffered;
   }
@@ -589,13 +721,16 @@ public abstract class XmlFilterReader extends Reader {
     return level;
   }
 
-  private static class Level {
+  private static class Level implements XmlStreamPath.Ancestor {
 //    private Level parent;
 //    private XMLEvent event;
     private Node node;
     private UrlRewriteFilterGroupDescriptor scopeConfig;
     private Node scopeNode;
     private boolean buffered;
+    private StartElement element;
+    private int scope;
+    private boolean text;
 
     private Level( Level parent, XMLEvent event, Node node, Node scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig ) {
 //      this.parent = parent;
@@ -605,6 +740,19 @@ public abstract class XmlFilterReader extends Reader {
       this.scopeNode = scopeNode;
       this.buffered = ( ( parent != null ) && parent.buffered ) ||
                       ( ( scopeConfig != null ) && ( scopeConfig instanceof UrlRewriteFilterBufferDescriptor ) );
+      this.element = event.isStartElement() ? event.asStartElement() : null;
+      this.scope = parent == null ? 0 : parent.scope;
+      this.text = false;
+    }
+
+    @Override
+    public StartElement getElement() {
+      return element;
+    }
+
+    @Override
+    public boolean hasText() {
+      return text;
     }
   }
 
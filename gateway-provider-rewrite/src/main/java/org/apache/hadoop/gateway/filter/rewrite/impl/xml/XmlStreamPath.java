@@ -0,0 +1,299 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl.xml;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A selector path compiled for evaluation against the stack of open elements of a StAX stream
+ * instead of a DOM.  Only a subset of XPath is supported: child (/) and descendant (//) steps
+ * with element names or *, a final text(), node(), @name or @* step and element predicates of
+ * the form [@name] or [@name='value'].  Names with prefixes, other axes, functions and
+ * positional predicates are not supported and {@link #compile(String)} returns null for them.
+ *
+ * A path matches when it selects any node of the open elements, the text already seen within
+ * them or the attribute being processed.
+ */
+class XmlStreamPath {
+
+  /**
+   * One of the open elements of the stream.  The first entry of a stack is the document.
+   */
+  interface Ancestor {
+
+    /**
+     * @return The start event of the element or null for the document.
+     */
+    StartElement getElement();
+
+    /**
+     * @return True if text has been read within the element.
+     */
+    boolean hasText();
+
+  }
+
+  private enum Kind { ELEMENT, TEXT, NODE, ATTRIBUTE }
+
+  private final boolean absolute;
+  private final Step[] steps;
+
+  private XmlStreamPath( boolean absolute, List<Step> steps ) {
+    this.absolute = absolute;
+    this.steps = steps.toArray( new Step[ steps.size() ] );
+  }
+
+  /**
+   * @return The compiled path or null if the expression is outside of the supported subset.
+   */
+  static XmlStreamPath compile( String expression ) {
+    if( expression == null ) {
+      return null;
+    }
+    Parser parser = new Parser( expression.trim() );
+    try {
+      return parser.parse();
+    } catch( IllegalArgumentException e ) {
+      return null;
+    }
+  }
+
+  boolean isAbsolute() {
+    return absolute;
+  }
+
+  /**
+   * @param stack The open elements with the document first.
+   * @param context The index within the stack of the node a relative path is evaluated from.
+   * @param attribute The attribute of the last element being processed or null.
+   */
+  boolean matches( List<? extends Ancestor> stack, int context, Attribute attribute ) {
+    return matches( stack, 0, absolute ? 0 : context, attribute );
+  }
+
+  private boolean matches( List<? extends Ancestor> stack, int index, int position, Attribute attribute ) {
+    if( index == steps.length ) {
+      return true;
+    }
+    Step step = steps[ index ];
+    int top = stack.size() - 1;
+    switch( step.kind ) {
+      case ELEMENT:
+        for( int i = position + 1; i <= top && ( step.descendant || i == position + 1 ); i++ ) {
+          if( step.matches( stack.get( i ).getElement() ) && matches( stack, index + 1, i, attribute ) ) {
+            return true;
+          }
+        }
+        return false;
+      case TEXT:
+        return hasText( stack, position, step.descendant );
+      case NODE:
+        return position < top || hasText( stack, position, step.descendant );
+      case ATTRIBUTE:
+        return attribute != null && top > 0 && ( step.descendant ? top >= position : top == position ) &&
+            step.matches( attribute.getName() );
+      default:
+        return false;
+    }
+  }
+
+  // The document itself never has text.
+  private static boolean hasText( List<? extends Ancestor> stack, int position, boolean descendant ) {
+    int last = descendant ? stack.size() - 1 : position;
+    for( int i = Math.max( 1, position ); i <= last; i++ ) {
+      if( stack.get( i ).hasText() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class Step {
+
+    private final boolean descendant;
+    private final Kind kind;
+    private final String name;
+    private final List<Predicate> predicates = new ArrayList<>();
+
+    private Step( boolean descendant, Kind kind, String name ) {
+      this.descendant = descendant;
+      this.kind = kind;
+      this.name = name;
+    }
+
+    private boolean matches( StartElement element ) {
+      if( element == null || !matches( element.getName() ) ) {
+        return false;
+      }
+      for( Predicate predicate : predicates ) {
+        Attribute attribute = element.getAttributeByName( new QName( predicate.name ) );
+        if( attribute == null || ( predicate.value != null && !predicate.value.equals( attribute.getValue() ) ) ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // Names without a prefix only select nodes without a namespace.
+    private boolean matches( QName qname ) {
+      if( name == null ) {
+        return true;
+      }
+      String uri = qname.getNamespaceURI();
+      return ( uri == null || uri.isEmpty() ) && name.equals( qname.getLocalPart() );
+    }
+
+  }
+
+  private static class Predicate {
+
+    private final String name;
+    private final String value;
+
+    private Predicate( String name, String value ) {
+      this.name = name;
+      this.value = value;
+    }
+
+  }
+
+  private static class Parser {
+
+    private final String expression;
+    private int index;
+
+    private Parser( String expression ) {
+      this.expression = expression;
+      this.index = 0;
+    }
+
+    private XmlStreamPath parse() {
+      if( expression.isEmpty() ) {
+        throw new IllegalArgumentException( expression );
+      }
+      boolean absolute = expression.charAt( 0 ) == '/';
+      List<Step> steps = new ArrayList<>();
+      boolean last = false;
+      while( index < expression.length() ) {
+        if( last ) {
+          throw new IllegalArgumentException( expression );
+        }
+        boolean descendant = false;
+        if( steps.isEmpty() && !absolute ) {
+          // A relative path starts with a child step.
+        } else if( consume( "//" ) ) {
+          descendant = true;
+        } else if( !consume( "/" ) ) {
+          throw new IllegalArgumentException( expression );
+        }
+        Step step = parseStep( descendant );
+        last = step.kind != Kind.ELEMENT;
+        steps.add( step );
+      }
+      return new XmlStreamPath( absolute, steps );
+    }
+
+    private Step parseStep( boolean descendant ) {
+      if( consume( "text()" ) ) {
+        return new Step( descendant, Kind.TEXT, null );
+      } else if( consume( "node()" ) ) {
+        return new Step( descendant, Kind.NODE, null );
+      } else if( consume( "@" ) ) {
+        return new Step( descendant, Kind.ATTRIBUTE, consume( "*" ) ? null : parseName() );
+      } else {
+        Step step = new Step( descendant, Kind.ELEMENT, consume( "*" ) ? null : parseName() );
+        while( consume( "[" ) ) {
+          step.predicates.add( parsePredicate() );
+        }
+        return step;
+      }
+    }
+
+    private Predicate parsePredicate() {
+      skipSpace();
+      if( !consume( "@" ) ) {
+        throw new IllegalArgumentException( expression );
+      }
+      String name = parseName();
+      String value = null;
+      skipSpace();
+      if( consume( "=" ) ) {
+        skipSpace();
+        value = parseLiteral();
+        skipSpace();
+      }
+      if( !consume( "]" ) ) {
+        throw new IllegalArgumentException( expression );
+      }
+      return new Predicate( name, value );
+    }
+
+    private String parseName() {
+      int start = index;
+      while( index < expression.length() ) {
+        char c = expression.charAt( index );
+        if( Character.isLetter( c ) || c == '_' || ( index > start && ( Character.isDigit( c ) || c == '-' || c == '.' ) ) ) {
+          index++;
+        } else {
+          break;
+        }
+      }
+      if( index == start ) {
+        throw new IllegalArgumentException( expression );
+      }
+      return expression.substring( start, index );
+    }
+
+    private String parseLiteral() {
+      if( index >= expression.length() ) {
+        throw new IllegalArgumentException( expression );
+      }
+      char quote = expression.charAt( index );
+      if( quote != '\'' && quote != '"' ) {
+        throw new IllegalArgumentException( expression );
+      }
+      int end = expression.indexOf( quote, index + 1 );
+      if( end < 0 ) {
+        throw new IllegalArgumentException( expression );
+      }
+      String literal = expression.substring( index + 1, end );
+      index = end + 1;
+      return literal;
+    }
+
+    private void skipSpace() {
+      while( index < expression.length() && Character.isWhitespace( expression.charAt( index ) ) ) {
+        index++;
+      }
+    }
+
+    private boolean consume( String token ) {
+      if( expression.startsWith( token, index ) ) {
+        index += token.length();
+        return true;
+      }
+      return false;
+    }
+
+  }
+
+}
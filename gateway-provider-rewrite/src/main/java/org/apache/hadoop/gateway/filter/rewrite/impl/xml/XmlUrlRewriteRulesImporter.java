@@ -31,8 +31,6 @@ import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
 
 public class XmlUrlRewriteRulesImporter implements UrlRewriteRulesImporter {
 
-  private static DigesterLoader loader = newLoader( new XmlRewriteRulesDigester() );
-
   @Override
   public String getFormat() {
     return "xml";
@@ -40,6 +38,9 @@ public class XmlUrlRewriteRulesImporter implements UrlRewriteRulesImporter {
 
   @Override
   public UrlRewriteRulesDescriptor load( Reader reader ) throws IOException {
+    // The rules keep a reference to the digester they are bound to so a loader, and therefore
+    // its rule instances, cannot be shared by concurrent loads.
+    DigesterLoader loader = newLoader( new XmlRewriteRulesDigester() );
     Digester digester = loader.newDigester( new ExtendedBaseRules() );
     digester.setValidating( false );
     try {
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UrlRewritePatternScannerTest {
+
+  private static final UrlRewriteFilterReader MARKING_READER = new UrlRewriteFilterReader() {
+    @Override
+    public String filterValueString( String name, String value, String rule ) {
+      return rule + "{" + value + "}";
+    }
+  };
+
+  private static String scan( String input, String... patterns ) {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    for( int i = 0; i < patterns.length; i++ ) {
+      config.addApply( patterns[ i ], "r" + i );
+    }
+    StringBuilder output = new StringBuilder();
+    UrlRewritePatternScanner.compile( config, new UrlRewriteFilterReader.RegexCompiler() ).scan( input, MARKING_READER, output );
+    return output.toString();
+  }
+
+  // What a separate regex pass for a single selector produces.
+  private static String replace( String input, String pattern ) {
+    Matcher matcher = Pattern.compile( pattern ).matcher( input );
+    StringBuilder output = new StringBuilder();
+    int index = 0;
+    while( matcher.find() ) {
+      output.append( input, index, matcher.start() );
+      output.append( "r0{" ).append( matcher.group() ).append( "}" );
+      index = matcher.end();
+    }
+    output.append( input, index, input.length() );
+    return output.toString();
+  }
+
+  @Test
+  public void testExtractLiterals() {
+    assertThat( UrlRewritePatternScanner.extractPrefix( "/webhdfs/v1" ), is( "/webhdfs/v1" ) );
+    assertThat( UrlRewritePatternScanner.extractPrefix( "\\/solr\\/" ), is( "/solr/" ) );
+    assertThat( UrlRewritePatternScanner.extractPrefix( "https?://[^/':,]+:[\\d]+" ), is( "http" ) );
+    assertThat( UrlRewritePatternScanner.extractPrefix( "(https?://[^/':,]+:[\\d]+)?/cluster/app" ), is( "" ) );
+    assertThat( UrlRewritePatternScanner.extractPrefix( "ab|cd" ), is( "" ) );
+    assertThat( UrlRewritePatternScanner.extractPrefix( "\\x41bc" ), is( "" ) );
+    assertThat( UrlRewritePatternScanner.extractLiteral( "(https?://[^/':,]+:[\\d]+)?/cluster/app" ), is( "/cluster/app" ) );
+    assertThat( UrlRewritePatternScanner.extractLiteral( "[a-z]+://(x|y)\\.host" ), is( ".host" ) );
+    assertThat( UrlRewritePatternScanner.extractLiteral( "^[\\/]{1}$" ), nullValue() );
+    assertThat( UrlRewritePatternScanner.extractLiteral( "(?i)abc" ), nullValue() );
+    assertThat( UrlRewritePatternScanner.extractLiteral( "a\\p{L}bc" ), nullValue() );
+    assertThat( UrlRewritePatternScanner.extractLiteral( "x*(a)abcd?" ), is( "abc" ) );
+  }
+
+  @Test
+  public void testSingleSelectorMatchesRegexPass() {
+    String[] patterns = {
+        "/webhdfs/v1", "\\/solr\\/", "https?://[^/':,]+:[\\d]+", "(https?://[^/':,]+:[\\d]+)?/proxy/[^']*",
+        "(https?:)?//[^/':,]+:[\\d]+/node/containerlogs/container(_[^/':,]+)+/[^/':,]+", "^[\\/]{1}$",
+        "/jmx", "index.html", "(?i)/API/v1", "x*", "\\bapi\\b" };
+    String[] inputs = {
+        "", "/", "var url = '/webhdfs/v1' + abs_path + '?op=GET_BLOCK_LOCATIONS';",
+        "a('http://host:8088/proxy/application_1/') + 'https://other:50070/jmx' /solr/ /SOLR/",
+        "http://nm:8042/node/containerlogs/container_1_2_3/user and //nm:8042/node/containerlogs/container_1/u",
+        "/api/v1 /API/V1 index.html indexxhtml x xx api apis",
+        "http://a:1http://b:2/webhdfs/v1/webhdfs/v1" };
+    for( String pattern : patterns ) {
+      for( String input : inputs ) {
+        assertThat( pattern + " " + input, scan( input, pattern ), is( replace( input, pattern ) ) );
+      }
+    }
+  }
+
+  @Test
+  public void testFirstMatchWins() {
+    // The earliest starting match wins regardless of the selector order.
+    assertThat( scan( "see http://host:80/cluster/app/1", "/cluster/app", "(https?://[^/':,]+:[\\d]+)?/cluster/app" ),
+        is( "see r1{http://host:80/cluster/app}/1" ) );
+    // On a tie the first selector wins.
+    assertThat( scan( "/cluster/app/1", "/cluster/app", "/cluster/app/[0-9]" ), is( "r0{/cluster/app}/1" ) );
+    assertThat( scan( "/cluster/app/1", "/cluster/app/[0-9]", "/cluster/app" ), is( "r0{/cluster/app/1}" ) );
+    // Rewritten values are not matched again by later selectors.
+    assertThat( scan( "/a/b", "/a", "r0" ), is( "r0{/a}/b" ) );
+    assertThat( scan( "x/a/by/b", "/b", "/a/b" ), is( "xr1{/a/b}yr0{/b}" ) );
+  }
+
+}
@@ -115,4 +115,27 @@ public class JavaScriptFilterReaderTest {
         "}).error(network_error_handler(url));\n";
     assertThat( outputJs, is ( expectedOutputJs ) );
   }
+
+  @Test
+  public void testLineEndingsAndLongLines() throws IOException {
+    Map<String, Map<String, String>> rules = new HashMap<>();
+    Map<String, String> map = new HashMap<>();
+    map.put( "/webhdfs/v1", "https://knoxhost:8443/webhdfs/v1" );
+    rules.put( "test-rule", map );
+    StringBuilder longLine = new StringBuilder();
+    StringBuilder expectedLongLine = new StringBuilder();
+    for( int i = 0; i < 2000; i++ ) {
+      longLine.append( "f('/webhdfs/v1');" );
+      expectedLongLine.append( "f('https://knoxhost:8443/webhdfs/v1');" );
+    }
+    String inputJs = "a('/webhdfs/v1');\r\nb();\rc('/webhdfs/v1');\n" + longLine + "\n\nd('/webhdfs/v1')";
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "/webhdfs/v1", "test-rule" );
+    JavaScriptFilterReader filterReader = new MatchRuleJsFilterReader( new StringReader( inputJs ), rules, config );
+    String outputJs = new String( IOUtils.toCharArray( filterReader ) );
+    String expectedOutputJs =
+        "a('https://knoxhost:8443/webhdfs/v1');\nb();\nc('https://knoxhost:8443/webhdfs/v1');\n" +
+        expectedLongLine + "\n\nd('https://knoxhost:8443/webhdfs/v1')\n";
+    assertThat( outputJs, is( expectedOutputJs ) );
+  }
 }
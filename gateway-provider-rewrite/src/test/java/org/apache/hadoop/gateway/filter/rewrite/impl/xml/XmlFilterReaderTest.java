@@ -36,6 +36,7 @@ import org.apache.hadoop.gateway.filter.rewrite.ext.UrlRewriteCheckDescriptorExt
 import org.apache.hadoop.gateway.filter.rewrite.ext.UrlRewriteControlDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.ext.UrlRewriteMatchDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.ext.UrlRewriteMatchDescriptorExt;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterScopeDescriptorImpl;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteActionDescriptorBase;
 import org.apache.hadoop.test.TestUtils;
 import org.hamcrest.Matchers;
@@ -52,6 +53,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -982,12 +984,105 @@ public class XmlFilterReaderTest {
   }
 
 
+  @Test
+  public void testStreamedSelectorsMatchDomSelectors() throws Exception {
+    String[] inputs = {
+        TestUtils.getResourceString( this.getClass(), "properties-elements.xml", "UTF-8" ),
+        TestUtils.getResourceString( this.getClass(), "properties-attributes.xml", "UTF-8" ),
+        "<root url='http://host/1'>text<url>http://host/2</url><a><url ref='x'>http://host/3</url></a>tail</root>",
+        "<ns1:root xmlns:ns1='http://hortonworks.com/xml/ns1' url='u1'><url>u2</url><ns1:url>u3</ns1:url></ns1:root>",
+        "<root xmlns='http://hortonworks.com/xml/ns'><url>u1</url></root>",
+        "<apps><app><trackingUI>History</trackingUI><trackingUrl>u1</trackingUrl></app>" +
+            "<app><trackingUI>Other</trackingUI><trackingUrl>u2</trackingUrl><!-- c --></app></apps>" };
+    String[][] selectors = {
+        { "apply", "/properties/property/value/text()" },
+        { "apply", "/properties/property/value" },
+        { "apply", "/properties/property/@value" },
+        { "apply", "/properties/property" },
+        { "apply", "/root/url" },
+        { "apply", "/root/@url" },
+        { "apply", "//url" },
+        { "apply", "//@ref" },
+        { "apply", "/root/*/url" },
+        { "apply", "/root/text()" },
+        { "apply", "/root/node()" },
+        { "apply", "/*/@*" },
+        { "apply", "url" },
+        { "apply", "/apps" },
+        { "apply", "/root/a", "/root/url" },
+        { "buffer", "/apps/app", "trackingUI", "History", "trackingUrl" },
+        { "buffer", "/properties/property", "@name", "test-name-2", "@value" },
+        { "buffer", "/root/a", "url/@ref", "x", "url" },
+        { "scope", "/root/a", "url" },
+        { "scope", "/apps/app", "trackingUrl/text()" } };
+    for( String[] selector : selectors ) {
+      UrlRewriteRulesDescriptor rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+      UrlRewriteFilterContentDescriptor contentConfig = rulesConfig.addFilter( "filter-1" ).addContent( "text/xml" );
+      if( selector[ 0 ].equals( "apply" ) ) {
+        for( int i = 1; i < selector.length; i++ ) {
+          contentConfig.addApply( selector[ i ], "test-rule-" + i );
+        }
+      } else if( selector[ 0 ].equals( "buffer" ) ) {
+        UrlRewriteFilterBufferDescriptor bufferConfig = contentConfig.addBuffer( selector[ 1 ] );
+        bufferConfig.addDetect( selector[ 2 ], selector[ 3 ] ).addApply( selector[ 4 ], "test-rule" );
+      } else {
+        UrlRewriteFilterScopeDescriptorImpl scopeConfig = new UrlRewriteFilterScopeDescriptorImpl();
+        scopeConfig.path( selector[ 1 ] );
+        scopeConfig.addApply( selector[ 2 ], "test-rule" );
+        contentConfig.addSelector( scopeConfig );
+      }
+      for( String input : inputs ) {
+        String expected = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig, false ) );
+        String actual = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig, true ) );
+        assertThat( Arrays.toString( selector ) + " " + input, actual, is( expected ) );
+      }
+    }
+  }
+
+  @Test
+  public void testStreamedApplyWithAttributePredicate() throws Exception {
+    String input = "<root><url type='a'>u1</url><url type='b'>u2</url><url>u3</url><link href='u4'/></root>";
+
+    UrlRewriteRulesDescriptor rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+    UrlRewriteFilterContentDescriptor contentConfig = rulesConfig.addFilter( "filter-1" ).addContent( "text/xml" );
+    contentConfig.addApply( "/root/url[@type='b']/text()", "test-rule-1" );
+    contentConfig.addApply( "/root/url[ @type ]/text()", "test-rule-2" );
+    contentConfig.addApply( "//link/@href", "test-rule-3" );
+
+    String output = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig ) );
+
+    assertThat( the( output ), hasXPath( "/root/url[1]/text()", equalTo( "text:test-rule-2{u1}" ) ) );
+    assertThat( the( output ), hasXPath( "/root/url[2]/text()", equalTo( "text:test-rule-1{u2}" ) ) );
+    assertThat( the( output ), hasXPath( "/root/url[3]/text()", equalTo( "u3" ) ) );
+    assertThat( the( output ), hasXPath( "/root/link/@href", equalTo( "attr:test-rule-3{u4}" ) ) );
+  }
+
+  @Test
+  public void testStreamPathCompiler() {
+    String[] supported = {
+        "/root", "//root", "root", "/root/*/child", "/root//@attr", "@attr", "/root/text()", "/root/node()",
+        "/root/child[@a]", "/root/child[@a='v'][@b=\"w\"]/@*", "/ro-ot/ch.ild_1" };
+    for( String path : supported ) {
+      assertThat( path, XmlStreamPath.compile( path ), notNullValue() );
+    }
+    String[] unsupported = {
+        "", "/", "/root/", ".", "..", "/root/..", "/ns:root", "$.url", "/root/child[1]", "/root/child[name='x']",
+        "/root/text()/child", "/root/@a/b", "child::root", "/root/child[@a=v]", "count(/root)", "/root | /other" };
+    for( String path : unsupported ) {
+      assertThat( path, XmlStreamPath.compile( path ), nullValue() );
+    }
+  }
+
   private class TestXmlFilterReader extends XmlFilterReader {
 
     protected TestXmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor contentConfig ) throws IOException, ParserConfigurationException, XMLStreamException {
       super( reader, contentConfig );
     }
 
+    protected TestXmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor contentConfig, boolean streaming ) throws IOException, ParserConfigurationException, XMLStreamException {
+      super( reader, contentConfig, streaming );
+    }
+
     @Override
     protected String filterAttribute( QName elementName, QName attributeName, String attributeValue, String ruleName ) {
       return "attr:" + ruleName + "{" + attributeValue + "}";
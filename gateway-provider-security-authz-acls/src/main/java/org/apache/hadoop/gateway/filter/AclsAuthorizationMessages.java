@@ -42,25 +42,4 @@ public interface AclsAuthorizationMessages {
 
   @Message( level = MessageLevel.INFO, text = "Access Granted: {0}" )
   void accessGranted(boolean accessGranted);
-
-  @Message( level = MessageLevel.DEBUG, text = "PrimaryPrincipal: {0}" )
-  void primaryPrincipal(String name);
-
-  @Message( level = MessageLevel.DEBUG, text = "ImpersonatedPrincipal: {0}" )
-  void impersonatedPrincipal(String name);
-
-  @Message( level = MessageLevel.DEBUG, text = "ImpersonatedPrincipal has access: {0}" )
-  void impersonatedPrincipalHasAccess(boolean userAccess);
-
-  @Message( level = MessageLevel.DEBUG, text = "PrimaryPrincipal has access: {0}" )
-  void primaryPrincipalHasAccess(boolean userAccess);
-
-  @Message( level = MessageLevel.DEBUG, text = "GroupPrincipal has access: {0}" )
-  void groupPrincipalHasAccess(boolean groupAccess);
-
-  @Message( level = MessageLevel.DEBUG, text = "Remote IP Address: {0}" )
-  void remoteIPAddress(String remoteAddr);
-
-  @Message( level = MessageLevel.DEBUG, text = "Remote IP Address has access: {0}" )
-  void remoteIPAddressHasAccess(boolean remoteIpAccess);
 }
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+
+import org.apache.hadoop.gateway.security.GroupPrincipal;
+import org.apache.hadoop.gateway.security.ImpersonatedPrincipal;
+import org.apache.hadoop.gateway.security.PrimaryPrincipal;
+import org.apache.hadoop.gateway.util.IpAddressValidator;
+
+/**
+ * The ACLs of a resource compiled for evaluation on every request.
+ * <p/>
+ * User and group names are held in hash sets and addresses in the prefix tries of an
+ * {@link IpAddressValidator}. The processing mode is resolved when the ACLs are compiled
+ * into whether each of the user, group and address checks always passes, always fails or
+ * needs a lookup. A decision therefore costs a single pass over the principals of the
+ * Subject, independent of the number of users, groups and addresses in the ACLs.
+ */
+class CompiledAcls {
+
+  private enum Check { ALLOW, DENY, LOOKUP }
+
+  private final boolean unrestricted;
+  private final boolean orMode;
+  private final boolean validMode;
+  private final Check userCheck;
+  private final Check groupCheck;
+  private final Check addressCheck;
+  private final Set<String> users;
+  private final Set<String> groups;
+  private final IpAddressValidator ipv;
+
+  CompiledAcls(AclParser parser, String aclProcessingMode) {
+    // no acls defined means that there are no restrictions
+    unrestricted = parser.users.isEmpty() && parser.groups.isEmpty() && parser.ipv.getIPAddresses().isEmpty();
+    orMode = "OR".equals(aclProcessingMode);
+    validMode = orMode || "AND".equals(aclProcessingMode);
+    users = Collections.unmodifiableSet(new HashSet<String>(parser.users));
+    groups = Collections.unmodifiableSet(new HashSet<String>(parser.groups));
+    ipv = parser.ipv;
+    // '*' is interpreted as excluded for OR semantics so that it does not
+    // grant access to everyone by mistake
+    Check any = orMode ? Check.DENY : Check.ALLOW;
+    userCheck = parser.anyUser ? any : Check.LOOKUP;
+    groupCheck = parser.anyGroup ? any : Check.LOOKUP;
+    addressCheck = ipv.allowsAnyIP() ? any : Check.LOOKUP;
+  }
+
+  /**
+   * @param subject the Subject of the request, whose impersonated principal takes precedence over the primary one.
+   * @param remoteAddr the address of the client.
+   * @return whether access is granted.
+   */
+  boolean isAllowed(Subject subject, String remoteAddr) {
+    if (unrestricted) {
+      return true;
+    }
+    if (!validMode) {
+      return false;
+    }
+    String primaryUser = null;
+    String impersonatedUser = null;
+    boolean groupMatched = false;
+    for (Principal principal : subject.getPrincipals()) {
+      if (principal instanceof ImpersonatedPrincipal) {
+        impersonatedUser = principal.getName();
+      } else if (principal instanceof PrimaryPrincipal) {
+        primaryUser = principal.getName();
+      } else if (principal instanceof GroupPrincipal && !groupMatched && groupCheck == Check.LOOKUP) {
+        groupMatched = groups.contains(principal.getName());
+      }
+    }
+    String user = impersonatedUser != null ? impersonatedUser : primaryUser;
+
+    boolean userAccess = user != null && evaluate(userCheck, userCheck == Check.LOOKUP && users.contains(user));
+    boolean groupAccess = evaluate(groupCheck, groupMatched);
+    if (orMode ? userAccess || groupAccess : !(userAccess && groupAccess)) {
+      return orMode;
+    }
+    return remoteAddr != null && evaluate(addressCheck, addressCheck == Check.LOOKUP && ipv.validateIpAddress(remoteAddr));
+  }
+
+  private static boolean evaluate(Check check, boolean lookup) {
+    switch (check) {
+      case ALLOW:
+        return true;
+      case DENY:
+        return false;
+      default:
+        return lookup;
+    }
+  }
+
+}
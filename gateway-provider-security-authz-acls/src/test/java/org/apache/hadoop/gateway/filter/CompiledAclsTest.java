@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.security.auth.Subject;
+
+import org.apache.hadoop.gateway.security.GroupPrincipal;
+import org.apache.hadoop.gateway.security.ImpersonatedPrincipal;
+import org.apache.hadoop.gateway.security.PrimaryPrincipal;
+import org.junit.Test;
+
+public class CompiledAclsTest {
+
+  private static CompiledAcls compile(String acls, String mode) throws Exception {
+    AclParser parser = new AclParser();
+    parser.parseAcls("test", acls);
+    return new CompiledAcls(parser, mode);
+  }
+
+  private static Subject subject(String user, String impersonated, String... groups) {
+    Subject subject = new Subject();
+    subject.getPrincipals().add(new PrimaryPrincipal(user));
+    if (impersonated != null) {
+      subject.getPrincipals().add(new ImpersonatedPrincipal(impersonated));
+    }
+    for (String group : groups) {
+      subject.getPrincipals().add(new GroupPrincipal(group));
+    }
+    return subject;
+  }
+
+  @Test
+  public void testNoAcls() throws Exception {
+    CompiledAcls acls = compile(null, "AND");
+    assertTrue(acls.isAllowed(subject("guest", null), null));
+  }
+
+  @Test
+  public void testAndMode() throws Exception {
+    CompiledAcls acls = compile("guest,admin;users;10.0.0.0/8", "AND");
+    assertTrue(acls.isAllowed(subject("guest", null, "users"), "10.1.2.3"));
+    assertFalse(acls.isAllowed(subject("guest", null, "users"), "11.1.2.3"));
+    assertFalse(acls.isAllowed(subject("guest", null, "others"), "10.1.2.3"));
+    assertFalse(acls.isAllowed(subject("guest", null), "10.1.2.3"));
+    assertFalse(acls.isAllowed(subject("bob", null, "users"), "10.1.2.3"));
+    // The impersonated principal takes precedence
+    assertTrue(acls.isAllowed(subject("bob", "admin", "users"), "10.1.2.3"));
+    assertFalse(acls.isAllowed(subject("guest", "bob", "users"), "10.1.2.3"));
+    assertFalse(acls.isAllowed(subject("guest", null, "users"), null));
+
+    acls = compile("*;*;127.0.0.*", "AND");
+    // Any group passes even for a subject without groups
+    assertTrue(acls.isAllowed(subject("guest", null), "127.0.0.1"));
+    assertFalse(acls.isAllowed(subject("guest", null), "127.0.1.1"));
+
+    acls = compile("guest;*;*", "AND");
+    assertTrue(acls.isAllowed(subject("guest", null), "127.0.0.1"));
+    assertFalse(acls.isAllowed(subject("guest", null), null));
+  }
+
+  @Test
+  public void testOrMode() throws Exception {
+    CompiledAcls acls = compile("guest;users;10.0.0.0/8", "OR");
+    assertTrue(acls.isAllowed(subject("guest", null), "11.1.2.3"));
+    assertTrue(acls.isAllowed(subject("bob", null, "others", "users"), "11.1.2.3"));
+    assertTrue(acls.isAllowed(subject("bob", null), "10.1.2.3"));
+    assertFalse(acls.isAllowed(subject("bob", null, "others"), "11.1.2.3"));
+    assertFalse(acls.isAllowed(subject("bob", null), null));
+
+    // '*' is excluded in OR mode
+    acls = compile("*;*;127.0.0.1", "OR");
+    assertFalse(acls.isAllowed(subject("guest", null, "users"), "10.1.2.3"));
+    assertTrue(acls.isAllowed(subject("guest", null, "users"), "127.0.0.1"));
+  }
+
+  @Test
+  public void testInvalidMode() throws Exception {
+    CompiledAcls acls = compile("*;*;*", "XOR");
+    assertFalse(acls.isAllowed(subject("guest", null, "users"), "127.0.0.1"));
+  }
+
+  @Test
+  public void testLargeAcls() throws Exception {
+    StringBuilder users = new StringBuilder("user0");
+    StringBuilder groups = new StringBuilder("group0");
+    for (int i = 1; i < 5000; i++) {
+      users.append(",user").append(i);
+      groups.append(",group").append(i);
+    }
+    CompiledAcls acls = compile(users + ";" + groups + ";*", "AND");
+    assertTrue(acls.isAllowed(subject("user4999", null, "other", "group2500"), "127.0.0.1"));
+    assertFalse(acls.isAllowed(subject("user5000", null, "group2500"), "127.0.0.1"));
+    assertFalse(acls.isAllowed(subject("user42", null, "group5000"), "127.0.0.1"));
+  }
+
+}
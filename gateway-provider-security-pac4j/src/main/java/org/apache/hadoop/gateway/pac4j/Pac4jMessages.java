@@ -47,4 +47,10 @@ public interface Pac4jMessages {
   @Message( level = MessageLevel.INFO, text = 
       "No private key passphrase alias found. Defaulting to master. Exception encountered: {0}")
   public void noPrivateKeyPasshraseProvisioned(Exception e);
+
+  @Message( level = MessageLevel.WARN, text = "Unable to persist pac4j session: {0}")
+  public void unableToPersistSession(Exception e);
+
+  @Message( level = MessageLevel.WARN, text = "Unable to load persisted pac4j session: {0}")
+  public void unableToLoadSession(Exception e);
 }
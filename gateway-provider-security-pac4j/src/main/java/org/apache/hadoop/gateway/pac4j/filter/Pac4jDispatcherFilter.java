@@ -19,6 +19,7 @@ package org.apache.hadoop.gateway.pac4j.filter;
 
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.pac4j.Pac4jMessages;
+import org.apache.hadoop.gateway.pac4j.session.KnoxServerSessionStore;
 import org.apache.hadoop.gateway.pac4j.session.KnoxSessionStore;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.security.KeystoreService;
@@ -29,6 +30,7 @@ import org.apache.hadoop.gateway.services.security.CryptoService;
 import org.pac4j.config.client.PropertiesConfigFactory;
 import org.pac4j.core.client.Client;
 import org.pac4j.core.config.Config;
+import org.pac4j.core.context.session.SessionStore;
 import org.pac4j.core.util.CommonHelper;
 import org.pac4j.http.client.indirect.IndirectBasicAuthClient;
 import org.pac4j.http.credentials.authenticator.test.SimpleTestUsernamePasswordAuthenticator;
@@ -38,6 +40,7 @@ import org.pac4j.j2e.filter.SecurityFilter;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -53,6 +56,10 @@ import java.util.Map;
  * </ul>
  * <p>It uses the {@link KnoxSessionStore} to manage session data. The generated cookies are defined on a domain name
  * which can be configured via the domain suffix parameter: <code>pac4j.cookie.domain.suffix</code>.</p>
+ * <p>Setting <code>pac4j.session.store</code> to <code>server</code> uses the {@link KnoxServerSessionStore} instead,
+ * which keeps session data on the gateway and only sends a signed session id cookie. It is configured by the
+ * parameters <code>pac4j.session.store.max.sessions</code>, <code>pac4j.session.store.timeout</code> (in milliseconds)
+ * and <code>pac4j.session.store.dir</code>, the optional directory where sessions are persisted.</p>
  * <p>The callback url must be defined to the current protected url (KnoxSSO service for example) via the parameter: <code>pac4j.callbackUrl</code>.</p>
  *
  * @since 0.8.0
@@ -71,6 +78,20 @@ public class Pac4jDispatcherFilter implements Filter {
 
   private static final String PAC4J_CONFIG = "pac4j.config";
 
+  public static final String PAC4J_SESSION_STORE = "pac4j.session.store";
+
+  public static final String PAC4J_SESSION_STORE_SERVER = "server";
+
+  public static final String PAC4J_SESSION_STORE_MAX_SESSIONS = "pac4j.session.store.max.sessions";
+
+  public static final String PAC4J_SESSION_STORE_TIMEOUT = "pac4j.session.store.timeout";
+
+  public static final String PAC4J_SESSION_STORE_DIR = "pac4j.session.store.dir";
+
+  private static final int DEFAULT_MAX_SESSIONS = 10000;
+
+  private static final long DEFAULT_SESSION_TIMEOUT = 30 * 60 * 1000L;
+
   private CallbackFilter callbackFilter;
 
   private SecurityFilter securityFilter;
@@ -159,7 +180,38 @@ public class Pac4jDispatcherFilter implements Filter {
     securityFilter.setConfigOnly(config);
 
     final String domainSuffix = filterConfig.getInitParameter(PAC4J_COOKIE_DOMAIN_SUFFIX_PARAM);
-    config.setSessionStore(new KnoxSessionStore(cryptoService, clusterName, domainSuffix));
+    config.setSessionStore(createSessionStore(filterConfig, cryptoService, clusterName, domainSuffix));
+  }
+
+  private SessionStore createSessionStore(FilterConfig filterConfig, CryptoService cryptoService, String clusterName,
+                                          String domainSuffix) throws ServletException {
+    if (!PAC4J_SESSION_STORE_SERVER.equalsIgnoreCase(filterConfig.getInitParameter(PAC4J_SESSION_STORE))) {
+      return new KnoxSessionStore(cryptoService, clusterName, domainSuffix);
+    }
+    char[] password;
+    try {
+      password = aliasService.getPasswordFromAliasForCluster(clusterName, KnoxSessionStore.PAC4J_PASSWORD);
+    } catch (AliasServiceException e) {
+      log.unableToGenerateAPasswordForEncryption(e);
+      throw new ServletException("Unable to generate a password for encryption.");
+    }
+    int maxSessions = DEFAULT_MAX_SESSIONS;
+    long timeout = DEFAULT_SESSION_TIMEOUT;
+    try {
+      String value = filterConfig.getInitParameter(PAC4J_SESSION_STORE_MAX_SESSIONS);
+      if (value != null) {
+        maxSessions = Integer.parseInt(value.trim());
+      }
+      value = filterConfig.getInitParameter(PAC4J_SESSION_STORE_TIMEOUT);
+      if (value != null) {
+        timeout = Long.parseLong(value.trim());
+      }
+    } catch (NumberFormatException e) {
+      throw new ServletException("Invalid pac4j session store configuration.", e);
+    }
+    String directory = filterConfig.getInitParameter(PAC4J_SESSION_STORE_DIR);
+    return new KnoxServerSessionStore(cryptoService, clusterName, domainSuffix, password, maxSessions, timeout,
+        directory == null ? null : new File(directory));
   }
 
   private void addDefaultConfig(String clientNameParameter, Map<String, String> properties) {
@@ -0,0 +1,373 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.pac4j.session;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.pac4j.Pac4jMessages;
+import org.apache.hadoop.gateway.services.security.CryptoService;
+import org.apache.hadoop.gateway.services.security.EncryptionResult;
+import org.apache.hadoop.gateway.util.Urls;
+import org.pac4j.core.context.ContextHelper;
+import org.pac4j.core.context.Cookie;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.context.session.SessionStore;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.util.JavaSerializationHelper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session store where data are kept on the server and referenced by a single cookie.
+ * The cookie holds a random session id and its HMAC, so a request costs one HMAC check rather
+ * than the decryption of a cookie per attribute as with the {@link KnoxSessionStore}.
+ * <p>
+ * Sessions are held in memory, bounded in number and expired after a period of inactivity.
+ * If a directory is configured they are also written to it encrypted, so that they survive
+ * a restart. Since sessions are local to the gateway instance, requests of a login flow must
+ * reach the same instance when more than one is deployed.
+ */
+public class KnoxServerSessionStore implements SessionStore {
+
+    private static final Pac4jMessages log = MessagesFactory.get(Pac4jMessages.class);
+
+    public static final String PAC4J_SESSION_ID = "pac4j.session.id";
+
+    private static final String SESSION_ID_ATTRIBUTE = KnoxServerSessionStore.class.getName() + ".id";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final String SESSION_FILE_SUFFIX = ".session";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final JavaSerializationHelper javaSerializationHelper = new JavaSerializationHelper();
+
+    private final CryptoService cryptoService;
+
+    private final String clusterName;
+
+    private final String domainSuffix;
+
+    private final long timeout;
+
+    private final File directory;
+
+    private final ThreadLocal<Mac> macs;
+
+    private final Map<String, Session> sessions;
+
+    /**
+     * @param password the secret the session ids are signed with.
+     * @param maxSessions the maximum number of sessions kept in memory.
+     * @param timeout the time in milliseconds after which an idle session expires.
+     * @param directory the directory sessions are persisted to, or null to keep them in memory only.
+     */
+    public KnoxServerSessionStore(final CryptoService cryptoService, final String clusterName, final String domainSuffix,
+                                  final char[] password, final int maxSessions, final long timeout, final File directory) {
+        this.cryptoService = cryptoService;
+        this.clusterName = clusterName;
+        this.domainSuffix = domainSuffix;
+        this.timeout = timeout;
+        this.directory = directory;
+        final SecretKeySpec key;
+        try {
+            key = new SecretKeySpec(MessageDigest.getInstance("SHA-256")
+                .digest(new String(password).getBytes(StandardCharsets.UTF_8)), HMAC_ALGORITHM);
+        } catch (final GeneralSecurityException e) {
+            throw new TechnicalException(e);
+        }
+        this.macs = new ThreadLocal<Mac>() {
+            @Override
+            protected Mac initialValue() {
+                try {
+                    final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                    mac.init(key);
+                    return mac;
+                } catch (final GeneralSecurityException e) {
+                    throw new TechnicalException(e);
+                }
+            }
+        };
+        this.sessions = Collections.synchronizedMap(new LinkedHashMap<String, Session>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Session> eldest) {
+                if (size() > maxSessions) {
+                    deleteSessionFile(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        });
+        if (directory != null) {
+            directory.mkdirs();
+            removeExpiredSessionFiles();
+        }
+    }
+
+    @Override
+    public String getOrCreateSessionId(final WebContext context) {
+        return getSessionId(context, true);
+    }
+
+    @Override
+    public Object get(final WebContext context, final String key) {
+        final String id = getSessionId(context, false);
+        if (id != null) {
+            final Session session = getSession(id);
+            if (session != null) {
+                return session.attributes.get(key);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void set(final WebContext context, final String key, final Object value) {
+        final boolean remove = value == null || value.equals("")
+            || (value instanceof Map<?,?> && ((Map<?,?>)value).isEmpty());
+        String id = getSessionId(context, !remove);
+        if (id == null) {
+            return;
+        }
+        Session session = getSession(id);
+        if (session == null) {
+            if (remove) {
+                return;
+            }
+            // the session expired in the meantime, so start over
+            context.setRequestAttribute(SESSION_ID_ATTRIBUTE, null);
+            id = getSessionId(context, true);
+            session = getSession(id);
+        }
+        if (remove) {
+            session.attributes.remove(key);
+        } else {
+            session.attributes.put(key, value);
+        }
+        persist(id, session);
+    }
+
+    @Override
+    public boolean destroySession(final WebContext context) {
+        final String id = getSessionId(context, false);
+        if (id != null) {
+            sessions.remove(id);
+            deleteSessionFile(id);
+            context.setRequestAttribute(SESSION_ID_ATTRIBUTE, null);
+            addCookie(context, null);
+        }
+        return true;
+    }
+
+    @Override
+    public Object getTrackableSession(final WebContext context) {
+        return null;
+    }
+
+    @Override
+    public SessionStore buildFromTrackableSession(final WebContext context, final Object trackableSession) {
+        return null;
+    }
+
+    @Override
+    public boolean renewSession(final WebContext context) {
+        final String id = getSessionId(context, false);
+        final Session session = id == null ? null : getSession(id);
+        if (session != null) {
+            sessions.remove(id);
+            deleteSessionFile(id);
+            context.setRequestAttribute(SESSION_ID_ATTRIBUTE, null);
+            final String renewed = getSessionId(context, true);
+            final Session target = getSession(renewed);
+            target.attributes.putAll(session.attributes);
+            persist(renewed, target);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of sessions held in memory.
+     */
+    int getSessionCount() {
+        return sessions.size();
+    }
+
+    private String getSessionId(final WebContext context, final boolean create) {
+        String id = (String) context.getRequestAttribute(SESSION_ID_ATTRIBUTE);
+        if (id == null) {
+            final Cookie cookie = ContextHelper.getCookie(context, PAC4J_SESSION_ID);
+            if (cookie != null) {
+                id = verify(cookie.getValue());
+            }
+            if (id != null && getSession(id) == null) {
+                id = null;
+            }
+            if (id == null && create) {
+                final byte[] bytes = new byte[16];
+                RANDOM.nextBytes(bytes);
+                id = Base64.encodeBase64URLSafeString(bytes);
+                sessions.put(id, new Session());
+                addCookie(context, id + "." + sign(id));
+            }
+            if (id != null) {
+                context.setRequestAttribute(SESSION_ID_ATTRIBUTE, id);
+            }
+        }
+        return id;
+    }
+
+    private Session getSession(final String id) {
+        Session session = sessions.get(id);
+        if (session == null && directory != null) {
+            session = load(id);
+            if (session != null) {
+                sessions.put(id, session);
+            }
+        }
+        if (session != null) {
+            final long now = System.currentTimeMillis();
+            if (now - session.lastAccessed > timeout) {
+                sessions.remove(id);
+                deleteSessionFile(id);
+                return null;
+            }
+            session.lastAccessed = now;
+        }
+        return session;
+    }
+
+    private String sign(final String id) {
+        return Base64.encodeBase64URLSafeString(macs.get().doFinal(id.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String verify(final String value) {
+        if (value != null) {
+            final int index = value.indexOf('.');
+            if (index > 0) {
+                final String id = value.substring(0, index);
+                final byte[] signature = value.substring(index + 1).getBytes(StandardCharsets.UTF_8);
+                if (MessageDigest.isEqual(sign(id).getBytes(StandardCharsets.UTF_8), signature)) {
+                    return id;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addCookie(final WebContext context, final String value) {
+        final Cookie cookie = new Cookie(PAC4J_SESSION_ID, value);
+        try {
+            String domain = Urls.getDomainName(context.getFullRequestURL(), this.domainSuffix);
+            if (domain == null) {
+                domain = context.getServerName();
+            }
+            cookie.setDomain(domain);
+        } catch (final Exception e) {
+            throw new TechnicalException(e);
+        }
+        if (value == null) {
+            cookie.setMaxAge(0);
+        }
+        cookie.setHttpOnly(true);
+        cookie.setSecure(ContextHelper.isHttpsOrSecure(context));
+        context.addResponseCookie(cookie);
+    }
+
+    private void persist(final String id, final Session session) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            final byte[] bytes = javaSerializationHelper.serializeToBytes(new HashMap<String, Object>(session.attributes));
+            final EncryptionResult result = cryptoService.encryptForCluster(clusterName, KnoxSessionStore.PAC4J_PASSWORD, bytes);
+            final File file = getSessionFile(id);
+            final File temp = new File(directory, id + ".tmp");
+            Files.write(temp.toPath(), result.toByteAray());
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            log.unableToPersistSession(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Session load(final String id) {
+        final File file = getSessionFile(id);
+        if (!file.isFile() || System.currentTimeMillis() - file.lastModified() > timeout) {
+            return null;
+        }
+        try {
+            final EncryptionResult result = EncryptionResult.fromByteArray(Files.readAllBytes(file.toPath()));
+            final byte[] clear = cryptoService.decryptForCluster(clusterName, KnoxSessionStore.PAC4J_PASSWORD,
+                result.cipher, result.iv, result.salt);
+            if (clear != null) {
+                final Serializable attributes = javaSerializationHelper.unserializeFromBytes(clear);
+                if (attributes instanceof Map) {
+                    final Session session = new Session();
+                    session.attributes.putAll((Map<String, Object>) attributes);
+                    return session;
+                }
+            }
+        } catch (final Exception e) {
+            log.unableToLoadSession(e);
+        }
+        return null;
+    }
+
+    private File getSessionFile(final String id) {
+        return new File(directory, id + SESSION_FILE_SUFFIX);
+    }
+
+    private void deleteSessionFile(final String id) {
+        if (directory != null) {
+            getSessionFile(id).delete();
+        }
+    }
+
+    private void removeExpiredSessionFiles() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            final long now = System.currentTimeMillis();
+            for (final File file : files) {
+                if (file.getName().endsWith(SESSION_FILE_SUFFIX) && now - file.lastModified() > timeout) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static class Session {
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private volatile long lastAccessed = System.currentTimeMillis();
+    }
+}
@@ -52,7 +52,7 @@ import org.apache.hadoop.gateway.security.PrimaryPrincipal;
 public abstract class AbstractPreAuthFederationFilter implements Filter {
 
   private List<PreAuthValidator> validators = null;
-  private FilterConfig filterConfig;
+  private PreAuthValidatorChain validatorChain = null;
   private static AuditService auditService = AuditServiceFactory.getAuditService();
   private static Auditor auditor = auditService.getAuditor(
       AuditConstants.DEFAULT_AUDITOR_NAME, AuditConstants.KNOX_SERVICE_NAME,
@@ -67,8 +67,8 @@ public abstract class AbstractPreAuthFederationFilter implements Filter {
 
   @Override
   public void init(FilterConfig filterConfig) throws ServletException {
-    this.filterConfig = filterConfig;
     validators = PreAuthService.getValidators(filterConfig);
+    validatorChain = PreAuthService.compile(filterConfig, validators);
   }
 
   @VisibleForTesting
@@ -82,7 +82,7 @@ public abstract class AbstractPreAuthFederationFilter implements Filter {
     HttpServletRequest httpRequest = (HttpServletRequest)request;
     String principal = getPrimaryPrincipal(httpRequest);
     if (principal != null) {
-      if (PreAuthService.validate(httpRequest, filterConfig, validators)) {
+      if (validatorChain.validate(httpRequest)) {
         Subject subject = new Subject();
         subject.getPrincipals().add(new PrimaryPrincipal(principal));
         addGroupPrincipals(httpRequest, subject.getPrincipals());
@@ -53,4 +53,9 @@ public class DefaultValidator implements PreAuthValidator {
   public String getName() {
     return DEFAULT_VALIDATION_METHOD_VALUE;
   }
+
+  @Override
+  public PreAuthValidator compile(FilterConfig filterConfig) {
+    return null;
+  }
 }
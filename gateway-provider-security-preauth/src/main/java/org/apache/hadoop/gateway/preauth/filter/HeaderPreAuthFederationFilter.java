@@ -62,9 +62,26 @@ public class HeaderPreAuthFederationFilter extends AbstractPreAuthFederationFilt
     if (groupHeaderName != null) {
       String headers = request.getHeader(groupHeaderName);
       if (headers != null) {
-        String[] groups = headers.split(",");
-        for (int i = 0; i < groups.length; i++) {
-          principals.add(new GroupPrincipal(groups[i]));
+        // Scan the comma separated list in place, copying only the trimmed group names
+        int length = headers.length();
+        int start = 0;
+        while (start < length) {
+          int end = headers.indexOf(',', start);
+          if (end < 0) {
+            end = length;
+          }
+          int first = start;
+          int last = end;
+          while (first < last && headers.charAt(first) <= ' ') {
+            first++;
+          }
+          while (last > first && headers.charAt(last - 1) <= ' ') {
+            last--;
+          }
+          if (first < last) {
+            principals.add(new GroupPrincipal(headers.substring(first, last)));
+          }
+          start = end + 1;
         }
       }
     }
@@ -22,6 +22,9 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.hadoop.gateway.util.IpAddressValidator;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  *
  */
@@ -29,6 +32,11 @@ public class IPValidator implements PreAuthValidator {
   public static final String IP_ADDRESSES_PARAM = "preauth.ip.addresses";
   public static final String IP_VALIDATION_METHOD_VALUE = "preauth.ip.validation";
 
+  private static final IpAddressValidator ANY_IP = new IpAddressValidator(null);
+
+  // Validators are shared by every filter so the compiled address lists are keyed by their configuration.
+  private final ConcurrentMap<String, IpAddressValidator> compiled = new ConcurrentHashMap<>();
+
   public IPValidator() {
   }
 
@@ -42,8 +50,22 @@ public class IPValidator implements PreAuthValidator {
   public boolean validate(HttpServletRequest httpRequest, FilterConfig filterConfig)
       throws PreAuthValidationException {
     String ipParam = filterConfig.getInitParameter(IP_ADDRESSES_PARAM);
-    IpAddressValidator ipv = new IpAddressValidator(ipParam);
-    return ipv.validateIpAddress(httpRequest.getRemoteAddr());
+    return getIpAddressValidator(ipParam).validateIpAddress(httpRequest.getRemoteAddr());
+  }
+
+  private IpAddressValidator getIpAddressValidator(String ipParam) {
+    if (ipParam == null) {
+      return ANY_IP;
+    }
+    IpAddressValidator ipv = compiled.get(ipParam);
+    if (ipv == null) {
+      ipv = new IpAddressValidator(ipParam);
+      IpAddressValidator existing = compiled.putIfAbsent(ipParam, ipv);
+      if (existing != null) {
+        ipv = existing;
+      }
+    }
+    return ipv;
   }
 
   /**
@@ -55,4 +77,30 @@ public class IPValidator implements PreAuthValidator {
   public String getName() {
     return IP_VALIDATION_METHOD_VALUE;
   }
+
+  @Override
+  public PreAuthValidator compile(FilterConfig filterConfig) {
+    return new CompiledIPValidator(getIpAddressValidator(filterConfig.getInitParameter(IP_ADDRESSES_PARAM)));
+  }
+
+  /**
+   * Validates against the addresses of a single filter's configuration.
+   */
+  private static class CompiledIPValidator implements PreAuthValidator {
+    private final IpAddressValidator ipv;
+
+    CompiledIPValidator(IpAddressValidator ipv) {
+      this.ipv = ipv;
+    }
+
+    @Override
+    public boolean validate(HttpServletRequest httpRequest, FilterConfig filterConfig) {
+      return ipv.validateIpAddress(httpRequest.getRemoteAddr());
+    }
+
+    @Override
+    public String getName() {
+      return IP_VALIDATION_METHOD_VALUE;
+    }
+  }
 }
\ No newline at end of file
@@ -22,7 +22,6 @@ import java.security.AccessController;
 import java.security.Principal;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
-import java.util.List;
 
 import javax.security.auth.Subject;
 import javax.servlet.Filter;
@@ -38,8 +37,7 @@ import org.apache.hadoop.gateway.security.PrimaryPrincipal;
 
 public class PreAuthFederationFilter implements Filter {
   private static final String CUSTOM_HEADER_PARAM = "preauth.customHeader";
-  private List<PreAuthValidator> validators = null;
-  private FilterConfig filterConfig;
+  private PreAuthValidatorChain validatorChain = null;
   private String headerName = "SM_USER";
 
   @Override
@@ -48,8 +46,7 @@ public class PreAuthFederationFilter implements Filter {
     if (customHeader != null) {
       headerName = customHeader;
     }
-    this.filterConfig = filterConfig;
-    validators = PreAuthService.getValidators(filterConfig);
+    validatorChain = PreAuthService.compile(filterConfig, PreAuthService.getValidators(filterConfig));
   }
 
   @Override
@@ -57,7 +54,7 @@ public class PreAuthFederationFilter implements Filter {
                        FilterChain chain) throws IOException, ServletException {
     HttpServletRequest httpRequest = (HttpServletRequest) request;
     if (httpRequest.getHeader(headerName) != null) {
-      if (PreAuthService.validate(httpRequest, filterConfig, validators)) {
+      if (validatorChain.validate(httpRequest)) {
         // TODO: continue as subject
         chain.doFilter(request, response);
       } else {
@@ -87,6 +87,26 @@ public class PreAuthService {
     return vList;
   }
 
+  /**
+   * Compiles the validators for the requests of a single filter.
+   *
+   * @param filterConfig
+   * @param validators the validators as returned by {@link #getValidators(FilterConfig)}
+   * @return PreAuthValidatorChain
+   * @throws ServletException
+   */
+  public static PreAuthValidatorChain compile(FilterConfig filterConfig, List<PreAuthValidator> validators)
+      throws ServletException {
+    List<PreAuthValidator> compiled = new ArrayList<>(validators.size());
+    for (PreAuthValidator validator : validators) {
+      PreAuthValidator c = validator.compile(filterConfig);
+      if (c != null) {
+        compiled.add(c);
+      }
+    }
+    return new PreAuthValidatorChain(filterConfig, compiled);
+  }
+
   public static boolean validate(HttpServletRequest httpRequest, FilterConfig filterConfig, List<PreAuthValidator>
       validators) {
     try {
@@ -18,6 +18,7 @@
 package org.apache.hadoop.gateway.preauth.filter;
 
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 
 /**
@@ -39,4 +40,16 @@ public interface PreAuthValidator {
    * @return name of validator
    */
   public abstract String getName();
+
+  /**
+   * Prepares this validator for the requests of a single filter, so that the filter configuration is read once
+   * rather than on every request.
+   *
+   * @param filterConfig
+   * @return the validator to run for each request, or null if every request is valid with this configuration
+   * @throws ServletException if the configuration is invalid
+   */
+  default PreAuthValidator compile(FilterConfig filterConfig) throws ServletException {
+    return this;
+  }
 }
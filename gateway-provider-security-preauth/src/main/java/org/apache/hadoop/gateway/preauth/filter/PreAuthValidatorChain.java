@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.preauth.filter;
+
+import java.util.List;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.http.HttpServletRequest;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * The validators of a filter, compiled once when the filter is initialized and run in order for each request.
+ * A request is valid only if every validator accepts it.
+ * @since 1.0
+ */
+public class PreAuthValidatorChain {
+
+  private final FilterConfig filterConfig;
+  private final PreAuthValidator[] validators;
+
+  PreAuthValidatorChain(FilterConfig filterConfig, List<PreAuthValidator> validators) {
+    this.filterConfig = filterConfig;
+    this.validators = validators.toArray(new PreAuthValidator[validators.size()]);
+  }
+
+  /**
+   * @param httpRequest
+   * @return true if validated, otherwise false
+   */
+  public boolean validate(HttpServletRequest httpRequest) {
+    try {
+      for (int i = 0; i < validators.length; i++) {
+        if (!validators[i].validate(httpRequest, filterConfig)) {
+          return false;
+        }
+      }
+    } catch (PreAuthValidationException e) {
+      return false;
+    }
+    return true;
+  }
+
+  @VisibleForTesting
+  public int size() {
+    return validators.length;
+  }
+
+}
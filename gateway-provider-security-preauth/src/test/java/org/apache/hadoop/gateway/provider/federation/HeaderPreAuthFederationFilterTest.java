@@ -18,13 +18,18 @@
 package org.apache.hadoop.gateway.provider.federation;
 
 import org.apache.hadoop.gateway.preauth.filter.*;
+import org.apache.hadoop.gateway.security.GroupPrincipal;
 import org.junit.Test;
 
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -101,6 +106,30 @@ public class HeaderPreAuthFederationFilterTest extends org.junit.Assert {
   }
 
 
+  @Test
+  public void testGroupHeader() throws ServletException {
+    GroupHeaderFilter hpaff = new GroupHeaderFilter();
+    final FilterConfig filterConfig = mock(FilterConfig.class);
+    when(filterConfig.getInitParameter("preauth.custom.group.header")).thenReturn("CUSTOM_GROUPS");
+    hpaff.init(filterConfig);
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("CUSTOM_GROUPS")).thenReturn("admin, users ,,analysts,");
+    Set<String> names = new HashSet<>();
+    for (Principal principal : hpaff.getGroups(request)) {
+      assertTrue(principal instanceof GroupPrincipal);
+      names.add(principal.getName());
+    }
+    assertEquals(new HashSet<>(Arrays.asList("admin", "users", "analysts")), names);
+  }
+
+  private static class GroupHeaderFilter extends HeaderPreAuthFederationFilter {
+    Set<Principal> getGroups(HttpServletRequest request) {
+      Set<Principal> principals = new HashSet<>();
+      addGroupPrincipals(request, principals);
+      return principals;
+    }
+  }
+
   public static class DummyValidator implements PreAuthValidator {
     public static String NAME = "DummyValidator";
 
@@ -56,5 +56,16 @@ public class IPValidatorTest extends org.junit.Assert {
     assertFalse(ipv.validate(request, filterConfig));
   }
 
+  @Test
+  public void testCidrAddresses() throws PreAuthValidationException {
+    IPValidator ipv = new IPValidator();
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getRemoteAddr()).thenReturn("10.1.23.42", "10.2.0.1", "2001:db8:0:0:0:0:0:1");
+    final FilterConfig filterConfig = mock(FilterConfig.class);
+    when(filterConfig.getInitParameter(IPValidator.IP_ADDRESSES_PARAM)).thenReturn("10.1.0.0/16,2001:db8::/32");
+    assertTrue(ipv.validate(request, filterConfig));
+    assertFalse(ipv.validate(request, filterConfig));
+    assertTrue(ipv.validate(request, filterConfig));
+  }
 
 }
@@ -105,4 +105,24 @@ public class PreAuthServiceTest extends org.junit.Assert {
       //Expected
     }
   }
+
+  @Test
+  public void testCompiledValidators() throws ServletException {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getRemoteAddr()).thenReturn("10.1.23.42");
+    final FilterConfig filterConfig = mock(FilterConfig.class);
+    when(filterConfig.getInitParameter(IPValidator.IP_ADDRESSES_PARAM)).thenReturn("5.4.3.2,10.1.0.0/16");
+    when(filterConfig.getInitParameter(PreAuthService.VALIDATION_METHOD_PARAM)).thenReturn
+        (DefaultValidator.DEFAULT_VALIDATION_METHOD_VALUE + "," + IPValidator.IP_VALIDATION_METHOD_VALUE );
+    PreAuthValidatorChain chain = PreAuthService.compile(filterConfig, PreAuthService.getValidators(filterConfig));
+    // The default validator accepts every request so it is left out
+    assertEquals(1, chain.size());
+    assertTrue(chain.validate(request));
+    // The configuration is only read when compiling
+    when(filterConfig.getInitParameter(IPValidator.IP_ADDRESSES_PARAM)).thenReturn("5.4.3.2");
+    assertTrue(chain.validate(request));
+    //Negative testing
+    when(request.getRemoteAddr()).thenReturn("10.10.22.33");
+    assertFalse(chain.validate(request));
+  }
 }
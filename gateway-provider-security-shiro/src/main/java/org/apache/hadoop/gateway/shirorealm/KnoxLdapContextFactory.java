@@ -19,6 +19,7 @@
 package org.apache.hadoop.gateway.shirorealm;
 
 import java.util.Hashtable;
+import java.util.Locale;
 
 import javax.naming.Context;
 import javax.naming.NamingException;
@@ -34,6 +35,7 @@ import org.apache.hadoop.gateway.services.security.AliasService;
 import org.apache.hadoop.gateway.services.security.AliasServiceException;
 import org.apache.hadoop.gateway.util.KnoxCLI;
 import org.apache.shiro.realm.ldap.JndiLdapContextFactory;
+import org.apache.shiro.util.Destroyable;
 
 /**
  * An extension of {@link JndiLdapContextFactory} that allows a different authentication mechanism
@@ -42,13 +44,32 @@ import org.apache.shiro.realm.ldap.JndiLdapContextFactory;
  * 
  * <p>
  * See {@link IsisLdapRealm} for typical configuration within <tt>shiro.ini</tt>.
+ *
+ * <p>
+ * When {@code connectionPoolSize} is positive, bound connections are kept for reuse, separately for the system user
+ * and for user authentication, and connections idle for longer than {@code connectionIdleTimeout} milliseconds are
+ * closed. When the url lists several servers, {@code serverSelection} chooses the server for each connection:
+ * {@code failover} (the default) tries them in order, {@code round-robin} rotates over them and
+ * {@code least-outstanding} prefers the server with the fewest connections in use. A server that fails is tried last
+ * for {@code serverRetryInterval} milliseconds. The pooled connections are closed when Shiro destroys the factory
+ * or its realm, which happens when the topology is undeployed.
+ * <pre>
+ * ldapRealm.contextFactory.url=ldaps://ldap1.example.com:636 ldaps://ldap2.example.com:636
+ * ldapRealm.contextFactory.connectionPoolSize=8
+ * ldapRealm.contextFactory.serverSelection=least-outstanding
+ * </pre>
  */
-public class KnoxLdapContextFactory extends JndiLdapContextFactory {
+public class KnoxLdapContextFactory extends JndiLdapContextFactory implements Destroyable {
 
     private static GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
   
     private String systemAuthenticationMechanism = "simple";
     private String clusterName = "";
+    private int connectionPoolSize = 0;
+    private long connectionIdleTimeout = 300000L;
+    private LdapConnectionPool.Selection serverSelection = LdapConnectionPool.Selection.FAILOVER;
+    private long serverRetryInterval = 30000L;
+    private LdapConnectionPool connectionPool;
 
     public KnoxLdapContextFactory() {
       setAuthenticationMechanism("simple");
@@ -57,10 +78,67 @@ public class KnoxLdapContextFactory extends JndiLdapContextFactory {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
     protected LdapContext createLdapContext(Hashtable env) throws NamingException {
-        if(getSystemUsername() != null && getSystemUsername().equals(env.get(Context.SECURITY_PRINCIPAL))) {
+        boolean system = getSystemUsername() != null && getSystemUsername().equals(env.get(Context.SECURITY_PRINCIPAL));
+        if(system) {
             env.put(Context.SECURITY_AUTHENTICATION, getSystemAuthenticationMechanism());
         }
-        return super.createLdapContext(env);
+        LdapConnectionPool pool = getConnectionPool();
+        if (pool == null) {
+            return super.createLdapContext(env);
+        }
+        return pool.getContext(env, system);
+    }
+
+    private synchronized LdapConnectionPool getConnectionPool() {
+        if (connectionPool == null && getUrl() != null
+            && (connectionPoolSize > 0 || serverSelection != LdapConnectionPool.Selection.FAILOVER)) {
+            connectionPool = new LdapConnectionPool(new LdapConnectionPool.Connector() {
+                @Override
+                public LdapContext connect(Hashtable<String, Object> environment) throws NamingException {
+                    return KnoxLdapContextFactory.super.createLdapContext(environment);
+                }
+            }, getUrl(), serverSelection, connectionPoolSize, connectionIdleTimeout, serverRetryInterval);
+        }
+        return connectionPool;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        this.connectionPoolSize = connectionPoolSize;
+    }
+
+    public long getConnectionIdleTimeout() {
+        return connectionIdleTimeout;
+    }
+
+    public void setConnectionIdleTimeout(long connectionIdleTimeout) {
+        this.connectionIdleTimeout = connectionIdleTimeout;
+    }
+
+    public String getServerSelection() {
+        return serverSelection.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    public void setServerSelection(String serverSelection) {
+        this.serverSelection = LdapConnectionPool.Selection.parse(serverSelection);
+    }
+
+    public long getServerRetryInterval() {
+        return serverRetryInterval;
+    }
+
+    public void setServerRetryInterval(long serverRetryInterval) {
+        this.serverRetryInterval = serverRetryInterval;
     }
 
     public String getSystemAuthenticationMechanism() {
@@ -74,6 +74,8 @@ import org.apache.shiro.realm.ldap.LdapContextFactory;
 import org.apache.shiro.realm.ldap.LdapUtils;
 import org.apache.shiro.subject.MutablePrincipalCollection;
 import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.LifecycleUtils;
 import org.apache.shiro.util.StringUtils;
 
 /**
@@ -124,7 +126,7 @@ import org.apache.shiro.util.StringUtils;
  * 
  * </pre>
  */
-public class KnoxLdapRealm extends JndiLdapRealm {
+public class KnoxLdapRealm extends JndiLdapRealm implements Destroyable {
 
     private static GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
     KnoxShiroMessages ShiroLog = MessagesFactory.get( KnoxShiroMessages.class );
@@ -193,6 +195,15 @@ public class KnoxLdapRealm extends JndiLdapRealm {
       setCredentialsMatcher(credentialsMatcher);
     }
 
+    /**
+     * Closes the pooled connections of the context factory, which need not be
+     * destroyed by Shiro itself if it was not declared in shiro.ini.
+     */
+    @Override
+    public void destroy() {
+      LifecycleUtils.destroy(getContextFactory());
+    }
+
   @Override
   //KNOX-534 overriding this method to be able to audit authentication exceptions
   protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws org.apache.shiro.authc.AuthenticationException {
@@ -0,0 +1,403 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shirorealm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.CommunicationException;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.LdapContext;
+
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.shirorealm.impl.i18n.KnoxShiroMessages;
+
+/**
+ * Keeps bound LDAP connections for reuse and spreads them over the configured servers.
+ *
+ * Connections are pooled per server, separately for the system user and for user authentication. A connection
+ * taken from the user pool is bound again as the user being authenticated, which LDAP v3 permits on an open
+ * connection, so a login costs a bind rather than a TCP and TLS handshake. The contexts handed out are proxies
+ * whose close returns the connection to the pool, after restoring any environment properties and request controls
+ * the caller changed. Connections idle for longer than the idle timeout are closed when the pool is next used.
+ *
+ * A server that fails to connect or drops a connection is skipped for the retry interval, after which the next
+ * request tries it again.
+ */
+class LdapConnectionPool {
+
+  private static final KnoxShiroMessages LOG = MessagesFactory.get( KnoxShiroMessages.class );
+
+  static final String JNDI_POOLING_PROPERTY = "com.sun.jndi.ldap.connect.pool";
+
+  // Pooled system connections idle for longer than this are bound again before they are reused
+  private static final long VALIDATION_INTERVAL = 30000L;
+
+  /**
+   * Opens a connection described by a JNDI environment.
+   */
+  interface Connector {
+    LdapContext connect( Hashtable<String, Object> environment ) throws NamingException;
+  }
+
+  enum Selection {
+    /** Servers are tried in the configured order. */
+    FAILOVER,
+    /** Each request starts with the server after the one the previous request started with. */
+    ROUND_ROBIN,
+    /** Servers are tried in the order of the fewest connections in use. */
+    LEAST_OUTSTANDING;
+
+    static Selection parse( String name ) {
+      return valueOf( name.trim().toUpperCase( Locale.ROOT ).replace( '-', '_' ) );
+    }
+  }
+
+  private final Connector connector;
+  private final List<Server> servers;
+  private final Selection selection;
+  private final int maxIdle;
+  private final long idleTimeout;
+  private final long retryInterval;
+  private final AtomicInteger next = new AtomicInteger();
+  private volatile boolean closed;
+
+  /**
+   * @param urls The space separated LDAP URLs of the servers.
+   * @param maxIdle The maximum number of idle connections kept per server for each of system and user binds.
+   */
+  LdapConnectionPool( Connector connector, String urls, Selection selection, int maxIdle, long idleTimeout, long retryInterval ) {
+    this.connector = connector;
+    this.selection = selection;
+    this.maxIdle = maxIdle;
+    this.idleTimeout = idleTimeout;
+    this.retryInterval = retryInterval;
+    List<Server> list = new ArrayList<>();
+    for( String url : urls.trim().split( "\\s+" ) ) {
+      list.add( new Server( url ) );
+    }
+    this.servers = Collections.unmodifiableList( list );
+  }
+
+  /**
+   * @param environment The environment of the context, including the principal and credentials to bind with.
+   * @param system True if the principal is the system user.
+   * @return A bound context, whose close returns the connection to the pool.
+   */
+  LdapContext getContext( Hashtable<String, Object> environment, boolean system ) throws NamingException {
+    NamingException failure = null;
+    for( Server server : select() ) {
+      server.outstanding.incrementAndGet();
+      try {
+        return wrap( server.acquire( environment, system ), server, system );
+      } catch( CommunicationException | ServiceUnavailableException e ) {
+        server.outstanding.decrementAndGet();
+        server.failed( e );
+        failure = e;
+      } catch( NamingException | RuntimeException e ) {
+        server.outstanding.decrementAndGet();
+        throw e;
+      }
+    }
+    throw failure;
+  }
+
+  /**
+   * Closes the idle connections and stops pooling, so the connections still in use are closed once they are released.
+   */
+  void close() {
+    closed = true;
+    for( Server server : servers ) {
+      server.closeIdle( Long.MAX_VALUE );
+    }
+  }
+
+  int getIdleCount() {
+    int count = 0;
+    for( Server server : servers ) {
+      synchronized( server ) {
+        count += server.systemIdle.size() + server.userIdle.size();
+      }
+    }
+    return count;
+  }
+
+  // The available servers in the order they are to be tried, followed by the unavailable ones as a last resort
+  private List<Server> select() {
+    List<Server> ordered = new ArrayList<>( servers );
+    switch( selection ) {
+      case ROUND_ROBIN:
+        Collections.rotate( ordered, -( ( next.getAndIncrement() & Integer.MAX_VALUE ) % ordered.size() ) );
+        break;
+      case LEAST_OUTSTANDING:
+        Collections.sort( ordered, new Comparator<Server>() {
+          @Override
+          public int compare( Server s1, Server s2 ) {
+            return Integer.compare( s1.outstanding.get(), s2.outstanding.get() );
+          }
+        } );
+        break;
+      default:
+        break;
+    }
+    long now = System.currentTimeMillis();
+    List<Server> available = new ArrayList<>( ordered.size() );
+    List<Server> unavailable = new ArrayList<>();
+    for( Server server : ordered ) {
+      if( server.isAvailable( now ) ) {
+        available.add( server );
+      } else {
+        unavailable.add( server );
+      }
+    }
+    available.addAll( unavailable );
+    return available;
+  }
+
+  private LdapContext wrap( LdapContext context, Server server, boolean system ) {
+    return (LdapContext)Proxy.newProxyInstance(
+        LdapContext.class.getClassLoader(),
+        new Class<?>[]{ LdapContext.class },
+        new PooledContext( context, server, system ) );
+  }
+
+  private static void close( LdapContext context ) {
+    try {
+      context.close();
+    } catch( NamingException e ) {
+      // Ignore exception on close.
+    }
+  }
+
+  private static boolean isConnectionFailure( Throwable e ) {
+    return e instanceof CommunicationException || e instanceof ServiceUnavailableException;
+  }
+
+  private static final class Idle {
+    private final LdapContext context;
+    private final long since;
+
+    Idle( LdapContext context, long since ) {
+      this.context = context;
+      this.since = since;
+    }
+  }
+
+  private final class Server {
+    private final String url;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // Most recently used first, so the connections at the end are the first to expire
+    private final Deque<Idle> systemIdle = new ArrayDeque<>();
+    private final Deque<Idle> userIdle = new ArrayDeque<>();
+    private volatile long retryAt;
+
+    Server( String url ) {
+      this.url = url;
+    }
+
+    boolean isAvailable( long now ) {
+      return now >= retryAt;
+    }
+
+    void failed( NamingException e ) {
+      retryAt = System.currentTimeMillis() + retryInterval;
+      LOG.ldapServerUnavailable( url, retryInterval, e );
+    }
+
+    LdapContext acquire( Hashtable<String, Object> environment, boolean system ) throws NamingException {
+      long now = System.currentTimeMillis();
+      if( idleTimeout > 0 ) {
+        closeIdle( now - idleTimeout );
+      }
+      Idle idle;
+      synchronized( this ) {
+        idle = ( system ? systemIdle : userIdle ).pollFirst();
+      }
+      if( idle != null ) {
+        LdapContext context = idle.context;
+        try {
+          if( !system ) {
+            bind( context, environment );
+          } else if( now - idle.since > VALIDATION_INTERVAL ) {
+            context.reconnect( null );
+          }
+          return context;
+        } catch( NamingException e ) {
+          close( context );
+          if( !isConnectionFailure( e ) ) {
+            throw e;
+          }
+          // The server closed the idle connection, so fall back to a new one
+        }
+      }
+      Hashtable<String, Object> serverEnvironment = new Hashtable<>( environment );
+      serverEnvironment.put( Context.PROVIDER_URL, url );
+      serverEnvironment.remove( JNDI_POOLING_PROPERTY );
+      LdapContext context = connector.connect( serverEnvironment );
+      retryAt = 0;
+      return context;
+    }
+
+    // Binds a connection that was bound as another user as the principal of the environment
+    private void bind( LdapContext context, Hashtable<String, Object> environment ) throws NamingException {
+      for( String name : new String[]{ Context.SECURITY_AUTHENTICATION, Context.SECURITY_PRINCIPAL, Context.SECURITY_CREDENTIALS } ) {
+        Object value = environment.get( name );
+        if( value == null ) {
+          context.removeFromEnvironment( name );
+        } else {
+          context.addToEnvironment( name, value );
+        }
+      }
+      context.reconnect( null );
+    }
+
+    void release( LdapContext context, boolean system ) {
+      Deque<Idle> idle = system ? systemIdle : userIdle;
+      synchronized( this ) {
+        if( !closed && idle.size() < maxIdle ) {
+          idle.addFirst( new Idle( context, System.currentTimeMillis() ) );
+          return;
+        }
+      }
+      close( context );
+    }
+
+    // Closes the connections that have been idle since before the given time
+    void closeIdle( long idleSince ) {
+      List<LdapContext> expired = new ArrayList<>();
+      synchronized( this ) {
+        for( Deque<Idle> idle : Arrays.asList( systemIdle, userIdle ) ) {
+          Iterator<Idle> iterator = idle.descendingIterator();
+          while( iterator.hasNext() ) {
+            Idle entry = iterator.next();
+            if( entry.since >= idleSince ) {
+              break;
+            }
+            expired.add( entry.context );
+            iterator.remove();
+          }
+        }
+      }
+      for( LdapContext context : expired ) {
+        close( context );
+      }
+    }
+  }
+
+  /**
+   * Forwards to a pooled context and returns it to the pool on close.
+   */
+  private final class PooledContext implements InvocationHandler {
+    private final LdapContext context;
+    private final Server server;
+    private final boolean system;
+    private final Map<String, Object> changedEnvironment = new HashMap<>();
+    private boolean controlsChanged;
+    private boolean broken;
+    private boolean closed;
+
+    PooledContext( LdapContext context, Server server, boolean system ) {
+      this.context = context;
+      this.server = server;
+      this.system = system;
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+      String name = method.getName();
+      if( "close".equals( name ) ) {
+        release();
+        return null;
+      }
+      if( method.getDeclaringClass() == Object.class ) {
+        if( "equals".equals( name ) ) {
+          return proxy == args[ 0 ];
+        } else if( "hashCode".equals( name ) ) {
+          return System.identityHashCode( proxy );
+        }
+        return method.invoke( context, args );
+      }
+      if( closed ) {
+        throw new IllegalStateException( "Context is closed." );
+      }
+      if( "addToEnvironment".equals( name ) || "removeFromEnvironment".equals( name ) ) {
+        String property = (String)args[ 0 ];
+        if( !changedEnvironment.containsKey( property ) ) {
+          changedEnvironment.put( property, context.getEnvironment().get( property ) );
+        }
+      } else if( "setRequestControls".equals( name ) ) {
+        controlsChanged = true;
+      }
+      try {
+        return method.invoke( context, args );
+      } catch( InvocationTargetException e ) {
+        Throwable cause = e.getCause();
+        if( isConnectionFailure( cause ) ) {
+          broken = true;
+          server.failed( (NamingException)cause );
+        }
+        throw cause;
+      }
+    }
+
+    private void release() {
+      if( closed ) {
+        return;
+      }
+      closed = true;
+      server.outstanding.decrementAndGet();
+      if( !broken ) {
+        try {
+          for( Map.Entry<String, Object> entry : changedEnvironment.entrySet() ) {
+            if( entry.getValue() == null ) {
+              context.removeFromEnvironment( entry.getKey() );
+            } else {
+              context.addToEnvironment( entry.getKey(), entry.getValue() );
+            }
+          }
+          if( controlsChanged ) {
+            context.setRequestControls( null );
+          }
+          server.release( context, system );
+          return;
+        } catch( NamingException e ) {
+          // The connection cannot be reset, so it is not reused
+        }
+      }
+      close( context );
+    }
+  }
+
+}
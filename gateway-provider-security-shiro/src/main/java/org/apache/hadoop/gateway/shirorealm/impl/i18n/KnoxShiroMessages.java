@@ -41,4 +41,7 @@ public interface KnoxShiroMessages {
   @Message(level = MessageLevel.INFO, text = "Successfully logged in: {0}, {1}")
   void successfulLoginAttempt(Subject subject, AuthenticationToken authToken);
 
+  @Message(level = MessageLevel.WARN, text = "LDAP server {0} is unavailable, trying other servers first for {1} ms: {2}")
+  void ldapServerUnavailable(String url, long retryInterval, @StackTrace( level = MessageLevel.DEBUG ) Exception e);
+
 }
@@ -19,6 +19,8 @@
 
 package org.apache.hadoop.gateway.shirorealm;
 
+import org.apache.shiro.realm.ldap.JndiLdapContextFactory;
+import org.apache.shiro.util.Destroyable;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -100,5 +102,23 @@ public class KnoxLdapRealmTest {
     realm.setSearchBase("dc=knox,dc=example,dc=com");
     assertEquals(realm.getGroupSearchBase(), "dc=knox,dc=example,dc=com");
   }
+
+  @Test
+  public void verifyDestroyReachesContextFactory() {
+    DestroyableContextFactory contextFactory = new DestroyableContextFactory();
+    KnoxLdapRealm realm = new KnoxLdapRealm();
+    realm.setContextFactory(contextFactory);
+    realm.destroy();
+    assertEquals(1, contextFactory.destroyed);
+  }
+
+  private static class DestroyableContextFactory extends JndiLdapContextFactory implements Destroyable {
+    private int destroyed;
+
+    @Override
+    public void destroy() {
+      destroyed++;
+    }
+  }
   
 }
@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shirorealm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import javax.naming.AuthenticationException;
+import javax.naming.CommunicationException;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LdapConnectionPoolTest {
+
+  private final List<Connection> connections = new ArrayList<>();
+  private final List<String> unavailable = new ArrayList<>();
+
+  private final LdapConnectionPool.Connector connector = new LdapConnectionPool.Connector() {
+    @Override
+    public LdapContext connect(Hashtable<String, Object> environment) throws NamingException {
+      String url = (String) environment.get(Context.PROVIDER_URL);
+      if (unavailable.contains(url)) {
+        throw new CommunicationException(url);
+      }
+      Connection connection = new Connection(environment);
+      connections.add(connection);
+      return (LdapContext) Proxy.newProxyInstance(LdapContext.class.getClassLoader(),
+          new Class<?>[]{LdapContext.class}, connection);
+    }
+  };
+
+  private static Hashtable<String, Object> environment(String principal) {
+    Hashtable<String, Object> environment = new Hashtable<>();
+    environment.put(Context.PROVIDER_URL, "ldap://ignored");
+    environment.put(Context.SECURITY_AUTHENTICATION, "simple");
+    environment.put(Context.SECURITY_PRINCIPAL, principal);
+    environment.put(Context.SECURITY_CREDENTIALS, principal + "-password");
+    environment.put(LdapConnectionPool.JNDI_POOLING_PROPERTY, "true");
+    return environment;
+  }
+
+  private LdapConnectionPool pool(String urls, LdapConnectionPool.Selection selection, int maxIdle, long idleTimeout) {
+    return new LdapConnectionPool(connector, urls, selection, maxIdle, idleTimeout, 60000L);
+  }
+
+  @Test
+  public void testUserConnectionIsReusedWithNewBind() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a", LdapConnectionPool.Selection.FAILOVER, 2, 60000L);
+    LdapContext first = pool.getContext(environment("alice"), false);
+    first.close();
+    LdapContext second = pool.getContext(environment("bob"), false);
+    assertEquals(1, connections.size());
+    Connection connection = connections.get(0);
+    assertEquals("ldap://a", connection.environment.get(Context.PROVIDER_URL));
+    assertNull(connection.environment.get(LdapConnectionPool.JNDI_POOLING_PROPERTY));
+    assertEquals("bob", connection.environment.get(Context.SECURITY_PRINCIPAL));
+    assertEquals(1, connection.reconnects);
+    second.close();
+    // Closing twice does not return the connection twice
+    second.close();
+    assertEquals(1, pool.getIdleCount());
+    assertFalse(connection.closed);
+    pool.close();
+    assertTrue(connection.closed);
+  }
+
+  @Test
+  public void testClosedPoolReleasesConnections() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a", LdapConnectionPool.Selection.FAILOVER, 2, 60000L);
+    LdapContext idle = pool.getContext(environment("system"), true);
+    LdapContext inUse = pool.getContext(environment("alice"), false);
+    idle.close();
+    pool.close();
+    assertTrue(connections.get(0).closed);
+    assertFalse(connections.get(1).closed);
+    // A connection still in use when the pool was discarded is closed rather than kept once released
+    inUse.close();
+    assertTrue(connections.get(1).closed);
+    assertEquals(0, pool.getIdleCount());
+  }
+
+  @Test
+  public void testSystemAndUserConnectionsArePooledSeparately() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a", LdapConnectionPool.Selection.FAILOVER, 2, 60000L);
+    pool.getContext(environment("system"), true).close();
+    pool.getContext(environment("alice"), false).close();
+    assertEquals(2, connections.size());
+    pool.getContext(environment("system"), true).close();
+    assertEquals(2, connections.size());
+    assertEquals(0, connections.get(0).reconnects);
+  }
+
+  @Test
+  public void testChangesAreUndoneOnRelease() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a", LdapConnectionPool.Selection.FAILOVER, 2, 60000L);
+    LdapContext context = pool.getContext(environment("system"), true);
+    context.addToEnvironment(Context.REFERRAL, "ignore");
+    context.setRequestControls(new Control[0]);
+    Connection connection = connections.get(0);
+    assertEquals("ignore", connection.environment.get(Context.REFERRAL));
+    context.close();
+    assertNull(connection.environment.get(Context.REFERRAL));
+    assertNull(connection.requestControls);
+  }
+
+  @Test
+  public void testPoolSizeIsBounded() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a", LdapConnectionPool.Selection.FAILOVER, 1, 60000L);
+    LdapContext first = pool.getContext(environment("alice"), false);
+    LdapContext second = pool.getContext(environment("bob"), false);
+    first.close();
+    second.close();
+    assertEquals(1, pool.getIdleCount());
+    assertFalse(connections.get(0).closed);
+    assertTrue(connections.get(1).closed);
+  }
+
+  @Test
+  public void testIdleConnectionsAreEvicted() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a", LdapConnectionPool.Selection.FAILOVER, 2, 1L);
+    pool.getContext(environment("alice"), false).close();
+    Thread.sleep(10);
+    pool.getContext(environment("bob"), false).close();
+    assertEquals(2, connections.size());
+    assertTrue(connections.get(0).closed);
+  }
+
+  @Test
+  public void testFailedBindIsNotPooled() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a", LdapConnectionPool.Selection.FAILOVER, 2, 60000L);
+    pool.getContext(environment("alice"), false).close();
+    connections.get(0).failure = new AuthenticationException("bad password");
+    try {
+      pool.getContext(environment("mallory"), false);
+      fail("Expected AuthenticationException");
+    } catch (AuthenticationException e) {
+      // Expected
+    }
+    assertTrue(connections.get(0).closed);
+    assertEquals(0, pool.getIdleCount());
+    // The server remains the first choice
+    pool.getContext(environment("alice"), false).close();
+    assertEquals(2, connections.size());
+  }
+
+  @Test
+  public void testStaleConnectionIsReplaced() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a", LdapConnectionPool.Selection.FAILOVER, 2, 60000L);
+    pool.getContext(environment("alice"), false).close();
+    connections.get(0).failure = new CommunicationException("connection closed");
+    pool.getContext(environment("bob"), false).close();
+    assertEquals(2, connections.size());
+    assertTrue(connections.get(0).closed);
+  }
+
+  @Test
+  public void testRoundRobin() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a ldap://b", LdapConnectionPool.Selection.ROUND_ROBIN, 0, 60000L);
+    for (int i = 0; i < 4; i++) {
+      pool.getContext(environment("alice"), false).close();
+    }
+    assertEquals("ldap://a", connections.get(0).getUrl());
+    assertEquals("ldap://b", connections.get(1).getUrl());
+    assertEquals("ldap://a", connections.get(2).getUrl());
+    assertEquals("ldap://b", connections.get(3).getUrl());
+    assertTrue(connections.get(3).closed);
+  }
+
+  @Test
+  public void testLeastOutstanding() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a ldap://b", LdapConnectionPool.Selection.LEAST_OUTSTANDING, 2, 60000L);
+    LdapContext first = pool.getContext(environment("alice"), false);
+    LdapContext second = pool.getContext(environment("bob"), false);
+    assertEquals("ldap://a", connections.get(0).getUrl());
+    assertEquals("ldap://b", connections.get(1).getUrl());
+    first.close();
+    pool.getContext(environment("carol"), false);
+    assertEquals(2, connections.size());
+    assertEquals("carol", connections.get(0).environment.get(Context.SECURITY_PRINCIPAL));
+    second.close();
+  }
+
+  @Test
+  public void testUnavailableServerIsSkipped() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a ldap://b", LdapConnectionPool.Selection.FAILOVER, 0, 60000L);
+    unavailable.add("ldap://a");
+    pool.getContext(environment("alice"), false).close();
+    assertEquals("ldap://b", connections.get(0).getUrl());
+    // Once ldap://a is back it is still skipped until the retry interval has passed
+    unavailable.clear();
+    pool.getContext(environment("alice"), false).close();
+    assertEquals("ldap://b", connections.get(1).getUrl());
+  }
+
+  @Test
+  public void testUnavailableServersAreTriedAsLastResort() throws Exception {
+    LdapConnectionPool pool = pool("ldap://a", LdapConnectionPool.Selection.FAILOVER, 0, 60000L);
+    unavailable.add("ldap://a");
+    try {
+      pool.getContext(environment("alice"), false);
+      fail("Expected CommunicationException");
+    } catch (CommunicationException e) {
+      // Expected
+    }
+    unavailable.clear();
+    pool.getContext(environment("alice"), false).close();
+    assertEquals(1, connections.size());
+  }
+
+  @Test
+  public void testSelectionNames() {
+    assertEquals(LdapConnectionPool.Selection.ROUND_ROBIN, LdapConnectionPool.Selection.parse("round-robin"));
+    assertEquals(LdapConnectionPool.Selection.LEAST_OUTSTANDING, LdapConnectionPool.Selection.parse(" Least-Outstanding "));
+    KnoxLdapContextFactory factory = new KnoxLdapContextFactory();
+    assertEquals("failover", factory.getServerSelection());
+    factory.setServerSelection("round-robin");
+    assertEquals("round-robin", factory.getServerSelection());
+  }
+
+  /**
+   * Records what is done with a context instead of connecting to a server.
+   */
+  private static class Connection implements InvocationHandler {
+    private final Hashtable<String, Object> environment;
+    private Control[] requestControls;
+    private NamingException failure;
+    private int reconnects;
+    private boolean closed;
+
+    Connection(Hashtable<String, Object> environment) {
+      this.environment = new Hashtable<>(environment);
+    }
+
+    String getUrl() {
+      return (String) environment.get(Context.PROVIDER_URL);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "getEnvironment":
+          return new Hashtable<>(environment);
+        case "addToEnvironment":
+          return environment.put((String) args[0], args[1]);
+        case "removeFromEnvironment":
+          return environment.remove(args[0]);
+        case "setRequestControls":
+          requestControls = (Control[]) args[0];
+          return null;
+        case "reconnect":
+          if (failure != null) {
+            throw failure;
+          }
+          reconnects++;
+          return null;
+        case "close":
+          closed = true;
+          return null;
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.throttle;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a request to one service of a topology may proceed.
+ *
+ * Each principal is limited to a number of requests in flight and to a token bucket rate, and is rejected with a 429
+ * once over either. The service as a whole is limited to a number of requests in flight, beyond which every principal
+ * is rejected with a 503. All limits are optional; a limit of zero or less is not enforced.
+ *
+ * The state of principals that have been idle long enough to be back at their full allowance is dropped, so the
+ * number of principals tracked is bounded by the number that were active recently.
+ *
+ * The controller is shared by the filters that retain it, and its state and gauges are dropped once the last of them
+ * releases it.
+ */
+public class AdmissionController {
+
+  public static final int SC_TOO_MANY_REQUESTS = 429;
+
+  static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+  // The in flight count of a swept state, low enough that no number of late increments brings it back above zero
+  private static final int DEAD = Integer.MIN_VALUE / 2;
+
+  private final int principalConcurrency;
+  private final int serviceConcurrency;
+  private final double rate;
+  private final double burst;
+
+  private final ConcurrentMap<String, PrincipalState> principals = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong lastSweep;
+
+  private final Counter admitted;
+  private final Counter rateRejections;
+  private final Counter concurrencyRejections;
+  private final Counter serviceRejections;
+
+  private final MetricRegistry registry;
+  private final Gauge<Integer> inFlightGauge;
+  private final Gauge<Integer> principalsGauge;
+  private int users;
+
+  /**
+   * @param principalConcurrency The number of requests each principal may have in flight.
+   * @param serviceConcurrency The number of requests all principals together may have in flight.
+   * @param rate The number of requests per second each principal may make on average.
+   * @param burst The number of requests each principal may make at once after being idle.
+   */
+  public AdmissionController(String topology, String role, int principalConcurrency, int serviceConcurrency,
+      double rate, double burst, MetricRegistry registry) {
+    this.principalConcurrency = principalConcurrency;
+    this.serviceConcurrency = serviceConcurrency;
+    this.rate = rate;
+    this.burst = burst > 0 ? burst : rate;
+    this.lastSweep = new AtomicLong(System.nanoTime());
+    admitted = registry.counter(MetricRegistry.name("throttle", topology, role, "admitted"));
+    rateRejections = registry.counter(MetricRegistry.name("throttle", topology, role, "rejected", "rate"));
+    concurrencyRejections = registry.counter(MetricRegistry.name("throttle", topology, role, "rejected", "concurrency"));
+    serviceRejections = registry.counter(MetricRegistry.name("throttle", topology, role, "rejected", "service"));
+    String inFlightName = MetricRegistry.name("throttle", topology, role, "inflight");
+    String principalsName = MetricRegistry.name("throttle", topology, role, "principals");
+    // A redeployed topology replaces the gauges of its previous controller
+    registry.remove(inFlightName);
+    registry.remove(principalsName);
+    this.registry = registry;
+    inFlightGauge = registry.register(inFlightName, new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return inFlight.get();
+      }
+    });
+    principalsGauge = registry.register(principalsName, new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return principals.size();
+      }
+    });
+  }
+
+  public synchronized void retain() {
+    users++;
+  }
+
+  /**
+   * Drops the principal state and removes the gauges from the registry once no filter retains the controller.
+   *
+   * @return True if this was the last filter retaining the controller.
+   */
+  public synchronized boolean release() {
+    if (--users > 0) {
+      return false;
+    }
+    principals.clear();
+    // Only our own gauges, since those of a redeployed topology may already have replaced them
+    registry.removeMatching(new MetricFilter() {
+      @Override
+      public boolean matches(String name, Metric metric) {
+        return metric == inFlightGauge || metric == principalsGauge;
+      }
+    });
+    return true;
+  }
+
+  /**
+   * @return The outcome, which must be released once the request completes if it was admitted.
+   */
+  public Admission acquire(String principal) {
+    return acquire(principal, System.nanoTime());
+  }
+
+  Admission acquire(String principal, long now) {
+    sweep(now);
+    PrincipalState state = getState(principal, now);
+    int principalInFlight = state.inFlight.incrementAndGet();
+    while (principalInFlight <= 0) {
+      // Swept after we looked it up, so count the request against the state that replaces it
+      state = getState(principal, now);
+      principalInFlight = state.inFlight.incrementAndGet();
+    }
+    int serviceInFlight = inFlight.incrementAndGet();
+    Admission rejection = null;
+    if (principalConcurrency > 0 && principalInFlight > principalConcurrency) {
+      concurrencyRejections.inc();
+      rejection = new Admission(SC_TOO_MANY_REQUESTS, 1, null);
+    } else if (serviceConcurrency > 0 && serviceInFlight > serviceConcurrency) {
+      serviceRejections.inc();
+      rejection = new Admission(HttpServletResponse.SC_SERVICE_UNAVAILABLE, 1, null);
+    } else if (state.bucket != null) {
+      long wait = state.bucket.tryTake(now);
+      if (wait > 0) {
+        rateRejections.inc();
+        // Round up, so a client that honours Retry-After is admitted on its next attempt
+        long seconds = (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        rejection = new Admission(SC_TOO_MANY_REQUESTS, seconds, null);
+      }
+    }
+    if (rejection != null) {
+      state.inFlight.decrementAndGet();
+      inFlight.decrementAndGet();
+      return rejection;
+    }
+    admitted.inc();
+    return new Admission(0, 0, state);
+  }
+
+  private PrincipalState getState(String principal, long now) {
+    while (true) {
+      PrincipalState state = principals.get(principal);
+      if (state != null && state.inFlight.get() >= 0) {
+        return state;
+      }
+      if (state != null) {
+        // Marked dead by a sweep that has not removed it yet
+        principals.remove(principal, state);
+        continue;
+      }
+      state = new PrincipalState(rate > 0 ? new TokenBucket(rate, burst, now) : null);
+      if (principals.putIfAbsent(principal, state) == null) {
+        return state;
+      }
+    }
+  }
+
+  private void sweep(long now) {
+    long last = lastSweep.get();
+    if (now - last > SWEEP_INTERVAL && lastSweep.compareAndSet(last, now)) {
+      Iterator<Map.Entry<String, PrincipalState>> iterator = principals.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, PrincipalState> entry = iterator.next();
+        PrincipalState state = entry.getValue();
+        // Marking the state dead first stops a request that already looked it up from being admitted against it
+        if ((state.bucket == null || state.bucket.isFull(now)) && state.inFlight.compareAndSet(0, DEAD)) {
+          principals.remove(entry.getKey(), state);
+        }
+      }
+    }
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  int getPrincipalCount() {
+    return principals.size();
+  }
+
+  private static class PrincipalState {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final TokenBucket bucket;
+
+    PrincipalState(TokenBucket bucket) {
+      this.bucket = bucket;
+    }
+  }
+
+  /**
+   * The outcome of a request for admission.
+   */
+  public class Admission {
+
+    private final int status;
+    private final long retryAfter;
+    private final PrincipalState state;
+    private boolean released;
+
+    private Admission(int status, long retryAfter, PrincipalState state) {
+      this.status = status;
+      this.retryAfter = retryAfter;
+      this.state = state;
+    }
+
+    public boolean isAdmitted() {
+      return state != null;
+    }
+
+    /**
+     * @return The status to reject the request with.
+     */
+    public int getStatus() {
+      return status;
+    }
+
+    /**
+     * @return The number of seconds after which the request is worth retrying.
+     */
+    public long getRetryAfter() {
+      return retryAfter;
+    }
+
+    /**
+     * Returns the concurrency taken by an admitted request.
+     */
+    public synchronized void release() {
+      if (state != null && !released) {
+        released = true;
+        state.inFlight.decrementAndGet();
+        inFlight.decrementAndGet();
+      }
+    }
+
+  }
+
+}
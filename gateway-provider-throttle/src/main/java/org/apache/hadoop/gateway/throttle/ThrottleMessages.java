@@ -0,0 +1,36 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.throttle;
+
+import org.apache.hadoop.gateway.i18n.messages.Message;
+import org.apache.hadoop.gateway.i18n.messages.MessageLevel;
+import org.apache.hadoop.gateway.i18n.messages.Messages;
+
+@Messages(logger="org.apache.hadoop.gateway.provider.throttle")
+public interface ThrottleMessages {
+
+  @Message( level = MessageLevel.INFO, text = "Throttling {1} of topology {0}: {2}" )
+  void initializedThrottle( String topology, String role, String limits );
+
+  @Message( level = MessageLevel.WARN, text = "Invalid value {1} for throttle parameter {0}, using {2}." )
+  void invalidThrottleParameter( String name, String value, String defaultValue );
+
+  @Message( level = MessageLevel.DEBUG, text = "Rejected a request of {0} to {2} of topology {1} with {3}, retry after {4}s." )
+  void rejectedRequest( String principal, String topology, String role, int status, long retryAfter );
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.throttle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allows a sustained rate of requests while permitting bursts of up to the capacity of the bucket.
+ *
+ * Tokens are added continuously at the configured rate, so no timer is needed: the bucket is refilled by however much
+ * time has passed whenever it is used.
+ */
+class TokenBucket {
+
+  private final double capacity;
+  private final double tokensPerNano;
+  private double tokens;
+  private long refilled;
+
+  /**
+   * @param rate The number of tokens added per second.
+   * @param capacity The largest number of tokens the bucket holds, which is also what it starts with.
+   * @param now The current time in nanoseconds.
+   */
+  TokenBucket(double rate, double capacity, long now) {
+    this.capacity = Math.max(1, capacity);
+    this.tokensPerNano = rate / TimeUnit.SECONDS.toNanos(1);
+    this.tokens = this.capacity;
+    this.refilled = now;
+  }
+
+  /**
+   * @return Zero if a token was taken, otherwise the time in nanoseconds until one will be available.
+   */
+  synchronized long tryTake(long now) {
+    refill(now);
+    if (tokens >= 1) {
+      tokens -= 1;
+      return 0;
+    }
+    return (long) Math.ceil((1 - tokens) / tokensPerNano);
+  }
+
+  synchronized boolean isFull(long now) {
+    refill(now);
+    return tokens >= capacity;
+  }
+
+  private void refill(long now) {
+    if (now > refilled) {
+      tokens = Math.min(capacity, tokens + (now - refilled) * tokensPerNano);
+      refilled = now;
+    }
+  }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.throttle.filter;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.security.SubjectUtils;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
+import org.apache.hadoop.gateway.throttle.AdmissionController;
+import org.apache.hadoop.gateway.throttle.ThrottleMessages;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Rejects requests of principals that exceed their share of a service before they occupy a dispatch connection.
+ *
+ * The limits apply to the effective principal established by the identity assertion, or to the remote address for
+ * requests that have none. All the resources of a service in a topology share one set of limits. Rejected requests are
+ * answered immediately with a Retry-After header.
+ */
+public class ThrottleFilter extends AbstractGatewayFilter {
+
+  private static final ThrottleMessages LOG = MessagesFactory.get(ThrottleMessages.class);
+
+  public static final String SERVICE_ROLE_PARAM = "service.role";
+  public static final String PRINCIPAL_CONCURRENCY_PARAM = "principal.concurrency";
+  public static final String SERVICE_CONCURRENCY_PARAM = "service.concurrency";
+  public static final String PRINCIPAL_RATE_PARAM = "principal.rate";
+  public static final String PRINCIPAL_BURST_PARAM = "principal.burst";
+
+  private String topology;
+  private String role;
+  private String attribute;
+  private AdmissionController controller;
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    super.init(filterConfig);
+    ServletContext context = filterConfig.getServletContext();
+    topology = (String) context.getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE);
+    if (topology == null) {
+      topology = "default";
+    }
+    role = filterConfig.getInitParameter(SERVICE_ROLE_PARAM);
+    if (role == null) {
+      role = "default";
+    }
+    attribute = AdmissionController.class.getName() + "." + role;
+    synchronized (context) {
+      controller = (AdmissionController) context.getAttribute(attribute);
+      if (controller == null) {
+        int principalConcurrency = (int) getParam(filterConfig, PRINCIPAL_CONCURRENCY_PARAM, 0);
+        int serviceConcurrency = (int) getParam(filterConfig, SERVICE_CONCURRENCY_PARAM, 0);
+        double rate = getParam(filterConfig, PRINCIPAL_RATE_PARAM, 0);
+        double burst = getParam(filterConfig, PRINCIPAL_BURST_PARAM, rate);
+        controller = new AdmissionController(topology, role, principalConcurrency, serviceConcurrency, rate, burst,
+            getMetricRegistry(context));
+        context.setAttribute(attribute, controller);
+        LOG.initializedThrottle(topology, role, PRINCIPAL_CONCURRENCY_PARAM + "=" + principalConcurrency + ", "
+            + SERVICE_CONCURRENCY_PARAM + "=" + serviceConcurrency + ", "
+            + PRINCIPAL_RATE_PARAM + "=" + rate + ", " + PRINCIPAL_BURST_PARAM + "=" + burst);
+      }
+      controller.retain();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (controller != null) {
+      ServletContext context = getConfig().getServletContext();
+      synchronized (context) {
+        if (controller.release() && context.getAttribute(attribute) == controller) {
+          context.removeAttribute(attribute);
+        }
+      }
+      controller = null;
+    }
+  }
+
+  private static MetricRegistry getMetricRegistry(ServletContext context) {
+    MetricRegistry registry = MetricsService.getMetricRegistry(
+        (GatewayServices) context.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE));
+    return registry != null ? registry : new MetricRegistry();
+  }
+
+  private static double getParam(FilterConfig filterConfig, String name, double defaultValue) {
+    String value = filterConfig.getInitParameter(name);
+    if (value != null) {
+      try {
+        double parsed = Double.parseDouble(value.trim());
+        if (parsed >= 0) {
+          return parsed;
+        }
+      } catch (NumberFormatException e) {
+        // Reported below
+      }
+      LOG.invalidThrottleParameter(name, value, String.valueOf(defaultValue));
+    }
+    return defaultValue;
+  }
+
+  @Override
+  protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    String principal = SubjectUtils.getCurrentEffectivePrincipalName();
+    if (principal == null) {
+      principal = request.getRemoteAddr();
+    }
+    AdmissionController.Admission admission = controller.acquire(principal);
+    if (!admission.isAdmitted()) {
+      LOG.rejectedRequest(principal, topology, role, admission.getStatus(), admission.getRetryAfter());
+      response.setHeader("Retry-After", String.valueOf(admission.getRetryAfter()));
+      response.sendError(admission.getStatus());
+      return;
+    }
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      admission.release();
+    }
+  }
+
+  AdmissionController getController() {
+    return controller;
+  }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.throttle;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AdmissionControllerTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void testTokenBucket() {
+    TokenBucket bucket = new TokenBucket(2, 3, 0);
+    assertThat(bucket.tryTake(0), is(0L));
+    assertThat(bucket.tryTake(0), is(0L));
+    assertThat(bucket.tryTake(0), is(0L));
+    assertThat(bucket.tryTake(0), is(SECOND / 2));
+    assertThat(bucket.tryTake(SECOND / 4), is(SECOND / 4));
+    assertThat(bucket.tryTake(SECOND / 2), is(0L));
+    assertThat(bucket.isFull(SECOND / 2), is(false));
+    // Idle time never adds more than the capacity
+    assertThat(bucket.isFull(100 * SECOND), is(true));
+    assertThat(bucket.tryTake(100 * SECOND), is(0L));
+    assertThat(bucket.tryTake(100 * SECOND), is(0L));
+    assertThat(bucket.tryTake(100 * SECOND), is(0L));
+    assertThat(bucket.tryTake(100 * SECOND) > 0, is(true));
+  }
+
+  @Test
+  public void testRateLimitedPerPrincipal() {
+    MetricRegistry registry = new MetricRegistry();
+    AdmissionController controller = new AdmissionController("sandbox", "WEBHDFS", 0, 0, 1, 2, registry);
+
+    admit(controller, "alice", 0);
+    admit(controller, "alice", 0);
+    AdmissionController.Admission rejected = controller.acquire("alice", 0);
+    assertThat(rejected.isAdmitted(), is(false));
+    assertThat(rejected.getStatus(), is(429));
+    assertThat(rejected.getRetryAfter(), is(1L));
+
+    // Other principals have their own allowance
+    admit(controller, "bob", 0);
+    admit(controller, "alice", SECOND);
+
+    assertThat(registry.counter("throttle.sandbox.WEBHDFS.admitted").getCount(), is(4L));
+    assertThat(registry.counter("throttle.sandbox.WEBHDFS.rejected.rate").getCount(), is(1L));
+    assertThat(controller.getInFlight(), is(0));
+  }
+
+  @Test
+  public void testConcurrencyLimited() {
+    MetricRegistry registry = new MetricRegistry();
+    AdmissionController controller = new AdmissionController("sandbox", "WEBHDFS", 2, 3, 0, 0, registry);
+
+    AdmissionController.Admission first = controller.acquire("alice", 0);
+    AdmissionController.Admission second = controller.acquire("alice", 0);
+    assertThat(controller.acquire("alice", 0).getStatus(), is(429));
+    AdmissionController.Admission third = controller.acquire("bob", 0);
+    assertThat(third.isAdmitted(), is(true));
+
+    // The service is full, so everyone is turned away
+    AdmissionController.Admission rejected = controller.acquire("carol", 0);
+    assertThat(rejected.isAdmitted(), is(false));
+    assertThat(rejected.getStatus(), is(503));
+    assertThat(controller.getInFlight(), is(3));
+
+    first.release();
+    first.release();
+    assertThat(controller.getInFlight(), is(2));
+    assertThat(controller.acquire("alice", 0).isAdmitted(), is(true));
+    second.release();
+    third.release();
+
+    assertThat(registry.counter("throttle.sandbox.WEBHDFS.rejected.concurrency").getCount(), is(1L));
+    assertThat(registry.counter("throttle.sandbox.WEBHDFS.rejected.service").getCount(), is(1L));
+    assertThat(registry.getGauges().get("throttle.sandbox.WEBHDFS.inflight").getValue(), is((Object) 1));
+  }
+
+  @Test
+  public void testReleaseRemovesOwnGauges() {
+    MetricRegistry registry = new MetricRegistry();
+    AdmissionController previous = new AdmissionController("sandbox", "WEBHDFS", 1, 0, 0, 0, registry);
+    previous.retain();
+    admit(previous, "alice", 0);
+
+    // A redeployed topology registers the gauges of its new controller before the previous one is released
+    AdmissionController current = new AdmissionController("sandbox", "WEBHDFS", 1, 0, 0, 0, registry);
+    current.retain();
+    current.retain();
+    assertThat(previous.release(), is(true));
+    assertThat(previous.getPrincipalCount(), is(0));
+    assertThat(registry.getGauges().get("throttle.sandbox.WEBHDFS.principals").getValue(), is((Object) 0));
+
+    assertThat(current.release(), is(false));
+    assertThat(registry.getGauges().size(), is(2));
+    assertThat(current.release(), is(true));
+    assertThat(registry.getGauges().isEmpty(), is(true));
+  }
+
+  @Test
+  public void testIdlePrincipalsForgotten() {
+    AdmissionController controller = new AdmissionController("sandbox", "WEBHDFS", 1, 0, 1, 1, new MetricRegistry());
+    long start = System.nanoTime();
+    AdmissionController.Admission busy = controller.acquire("alice", start);
+    controller.acquire("bob", start).release();
+    assertThat(controller.getPrincipalCount(), is(2));
+
+    controller.acquire("carol", start + AdmissionController.SWEEP_INTERVAL + SECOND).release();
+    // Alice still has a request in flight
+    assertThat(controller.getPrincipalCount(), is(2));
+    busy.release();
+  }
+
+  @Test( timeout = 30000 )
+  public void testSweepDoesNotSplitPrincipalState() throws Exception {
+    final AdmissionController controller = new AdmissionController("sandbox", "WEBHDFS", 1, 0, 0, 0, new MetricRegistry());
+    final AtomicLong clock = new AtomicLong();
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicBoolean exceeded = new AtomicBoolean();
+    final long deadline = System.currentTimeMillis() + 500;
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          while (System.currentTimeMillis() < deadline && !exceeded.get()) {
+            // Every acquire is due a sweep, which races with the lookups of the other threads
+            AdmissionController.Admission admission =
+                controller.acquire("alice", clock.addAndGet(AdmissionController.SWEEP_INTERVAL + 1));
+            if (admission.isAdmitted()) {
+              if (active.incrementAndGet() > 1) {
+                exceeded.set(true);
+              }
+              Thread.yield();
+              active.decrementAndGet();
+              admission.release();
+            }
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(exceeded.get(), is(false));
+    assertThat(controller.getInFlight(), is(0));
+  }
+
+  private static void admit(AdmissionController controller, String principal, long now) {
+    AdmissionController.Admission admission = controller.acquire(principal, now);
+    assertThat(admission.isAdmitted(), is(true));
+    admission.release();
+  }
+
+}
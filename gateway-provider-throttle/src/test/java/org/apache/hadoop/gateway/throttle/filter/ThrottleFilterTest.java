@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.throttle.filter;
+
+import org.apache.hadoop.gateway.security.PrimaryPrincipal;
+import org.apache.hadoop.gateway.throttle.AdmissionController;
+import org.apache.hadoop.test.TestUtils;
+import org.apache.hadoop.test.mock.MockFilterConfig;
+import org.apache.hadoop.test.mock.MockHttpServletRequest;
+import org.apache.hadoop.test.mock.MockHttpServletResponse;
+import org.apache.hadoop.test.mock.MockServletContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.security.auth.Subject;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ThrottleFilterTest {
+
+  private Map<String, Object> attributes;
+  private Map<String, String> params;
+
+  @Before
+  public void setUp() {
+    attributes = new HashMap<>();
+    params = new HashMap<>();
+    params.put(ThrottleFilter.SERVICE_ROLE_PARAM, "WEBHDFS");
+  }
+
+  @Test( timeout = TestUtils.MEDIUM_TIMEOUT )
+  public void testNoisyPrincipalDoesNotStarveOthers() throws Exception {
+    params.put(ThrottleFilter.PRINCIPAL_CONCURRENCY_PARAM, "2");
+    params.put(ThrottleFilter.SERVICE_CONCURRENCY_PARAM, "4");
+    final ThrottleFilter filter = createFilter();
+    final Backend backend = new Backend();
+
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<TestResponse>> noisy = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        noisy.add(clients.submit(request(filter, "alice", backend)));
+      }
+      // Wait for alice's share of the backend to be taken, the rest of her requests are turned away
+      while (backend.active.get() < 2) {
+        Thread.sleep(10);
+      }
+      Future<TestResponse> quiet = clients.submit(request(filter, "bob", backend));
+      while (backend.active.get() < 3) {
+        Thread.sleep(10);
+      }
+      backend.release.countDown();
+
+      assertThat(quiet.get().status, is(200));
+      int admitted = 0;
+      int rejected = 0;
+      for (Future<TestResponse> future : noisy) {
+        TestResponse response = future.get();
+        if (response.status == 200) {
+          admitted++;
+        } else {
+          assertThat(response.status, is(429));
+          assertThat(response.headers.get("Retry-After"), is("1"));
+          rejected++;
+        }
+      }
+      assertThat(admitted, is(2));
+      assertThat(rejected, is(4));
+      assertThat(backend.requests.get(), is(3));
+      assertThat(filter.getController().getInFlight(), is(0));
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRateLimited() throws Exception {
+    params.put(ThrottleFilter.PRINCIPAL_RATE_PARAM, "0.5");
+    params.put(ThrottleFilter.PRINCIPAL_BURST_PARAM, "2");
+    ThrottleFilter filter = createFilter();
+    Backend backend = new Backend();
+    backend.release.countDown();
+
+    assertThat(request(filter, "alice", backend).call().status, is(200));
+    assertThat(request(filter, "alice", backend).call().status, is(200));
+    TestResponse rejected = request(filter, "alice", backend).call();
+    assertThat(rejected.status, is(429));
+    assertThat(rejected.headers.get("Retry-After"), is("2"));
+    assertThat(request(filter, "bob", backend).call().status, is(200));
+    assertThat(backend.requests.get(), is(3));
+  }
+
+  @Test
+  public void testResourcesOfServiceShareLimits() throws Exception {
+    params.put(ThrottleFilter.PRINCIPAL_RATE_PARAM, "1");
+    ThrottleFilter first = createFilter();
+    ThrottleFilter second = createFilter();
+    assertThat(second.getController(), sameInstance(first.getController()));
+
+    params.put(ThrottleFilter.SERVICE_ROLE_PARAM, "OOZIE");
+    assertThat(createFilter().getController() == first.getController(), is(false));
+  }
+
+  @Test
+  public void testControllerDroppedWithLastFilter() throws Exception {
+    ThrottleFilter first = createFilter();
+    ThrottleFilter second = createFilter();
+    AdmissionController controller = first.getController();
+
+    first.destroy();
+    assertThat(attributes.containsValue(controller), is(true));
+    second.destroy();
+    assertThat(attributes.containsValue(controller), is(false));
+
+    assertThat(createFilter().getController() == controller, is(false));
+  }
+
+  @Test
+  public void testReleasedWhenDispatchFails() throws Exception {
+    params.put(ThrottleFilter.PRINCIPAL_CONCURRENCY_PARAM, "1");
+    ThrottleFilter filter = createFilter();
+    FilterChain failing = new FilterChain() {
+      @Override
+      public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+        throw new IOException("Backend unavailable");
+      }
+    };
+    for (int i = 0; i < 3; i++) {
+      try {
+        request(filter, "alice", failing).call();
+        fail("Expected the failure of the dispatch to be propagated");
+      } catch (PrivilegedActionException e) {
+        assertThat(e.getCause() instanceof IOException, is(true));
+      }
+    }
+    assertThat(filter.getController().getInFlight(), is(0));
+  }
+
+  private ThrottleFilter createFilter() throws ServletException {
+    final ServletContext context = new MockServletContext() {
+      @Override
+      public Object getAttribute(String name) {
+        return attributes.get(name);
+      }
+
+      @Override
+      public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+      }
+
+      @Override
+      public void removeAttribute(String name) {
+        attributes.remove(name);
+      }
+    };
+    final Map<String, String> config = new HashMap<>(params);
+    ThrottleFilter filter = new ThrottleFilter();
+    filter.init(new MockFilterConfig() {
+      @Override
+      public ServletContext getServletContext() {
+        return context;
+      }
+
+      @Override
+      public String getInitParameter(String name) {
+        return config.get(name);
+      }
+    });
+    return filter;
+  }
+
+  private static Callable<TestResponse> request(final ThrottleFilter filter, String user, final FilterChain chain) {
+    final Subject subject = new Subject();
+    subject.getPrincipals().add(new PrimaryPrincipal(user));
+    return new Callable<TestResponse>() {
+      @Override
+      public TestResponse call() throws Exception {
+        final TestResponse response = new TestResponse();
+        Subject.doAs(subject, new PrivilegedExceptionAction<Void>() {
+          @Override
+          public Void run() throws Exception {
+            filter.doFilter(new MockHttpServletRequest(), response, chain);
+            return null;
+          }
+        });
+        return response;
+      }
+    };
+  }
+
+  /**
+   * Stands in for the dispatch, holding every request until it is released.
+   */
+  private static class Backend implements FilterChain {
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicInteger active = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+      requests.incrementAndGet();
+      active.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      } finally {
+        active.decrementAndGet();
+      }
+      ((TestResponse) response).status = 200;
+    }
+  }
+
+  private static class TestResponse extends MockHttpServletResponse {
+    volatile int status;
+    final Map<String, String> headers = new HashMap<>();
+
+    @Override
+    public void setHeader(String name, String value) {
+      headers.put(name, value);
+    }
+
+    @Override
+    public void sendError(int status) {
+      this.status = status;
+    }
+  }
+
+}
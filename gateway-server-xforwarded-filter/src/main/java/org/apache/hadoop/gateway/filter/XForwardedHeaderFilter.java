@@ -17,16 +17,37 @@
  */
 package org.apache.hadoop.gateway.filter;
 
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.util.IpAddressMatcher;
+
 import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.List;
 
 public class XForwardedHeaderFilter extends AbstractGatewayFilter {
 
+  private IpAddressMatcher trustedProxies;
+
+  @Override
+  public void init( FilterConfig filterConfig ) throws ServletException {
+    super.init( filterConfig );
+    ServletContext context = filterConfig == null ? null : filterConfig.getServletContext();
+    Object config = context == null ? null : context.getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
+    if( config instanceof GatewayConfig ) {
+      List<String> proxies = ((GatewayConfig)config).getXForwardedTrustedProxies();
+      if( proxies != null && !proxies.isEmpty() ) {
+        trustedProxies = new IpAddressMatcher( proxies );
+      }
+    }
+  }
+
   @Override
   protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
-    chain.doFilter( new XForwardedHeaderRequestWrapper( request ), response );
+    chain.doFilter( new XForwardedHeaderRequestWrapper( request, trustedProxies ), response );
   }
 }
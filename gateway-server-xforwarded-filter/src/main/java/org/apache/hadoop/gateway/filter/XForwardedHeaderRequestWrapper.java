@@ -17,109 +17,159 @@
  */
 package org.apache.hadoop.gateway.filter;
 
+import org.apache.hadoop.gateway.util.IpAddressMatcher;
+
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.List;
 
+/**
+ * Adds the X-Forwarded headers describing the request as the gateway received it.
+ *
+ * The header values are computed once when the request is wrapped and kept in a fixed table, so lookups neither
+ * allocate nor normalize the header name. When trusted proxies are given, X-Forwarded headers sent by any other
+ * client are ignored, and the remote address is the first address in the X-Forwarded-For chain, counting from the
+ * gateway, that is not a trusted proxy.
+ */
 public class XForwardedHeaderRequestWrapper extends GatewayRequestWrapper {
 
+  private static final String X_FORWARDED_PREFIX = "X-Forwarded-";
   private static final String X_FORWARDED_FOR = "X-Forwarded-For";
-  private static final String X_FORWARDED_FOR_LOWER = X_FORWARDED_FOR.toLowerCase();
   private static final String X_FORWARDED_PROTO = "X-Forwarded-Proto";
-  private static final String X_FORWARDED_PROTO_LOWER = X_FORWARDED_PROTO.toLowerCase();
   private static final String X_FORWARDED_PORT = "X-Forwarded-Port";
-  private static final String X_FORWARDED_PORT_LOWER = X_FORWARDED_PORT.toLowerCase();
   private static final String X_FORWARDED_HOST = "X-Forwarded-Host";
-  private static final String X_FORWARDED_HOST_LOWER = X_FORWARDED_HOST.toLowerCase();
   private static final String X_FORWARDED_SERVER = "X-Forwarded-Server";
-  private static final String X_FORWARDED_SERVER_LOWER = X_FORWARDED_SERVER.toLowerCase();
   private static final String X_FORWARDED_CONTEXT = "X-Forwarded-Context";
-  private static final String X_FORWARDED_CONTEXT_LOWER = X_FORWARDED_CONTEXT.toLowerCase();
-  private static final ArrayList<String> headerNames = new ArrayList<>();
-
-  static {
-    headerNames.add(X_FORWARDED_FOR);
-    headerNames.add(X_FORWARDED_PROTO);
-    headerNames.add(X_FORWARDED_PORT);
-    headerNames.add(X_FORWARDED_HOST);
-    headerNames.add(X_FORWARDED_SERVER);
-    headerNames.add(X_FORWARDED_CONTEXT);
-  }
 
-  Hashtable<String,String> proxyHeaders = new Hashtable<String, String>();
+  private static final String[] HEADER_NAMES = {
+      X_FORWARDED_FOR, X_FORWARDED_PROTO, X_FORWARDED_PORT, X_FORWARDED_HOST, X_FORWARDED_SERVER, X_FORWARDED_CONTEXT };
+  private static final int FOR = 0;
+  private static final int PROTO = 1;
+  private static final int PORT = 2;
+  private static final int HOST = 3;
+  private static final int SERVER = 4;
+  private static final int CONTEXT = 5;
+
+  private final String[] headerValues = new String[ HEADER_NAMES.length ];
+  private final String remoteAddr;
+  private List<String> headerNames;
 
   public XForwardedHeaderRequestWrapper(HttpServletRequest request) {
+    this( request, null );
+  }
+
+  /**
+   * @param trustedProxies The proxies whose X-Forwarded headers are honored, or null to honor those of every client.
+   */
+  public XForwardedHeaderRequestWrapper(HttpServletRequest request, IpAddressMatcher trustedProxies) {
     super( request );
-    setHeader( X_FORWARDED_FOR_LOWER, getForwardedFor( request ) );
-    setHeader( X_FORWARDED_PROTO_LOWER, getForwardedProto( request ) );
-    setHeader( X_FORWARDED_PORT_LOWER, getForwardedPort( request ) );
-    setHeader( X_FORWARDED_HOST_LOWER, getForwardedHost( request ) );
-    setHeader( X_FORWARDED_SERVER_LOWER, getForwardedServer( request ) );
-    setHeader( X_FORWARDED_CONTEXT_LOWER, getForwardedContext( request ) );
+    String peer = request.getRemoteAddr();
+    boolean trusted = trustedProxies == null || ( peer != null && trustedProxies.matches( peer ) );
+    String forwardedFor = trusted ? request.getHeader( X_FORWARDED_FOR ) : null;
+    String forwardedHost = getForwardedHost( request, trusted );
+    headerValues[ FOR ] = getForwardedFor( forwardedFor, peer );
+    headerValues[ PROTO ] = getForwardedProto( request, trusted );
+    headerValues[ PORT ] = getForwardedPort( request, trusted, forwardedHost );
+    headerValues[ HOST ] = forwardedHost;
+    headerValues[ SERVER ] = request.getServerName();
+    headerValues[ CONTEXT ] = getForwardedContext( request, trusted );
+    remoteAddr = trustedProxies != null && trusted ? getClientAddr( forwardedFor, peer, trustedProxies ) : null;
   }
 
   @Override
   public Enumeration<String> getHeaderNames() {
-    return new CompositeEnumeration<>( Collections.enumeration(headerNames), super.getHeaderNames() );
+    if( headerNames == null ) {
+      List<String> names = new ArrayList<>();
+      for( int i = 0; i < HEADER_NAMES.length; i++ ) {
+        if( headerValues[ i ] != null ) {
+          names.add( HEADER_NAMES[ i ] );
+        }
+      }
+      Enumeration<String> received = super.getHeaderNames();
+      while( received != null && received.hasMoreElements() ) {
+        String name = received.nextElement();
+        if( indexOf( name ) < 0 ) {
+          names.add( name );
+        }
+      }
+      headerNames = names;
+    }
+    return Collections.enumeration( headerNames );
   }
 
   @Override
   public Enumeration<String> getHeaders( String name ) {
-    name = name.toLowerCase();
-    Enumeration<String> values;
-    String value = proxyHeaders.get( name );
-    if( value != null ) {
-      values = Collections.enumeration(Arrays.asList(value));
-    } else {
-      values = super.getHeaders( name );
+    int index = indexOf( name );
+    if( index < 0 ) {
+      return super.getHeaders( name );
     }
-    return values;
+    String value = headerValues[ index ];
+    return Collections.enumeration( value == null ? Collections.<String>emptyList() : Collections.singletonList( value ) );
   }
 
   @Override
   public String getHeader( String name ) {
-    name = name.toLowerCase();
-    String value = proxyHeaders.get( name );
-    if( value == null ) {
-      value = super.getHeader( name );
+    int index = indexOf( name );
+    return index < 0 ? super.getHeader( name ) : headerValues[ index ];
+  }
+
+  @Override
+  public String getRemoteAddr() {
+    return remoteAddr == null ? super.getRemoteAddr() : remoteAddr;
+  }
+
+  private static int indexOf( String name ) {
+    if( name != null && name.regionMatches( true, 0, X_FORWARDED_PREFIX, 0, X_FORWARDED_PREFIX.length() ) ) {
+      for( int i = 0; i < HEADER_NAMES.length; i++ ) {
+        if( HEADER_NAMES[ i ].equalsIgnoreCase( name ) ) {
+          return i;
+        }
+      }
     }
-    return value;
+    return -1;
   }
 
-  private void setHeader( String name, String value ) {
-    if( name != null && value != null ) {
-      proxyHeaders.put( name, value );
+  private static String getForwardedFor( String forwardedFor, String peer ) {
+    if( forwardedFor == null ) {
+      return peer;
     }
+    return forwardedFor + "," + peer;
   }
 
-  private static String getForwardedFor( HttpServletRequest request ) {
-    String value;
-    String curr = request.getHeader( X_FORWARDED_FOR );
-    String addr = request.getRemoteAddr();
-    if( curr == null ) {
-      value = addr;
-    } else {
-      value = curr + "," + addr;
+  // Walks the chain back from the gateway, skipping the trusted proxies, to the address that connected to them
+  private static String getClientAddr( String forwardedFor, String peer, IpAddressMatcher trustedProxies ) {
+    String client = peer;
+    if( forwardedFor != null ) {
+      int end = forwardedFor.length();
+      while( end > 0 ) {
+        int start = forwardedFor.lastIndexOf( ',', end - 1 ) + 1;
+        String addr = forwardedFor.substring( start, end ).trim();
+        if( !addr.isEmpty() ) {
+          client = addr;
+          if( !trustedProxies.matches( addr ) ) {
+            break;
+          }
+        }
+        end = start - 1;
+      }
     }
-    return value;
+    return client;
   }
 
-  private static String getForwardedProto( HttpServletRequest request ) {
-    String value = request.getHeader( X_FORWARDED_PROTO );
+  private static String getForwardedProto( HttpServletRequest request, boolean trusted ) {
+    String value = trusted ? request.getHeader( X_FORWARDED_PROTO ) : null;
     if( value == null ) {
       value = request.isSecure() ? "https" : "http";
     }
     return value;
   }
 
-  private static String getForwardedPort( HttpServletRequest request ) {
-    String value = request.getHeader( X_FORWARDED_PORT );
+  private static String getForwardedPort( HttpServletRequest request, boolean trusted, String forwardedHost ) {
+    String value = trusted ? request.getHeader( X_FORWARDED_PORT ) : null;
     if( value == null ) {
-      String forwardedHost = getForwardedHost( request );
-      int separator = forwardedHost.indexOf( ":" );
+      int separator = forwardedHost == null ? -1 : forwardedHost.indexOf( ":" );
       if ( separator > 0 ) {
           value = forwardedHost.substring(separator + 1, forwardedHost.length());
       } else {
@@ -130,20 +180,16 @@ public class XForwardedHeaderRequestWrapper extends GatewayRequestWrapper {
     return value;
   }
 
-  private static String getForwardedHost( HttpServletRequest request ) {
-    String value = request.getHeader( X_FORWARDED_HOST );
+  private static String getForwardedHost( HttpServletRequest request, boolean trusted ) {
+    String value = trusted ? request.getHeader( X_FORWARDED_HOST ) : null;
     if( value == null ) {
       value = request.getHeader( "Host" );
     }
     return value;
   }
 
-  private static String getForwardedServer( HttpServletRequest request ) {
-    return request.getServerName();
-  }
-
-  private static String getForwardedContext( HttpServletRequest request ) {
-    String remote = request.getHeader( X_FORWARDED_CONTEXT );
+  private static String getForwardedContext( HttpServletRequest request, boolean trusted ) {
+    String remote = trusted ? request.getHeader( X_FORWARDED_CONTEXT ) : null;
     String local = request.getContextPath();
     return ( remote == null ? "" : remote ) + ( local == null ? "" : local );
   }
@@ -17,16 +17,24 @@
  */
 package org.apache.hadoop.gateway.filter;
 
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.util.IpAddressMatcher;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
 import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 public class XForwardHeaderFilterTest {
@@ -105,4 +113,95 @@ public class XForwardHeaderFilterTest {
     chain.push( filter );
     chain.doFilter( request, response );
   }
+
+  private static XForwardedHeaderFilter createFilter( String... trustedProxies ) throws ServletException {
+    GatewayConfig config = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( config.getXForwardedTrustedProxies() ).andReturn( Arrays.asList( trustedProxies ) ).anyTimes();
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE ) ).andReturn( config ).anyTimes();
+    FilterConfig filterConfig = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( filterConfig.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.replay( config, context, filterConfig );
+    XForwardedHeaderFilter filter = new XForwardedHeaderFilter();
+    filter.init( filterConfig );
+    return filter;
+  }
+
+  private static HttpServletRequest createProxiedRequest( String remoteAddr, String forwardedFor ) {
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( request.getHeader( "X-Forwarded-For" ) ).andReturn( forwardedFor ).anyTimes();
+    EasyMock.expect( request.getHeader( "X-Forwarded-Proto" ) ).andReturn( "https" ).anyTimes();
+    EasyMock.expect( request.getHeader( "X-Forwarded-Host" ) ).andReturn( "remotehost:9999" ).anyTimes();
+    EasyMock.expect( request.getHeader( "X-Forwarded-Context" ) ).andReturn( "/upstream" ).anyTimes();
+    EasyMock.expect( request.getHeaderNames() ).andReturn( Collections.enumeration(
+        Arrays.asList( "x-forwarded-for", "X-Forwarded-Proto", "X-Forwarded-Host", "X-Forwarded-Context", "Host", "Accept" ) ) ).anyTimes();
+    EasyMock.expect( request.getRemoteAddr() ).andReturn( remoteAddr ).anyTimes();
+    EasyMock.expect( request.isSecure() ).andReturn( false ).anyTimes();
+    EasyMock.expect( request.getHeader( "Host" ) ).andReturn( "localhost:8888" ).anyTimes();
+    EasyMock.expect( request.getServerName() ).andReturn( "localhost" ).anyTimes();
+    EasyMock.expect( request.getContextPath() ).andReturn( "/context" ).anyTimes();
+    EasyMock.replay( request );
+    return request;
+  }
+
+  public static class AssertTrustedProxyHeaders extends TestFilterAdapter {
+    @Override
+    public void doFilter( HttpServletRequest request, HttpServletResponse response, FilterChain chain ) throws IOException, ServletException {
+      assertThat( request.getRemoteAddr(), is( "192.0.2.7" ) );
+      assertThat( request.getHeader( "x-forwarded-for" ), is( "198.51.100.1, 192.0.2.7, 10.0.0.2,10.0.0.1" ) );
+      assertThat( request.getHeader( "X-FORWARDED-PROTO" ), is( "https" ) );
+      assertThat( request.getHeader( "X-Forwarded-Port" ), is( "9999" ) );
+      assertThat( request.getHeader( "X-Forwarded-Context" ), is( "/upstream/context" ) );
+      assertThat( Collections.list( request.getHeaders( "X-Forwarded-Host" ) ), is( Collections.singletonList( "remotehost:9999" ) ) );
+      List<String> names = Collections.list( request.getHeaderNames() );
+      assertThat( names, is( Arrays.asList( "X-Forwarded-For", "X-Forwarded-Proto", "X-Forwarded-Port",
+          "X-Forwarded-Host", "X-Forwarded-Server", "X-Forwarded-Context", "Host", "Accept" ) ) );
+    }
+  }
+
+  @Test
+  public void testTrustedProxyHeaders() throws ServletException, IOException {
+    HttpServletRequest request = createProxiedRequest( "10.0.0.1", "198.51.100.1, 192.0.2.7, 10.0.0.2" );
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+
+    TestFilterChain chain = new TestFilterChain();
+    chain.push( new AssertTrustedProxyHeaders() );
+    chain.push( createFilter( "10.0.0.0/8" ) );
+    chain.doFilter( request, response );
+  }
+
+  public static class AssertUntrustedProxyHeaders extends TestFilterAdapter {
+    @Override
+    public void doFilter( HttpServletRequest request, HttpServletResponse response, FilterChain chain ) throws IOException, ServletException {
+      assertThat( request.getRemoteAddr(), is( "192.0.2.7" ) );
+      assertThat( request.getHeader( "X-Forwarded-For" ), is( "192.0.2.7" ) );
+      assertThat( request.getHeader( "X-Forwarded-Proto" ), is( "http" ) );
+      assertThat( request.getHeader( "X-Forwarded-Port" ), is( "8888" ) );
+      assertThat( request.getHeader( "X-Forwarded-Host" ), is( "localhost:8888" ) );
+      assertThat( request.getHeader( "X-Forwarded-Context" ), is( "/context" ) );
+      assertThat( request.getHeader( "Accept" ), nullValue() );
+    }
+  }
+
+  @Test
+  public void testUntrustedProxyHeaders() throws ServletException, IOException {
+    HttpServletRequest request = createProxiedRequest( "192.0.2.7", "198.51.100.1" );
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+
+    TestFilterChain chain = new TestFilterChain();
+    chain.push( new AssertUntrustedProxyHeaders() );
+    chain.push( createFilter( "10.0.0.0/8" ) );
+    chain.doFilter( request, response );
+  }
+
+  @Test
+  public void testAllProxiesTrusted() {
+    XForwardedHeaderRequestWrapper wrapper = new XForwardedHeaderRequestWrapper(
+        createProxiedRequest( "10.0.0.1", "10.0.0.3,10.0.0.2" ), IpAddressMatcher.compile( "10.0.0.0/8" ) );
+    assertThat( wrapper.getRemoteAddr(), is( "10.0.0.3" ) );
+    assertThat( wrapper.getHeader( "X-Forwarded-For" ), is( "10.0.0.3,10.0.0.2,10.0.0.1" ) );
+  }
+
 }
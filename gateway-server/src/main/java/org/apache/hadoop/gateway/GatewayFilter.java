@@ -32,6 +32,9 @@ import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
 import org.apache.hadoop.gateway.topology.Topology;
+import org.apache.hadoop.gateway.tracing.Span;
+import org.apache.hadoop.gateway.tracing.TraceIds;
+import org.apache.hadoop.gateway.tracing.Tracer;
 import org.apache.hadoop.gateway.util.urltemplate.Matcher;
 import org.apache.hadoop.gateway.util.urltemplate.Parser;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
@@ -56,7 +59,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -78,6 +83,9 @@ public class GatewayFilter implements Filter {
   private Set<Holder> holders;
   private Matcher<Chain> chains;
   private FilterConfig config;
+  private final AtomicInteger active = new AtomicInteger();
+  private final CountDownLatch idle = new CountDownLatch( 1 );
+  private volatile boolean retired;
 
   public GatewayFilter() {
     holders = new HashSet<>();
@@ -167,6 +175,8 @@ public class GatewayFilter implements Filter {
     if( match != null ) {
       Chain chain = match.getValue();
       servletRequest.setAttribute( AbstractGatewayFilter.TARGET_SERVICE_ROLE, chain.getResourceRole() );
+      Span span = Tracer.startSpan( "filter-chain" );
+      span.setAttribute( "service.role", chain.getResourceRole() );
       try {
         chain.doFilter( servletRequest, servletResponse );
       } catch( IOException e ) {
@@ -189,6 +199,8 @@ public class GatewayFilter implements Filter {
         LOG.failedToExecuteFilter( e );
         auditor.audit( Action.ACCESS, contextWithPathAndQuery, ResourceType.URI, ActionOutcome.FAILURE );
         throw new ServletException( e );
+      } finally {
+        span.end();
       }
     } else {
       LOG.failedToMatchPath( requestPath );
@@ -219,6 +231,70 @@ public class GatewayFilter implements Filter {
     }
   }
 
+  /**
+   * Takes over the initialized filter instances of a filter being replaced wherever this filter
+   * has an identical filter (same path, name, class, role and params).  This keeps the state of
+   * unchanged providers, such as connection pools, across a topology change.
+   */
+  public void adoptFilters( GatewayFilter previous ) {
+    previous.releaseFilters( this );
+  }
+
+  /**
+   * Hands the initialized filter instances that match filters of the target over to it.
+   * Released instances keep serving the requests still being processed by this filter
+   * but are no longer destroyed by it.
+   */
+  public void releaseFilters( GatewayFilter target ) {
+    for( Holder holder : holders ) {
+      if( holder.instance != null && !holder.released ) {
+        for( Holder candidate : target.holders ) {
+          if( candidate.instance == null && candidate.isSameFilter( holder ) ) {
+            candidate.instance = holder.instance;
+            candidate.clazz = holder.clazz;
+            holder.released = true;
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Registers a request that is about to be processed by this filter.  Every successful call
+   * must be paired with a call to {@link #exitRequest()}.
+   *
+   * @return False if this filter has been retired and must not be used for the request.
+   */
+  public boolean enterRequest() {
+    active.incrementAndGet();
+    // Checked after the increment so a concurrent retire either waits for this request or is seen by it.
+    if( retired ) {
+      exitRequest();
+      return false;
+    }
+    return true;
+  }
+
+  public void exitRequest() {
+    if( active.decrementAndGet() == 0 && retired ) {
+      idle.countDown();
+    }
+  }
+
+  /**
+   * Stops this filter from accepting requests and waits for the requests it is processing to complete.
+   *
+   * @return True if no requests remained within the timeout.
+   */
+  public boolean retire( long timeout ) throws InterruptedException {
+    retired = true;
+    if( active.get() == 0 ) {
+      idle.countDown();
+    }
+    return idle.await( timeout, TimeUnit.MILLISECONDS );
+  }
+
   private void addHolder( Holder holder ) {
     holders.add( holder );
     Chain chain = chains.get( holder.template );
@@ -253,7 +329,7 @@ public class GatewayFilter implements Filter {
     }
     String requestId = correlationContext.getRequestId();
     if( requestId == null ) {
-      correlationContext.setRequestId( UUID.randomUUID().toString() );
+      correlationContext.setRequestId( TraceIds.newRequestId() );
     }
   }
 
@@ -305,6 +381,7 @@ public class GatewayFilter implements Filter {
     private Class<? extends Filter> clazz;
     private String type;
     private String resourceRole;
+    private volatile boolean released;
 
     private Holder( String path, String name, Filter filter, Map<String,String> params, String resourceRole ) throws URISyntaxException {
 //      this.path = path;
@@ -379,7 +456,8 @@ public class GatewayFilter implements Filter {
 
     @Override
     public void destroy() {
-      if( instance != null ) {
+      // A released instance belongs to the filter that adopted it.
+      if( instance != null && !released ) {
         instance.destroy();
         instance = null;
       }
@@ -416,6 +494,20 @@ public class GatewayFilter implements Filter {
       return resourceRole;
     }
 
+    private boolean isSameFilter( Holder other ) {
+      String otherType = other.clazz != null ? other.clazz.getName() : other.type;
+      String thisType = clazz != null ? clazz.getName() : type;
+      return template.equals( other.template ) &&
+          equal( name, other.name ) &&
+          equal( thisType, otherType ) &&
+          equal( resourceRole, other.resourceRole ) &&
+          equal( params, other.params );
+    }
+
+    private boolean equal( Object left, Object right ) {
+      return left == null ? right == null : left.equals( right );
+    }
+
   }
 
   /**
@@ -612,4 +612,59 @@ public interface GatewayMessages {
                                      final String clusterName,
                                      @StackTrace(level = MessageLevel.DEBUG) Exception e);
 
+  @Message(level = MessageLevel.INFO,
+           text = "Exporting trace spans using {0}")
+  void exportingTraceSpans(String exporter);
+
+  @Message( level = MessageLevel.INFO, text = "Copying deployment {1} for topology {0} instead of rebuilding it because its content is unchanged." )
+  void reusingTopologyDeployment( String topologyName, String deploymentDir );
+
+  @Message( level = MessageLevel.INFO, text = "Topology {0} took {1}ms to prepare and {2}ms to activate." )
+  void topologyDeploymentTime( String topologyName, long prepareMillis, long activateMillis );
+
+  @Message( level = MessageLevel.INFO, text = "Deployed {0} topologies in {1}ms using {2} threads." )
+  void deployedTopologies( int count, long millis, int threads );
+
+  @Message( level = MessageLevel.WARN, text = "Failed to calculate the deployment content hash, topologies will be redeployed: {0}" )
+  void failedToCalculateDeploymentHash( @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.WARN, text = "Destroying replaced filter chains that are still processing requests after {0}ms." )
+  void destroyingBusyFilterChains( long timeout );
+
+  @Message( level = MessageLevel.INFO, text = "Reloaded the filter chains of topology {0} without restarting it." )
+  void reloadedTopologyFilterChains( String topologyName );
+
+  @Message( level = MessageLevel.INFO, text = "Restarting topology {0} because its deployment changed beyond its filter chains." )
+  void restartingTopology( String topologyName );
+
+  @Message( level = MessageLevel.WARN, text = "Failed to reload the filter chains of topology {0}, restarting it: {1}" )
+  void failedToReloadTopologyFilterChains( String topologyName, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.INFO, text = "Remote configuration monitor applied {0} changes from a burst of {1} remote events." )
+  void appliedRemoteConfigChanges( int changes, int events );
+
+  @Message( level = MessageLevel.DEBUG, text = "Watching directory {0} for changes using native file system notifications." )
+  void watchingDirectory( String directory );
+
+  @Message( level = MessageLevel.INFO, text = "Polling directory {0} for changes every {1}ms because native file system notifications are not available." )
+  void pollingDirectory( String directory, long interval );
+
+  @Message( level = MessageLevel.ERROR, text = "Error processing changes in directory {0} : {1}" )
+  void errorProcessingDirectoryChanges( String directory, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.INFO, text = "Shedding requests beyond an adaptive concurrency limit starting at {0}, between {1} and {2}." )
+  void adaptiveConcurrencyEnabled( int initialLimit, int minLimit, int maxLimit );
+
+  @Message( level = MessageLevel.DEBUG, text = "Adaptive concurrency limit changed to {0}." )
+  void adaptiveConcurrencyLimitChanged( int limit );
+
+  @Message( level = MessageLevel.DEBUG, text = "Shed request {0} with {1} requests in flight and a limit of {2}." )
+  void shedRequest( String uri, int inFlight, int limit );
+
+  @Message( level = MessageLevel.WARN, text = "Failed to refresh the groups of {0}, serving the cached groups: {1}" )
+  void failedToRefreshGroups( String user, @StackTrace( level = MessageLevel.DEBUG ) Throwable e );
+
+  @Message( level = MessageLevel.DEBUG, text = "Credential store for cluster {0} changed, discarding its cached aliases." )
+  void credentialStoreChanged( String clusterName );
+
 }
@@ -17,10 +17,12 @@
  */
 package org.apache.hadoop.gateway;
 
+import com.codahale.metrics.MetricRegistry;
 import net.lingala.zip4j.core.ZipFile;
 import net.lingala.zip4j.exception.ZipException;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.ParseException;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -32,14 +34,21 @@ import org.apache.hadoop.gateway.audit.api.ResourceType;
 import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.config.impl.GatewayConfigImpl;
+import org.apache.hadoop.gateway.deploy.DeploymentContext;
+import org.apache.hadoop.gateway.deploy.DeploymentContextImpl;
 import org.apache.hadoop.gateway.deploy.DeploymentException;
 import org.apache.hadoop.gateway.deploy.DeploymentFactory;
+import org.apache.hadoop.gateway.descriptor.GatewayDescriptor;
+import org.apache.hadoop.gateway.descriptor.GatewayDescriptorFactory;
+import org.apache.hadoop.gateway.filter.AdaptiveConcurrencyHandler;
 import org.apache.hadoop.gateway.filter.CorrelationHandler;
 import org.apache.hadoop.gateway.filter.PortMappingHelperHandler;
 import org.apache.hadoop.gateway.filter.RequestUpdateHandler;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
 import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.GatewayServicesContextListener;
+import org.apache.hadoop.gateway.services.metrics.MetricsService;
 import org.apache.hadoop.gateway.services.registry.ServiceRegistry;
 import org.apache.hadoop.gateway.services.security.SSLService;
 import org.apache.hadoop.gateway.services.topology.TopologyService;
@@ -50,12 +59,14 @@ import org.apache.hadoop.gateway.topology.TopologyListener;
 import org.apache.hadoop.gateway.trace.AccessHandler;
 import org.apache.hadoop.gateway.trace.ErrorHandler;
 import org.apache.hadoop.gateway.trace.TraceHandler;
+import org.apache.hadoop.gateway.tracing.Tracer;
 import org.apache.hadoop.gateway.util.Urls;
 import org.apache.hadoop.gateway.util.XmlUtils;
 import org.apache.hadoop.gateway.websockets.GatewayWebsocketHandler;
 import org.apache.log4j.PropertyConfigurator;
 import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.NetworkConnector;
@@ -66,7 +77,11 @@ import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.server.handler.HandlerCollection;
 import org.eclipse.jetty.server.handler.RequestLogHandler;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.servlets.gzip.GzipHandler;
+import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.webapp.Configuration;
@@ -79,13 +94,18 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import javax.servlet.ServletException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.Serializable;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
@@ -93,20 +113,31 @@ import java.net.Socket;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 public class GatewayServer {
@@ -115,6 +146,8 @@ public class GatewayServer {
   private static final Auditor auditor = AuditServiceFactory.getAuditService().getAuditor(AuditConstants.DEFAULT_AUDITOR_NAME,
       AuditConstants.KNOX_SERVICE_NAME, AuditConstants.KNOX_COMPONENT_NAME);
   private static final String DEFAULT_CONNECTOR_NAME = "default";
+  private static final String DEPLOYMENT_HASH_FILE = "deployment.sha256";
+  private static final String DEPLOYMENT_HASH_ALGORITHM = "SHA-256";
 
   private static GatewayServer server;
   private static GatewayServices services;
@@ -428,9 +461,21 @@ public class GatewayServer {
     gzipHandler.addIncludedMimeTypes(mimeTypes);
     gzipHandler.setHandler(correlationHandler);
 
+    // Shed excess requests before any work is spent on them
+    Handler admissionHandler = gzipHandler;
+    if (config.isAdaptiveConcurrencyEnabled()) {
+      AdaptiveConcurrencyHandler concurrencyHandler = new AdaptiveConcurrencyHandler(config);
+      concurrencyHandler.setHandler(gzipHandler);
+      MetricRegistry registry = MetricsService.getMetricRegistry(services);
+      if (registry != null) {
+        concurrencyHandler.registerMetrics(registry);
+      }
+      admissionHandler = concurrencyHandler;
+    }
+
     // Used to correct the {target} part of request with Topology Port Mapping feature
     final PortMappingHelperHandler portMappingHandler = new PortMappingHelperHandler(config);
-    portMappingHandler.setHandler(gzipHandler);
+    portMappingHandler.setHandler(admissionHandler);
 
      // If topology to port mapping feature is enabled then we add new Handler {RequestForwardHandler}
      // to the chain, this handler listens on the configured port (in gateway-site.xml)
@@ -593,6 +638,8 @@ public class GatewayServer {
 
     jetty.setHandler(handlers);
 
+    configureTracing();
+
     try {
       jetty.start();
     }
@@ -614,9 +661,20 @@ public class GatewayServer {
     monitor.stopMonitor();
     jetty.stop();
     jetty.join();
+    Tracer.shutdown();
     log.stoppedGateway();
   }
 
+  private void configureTracing() {
+    if( config.isTracingEnabled() ) {
+      String exporter = config.getTracingExporter();
+      if( Tracer.configure( exporter, config.getTracingExporterOptions(), config.getTracingQueueSize(),
+          config.getTracingBatchSize(), config.getTracingFlushInterval() ) ) {
+        log.exportingTraceSpans( exporter );
+      }
+    }
+  }
+
   /**
    * Check whether a port is free
    *
@@ -687,7 +745,7 @@ public class GatewayServer {
     return errorHandler;
   }
 
-  private WebAppContext createWebAppContext( Topology topology, File warFile, String warPath ) throws IOException, ZipException, TransformerException, SAXException, ParserConfigurationException {
+  private WebAppContext createWebAppContext( Topology topology, File warFile, String warPath, DeploymentContext deploymentContext ) throws IOException, ZipException, TransformerException, SAXException, ParserConfigurationException {
     String topoName = topology.getName();
     WebAppContext context = new WebAppContext();
     String contextPath;
@@ -704,6 +762,13 @@ public class GatewayServer {
     context.setTempDirectory( FileUtils.getFile( warFile, "META-INF", "temp" ) );
     context.setErrorHandler( createErrorHandler() );
     context.setInitParameter("org.eclipse.jetty.servlet.Default.dirAllowed", "false");
+    if( deploymentContext instanceof DeploymentContextImpl ) {
+      // Hand over the descriptors built for this deployment so they are not parsed back from the archive.
+      context.setAttribute( GatewayServlet.GATEWAY_DESCRIPTOR_ATTRIBUTE, deploymentContext.getGatewayDescriptor() );
+      for( Map.Entry<String, Object> descriptor : ((DeploymentContextImpl)deploymentContext).getDescriptors().entrySet() ) {
+        context.setAttribute( DeploymentContext.DESCRIPTOR_ATTRIBUTE_PREFIX + descriptor.getKey(), descriptor.getValue() );
+      }
+    }
 
     return context;
   }
@@ -747,7 +812,7 @@ public class GatewayServer {
     }
   }
 
-  private synchronized void internalDeployApplications( Topology topology, File topoDir ) throws IOException, ZipException, ParserConfigurationException, TransformerException, SAXException {
+  private void internalDeployApplications( Topology topology, File topoDir ) throws IOException, ZipException, ParserConfigurationException, TransformerException, SAXException {
     if( topology != null ) {
       Collection<Application> applications = topology.getApplications();
       if( applications != null ) {
@@ -765,7 +830,7 @@ public class GatewayServer {
     }
   }
 
-  private synchronized void internalDeployApplication( Topology topology, File topoDir, Application application, String url ) throws IOException, ZipException, TransformerException, SAXException, ParserConfigurationException {
+  private void internalDeployApplication( Topology topology, File topoDir, Application application, String url ) throws IOException, ZipException, TransformerException, SAXException, ParserConfigurationException {
     File appsDir = new File( config.getGatewayApplicationsDir() );
     File appDir = new File( appsDir, application.getName() );
     File[] implFiles = appDir.listFiles( new RegexFilenameFilter( "app|app\\..*" ) );
@@ -781,19 +846,27 @@ public class GatewayServer {
   }
 
   private synchronized void internalActivateTopology( Topology topology, File topoDir ) throws IOException, ZipException, ParserConfigurationException, TransformerException, SAXException {
+    internalActivateTopology( topology, topoDir, null );
+  }
+
+  /**
+   * @param contexts The deployment contexts of the archives keyed by archive name or null if the
+   *                 archives need to be activated from their exploded content alone.
+   */
+  private synchronized void internalActivateTopology( Topology topology, File topoDir, Map<String, DeploymentContext> contexts ) throws IOException, ZipException, ParserConfigurationException, TransformerException, SAXException {
     log.activatingTopology( topology.getName() );
     File[] files = topoDir.listFiles( new RegexFilenameFilter( "%.*" ) );
     if( files != null ) {
       for( File file : files ) {
-        internalActivateArchive( topology, file );
+        internalActivateArchive( topology, file, contexts == null ? null : contexts.get( file.getName() ) );
       }
     }
   }
 
-  private synchronized void internalActivateArchive( Topology topology, File warDir ) throws IOException, ZipException, ParserConfigurationException, TransformerException, SAXException {
+  private synchronized void internalActivateArchive( Topology topology, File warDir, DeploymentContext deploymentContext ) throws IOException, ZipException, ParserConfigurationException, TransformerException, SAXException {
     log.activatingTopologyArchive( topology.getName(), warDir.getName() );
     try {
-      WebAppContext newContext = createWebAppContext( topology, warDir, Urls.decode( warDir.getName() ) );
+      WebAppContext newContext = createWebAppContext( topology, warDir, Urls.decode( warDir.getName() ), deploymentContext );
       WebAppContext oldContext = deployments.get( newContext.getContextPath() );
       deployments.put( newContext.getContextPath(), newContext );
       if( oldContext != null ) {
@@ -812,28 +885,23 @@ public class GatewayServer {
 
 
   private synchronized void internalDeactivateTopology( Topology topology ) {
+    removeClusterServices( topology );
+    internalDeactivateContexts( topology );
+  }
 
-    log.deactivatingTopology( topology.getName() );
-
-    String topoName = topology.getName();
-    String topoPath = "/" + Urls.trimLeadingAndTrailingSlashJoin( config.getGatewayPath(), topoName );
-    String topoPathSlash = topoPath + "/";
-
+  private void removeClusterServices( Topology topology ) {
     ServiceRegistry sr = getGatewayServices().getService(GatewayServices.SERVICE_REGISTRY_SERVICE);
     if (sr != null) {
-      sr.removeClusterServices( topoName );
+      sr.removeClusterServices( topology.getName() );
     }
+  }
+
+  private synchronized void internalDeactivateContexts( Topology topology ) {
+
+    log.deactivatingTopology( topology.getName() );
 
     // Find all the deployed contexts we need to deactivate.
-    List<WebAppContext> deactivate = new ArrayList<WebAppContext>();
-    if( deployments != null ) {
-      for( WebAppContext app : deployments.values() ) {
-        String appPath = app.getContextPath();
-        if( appPath.equals( topoPath ) || appPath.startsWith( topoPathSlash ) ) {
-          deactivate.add( app );
-        }
-      }
-    }
+    List<WebAppContext> deactivate = findTopologyContexts( topology );
 
     // Deactivate the required deployed contexts.
     for( WebAppContext context : deactivate ) {
@@ -851,21 +919,151 @@ public class GatewayServer {
 
   }
 
+  private List<WebAppContext> findTopologyContexts( Topology topology ) {
+    String topoPath = "/" + Urls.trimLeadingAndTrailingSlashJoin( config.getGatewayPath(), topology.getName() );
+    String topoPathSlash = topoPath + "/";
+    List<WebAppContext> found = new ArrayList<WebAppContext>();
+    if( deployments != null ) {
+      for( WebAppContext app : deployments.values() ) {
+        String appPath = app.getContextPath();
+        if( appPath.equals( topoPath ) || appPath.startsWith( topoPathSlash ) ) {
+          found.add( app );
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Swaps the filter chains of the running web applications of a topology for the ones of a new
+   * deployment.  This is only possible when the new archives differ from the running ones in
+   * nothing but their gateway.xml since everything else is bound to the web application itself.
+   * In particular a change to the parameters of the HA provider is written to ha.xml, which the
+   * HA provider only reads when the web application starts, so such a change restarts the topology.
+   *
+   * @return True if the topology was reloaded, false if it needs to be restarted.
+   */
+  private synchronized boolean internalReloadTopology( Topology topology, File topoDir, Map<String, DeploymentContext> contexts ) {
+    File[] files = topoDir.listFiles( new RegexFilenameFilter( "%.*" ) );
+    List<WebAppContext> running = findTopologyContexts( topology );
+    if( files == null || files.length == 0 || files.length != running.size() ) {
+      return false;
+    }
+    try {
+      Map<GatewayServlet, GatewayDescriptor> reloads = new HashMap<>();
+      Map<WebAppContext, File> contents = new HashMap<>();
+      for( File warDir : files ) {
+        String contextPath = "/" + Urls.trimLeadingAndTrailingSlashJoin( config.getGatewayPath(), topology.getName(), Urls.decode( warDir.getName() ) );
+        WebAppContext context = deployments.get( contextPath );
+        if( context == null || !context.isAvailable() || !isSameDeploymentContent( new File( context.getWar() ), warDir ) ) {
+          log.restartingTopology( topology.getName() );
+          return false;
+        }
+        GatewayServlet servlet = findGatewayServlet( context );
+        if( servlet == null ) {
+          return false;
+        }
+        DeploymentContext deploymentContext = contexts == null ? null : contexts.get( warDir.getName() );
+        GatewayDescriptor descriptor;
+        if( deploymentContext != null ) {
+          descriptor = deploymentContext.getGatewayDescriptor();
+        } else {
+          File descriptorFile = FileUtils.getFile( warDir, "WEB-INF", GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_DEFAULT );
+          try( Reader reader = new InputStreamReader( new FileInputStream( descriptorFile ), StandardCharsets.UTF_8 ) ) {
+            descriptor = GatewayDescriptorFactory.load( "xml", reader );
+          }
+        }
+        reloads.put( servlet, descriptor );
+        contents.put( context, warDir );
+      }
+      // Serve the identical content from the new deployment so that older ones can be cleaned up.
+      for( Map.Entry<WebAppContext, File> content : contents.entrySet() ) {
+        WebAppContext context = content.getKey();
+        context.setWar( content.getValue().getAbsolutePath() );
+        context.setBaseResource( Resource.newResource( content.getValue() ) );
+        context.getServletContext().setAttribute( GatewayServicesContextListener.TOPOLOGY_ATTRIBUTE, topology );
+      }
+      for( Map.Entry<GatewayServlet, GatewayDescriptor> reload : reloads.entrySet() ) {
+        reload.getKey().reload( reload.getValue() );
+      }
+      log.reloadedTopologyFilterChains( topology.getName() );
+      return true;
+    } catch( Exception e ) {
+      log.failedToReloadTopologyFilterChains( topology.getName(), e );
+      return false;
+    }
+  }
+
+  private static GatewayServlet findGatewayServlet( WebAppContext context ) throws ServletException {
+    ServletHandler handler = context.getServletHandler();
+    for( ServletHolder holder : handler.getServlets() ) {
+      if( GatewayServlet.class.getName().equals( holder.getClassName() ) ) {
+        return (GatewayServlet)holder.getServlet();
+      }
+    }
+    for( FilterHolder holder : handler.getFilters() ) {
+      if( holder.getFilter() instanceof GatewayServlet ) {
+        return (GatewayServlet)holder.getFilter();
+      }
+    }
+    return null;
+  }
+
+  // Archives with classes are bound to the class loader of the running web application.
+  private static boolean isSameDeploymentContent( File runningDir, File newDir ) throws IOException {
+    if( new File( newDir, "WEB-INF/classes" ).exists() || new File( newDir, "WEB-INF/lib" ).exists() ) {
+      return false;
+    }
+    Map<String, File> running = listDeploymentContent( runningDir );
+    Map<String, File> updated = listDeploymentContent( newDir );
+    if( !running.keySet().equals( updated.keySet() ) ) {
+      return false;
+    }
+    for( Map.Entry<String, File> entry : running.entrySet() ) {
+      if( !FileUtils.contentEquals( entry.getValue(), updated.get( entry.getKey() ) ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Lists the files of an exploded web archive except the gateway descriptor and Jetty work files.
+  private static Map<String, File> listDeploymentContent( File warDir ) {
+    Map<String, File> content = new HashMap<>();
+    String gatewayDescriptor = "WEB-INF/" + GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_DEFAULT;
+    if( warDir.isDirectory() ) {
+      int prefix = warDir.getAbsolutePath().length() + 1;
+      for( File file : FileUtils.listFiles( warDir, null, true ) ) {
+        String path = file.getAbsolutePath().substring( prefix ).replace( File.separatorChar, '/' );
+        if( !path.equals( gatewayDescriptor ) && !path.startsWith( "META-INF/temp/" ) ) {
+          content.put( path, file );
+        }
+      }
+    }
+    return content;
+  }
+
   // Using an inner class to hide the handleTopologyEvent method from consumers of GatewayServer.
   private class InternalTopologyListener implements TopologyListener {
 
     @Override
     public void handleTopologyEvent( List<TopologyEvent> events ) {
       synchronized ( GatewayServer.this ) {
+        File deployDir = calculateAbsoluteDeploymentsDir();
+        // Consecutive creates are independent of each other so they are deployed as a batch.
+        Map<String, Topology> created = new LinkedHashMap<>();
         for( TopologyEvent event : events ) {
           Topology topology = event.getTopology();
-          File deployDir = calculateAbsoluteDeploymentsDir();
           if( event.getType().equals( TopologyEvent.Type.DELETED ) ) {
+            handleCreateDeployments( created.values(), deployDir );
+            created.clear();
             handleDeleteDeployment(topology, deployDir);
           } else {
-            handleCreateDeployment(topology, deployDir);
+            created.remove( topology.getName() );
+            created.put( topology.getName(), topology );
           }
         }
+        handleCreateDeployments( created.values(), deployDir );
       }
     }
 
@@ -883,37 +1081,133 @@ public class GatewayServer {
       }
     }
 
-    private void handleCreateDeployment(Topology topology, File deployDir) {
+    /**
+     * Builds and exports the archives of the topologies on a bounded pool and then activates
+     * them one at a time.  Only the activation touches the shared Jetty handler collection.
+     * The batch is keyed by topology name so each topology is prepared by a single thread, which
+     * is what DeploymentFactory requires since it adds missing default providers to the topology.
+     * The per topology credential stores and the service registry are safe to update concurrently.
+     */
+    private void handleCreateDeployments( Collection<Topology> topologies, File deployDir ) {
+      if( topologies.isEmpty() ) {
+        return;
+      }
+      long start = System.currentTimeMillis();
+      String fingerprint = calculateDeploymentFingerprint();
+      int threads = Math.min( config.getGatewayDeploymentThreads(), topologies.size() );
+      List<PreparedDeployment> prepared = new ArrayList<>( topologies.size() );
+      if( threads <= 1 ) {
+        for( Topology topology : topologies ) {
+          prepared.add( prepareDeployment( topology, deployDir, fingerprint ) );
+        }
+      } else {
+        ExecutorService executor = Executors.newFixedThreadPool( threads, new DeploymentThreadFactory() );
+        try {
+          List<Future<PreparedDeployment>> futures = new ArrayList<>( topologies.size() );
+          for( final Topology topology : topologies ) {
+            final String hash = fingerprint;
+            futures.add( executor.submit( new Callable<PreparedDeployment>() {
+              @Override
+              public PreparedDeployment call() {
+                return prepareDeployment( topology, deployDir, hash );
+              }
+            } ) );
+          }
+          Iterator<Topology> iterator = topologies.iterator();
+          for( Future<PreparedDeployment> future : futures ) {
+            Topology topology = iterator.next();
+            try {
+              prepared.add( future.get() );
+            } catch( ExecutionException e ) {
+              PreparedDeployment failed = new PreparedDeployment( topology );
+              failed.failure = e.getCause();
+              prepared.add( failed );
+            }
+          }
+        } catch( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          executor.shutdownNow();
+          return;
+        } finally {
+          executor.shutdown();
+        }
+      }
+      for( PreparedDeployment deployment : prepared ) {
+        activateDeployment( deployment, deployDir );
+      }
+      log.deployedTopologies( prepared.size(), System.currentTimeMillis() - start, Math.max( 1, threads ) );
+    }
+
+    private PreparedDeployment prepareDeployment( Topology topology, File deployDir, String fingerprint ) {
+      PreparedDeployment deployment = new PreparedDeployment( topology );
+      long start = System.currentTimeMillis();
       try {
         File topoDir = calculateDeploymentDir( topology );
         if( !topoDir.exists() ) {
-          auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.UNAVAILABLE );
-
+          String hash = calculateDeploymentHash( topology, fingerprint );
+          File existing = findDeploymentWithHash( topology, deployDir, hash );
+          if( existing != null ) {
+            log.reusingTopologyDeployment( topology.getName(), existing.getAbsolutePath() );
+            File tmp = new File( deployDir, topoDir.getName() + ".tmp" );
+            FileUtils.deleteQuietly( tmp );
+            FileUtils.copyDirectory( existing, tmp, new DeploymentCopyFilter(), false );
+            if( !tmp.renameTo( topoDir ) ) {
+              FileUtils.deleteQuietly( tmp );
+              throw new DeploymentException( "Failed to create topology deployment directory: " + topoDir.getAbsolutePath() );
+            }
+          } else {
 //          KNOX-564 - Topology should fail to deploy with no providers configured.
 //TODO:APPS:This should only fail if there are services in the topology.
-          if(topology.getProviders().isEmpty()) {
-            throw new DeploymentException("No providers found inside topology.");
-          }
+            if(topology.getProviders().isEmpty()) {
+              throw new DeploymentException("No providers found inside topology.");
+            }
 
-          log.deployingTopology( topology.getName(), topoDir.getAbsolutePath() );
-          internalDeactivateTopology( topology ); // KNOX-152
+            log.deployingTopology( topology.getName(), topoDir.getAbsolutePath() );
+            removeClusterServices( topology ); // KNOX-152
 
-          EnterpriseArchive ear = DeploymentFactory.createDeployment( config, topology );
-          if( !deployDir.exists() && !deployDir.mkdirs() ) {
-            throw new DeploymentException( "Failed to create topology deployment temporary directory: " + deployDir.getAbsolutePath() );
+            if( config.isDeploymentInMemoryActivationEnabled() ) {
+              deployment.contexts = new HashMap<>();
+            }
+            EnterpriseArchive ear = DeploymentFactory.createDeployment( config, topology, deployment.contexts );
+            if( !deployDir.exists() && !deployDir.mkdirs() && !deployDir.exists() ) {
+              throw new DeploymentException( "Failed to create topology deployment temporary directory: " + deployDir.getAbsolutePath() );
+            }
+            File tmp = ear.as( ExplodedExporter.class ).exportExploded( deployDir, topoDir.getName() + ".tmp" );
+            if( !tmp.renameTo( topoDir ) ) {
+              FileUtils.deleteQuietly( tmp );
+              throw new DeploymentException( "Failed to create topology deployment directory: " + topoDir.getAbsolutePath() );
+            }
+            internalDeployApplications( topology, topoDir );
+            writeDeploymentHash( topoDir, hash );
           }
-          File tmp = ear.as( ExplodedExporter.class ).exportExploded( deployDir, topoDir.getName() + ".tmp" );
-          if( !tmp.renameTo( topoDir ) ) {
-            FileUtils.deleteQuietly( tmp );
-            throw new DeploymentException( "Failed to create topology deployment directory: " + topoDir.getAbsolutePath() );
+          deployment.created = true;
+        }
+        deployment.topoDir = topoDir;
+      } catch( Throwable e ) {
+        deployment.failure = e;
+      }
+      deployment.prepareTime = System.currentTimeMillis() - start;
+      return deployment;
+    }
+
+    private void activateDeployment( PreparedDeployment deployment, File deployDir ) {
+      Topology topology = deployment.topology;
+      long start = System.currentTimeMillis();
+      try {
+        if( deployment.failure != null ) {
+          throw deployment.failure;
+        }
+        if( deployment.created ) {
+          auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.UNAVAILABLE );
+          if( !config.isDeploymentHotSwapEnabled() || !internalReloadTopology( topology, deployment.topoDir, deployment.contexts ) ) {
+            internalDeactivateContexts( topology ); // KNOX-152
+            internalActivateTopology( topology, deployment.topoDir, deployment.contexts );
           }
-          internalDeployApplications( topology, topoDir );
-          internalActivateTopology( topology, topoDir );
           log.deployedTopology( topology.getName());
         } else {
           auditor.audit( Action.REDEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.UNAVAILABLE );
-          log.redeployingTopology( topology.getName(), topoDir.getAbsolutePath() );
-          internalActivateTopology( topology, topoDir );
+          log.redeployingTopology( topology.getName(), deployment.topoDir.getAbsolutePath() );
+          internalActivateTopology( topology, deployment.topoDir );
           log.redeployedTopology( topology.getName() );
         }
         cleanupTopologyDeployments( deployDir, topology );
@@ -921,8 +1215,126 @@ public class GatewayServer {
         auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE );
         log.failedToDeployTopology( topology.getName(), e );
       }
+      log.topologyDeploymentTime( topology.getName(), deployment.prepareTime, System.currentTimeMillis() - start );
+    }
+
+  }
+
+  private static class PreparedDeployment {
+
+    private final Topology topology;
+    private File topoDir;
+    private Map<String, DeploymentContext> contexts;
+    private boolean created;
+    private Throwable failure;
+    private long prepareTime;
+
+    PreparedDeployment( Topology topology ) {
+      this.topology = topology;
+    }
+  }
+
+  // Excludes the Jetty work directories of a running deployment when it is copied.
+  private static class DeploymentCopyFilter implements FileFilter {
+
+    @Override
+    public boolean accept( File file ) {
+      return !( file.isDirectory() && "temp".equals( file.getName() ) && "META-INF".equals( file.getParentFile().getName() ) );
+    }
+  }
+
+  private static class DeploymentThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "gateway-deployer-" + count.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+  /**
+   * Calculates a digest of everything other than the topology itself that goes into a deployment,
+   * i.e. the gateway build, gateway-site.xml and the service definitions.
+   *
+   * @return The hex encoded digest or null if it could not be calculated.
+   */
+  private String calculateDeploymentFingerprint() {
+    try {
+      MessageDigest digest = MessageDigest.getInstance( DEPLOYMENT_HASH_ALGORITHM );
+      digest.update( StringUtils.defaultString( getBuildVersion() ).getBytes( StandardCharsets.UTF_8 ) );
+      digest.update( StringUtils.defaultString( getBuildHash() ).getBytes( StandardCharsets.UTF_8 ) );
+      File siteFile = new File( config.getGatewayConfDir(), "gateway-site.xml" );
+      if( siteFile.isFile() ) {
+        digest.update( FileUtils.readFileToByteArray( siteFile ) );
+      }
+      File servicesDir = new File( config.getGatewayServicesDir() );
+      if( servicesDir.isDirectory() ) {
+        List<File> files = new ArrayList<>( FileUtils.listFiles( servicesDir, null, true ) );
+        Collections.sort( files );
+        for( File file : files ) {
+          digest.update( file.getAbsolutePath().substring( servicesDir.getAbsolutePath().length() ).getBytes( StandardCharsets.UTF_8 ) );
+          digest.update( FileUtils.readFileToByteArray( file ) );
+        }
+      }
+      return Hex.encodeHexString( digest.digest() );
+    } catch( Exception e ) {
+      log.failedToCalculateDeploymentHash( e );
+      return null;
     }
+  }
 
+  /**
+   * @return The hex encoded digest of the topology content combined with the fingerprint or null
+   * if the deployment cannot be safely reused.
+   */
+  private String calculateDeploymentHash( Topology topology, String fingerprint ) {
+    // Applications are exploded from the applications directory which is not part of the fingerprint.
+    if( fingerprint == null || topology.getUri() == null ||
+        ( topology.getApplications() != null && !topology.getApplications().isEmpty() ) ) {
+      return null;
+    }
+    try {
+      File file = new File( topology.getUri() );
+      if( !file.isFile() ) {
+        return null;
+      }
+      MessageDigest digest = MessageDigest.getInstance( DEPLOYMENT_HASH_ALGORITHM );
+      digest.update( fingerprint.getBytes( StandardCharsets.UTF_8 ) );
+      digest.update( topology.getName().getBytes( StandardCharsets.UTF_8 ) );
+      digest.update( FileUtils.readFileToByteArray( file ) );
+      return Hex.encodeHexString( digest.digest() );
+    } catch( Exception e ) {
+      log.failedToCalculateDeploymentHash( e );
+      return null;
+    }
+  }
+
+  private File findDeploymentWithHash( Topology topology, File deployDir, String hash ) {
+    if( hash != null ) {
+      File[] files = deployDir.listFiles( new RegexFilenameFilter( topology.getName() + "\\.topo\\.[0-9A-Fa-f]+" ) );
+      if( files != null ) {
+        for( File file : files ) {
+          File hashFile = new File( file, DEPLOYMENT_HASH_FILE );
+          try {
+            if( hashFile.isFile() && hash.equals( FileUtils.readFileToString( hashFile, StandardCharsets.UTF_8 ).trim() ) ) {
+              return file;
+            }
+          } catch( IOException e ) {
+            // Treat an unreadable hash as a mismatch.
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private static void writeDeploymentHash( File topoDir, String hash ) throws IOException {
+    if( hash != null ) {
+      FileUtils.writeStringToFile( new File( topoDir, DEPLOYMENT_HASH_FILE ), hash, StandardCharsets.UTF_8 );
+    }
   }
 
   private File createArchiveTempDir( File warDir ) {
@@ -22,6 +22,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URISyntaxException;
 import java.util.Enumeration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -41,6 +45,7 @@ import org.apache.hadoop.gateway.audit.api.Auditor;
 import org.apache.hadoop.gateway.audit.api.ResourceType;
 import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.deploy.DeploymentContext;
 import org.apache.hadoop.gateway.descriptor.GatewayDescriptor;
 import org.apache.hadoop.gateway.descriptor.GatewayDescriptorFactory;
 import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
@@ -53,6 +58,7 @@ public class GatewayServlet implements Servlet, Filter {
 
   public static final String GATEWAY_DESCRIPTOR_LOCATION_DEFAULT = "gateway.xml";
   public static final String GATEWAY_DESCRIPTOR_LOCATION_PARAM = "gatewayDescriptorLocation";
+  public static final String GATEWAY_DESCRIPTOR_ATTRIBUTE = DeploymentContext.DESCRIPTOR_ATTRIBUTE_PREFIX + "gateway";
 
   private static final GatewayResources res = ResourcesFactory.get( GatewayResources.class );
   private static final GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
@@ -62,7 +68,13 @@ public class GatewayServlet implements Servlet, Filter {
       .getAuditor( AuditConstants.DEFAULT_AUDITOR_NAME,
           AuditConstants.KNOX_SERVICE_NAME, AuditConstants.KNOX_COMPONENT_NAME );
 
+  private static final long DRAIN_TIMEOUT = 60000L;
+
+  // Replaced filters are drained and destroyed off the reloading thread.
+  private static final ExecutorService DRAIN_EXECUTOR = Executors.newCachedThreadPool( new DrainThreadFactory() );
+
   private FilterConfigAdapter filterConfig;
+  private FilterConfig activeConfig;
   private volatile GatewayFilter filter;
 
   public GatewayServlet( GatewayFilter filter ) {
@@ -96,6 +108,7 @@ public class GatewayServlet implements Servlet, Filter {
         filter = createFilter( servletConfig );
       }
       filterConfig = new FilterConfigAdapter( servletConfig );
+      activeConfig = filterConfig;
       if( filter != null ) {
         filter.init( filterConfig );
       }
@@ -109,11 +122,12 @@ public class GatewayServlet implements Servlet, Filter {
   }
 
   @Override
-  public void init( FilterConfig filterConfig ) throws ServletException {
+  public synchronized void init( FilterConfig filterConfig ) throws ServletException {
     try {
       if( filter == null ) {
         filter = createFilter( filterConfig );
       }
+      activeConfig = filterConfig;
       if( filter != null ) {
         filter.init( filterConfig );
       }
@@ -126,6 +140,55 @@ public class GatewayServlet implements Servlet, Filter {
     }
   }
 
+  /**
+   * Replaces the filter chains with ones built from the descriptor without restarting the web
+   * application.  Filters that are unchanged keep their initialized instances.  The replaced
+   * chains are destroyed once the requests they are processing have completed.
+   */
+  public synchronized void reload( GatewayDescriptor descriptor ) throws ServletException {
+    if( activeConfig == null ) {
+      throw new IllegalStateException( "Not initialized" );
+    }
+    GatewayFilter next = createFilter( descriptor, activeConfig.getServletContext() );
+    GatewayFilter prev = filter;
+    if( next != null ) {
+      if( prev != null ) {
+        next.adoptFilters( prev );
+      }
+      next.init( activeConfig );
+    }
+    filter = next;
+    if( prev != null ) {
+      retire( prev );
+    }
+  }
+
+  private static void retire( final GatewayFilter retired ) {
+    DRAIN_EXECUTOR.execute( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if( !retired.retire( DRAIN_TIMEOUT ) ) {
+            LOG.destroyingBusyFilterChains( DRAIN_TIMEOUT );
+          }
+        } catch( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        } finally {
+          retired.destroy();
+        }
+      }
+    } );
+  }
+
+  // A retired filter refuses requests once the field has been replaced so it is re-read until one is accepted.
+  private GatewayFilter enterFilter() {
+    GatewayFilter f = filter;
+    while( f != null && !f.enterRequest() ) {
+      f = filter;
+    }
+    return f;
+  }
+
   @Override
   public ServletConfig getServletConfig() {
     return filterConfig.getServletConfig();
@@ -135,7 +198,7 @@ public class GatewayServlet implements Servlet, Filter {
   public void service( ServletRequest servletRequest, ServletResponse servletResponse ) throws ServletException, IOException {
     try {
       auditService.createContext();
-      GatewayFilter f = filter;
+      GatewayFilter f = enterFilter();
       if( f != null ) {
         try {
           f.doFilter( servletRequest, servletResponse, null );
@@ -148,6 +211,8 @@ public class GatewayServlet implements Servlet, Filter {
         } catch( RuntimeException e ) {
           LOG.failedToExecuteFilter( e );
           throw e;
+        } finally {
+          f.exitRequest();
         }
       } else {
         ((HttpServletResponse)servletResponse).setStatus( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
@@ -164,7 +229,7 @@ public class GatewayServlet implements Servlet, Filter {
   public void doFilter( ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain ) throws IOException, ServletException {
     try {
       auditService.createContext();
-      GatewayFilter f = filter;
+      GatewayFilter f = enterFilter();
       if( f != null ) {
         try {
           f.doFilter( servletRequest, servletResponse );
@@ -179,6 +244,8 @@ public class GatewayServlet implements Servlet, Filter {
         } catch( RuntimeException e ) {
           LOG.failedToExecuteFilter( e );
           throw e;
+        } finally {
+          f.exitRequest();
         }
       } else {
         ((HttpServletResponse)servletResponse).setStatus( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
@@ -206,15 +273,26 @@ public class GatewayServlet implements Servlet, Filter {
 
   private static GatewayFilter createFilter( InputStream stream, ServletContext servletContext ) throws ServletException {
     try {
-      GatewayFilter filter = null;
+      GatewayDescriptor descriptor = null;
       if( stream != null ) {
         try {
-          GatewayDescriptor descriptor = GatewayDescriptorFactory.load( "xml", new InputStreamReader( stream ) );
-          filter = GatewayFactory.create( descriptor );
+          descriptor = GatewayDescriptorFactory.load( "xml", new InputStreamReader( stream ) );
         } finally {
           stream.close();
         }
       }
+      return createFilter( descriptor, servletContext );
+    } catch( IOException e ) {
+      throw new ServletException( e );
+    }
+  }
+
+  private static GatewayFilter createFilter( GatewayDescriptor descriptor, ServletContext servletContext ) throws ServletException {
+    try {
+      GatewayFilter filter = null;
+      if( descriptor != null ) {
+        filter = GatewayFactory.create( descriptor );
+      }
       GatewayConfig gatewayConfig = (GatewayConfig) servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
       if (gatewayConfig.isMetricsEnabled()) {
         GatewayServices gatewayServices = (GatewayServices) servletContext.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
@@ -227,14 +305,25 @@ public class GatewayServlet implements Servlet, Filter {
         }
       }
       return filter;
-    } catch( IOException e ) {
-      throw new ServletException( e );
     } catch( URISyntaxException e ) {
       throw new ServletException( e );
     }
   }
 
+  // The descriptor is handed over by the server when the topology was just built in this process.
+  private static GatewayDescriptor takeDescriptor( ServletContext servletContext ) {
+    GatewayDescriptor descriptor = (GatewayDescriptor)servletContext.getAttribute( GATEWAY_DESCRIPTOR_ATTRIBUTE );
+    if( descriptor != null ) {
+      servletContext.removeAttribute( GATEWAY_DESCRIPTOR_ATTRIBUTE );
+    }
+    return descriptor;
+  }
+
   private static GatewayFilter createFilter( FilterConfig filterConfig ) throws ServletException {
+    GatewayDescriptor descriptor = takeDescriptor( filterConfig.getServletContext() );
+    if( descriptor != null ) {
+      return createFilter( descriptor, filterConfig.getServletContext() );
+    }
     GatewayFilter filter;
     InputStream stream;
     String location = filterConfig.getInitParameter( GATEWAY_DESCRIPTOR_LOCATION_PARAM );
@@ -251,6 +340,10 @@ public class GatewayServlet implements Servlet, Filter {
   }
 
   private static GatewayFilter createFilter( ServletConfig servletConfig ) throws ServletException {
+    GatewayDescriptor descriptor = takeDescriptor( servletConfig.getServletContext() );
+    if( descriptor != null ) {
+      return createFilter( descriptor, servletConfig.getServletContext() );
+    }
     GatewayFilter filter;
     InputStream stream;
     String location = servletConfig.getInitParameter( GATEWAY_DESCRIPTOR_LOCATION_PARAM );
@@ -299,4 +392,16 @@ public class GatewayServlet implements Servlet, Filter {
     }
   }
 
+  private static class DrainThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "gateway-filter-drain-" + count.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
 }
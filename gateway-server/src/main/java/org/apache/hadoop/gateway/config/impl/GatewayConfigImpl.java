@@ -36,6 +36,7 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -125,6 +126,7 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   private static final String TRUSTSTORE_TYPE = GATEWAY_CONFIG_FILE_PREFIX + ".truststore.type";
   private static final String KEYSTORE_TYPE = GATEWAY_CONFIG_FILE_PREFIX + ".keystore.type";
   private static final String XFORWARDED_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".xforwarded.enabled";
+  private static final String XFORWARDED_TRUSTED_PROXIES = GATEWAY_CONFIG_FILE_PREFIX + ".xforwarded.trusted.proxies";
   private static final String EPHEMERAL_DH_KEY_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".jdk.tls.ephemeralDHKeySize";
   private static final String HTTP_CLIENT_MAX_CONNECTION = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.maxConnections";
   private static final String HTTP_CLIENT_CONNECTION_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionTimeout";
@@ -136,6 +138,22 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   public static final String HTTP_SERVER_RESPONSE_HEADER_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.responseHeaderBuffer";
   public static final String DEPLOYMENTS_BACKUP_VERSION_LIMIT = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.backup.versionLimit";
   public static final String DEPLOYMENTS_BACKUP_AGE_LIMIT = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.backup.ageLimit";
+  public static final String DEPLOYMENT_THREADS = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.threads";
+  public static final String DEPLOYMENT_IN_MEMORY_ACTIVATION = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.in.memory.activation";
+  public static final String DEPLOYMENT_HOT_SWAP = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.hot.swap";
+  public static final String ADAPTIVE_CONCURRENCY_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".adaptive.concurrency.enabled";
+  public static final String ADAPTIVE_CONCURRENCY_INITIAL_LIMIT = GATEWAY_CONFIG_FILE_PREFIX + ".adaptive.concurrency.initial.limit";
+  public static final String ADAPTIVE_CONCURRENCY_MIN_LIMIT = GATEWAY_CONFIG_FILE_PREFIX + ".adaptive.concurrency.min.limit";
+  public static final String ADAPTIVE_CONCURRENCY_MAX_LIMIT = GATEWAY_CONFIG_FILE_PREFIX + ".adaptive.concurrency.max.limit";
+  public static final String ADAPTIVE_CONCURRENCY_CRITICAL_PATHS = GATEWAY_CONFIG_FILE_PREFIX + ".adaptive.concurrency.critical.paths";
+  public static final String ADAPTIVE_CONCURRENCY_LOW_PRIORITY_PATHS = GATEWAY_CONFIG_FILE_PREFIX + ".adaptive.concurrency.low.priority.paths";
+  public static final String DEFAULT_ADAPTIVE_CONCURRENCY_CRITICAL_PATHS = "admin,*/health";
+  public static final String GROUP_CACHE_MAX_ENTRIES = GATEWAY_CONFIG_FILE_PREFIX + ".group.cache.max.entries";
+  public static final String GROUP_CACHE_TTL = GATEWAY_CONFIG_FILE_PREFIX + ".group.cache.ttl";
+  public static final String GROUP_CACHE_STALE_TTL = GATEWAY_CONFIG_FILE_PREFIX + ".group.cache.stale.ttl";
+  public static final String GROUP_CACHE_NEGATIVE_TTL = GATEWAY_CONFIG_FILE_PREFIX + ".group.cache.negative.ttl";
+  public static final String ALIAS_CACHE_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".alias.cache.enabled";
+  public static final String ALIAS_CACHE_CHECK_INTERVAL = GATEWAY_CONFIG_FILE_PREFIX + ".alias.cache.check.interval";
   public static final String METRICS_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".metrics.enabled";
   public static final String JMX_METRICS_REPORTING_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".jmx.metrics.reporting.enabled";
   public static final String GRAPHITE_METRICS_REPORTING_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".graphite.metrics.reporting.enabled";
@@ -226,6 +244,19 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   static final String CONFIG_REGISTRY_PREFIX = GATEWAY_CONFIG_FILE_PREFIX + ".remote.config.registry";
   static final String REMOTE_CONFIG_MONITOR_CLIENT_NAME = GATEWAY_CONFIG_FILE_PREFIX + ".remote.config.monitor.client";
 
+  /* Trace span export */
+  public static final String TRACING_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".tracing.enabled";
+  public static final String TRACING_EXPORTER = GATEWAY_CONFIG_FILE_PREFIX + ".tracing.exporter";
+  public static final String TRACING_EXPORTER_OPTION_PREFIX = TRACING_EXPORTER + ".";
+  public static final String TRACING_QUEUE_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".tracing.queue.size";
+  public static final String TRACING_BATCH_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".tracing.batch.size";
+  public static final String TRACING_FLUSH_INTERVAL = GATEWAY_CONFIG_FILE_PREFIX + ".tracing.flush.interval";
+  public static final String DEFAULT_TRACING_EXPORTER = "org.apache.hadoop.gateway.tracing.JsonFileSpanExporter";
+  public static final String DEFAULT_TRACING_EXPORTER_FILE = "spans.json";
+  public static final int DEFAULT_TRACING_QUEUE_SIZE = 8192;
+  public static final int DEFAULT_TRACING_BATCH_SIZE = 512;
+  public static final long DEFAULT_TRACING_FLUSH_INTERVAL = 5000L;
+
   private static List<String> DEFAULT_GLOBAL_RULES_SERVICES;
 
 
@@ -606,6 +637,11 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return "true".equals(xForwardedEnabled);
   }
 
+  @Override
+  public List<String> getXForwardedTrustedProxies() {
+    return getList( XFORWARDED_TRUSTED_PROXIES, "" );
+  }
+
   /* (non-Javadoc)
    * @see org.apache.hadoop.gateway.config.GatewayConfig#getEphemeralDHKeySize()
    */
@@ -984,4 +1020,131 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return get(REMOTE_CONFIG_MONITOR_CLIENT_NAME);
   }
 
+  @Override
+  public boolean isTracingEnabled() {
+    return getBoolean(TRACING_ENABLED, false);
+  }
+
+  @Override
+  public String getTracingExporter() {
+    return get(TRACING_EXPORTER, DEFAULT_TRACING_EXPORTER);
+  }
+
+  @Override
+  public Map<String, String> getTracingExporterOptions() {
+    Map<String, String> options = new HashMap<>();
+    for (Map.Entry<String, String> entry : this) {
+      String propertyName = entry.getKey();
+      if (propertyName.startsWith(TRACING_EXPORTER_OPTION_PREFIX)) {
+        options.put(propertyName.substring(TRACING_EXPORTER_OPTION_PREFIX.length()), entry.getValue());
+      }
+    }
+    if (!options.containsKey("file")) {
+      options.put("file", getGatewayDataDir() + File.separator + "tracing" + File.separator + DEFAULT_TRACING_EXPORTER_FILE);
+    }
+    return options;
+  }
+
+  @Override
+  public int getTracingQueueSize() {
+    return getInt(TRACING_QUEUE_SIZE, DEFAULT_TRACING_QUEUE_SIZE);
+  }
+
+  @Override
+  public int getTracingBatchSize() {
+    return getInt(TRACING_BATCH_SIZE, DEFAULT_TRACING_BATCH_SIZE);
+  }
+
+  @Override
+  public long getTracingFlushInterval() {
+    return getLong(TRACING_FLUSH_INTERVAL, DEFAULT_TRACING_FLUSH_INTERVAL);
+  }
+
+  @Override
+  public int getGatewayDeploymentThreads() {
+    int threads = getInt(DEPLOYMENT_THREADS, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+    return Math.max(1, threads);
+  }
+
+  @Override
+  public boolean isDeploymentInMemoryActivationEnabled() {
+    return getBoolean(DEPLOYMENT_IN_MEMORY_ACTIVATION, true);
+  }
+
+  @Override
+  public boolean isDeploymentHotSwapEnabled() {
+    return getBoolean(DEPLOYMENT_HOT_SWAP, true);
+  }
+
+  @Override
+  public boolean isAdaptiveConcurrencyEnabled() {
+    return getBoolean(ADAPTIVE_CONCURRENCY_ENABLED, false);
+  }
+
+  @Override
+  public int getAdaptiveConcurrencyInitialLimit() {
+    int limit = getInt(ADAPTIVE_CONCURRENCY_INITIAL_LIMIT, getAdaptiveConcurrencyMaxLimit() / 4);
+    return Math.max(getAdaptiveConcurrencyMinLimit(), Math.min(limit, getAdaptiveConcurrencyMaxLimit()));
+  }
+
+  @Override
+  public int getAdaptiveConcurrencyMinLimit() {
+    return Math.max(1, getInt(ADAPTIVE_CONCURRENCY_MIN_LIMIT, 4));
+  }
+
+  @Override
+  public int getAdaptiveConcurrencyMaxLimit() {
+    // Leave room in the thread pool for the acceptors, selectors and the requests that are never shed
+    int limit = getInt(ADAPTIVE_CONCURRENCY_MAX_LIMIT, getThreadPoolMax() * 3 / 4);
+    return Math.max(getAdaptiveConcurrencyMinLimit(), limit);
+  }
+
+  @Override
+  public List<String> getAdaptiveConcurrencyCriticalPaths() {
+    return getList(ADAPTIVE_CONCURRENCY_CRITICAL_PATHS, DEFAULT_ADAPTIVE_CONCURRENCY_CRITICAL_PATHS);
+  }
+
+  @Override
+  public List<String> getAdaptiveConcurrencyLowPriorityPaths() {
+    return getList(ADAPTIVE_CONCURRENCY_LOW_PRIORITY_PATHS, "");
+  }
+
+  @Override
+  public int getGroupCacheMaxEntries() {
+    return Math.max(1, getInt(GROUP_CACHE_MAX_ENTRIES, 10000));
+  }
+
+  @Override
+  public long getGroupCacheTtl() {
+    return getLong(GROUP_CACHE_TTL, TimeUnit.MINUTES.toMillis(5));
+  }
+
+  @Override
+  public long getGroupCacheStaleTtl() {
+    return getLong(GROUP_CACHE_STALE_TTL, TimeUnit.HOURS.toMillis(1));
+  }
+
+  @Override
+  public long getGroupCacheNegativeTtl() {
+    return getLong(GROUP_CACHE_NEGATIVE_TTL, TimeUnit.SECONDS.toMillis(30));
+  }
+
+  @Override
+  public boolean isAliasCacheEnabled() {
+    return getBoolean(ALIAS_CACHE_ENABLED, true);
+  }
+
+  @Override
+  public long getAliasCacheCheckInterval() {
+    return getLong(ALIAS_CACHE_CHECK_INTERVAL, TimeUnit.SECONDS.toMillis(5));
+  }
+
+  private List<String> getList(String name, String defaultValue) {
+    String value = get(name, defaultValue).trim();
+    if (value.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return Arrays.asList(value.split("\\s*,\\s*"));
+  }
+
 }
@@ -137,4 +137,8 @@ public class DeploymentContextImpl implements DeploymentContext {
     return (T)descriptors.get( name );
   }
 
+  public Map<String,Object> getDescriptors() {
+    return descriptors;
+  }
+
 }
@@ -70,6 +70,8 @@ public abstract class DeploymentFactory {
   private static final GatewayMessages log = MessagesFactory.get( GatewayMessages.class );
   private static GatewayServices gatewayServices = null;
 
+  // Guarded by the DeploymentFactory class monitor since topologies are deployed concurrently
+  // and every deployment merges the contributors loaded from the services directory into it.
   private static Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> SERVICE_CONTRIBUTOR_MAP;
   static {
     loadServiceContributors();
@@ -153,6 +155,23 @@ public abstract class DeploymentFactory {
   }
 
   public static EnterpriseArchive createDeployment( GatewayConfig config, Topology topology ) {
+    return createDeployment( config, topology, null );
+  }
+
+  /**
+   * Creates the deployment archive for a topology.
+   * <p>
+   * This may be called concurrently for different topologies.  The only shared state that is
+   * modified is the service contributor registry, which is synchronized.  The provider contributors
+   * are only written during class initialization.  The contributors themselves are singletons that
+   * only hold the injected gateway services, which are the same instances for every deployment.
+   * The topology is modified when default providers are added so a given topology instance
+   * must not be deployed by more than one thread at a time.
+   *
+   * @param contexts If not null, receives the deployment context of each web archive keyed by
+   *                 archive name so that its descriptors can be activated without being re-parsed.
+   */
+  public static EnterpriseArchive createDeployment( GatewayConfig config, Topology topology, Map<String,DeploymentContext> contexts ) {
     validateTopology( topology );
     loadStacksServiceContributors( config );
     Map<String,List<ProviderDeploymentContributor>> providers = selectContextProviders( topology );
@@ -161,19 +180,27 @@ public abstract class DeploymentFactory {
     EnterpriseArchive ear = ShrinkWrap.create( EnterpriseArchive.class, topology.getName() );
     ear.addAsResource( toStringAsset( topology ), "topology.xml" );
     if( !services.isEmpty() ) {
-      WebArchive war = createServicesDeployment( config, topology, providers, services );
-      ear.addAsModule( war );
+      DeploymentContext context = createServicesDeployment( config, topology, providers, services );
+      addDeployment( ear, context, contexts );
     }
     if( !applications.isEmpty() ) {
       for( Map.Entry<String, ServiceDeploymentContributor> application : applications.entrySet() ) {
-        WebArchive war = createApplicationDeployment( config, topology, providers, application );
-        ear.addAsModule( war );
+        DeploymentContext context = createApplicationDeploymentContext( config, topology, providers, application );
+        addDeployment( ear, context, contexts );
       }
     }
     return ear;
   }
 
-  private static WebArchive createServicesDeployment(
+  private static void addDeployment( EnterpriseArchive ear, DeploymentContext context, Map<String,DeploymentContext> contexts ) {
+    WebArchive war = context.getWebArchive();
+    ear.addAsModule( war );
+    if( contexts != null ) {
+      contexts.put( war.getName(), context );
+    }
+  }
+
+  private static DeploymentContext createServicesDeployment(
       GatewayConfig config,
       Topology topology,
       Map<String,List<ProviderDeploymentContributor>> providers,
@@ -182,7 +209,7 @@ public abstract class DeploymentFactory {
     initialize( context, providers, services, null );
     contribute( context, providers, services, null );
     finalize( context, providers, services, null );
-    return context.getWebArchive();
+    return context;
   }
 
   public static WebArchive createApplicationDeployment(
@@ -190,12 +217,20 @@ public abstract class DeploymentFactory {
       Topology topology,
       Map<String,List<ProviderDeploymentContributor>> providers,
       Map.Entry<String,ServiceDeploymentContributor> application ) {
+    return createApplicationDeploymentContext( config, topology, providers, application ).getWebArchive();
+  }
+
+  private static DeploymentContext createApplicationDeploymentContext(
+      GatewayConfig config,
+      Topology topology,
+      Map<String,List<ProviderDeploymentContributor>> providers,
+      Map.Entry<String,ServiceDeploymentContributor> application ) {
     String appPath = "/" + Urls.trimLeadingAndTrailingSlash( application.getKey() );
     DeploymentContext context = createDeploymentContext( config, appPath, topology, providers );
     initialize( context, providers, null, application );
     contribute( context, providers, null, application );
     finalize( context, providers, null, application );
-    return context.getWebArchive();
+    return context;
   }
 
   private static Asset toStringAsset( Topology topology ) {
@@ -544,7 +579,7 @@ public abstract class DeploymentFactory {
     return contributor;
   }
 
-  public static ServiceDeploymentContributor getServiceContributor( String role, String name, Version version ) {
+  public static synchronized ServiceDeploymentContributor getServiceContributor( String role, String name, Version version ) {
     ServiceDeploymentContributor contributor = null;
     Map<String,Map<Version, ServiceDeploymentContributor>> nameMap = SERVICE_CONTRIBUTOR_MAP.get( role );
     if( nameMap != null && !nameMap.isEmpty()) {
@@ -708,7 +743,7 @@ public abstract class DeploymentFactory {
     addServiceDeploymentContributors(contributors);
   }
 
-   private static void addServiceDeploymentContributors(Iterator<ServiceDeploymentContributor> contributors) {
+   private static synchronized void addServiceDeploymentContributors(Iterator<ServiceDeploymentContributor> contributors) {
       while( contributors.hasNext() ) {
         ServiceDeploymentContributor contributor = contributors.next();
         if( contributor.getName() == null ) {
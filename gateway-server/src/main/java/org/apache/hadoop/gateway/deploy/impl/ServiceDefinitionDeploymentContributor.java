@@ -142,6 +142,10 @@ public class ServiceDefinitionDeploymentContributor extends ServiceDeploymentCon
     } else {
       addPolicies(context, service, filterParams, params, resource, policyBindings);
     }
+    // Admission is decided once the identity assertion has established the principal the limits apply to
+    addThrottleFilter(context, service, resource);
+    // The cache sits directly in front of the dispatch so it stores backend responses before they are rewritten
+    addCacheFilter(context, service, resource);
     addDispatchFilter(context, service, resource, binding);
   }
 
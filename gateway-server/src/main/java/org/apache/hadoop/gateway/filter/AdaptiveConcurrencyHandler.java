@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.hadoop.gateway.GatewayMessages;
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sheds requests once more are in flight than an adaptive limit allows, so an overloaded gateway answers the excess
+ * with an immediate 503 instead of letting every request queue for a thread.
+ *
+ * Requests are classified by path below the gateway path. Critical requests, such as those of the admin and health
+ * services, are never shed and do not count towards the limit. Low priority requests are shed once a quarter of the
+ * limit is left, leaving that room for the rest.
+ */
+public class AdaptiveConcurrencyHandler extends HandlerWrapper {
+
+  private static final GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
+
+  static final double LOW_PRIORITY_SHARE = 0.75;
+
+  enum Priority { CRITICAL, NORMAL, LOW }
+
+  private final String gatewayPath;
+  private final List<String[]> criticalPaths;
+  private final List<String[]> lowPriorityPaths;
+  private final AdaptiveConcurrencyLimit limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Counter shed = new Counter();
+
+  public AdaptiveConcurrencyHandler( GatewayConfig config ) {
+    this( config.getGatewayPath(),
+        config.getAdaptiveConcurrencyCriticalPaths(),
+        config.getAdaptiveConcurrencyLowPriorityPaths(),
+        new AdaptiveConcurrencyLimit(
+            config.getAdaptiveConcurrencyInitialLimit(),
+            config.getAdaptiveConcurrencyMinLimit(),
+            config.getAdaptiveConcurrencyMaxLimit() ) );
+    LOG.adaptiveConcurrencyEnabled( limit.getLimit(), config.getAdaptiveConcurrencyMinLimit(), config.getAdaptiveConcurrencyMaxLimit() );
+  }
+
+  AdaptiveConcurrencyHandler( String gatewayPath, List<String> criticalPaths, List<String> lowPriorityPaths, AdaptiveConcurrencyLimit limit ) {
+    this.gatewayPath = "/" + trim( gatewayPath );
+    this.criticalPaths = split( criticalPaths );
+    this.lowPriorityPaths = split( lowPriorityPaths );
+    this.limit = limit;
+  }
+
+  /**
+   * Exposes the limit, the requests in flight and the number of requests shed as gateway.concurrency.* metrics.
+   */
+  public void registerMetrics( MetricRegistry registry ) {
+    registry.remove( "gateway.concurrency.limit" );
+    registry.remove( "gateway.concurrency.inflight" );
+    registry.remove( "gateway.concurrency.shed" );
+    registry.register( "gateway.concurrency.limit", new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return limit.getLimit();
+      }
+    } );
+    registry.register( "gateway.concurrency.inflight", new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return inFlight.get();
+      }
+    } );
+    registry.register( "gateway.concurrency.shed", shed );
+  }
+
+  @Override
+  public void handle( String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response )
+      throws IOException, ServletException {
+    Priority priority = getPriority( request.getRequestURI() );
+    if( priority == Priority.CRITICAL ) {
+      super.handle( target, baseRequest, request, response );
+      return;
+    }
+    int current = inFlight.incrementAndGet();
+    int allowed = limit.getLimit();
+    if( priority == Priority.LOW ) {
+      allowed = Math.max( 1, (int)( allowed * LOW_PRIORITY_SHARE ) );
+    }
+    if( current > allowed ) {
+      inFlight.decrementAndGet();
+      shed.inc();
+      LOG.shedRequest( request.getRequestURI(), current - 1, allowed );
+      response.setStatus( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+      response.setHeader( "Retry-After", "1" );
+      response.setContentLength( 0 );
+      baseRequest.setHandled( true );
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      super.handle( target, baseRequest, request, response );
+    } finally {
+      inFlight.decrementAndGet();
+      if( limit.onSample( System.nanoTime() - start, current ) ) {
+        LOG.adaptiveConcurrencyLimitChanged( limit.getLimit() );
+      }
+    }
+  }
+
+  Priority getPriority( String uri ) {
+    if( uri == null || !uri.startsWith( gatewayPath + "/" ) ) {
+      return Priority.NORMAL;
+    }
+    String[] segments = trim( uri.substring( gatewayPath.length() ) ).split( "/" );
+    if( matches( criticalPaths, segments ) ) {
+      return Priority.CRITICAL;
+    }
+    if( matches( lowPriorityPaths, segments ) ) {
+      return Priority.LOW;
+    }
+    return Priority.NORMAL;
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  long getShedCount() {
+    return shed.getCount();
+  }
+
+  AdaptiveConcurrencyLimit getLimit() {
+    return limit;
+  }
+
+  private static boolean matches( List<String[]> patterns, String[] segments ) {
+    for( String[] pattern : patterns ) {
+      if( pattern.length <= segments.length ) {
+        boolean match = true;
+        for( int i = 0; match && i < pattern.length; i++ ) {
+          match = "*".equals( pattern[ i ] ) || pattern[ i ].equals( segments[ i ] );
+        }
+        if( match ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static List<String[]> split( List<String> paths ) {
+    List<String[]> patterns = new ArrayList<>();
+    if( paths != null ) {
+      for( String path : paths ) {
+        path = trim( path );
+        if( !path.isEmpty() ) {
+          patterns.add( path.split( "/" ) );
+        }
+      }
+    }
+    return patterns;
+  }
+
+  private static String trim( String path ) {
+    String trimmed = path == null ? "" : path.trim();
+    while( trimmed.startsWith( "/" ) ) {
+      trimmed = trimmed.substring( 1 );
+    }
+    while( trimmed.endsWith( "/" ) ) {
+      trimmed = trimmed.substring( 0, trimmed.length() - 1 );
+    }
+    return trimmed;
+  }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter;
+
+/**
+ * A concurrency limit that follows the latency of the requests it admits.
+ *
+ * A long term average of the latency is the baseline, and a short term average is compared with it. While the short
+ * term latency stays within a tolerance of the baseline the limit grows by roughly its square root per adjustment.
+ * Once requests queue up in front of a saturated backend the short term latency rises and the limit shrinks in
+ * proportion. Since the target of an adjustment is at least half the limit and the limit only moves a fifth of the way
+ * towards it, the limit shrinks by at most a tenth per adjustment. Samples taken while less than half the limit is in
+ * use say nothing about capacity, so they only update the averages.
+ */
+class AdaptiveConcurrencyLimit {
+
+  static final double TOLERANCE = 1.5;
+  static final double SMOOTHING = 0.2;
+  static final int LONG_WINDOW = 600;
+  static final int SHORT_WINDOW = 10;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private double limit;
+  private volatile int current;
+  private double longLatency;
+  private double shortLatency;
+  private long samples;
+
+  AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+    this.minLimit = minLimit;
+    this.maxLimit = Math.max(minLimit, maxLimit);
+    this.limit = Math.max(minLimit, Math.min(initialLimit, this.maxLimit));
+    this.current = (int) limit;
+  }
+
+  int getLimit() {
+    return current;
+  }
+
+  /**
+   * @param latency The time in nanoseconds an admitted request took.
+   * @param inFlight The number of requests in flight when the request was admitted, including itself.
+   * @return Whether the limit changed.
+   */
+  synchronized boolean onSample(long latency, int inFlight) {
+    samples++;
+    if (samples == 1) {
+      longLatency = latency;
+      shortLatency = latency;
+      return false;
+    }
+    longLatency += (latency - longLatency) / Math.min(samples, LONG_WINDOW);
+    shortLatency += (latency - shortLatency) / Math.min(samples, SHORT_WINDOW);
+    // Let the baseline catch up once latency has dropped for good, for example after a slow backend recovered
+    if (longLatency > 2 * shortLatency) {
+      longLatency *= 0.95;
+    }
+    if (inFlight < limit / 2) {
+      return false;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / Math.max(1.0, shortLatency)));
+    double target = limit * gradient + Math.sqrt(limit);
+    limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    int previous = current;
+    current = (int) limit;
+    return current != previous;
+  }
+
+}
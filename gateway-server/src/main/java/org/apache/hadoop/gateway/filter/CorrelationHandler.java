@@ -19,6 +19,10 @@ package org.apache.hadoop.gateway.filter;
 
 import org.apache.hadoop.gateway.audit.api.CorrelationContext;
 import org.apache.hadoop.gateway.audit.api.CorrelationServiceFactory;
+import org.apache.hadoop.gateway.tracing.Span;
+import org.apache.hadoop.gateway.tracing.TraceContext;
+import org.apache.hadoop.gateway.tracing.TraceIds;
+import org.apache.hadoop.gateway.tracing.Tracer;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.HandlerWrapper;
 
@@ -26,20 +30,40 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.UUID;
+import java.util.regex.Pattern;
 
 public class CorrelationHandler extends HandlerWrapper {
 
+  public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+  // Inbound request ids end up in the audit log so only accept short values of safe characters.
+  private static final Pattern VALID_REQUEST_ID = Pattern.compile( "[A-Za-z0-9._:\\-]{1,128}" );
+
   @Override
   public void handle( String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response )
       throws IOException, ServletException {
     CorrelationContext correlationContext = CorrelationServiceFactory.getCorrelationService().createContext();
-    correlationContext.setRequestId( UUID.randomUUID().toString() );
+    correlationContext.setRequestId( getRequestId( request ) );
+    TraceContext parent = TraceContext.parse( request.getHeader( TraceContext.TRACEPARENT_HEADER ) );
+    Span span = Tracer.startSpan( "gateway", parent );
+    span.setAttribute( "request.id", correlationContext.getRequestId() );
+    span.setAttribute( "http.method", request.getMethod() );
+    span.setAttribute( "http.target", request.getRequestURI() );
     try {
       super.handle( target, baseRequest, request, response );
     } finally {
+      span.setAttribute( "http.status", response.getStatus() );
+      span.end();
       correlationContext.destroy();
     }
   }
 
+  private static String getRequestId( HttpServletRequest request ) {
+    String requestId = request.getHeader( REQUEST_ID_HEADER );
+    if( requestId == null || !VALID_REQUEST_ID.matcher( requestId ).matches() ) {
+      requestId = TraceIds.newRequestId();
+    }
+    return requestId;
+  }
+
 }
@@ -35,6 +35,7 @@ import org.apache.hadoop.gateway.services.security.KeystoreServiceException;
 import org.apache.hadoop.gateway.services.security.SSLService;
 import org.apache.hadoop.gateway.services.security.impl.DefaultAliasService;
 import org.apache.hadoop.gateway.services.security.impl.DefaultCryptoService;
+import org.apache.hadoop.gateway.services.security.impl.DefaultGroupResolutionService;
 import org.apache.hadoop.gateway.services.security.impl.DefaultKeystoreService;
 import org.apache.hadoop.gateway.services.security.impl.DefaultMasterService;
 import org.apache.hadoop.gateway.services.security.impl.JettySSLService;
@@ -130,6 +131,10 @@ public class DefaultGatewayServices implements GatewayServices {
     DefaultMetricsService metricsService = new DefaultMetricsService();
     metricsService.init( config, options );
     services.put( METRICS_SERVICE, metricsService );
+
+    DefaultGroupResolutionService groupResolutionService = new DefaultGroupResolutionService();
+    groupResolutionService.init( config, options );
+    services.put( GROUP_RESOLUTION_SERVICE, groupResolutionService );
   }
 
   public void start() throws ServiceLifecycleException {
@@ -181,6 +186,8 @@ public class DefaultGatewayServices implements GatewayServices {
     DefaultMetricsService metricsService = (DefaultMetricsService) services.get(METRICS_SERVICE);
     metricsService.stop();
 
+    (services.get(GROUP_RESOLUTION_SERVICE)).stop();
+
   }
   
   /* (non-Javadoc)
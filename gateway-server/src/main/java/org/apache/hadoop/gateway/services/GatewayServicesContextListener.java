@@ -26,6 +26,8 @@ import org.apache.hadoop.gateway.topology.Topology;
 
 public class GatewayServicesContextListener implements ServletContextListener {
 
+  public static final String TOPOLOGY_ATTRIBUTE = "org.apache.hadoop.gateway.topology";
+
   @Override
   public void contextInitialized(ServletContextEvent sce) {
     GatewayServices gs = GatewayServer.getGatewayServices();
@@ -33,7 +35,7 @@ public class GatewayServicesContextListener implements ServletContextListener {
     String topologyName = (String) sce.getServletContext().getAttribute("org.apache.hadoop.gateway.gateway.cluster");
     TopologyService ts = gs.getService(GatewayServices.TOPOLOGY_SERVICE);
     Topology topology = getTopology(ts, topologyName);
-    sce.getServletContext().setAttribute("org.apache.hadoop.gateway.topology", topology);
+    sce.getServletContext().setAttribute(TOPOLOGY_ATTRIBUTE, topology);
   }
 
   private Topology getTopology(TopologyService ts, String topologyName) {
@@ -53,6 +53,31 @@ public class InstrumentedGatewayFilter extends GatewayFilter {
     gatewayFilter.destroy();
   }
 
+  @Override
+  public void adoptFilters(GatewayFilter previous) {
+    gatewayFilter.adoptFilters(previous);
+  }
+
+  @Override
+  public void releaseFilters(GatewayFilter target) {
+    gatewayFilter.releaseFilters(target);
+  }
+
+  @Override
+  public boolean enterRequest() {
+    return gatewayFilter.enterRequest();
+  }
+
+  @Override
+  public void exitRequest() {
+    gatewayFilter.exitRequest();
+  }
+
+  @Override
+  public boolean retire(long timeout) throws InterruptedException {
+    return gatewayFilter.retire(timeout);
+  }
+
   @Override
   public void addFilter(String path, String name, Filter filter, Map<String, String> params, String resourceRole) throws URISyntaxException {
     gatewayFilter.addFilter(path, name, filter, params, resourceRole);
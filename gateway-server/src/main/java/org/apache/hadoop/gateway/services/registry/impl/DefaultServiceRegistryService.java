@@ -78,11 +78,11 @@ public class DefaultServiceRegistryService implements ServiceRegistry, Service {
     return sb.toString();
   }
 
-  public void removeClusterServices(String clusterName) {
+  public synchronized void removeClusterServices(String clusterName) {
     registry.remove(clusterName);
   }
 
-  public boolean registerService(String regCode, String clusterName, String serviceName, List<String> urls) {
+  public synchronized boolean registerService(String regCode, String clusterName, String serviceName, List<String> urls) {
     boolean rc = false;
     // verify the signature of the regCode
     if (regCode == null) {
@@ -95,10 +95,8 @@ public class DefaultServiceRegistryService implements ServiceRegistry, Service {
     if (verified) {
       HashMap<String,RegEntry> clusterServices = registry.get(clusterName);
       if (clusterServices == null) {
-        synchronized(this) {
-          clusterServices = new HashMap<>();
-          registry.put(clusterName, clusterServices);
-        }
+        clusterServices = new HashMap<>();
+        registry.put(clusterName, clusterServices);
       }
       RegEntry regEntry = new RegEntry();
       regEntry.setClusterName(clusterName);
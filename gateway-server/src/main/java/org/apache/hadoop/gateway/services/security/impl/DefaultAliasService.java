@@ -17,14 +17,21 @@
  */
 package org.apache.hadoop.gateway.services.security.impl;
 
+import java.io.File;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.SecureRandom;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.hadoop.gateway.GatewayMessages;
 import org.apache.hadoop.gateway.config.GatewayConfig;
@@ -36,6 +43,15 @@ import org.apache.hadoop.gateway.services.security.KeystoreService;
 import org.apache.hadoop.gateway.services.security.KeystoreServiceException;
 import org.apache.hadoop.gateway.services.security.MasterService;
 
+/**
+ * Resolves aliases from the credential stores of the KeystoreService.
+ *
+ * Unless disabled, resolved aliases, including ones that do not exist, are cached per cluster so repeated lookups
+ * do not open and decrypt the credential store. The cached passwords are zeroed when discarded and callers receive
+ * copies. Aliases added or removed through this service discard the cluster's cache. Changes made directly to a
+ * credential store, for example by the KnoxCLI, are noticed by checking its modification time at most once per
+ * check interval.
+ */
 public class DefaultAliasService implements AliasService {
   private static final GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
 
@@ -49,10 +65,15 @@ public class DefaultAliasService implements AliasService {
 
   private KeystoreService keystoreService;
   private MasterService masterService;
+  private boolean cacheEnabled = false;
+  private long checkInterval = 0;
+  private final ConcurrentMap<String, CachedAliases> cache = new ConcurrentHashMap<>();
 
   @Override
   public void init(GatewayConfig config, Map<String, String> options)
       throws ServiceLifecycleException {
+    cacheEnabled = config.isAliasCacheEnabled();
+    checkInterval = config.getAliasCacheCheckInterval();
   }
 
   @Override
@@ -61,6 +82,10 @@ public class DefaultAliasService implements AliasService {
 
   @Override
   public void stop() throws ServiceLifecycleException {
+    for (CachedAliases aliases : cache.values()) {
+      aliases.clear();
+    }
+    cache.clear();
   }
 
   @Override
@@ -87,6 +112,66 @@ public class DefaultAliasService implements AliasService {
   @Override
   public char[] getPasswordFromAliasForCluster(String clusterName, String alias, boolean generate)
       throws AliasServiceException {
+    if (!cacheEnabled) {
+      return loadPasswordFromAliasForCluster(clusterName, alias, generate);
+    }
+    CachedAliases aliases = getCachedAliases(clusterName);
+    synchronized (aliases) {
+      aliases.checkForChanges();
+      char[] credential = aliases.passwords.get(alias);
+      // A cached miss must not stop the alias from being generated.
+      if (credential == null && (generate || !aliases.passwords.containsKey(alias))) {
+        credential = loadPasswordFromAliasForCluster(clusterName, alias, generate);
+        aliases.passwords.put(alias, credential);
+      }
+      return credential == null ? null : credential.clone();
+    }
+  }
+
+  @Override
+  public Map<String, char[]> getPasswordsFromAliasesForCluster(String clusterName, Collection<String> aliases)
+      throws AliasServiceException {
+    if (!cacheEnabled) {
+      return loadPasswordsFromAliasesForCluster(clusterName, aliases);
+    }
+    CachedAliases cached = getCachedAliases(clusterName);
+    synchronized (cached) {
+      cached.checkForChanges();
+      List<String> missing = new ArrayList<>();
+      for (String alias : aliases) {
+        if (!cached.passwords.containsKey(alias)) {
+          missing.add(alias);
+        }
+      }
+      if (!missing.isEmpty()) {
+        Map<String, char[]> loaded = loadPasswordsFromAliasesForCluster(clusterName, missing);
+        for (String alias : missing) {
+          cached.passwords.put(alias, loaded.get(alias));
+        }
+      }
+      Map<String, char[]> passwords = new LinkedHashMap<>();
+      for (String alias : aliases) {
+        char[] credential = cached.passwords.get(alias);
+        if (credential != null) {
+          passwords.put(alias, credential.clone());
+        }
+      }
+      return passwords;
+    }
+  }
+
+  private Map<String, char[]> loadPasswordsFromAliasesForCluster(String clusterName, Collection<String> aliases)
+      throws AliasServiceException {
+    try {
+      return keystoreService.getCredentialsForCluster(clusterName, aliases);
+    } catch (KeystoreServiceException e) {
+      LOG.failedToGetCredentialForCluster(clusterName, e);
+      throw new AliasServiceException(e);
+    }
+  }
+
+  private char[] loadPasswordFromAliasForCluster(String clusterName, String alias, boolean generate)
+      throws AliasServiceException {
     char[] credential = null;
     try {
       credential = keystoreService.getCredentialForCluster(clusterName, alias);
@@ -103,6 +188,35 @@ public class DefaultAliasService implements AliasService {
     return credential;
   }
 
+  private CachedAliases getCachedAliases(String clusterName) {
+    CachedAliases aliases = cache.get(clusterName);
+    if (aliases == null) {
+      aliases = new CachedAliases(clusterName, getCredentialStoreFile(clusterName));
+      CachedAliases existing = cache.putIfAbsent(clusterName, aliases);
+      if (existing != null) {
+        aliases = existing;
+      }
+    }
+    return aliases;
+  }
+
+  private File getCredentialStoreFile(String clusterName) {
+    String keystorePath = keystoreService.getKeystorePath();
+    if (checkInterval <= 0 || keystorePath == null) {
+      return null;
+    }
+    return new File(new File(keystorePath).getParentFile(), clusterName + DefaultKeystoreService.CREDENTIALS_SUFFIX);
+  }
+
+  private void invalidate(String clusterName) {
+    CachedAliases aliases = cache.get(clusterName);
+    if (aliases != null) {
+      synchronized (aliases) {
+        aliases.clear();
+      }
+    }
+  }
+
   private String generatePassword(int length) {
     StringBuilder sb = new StringBuilder();
     SecureRandom r = new SecureRandom();
@@ -143,6 +257,21 @@ public class DefaultAliasService implements AliasService {
       keystoreService.addCredentialForCluster(clusterName, alias, value);
     } catch (KeystoreServiceException e) {
       LOG.failedToAddCredentialForCluster(clusterName, e);
+    } finally {
+      invalidate(clusterName);
+    }
+  }
+
+  @Override
+  public void addAliasesForCluster(String clusterName, Map<String, String> credentials)
+      throws AliasServiceException {
+    try {
+      keystoreService.addCredentialsForCluster(clusterName, credentials);
+    } catch (KeystoreServiceException e) {
+      LOG.failedToAddCredentialForCluster(clusterName, e);
+      throw new AliasServiceException(e);
+    } finally {
+      invalidate(clusterName);
     }
   }
 
@@ -153,6 +282,8 @@ public class DefaultAliasService implements AliasService {
       keystoreService.removeCredentialForCluster(clusterName, alias);
     } catch (KeystoreServiceException e) {
       throw new AliasServiceException(e);
+    } finally {
+      invalidate(clusterName);
     }
   }
 
@@ -214,4 +345,54 @@ public class DefaultAliasService implements AliasService {
     }
     return list;
   }
+
+  /**
+   * The aliases of a cluster resolved so far, guarded by the instance's monitor.
+   */
+  private class CachedAliases {
+    private final String clusterName;
+    private final File file;
+    private final Map<String, char[]> passwords = new HashMap<>();
+    private long lastModified;
+    private long length;
+    private long lastChecked;
+
+    CachedAliases(String clusterName, File file) {
+      this.clusterName = clusterName;
+      this.file = file;
+      stamp();
+    }
+
+    // Taken before anything is read, so a change made while reading is noticed by the next check
+    private void stamp() {
+      if (file != null) {
+        lastModified = file.lastModified();
+        length = file.length();
+        lastChecked = System.currentTimeMillis();
+      }
+    }
+
+    void checkForChanges() {
+      if (file != null) {
+        long now = System.currentTimeMillis();
+        if (now - lastChecked >= checkInterval) {
+          lastChecked = now;
+          if (file.lastModified() != lastModified || file.length() != length) {
+            LOG.credentialStoreChanged(clusterName);
+            clear();
+          }
+        }
+      }
+    }
+
+    void clear() {
+      for (char[] password : passwords.values()) {
+        if (password != null) {
+          Arrays.fill(password, '\0');
+        }
+      }
+      passwords.clear();
+      stamp();
+    }
+  }
 }
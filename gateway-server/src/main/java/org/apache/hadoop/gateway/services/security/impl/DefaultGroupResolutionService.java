@@ -0,0 +1,292 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.security.impl;
+
+import org.apache.hadoop.gateway.GatewayMessages;
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.services.ServiceLifecycleException;
+import org.apache.hadoop.gateway.services.security.GroupResolutionService;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+public class DefaultGroupResolutionService implements GroupResolutionService {
+
+  private static final GatewayMessages LOG = MessagesFactory.get(GatewayMessages.class);
+
+  static final int REFRESH_THREADS = 2;
+
+  private final Map<String, Source> sources = new HashMap<>();
+  private final ConcurrentMap<Key, Load> loads = new ConcurrentHashMap<>();
+  private Map<Key, Entry> entries;
+  private long ttl;
+  private long staleTtl;
+  private long negativeTtl;
+  private ExecutorService refresher;
+
+  @Override
+  public void init(GatewayConfig config, Map<String, String> options) throws ServiceLifecycleException {
+    final int maxEntries = config.getGroupCacheMaxEntries();
+    ttl = config.getGroupCacheTtl();
+    staleTtl = Math.max(ttl, config.getGroupCacheStaleTtl());
+    negativeTtl = config.getGroupCacheNegativeTtl();
+    entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    refresher = Executors.newFixedThreadPool(REFRESH_THREADS, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "GroupResolutionService");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  @Override
+  public void start() throws ServiceLifecycleException {
+  }
+
+  @Override
+  public void stop() throws ServiceLifecycleException {
+    refresher.shutdownNow();
+  }
+
+  @Override
+  public GroupLookup getCachingLookup(final String source, final GroupLookup lookup) {
+    synchronized (sources) {
+      Source caching = sources.get(source);
+      if (caching == null) {
+        caching = new Source(new GroupLookup() {
+          @Override
+          public List<String> getGroups(String user) throws IOException {
+            return DefaultGroupResolutionService.this.getGroups(new Key(source, user), lookup);
+          }
+        });
+        sources.put(source, caching);
+      }
+      caching.users++;
+      return caching.lookup;
+    }
+  }
+
+  @Override
+  public void releaseCachingLookup(String source) {
+    synchronized (sources) {
+      Source caching = sources.get(source);
+      if (caching == null || --caching.users > 0) {
+        return;
+      }
+      sources.remove(source);
+    }
+    synchronized (entries) {
+      Iterator<Key> keys = entries.keySet().iterator();
+      while (keys.hasNext()) {
+        if (keys.next().source.equals(source)) {
+          keys.remove();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void invalidate(String user) {
+    synchronized (entries) {
+      Iterator<Key> keys = entries.keySet().iterator();
+      while (keys.hasNext()) {
+        if (keys.next().user.equals(user)) {
+          keys.remove();
+        }
+      }
+    }
+  }
+
+  List<String> getGroups(Key key, GroupLookup lookup) throws IOException {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+    }
+    if (entry != null) {
+      long age = System.currentTimeMillis() - entry.loaded;
+      if (entry.groups.isEmpty()) {
+        if (age < negativeTtl) {
+          return entry.groups;
+        }
+      } else if (age < ttl) {
+        return entry.groups;
+      } else if (age < staleTtl) {
+        refresh(key, lookup);
+        return entry.groups;
+      }
+    }
+    return load(key, lookup);
+  }
+
+  private List<String> load(Key key, GroupLookup lookup) throws IOException {
+    Load load = new Load(key, lookup, false);
+    Load existing = loads.putIfAbsent(key, load);
+    if (existing == null) {
+      load.run();
+    } else {
+      load = existing;
+    }
+    try {
+      return load.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  // Stale groups keep being served if the refresh fails, until they expire for good
+  private void refresh(Key key, GroupLookup lookup) {
+    Load load = new Load(key, lookup, true);
+    if (loads.putIfAbsent(key, load) == null) {
+      try {
+        refresher.execute(load);
+      } catch (RejectedExecutionException e) {
+        loads.remove(key, load);
+      }
+    }
+  }
+
+  int getEntryCount() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * A lookup of the groups of one user, which concurrent requests for the same user wait for instead of starting
+   * their own.
+   */
+  private class Load extends FutureTask<List<String>> {
+
+    private final Key key;
+    private final boolean background;
+
+    Load(final Key key, final GroupLookup lookup, boolean background) {
+      super(new Callable<List<String>>() {
+        @Override
+        public List<String> call() throws Exception {
+          List<String> groups = lookup.getGroups(key.user);
+          groups = groups == null ? Collections.<String>emptyList() : Collections.unmodifiableList(groups);
+          synchronized (sources) {
+            // Not cached if the source was released while its groups were looked up
+            if (sources.containsKey(key.source)) {
+              synchronized (entries) {
+                entries.put(key, new Entry(groups, System.currentTimeMillis()));
+              }
+            }
+          }
+          return groups;
+        }
+      });
+      this.key = key;
+      this.background = background;
+    }
+
+    @Override
+    protected void done() {
+      loads.remove(key, this);
+      if (background && !isCancelled()) {
+        try {
+          get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          // Nobody waits for a refresh, so its failure is only reported here
+          LOG.failedToRefreshGroups(key.user, e.getCause());
+        }
+      }
+    }
+
+  }
+
+  private static class Source {
+    private final GroupLookup lookup;
+    private int users;
+
+    Source(GroupLookup lookup) {
+      this.lookup = lookup;
+    }
+  }
+
+  private static class Entry {
+    private final List<String> groups;
+    private final long loaded;
+
+    Entry(List<String> groups, long loaded) {
+      this.groups = groups;
+      this.loaded = loaded;
+    }
+  }
+
+  static class Key {
+    private final String source;
+    private final String user;
+
+    Key(String source, String user) {
+      this.source = source;
+      this.user = user;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return source.equals(key.source) && user.equals(key.user);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * source.hashCode() + user.hashCode();
+    }
+  }
+
+}
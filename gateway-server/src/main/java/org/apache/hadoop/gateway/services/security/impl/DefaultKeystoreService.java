@@ -42,12 +42,14 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class DefaultKeystoreService extends BaseKeystoreService implements KeystoreService, Service {
 
   private static final String dnTemplate = "CN={0},OU=Test,O=Hadoop,L=Test,ST=Test,C=US";
-  private static final String CREDENTIALS_SUFFIX = "-credentials.jceks";
+  static final String CREDENTIALS_SUFFIX = "-credentials.jceks";
   public static final String GATEWAY_KEYSTORE = "gateway.jks";
   private static final String CERT_GEN_MODE = "hadoop.gateway.cert.gen.mode";
   private static final String CERT_GEN_MODE_LOCALHOST = "localhost";
@@ -289,6 +291,52 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
     }
   }
   
+  @Override
+  public void addCredentialsForCluster(String clusterName, Map<String, String> credentials)
+      throws KeystoreServiceException {
+    KeyStore ks = getCredentialStoreForCluster(clusterName);
+    for (Map.Entry<String, String> credential : credentials.entrySet()) {
+      addCredential(credential.getKey(), credential.getValue(), ks);
+    }
+    final File  keyStoreFile = new File( keyStoreDir + clusterName + CREDENTIALS_SUFFIX  );
+    try {
+      writeKeystoreToFile(ks, keyStoreFile);
+    } catch (KeyStoreException e) {
+      LOG.failedToAddCredentialForCluster( clusterName, e );
+    } catch (NoSuchAlgorithmException e) {
+      LOG.failedToAddCredentialForCluster( clusterName, e );
+    } catch (CertificateException e) {
+      LOG.failedToAddCredentialForCluster( clusterName, e );
+    } catch (IOException e) {
+      LOG.failedToAddCredentialForCluster( clusterName, e );
+    }
+  }
+
+  @Override
+  public Map<String, char[]> getCredentialsForCluster(String clusterName, Collection<String> aliases)
+      throws KeystoreServiceException {
+    Map<String, char[]> credentials = new LinkedHashMap<>();
+    KeyStore ks = getCredentialStoreForCluster(clusterName);
+    if (ks != null) {
+      char[] masterSecret = masterService.getMasterSecret();
+      for (String alias : aliases) {
+        try {
+          Key credentialKey = ks.getKey( alias, masterSecret );
+          if (credentialKey != null) {
+            credentials.put( alias, new String( credentialKey.getEncoded() ).toCharArray() );
+          }
+        } catch (UnrecoverableKeyException e) {
+          LOG.failedToGetCredentialForCluster( clusterName, e );
+        } catch (KeyStoreException e) {
+          LOG.failedToGetCredentialForCluster( clusterName, e );
+        } catch (NoSuchAlgorithmException e) {
+          LOG.failedToGetCredentialForCluster( clusterName, e );
+        }
+      }
+    }
+    return credentials;
+  }
+
   @Override
   public char[] getCredentialForCluster(String clusterName, String alias) 
       throws KeystoreServiceException {
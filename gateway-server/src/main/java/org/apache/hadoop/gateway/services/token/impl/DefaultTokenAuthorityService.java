@@ -17,16 +17,29 @@
  */
 package org.apache.hadoop.gateway.services.token.impl;
 
+import java.security.Key;
+import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
 import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.security.auth.Subject;
 
@@ -42,21 +55,43 @@ import org.apache.hadoop.gateway.services.security.token.TokenServiceException;
 import org.apache.hadoop.gateway.services.security.token.impl.JWT;
 import org.apache.hadoop.gateway.services.security.token.impl.JWTToken;
 
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.util.Base64URL;
 
+/**
+ * Issues and verifies tokens with the keys of the signing keystore.
+ *
+ * Signers and verifiers are thread-safe, so they are created once and reused. Every token
+ * carries a "kid" header derived from the public key it was signed with, and the verifier
+ * is chosen by that key id among all the keys of the signing keystore. Changing the signing
+ * key alias therefore does not invalidate outstanding tokens as long as the previous key
+ * remains in the keystore.
+ */
 public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
 
   private static final String SIGNING_KEY_PASSPHRASE = "signing.key.passphrase";
   private static final Set<String> SUPPORTED_SIG_ALGS = new HashSet<>();
+  // Limits how often tokens with unknown key ids cause the keystore to be read
+  private static final long KEYRING_RELOAD_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+  private static final int MAX_PUBLIC_KEY_VERIFIERS = 64;
   private AliasService as = null;
   private KeystoreService ks = null;
   String signingKeyAlias = null;
+  private volatile KeyedSigner signer = null;
+  private volatile Map<String, JWSVerifier> keyring = Collections.emptyMap();
+  private volatile String signingKeyId = null;
+  private volatile long keyringLoadTime = 0;
+  private final ConcurrentMap<PublicKey, JWSVerifier> publicKeyVerifiers = new ConcurrentHashMap<>();
 
   static {
-      // Only standard RSA signature algorithms are accepted
+      // Only standard RSA and ECDSA signature algorithms are accepted
       // https://tools.ietf.org/html/rfc7518
       SUPPORTED_SIG_ALGS.add("RS256");
       SUPPORTED_SIG_ALGS.add("RS384");
@@ -64,6 +99,9 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
       SUPPORTED_SIG_ALGS.add("PS256");
       SUPPORTED_SIG_ALGS.add("PS384");
       SUPPORTED_SIG_ALGS.add("PS512");
+      SUPPORTED_SIG_ALGS.add("ES256");
+      SUPPORTED_SIG_ALGS.add("ES384");
+      SUPPORTED_SIG_ALGS.add("ES512");
   }
 
   public void setKeystoreService(KeystoreService ks) {
@@ -134,22 +172,12 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
 
     JWT token = null;
     if (SUPPORTED_SIG_ALGS.contains(algorithm)) {
-      token = new JWTToken(algorithm, claimArray, audiences);
-      RSAPrivateKey key;
-      char[] passphrase = null;
-      try {
-        passphrase = getSigningKeyPassphrase();
-      } catch (AliasServiceException e) {
-        throw new TokenServiceException(e);
-      }
-      try {
-        key = (RSAPrivateKey) ks.getSigningKey(getSigningKeyAlias(),
-            passphrase);
-        JWSSigner signer = new RSASSASigner(key);
-        token.sign(signer);
-      } catch (KeystoreServiceException e) {
-        throw new TokenServiceException(e);
+      KeyedSigner keyedSigner = getSigner();
+      if (!keyedSigner.signer.supportedJWSAlgorithms().contains(JWSAlgorithm.parse(algorithm))) {
+        throw new TokenServiceException("Cannot issue token - Unsupported algorithm for the signing key");
       }
+      token = new JWTToken(algorithm, claimArray, audiences, keyedSigner.keyId);
+      token.sign(keyedSigner.signer);
     }
     else {
       throw new TokenServiceException("Cannot issue token - Unsupported algorithm");
@@ -158,6 +186,70 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
     return token;
   }
 
+  private KeyedSigner getSigner() throws TokenServiceException {
+    KeyedSigner current = signer;
+    if (current == null) {
+      synchronized (this) {
+        current = signer;
+        if (current == null) {
+          char[] passphrase = null;
+          try {
+            passphrase = getSigningKeyPassphrase();
+          } catch (AliasServiceException e) {
+            throw new TokenServiceException(e);
+          }
+          try {
+            Key key = ks.getSigningKey(getSigningKeyAlias(), passphrase);
+            Certificate cert = ks.getSigningKeystore().getCertificate(getSigningKeyAlias());
+            if (key == null || cert == null) {
+              throw new TokenServiceException("Cannot issue token - Signing key not found");
+            }
+            current = new KeyedSigner(getKeyId(cert.getPublicKey()), createSigner(key));
+          } catch (KeystoreServiceException e) {
+            throw new TokenServiceException(e);
+          } catch (KeyStoreException e) {
+            throw new TokenServiceException(e);
+          }
+          signer = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  private static JWSSigner createSigner(Key key) throws TokenServiceException {
+    try {
+      if (key instanceof RSAPrivateKey) {
+        return new RSASSASigner((RSAPrivateKey) key);
+      } else if (key instanceof ECPrivateKey) {
+        return new ECDSASigner((ECPrivateKey) key);
+      }
+    } catch (JOSEException e) {
+      throw new TokenServiceException(e);
+    }
+    throw new TokenServiceException("Cannot issue token - Unsupported signing key type " + key.getAlgorithm());
+  }
+
+  private static JWSVerifier createVerifier(PublicKey key) throws JOSEException {
+    if (key instanceof RSAPublicKey) {
+      return new RSASSAVerifier((RSAPublicKey) key);
+    } else if (key instanceof ECPublicKey) {
+      return new ECDSAVerifier((ECPublicKey) key);
+    }
+    return null;
+  }
+
+  /**
+   * @return the key id of a public key, the base64url encoded SHA-256 digest of its encoding.
+   */
+  static String getKeyId(PublicKey key) throws TokenServiceException {
+    try {
+      return Base64URL.encode(MessageDigest.getInstance("SHA-256").digest(key.getEncoded())).toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new TokenServiceException(e);
+    }
+  }
+
   private char[] getSigningKeyPassphrase() throws AliasServiceException {
     char[] phrase = as.getPasswordFromAliasForGateway(SIGNING_KEY_PASSPHRASE);
     if (phrase == null) {
@@ -182,25 +274,89 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
   @Override
   public boolean verifyToken(JWT token, RSAPublicKey publicKey)
       throws TokenServiceException {
-    boolean rc = false;
-    PublicKey key;
-    try {
-      if (publicKey == null) {
-        key = ks.getSigningKeystore().getCertificate(getSigningKeyAlias()).getPublicKey();
+    JWSVerifier verifier;
+    if (publicKey == null) {
+      verifier = getVerifier(token.getKeyId());
+    }
+    else {
+      verifier = getVerifier(publicKey);
+    }
+    return verifier != null && token.verify(verifier);
+  }
+
+  private JWSVerifier getVerifier(PublicKey publicKey) throws TokenServiceException {
+    JWSVerifier verifier = publicKeyVerifiers.get(publicKey);
+    if (verifier == null) {
+      try {
+        verifier = createVerifier(publicKey);
+      } catch (JOSEException e) {
+        throw new TokenServiceException("Cannot verify token.", e);
       }
-      else {
-        key = publicKey;
+      if (verifier != null) {
+        if (publicKeyVerifiers.size() >= MAX_PUBLIC_KEY_VERIFIERS) {
+          publicKeyVerifiers.clear();
+        }
+        publicKeyVerifiers.put(publicKey, verifier);
+      }
+    }
+    return verifier;
+  }
+
+  private JWSVerifier getVerifier(String keyId) throws TokenServiceException {
+    if (keyId == null) {
+      // Tokens without a key id are verified with the configured signing key
+      if (keyringLoadTime == 0) {
+        loadKeyring(true);
+      }
+      keyId = signingKeyId;
+    }
+    JWSVerifier verifier = keyring.get(keyId);
+    if (verifier == null && loadKeyring(false)) {
+      verifier = keyring.get(keyId);
+    }
+    return verifier;
+  }
+
+  /**
+   * Creates verifiers for the certificates of all the key entries of the signing keystore.
+   * @param force whether to load even if the keyring was loaded recently.
+   * @return whether the keyring was loaded.
+   */
+  private synchronized boolean loadKeyring(boolean force) throws TokenServiceException {
+    long now = System.currentTimeMillis();
+    if (!force && now - keyringLoadTime < KEYRING_RELOAD_INTERVAL) {
+      return false;
+    }
+    keyringLoadTime = now;
+    Map<String, JWSVerifier> verifiers = new HashMap<>();
+    String currentKeyId = null;
+    try {
+      KeyStore keystore = ks.getSigningKeystore();
+      Enumeration<String> aliases = keystore.aliases();
+      while (aliases.hasMoreElements()) {
+        String alias = aliases.nextElement();
+        Certificate cert = keystore.isKeyEntry(alias) ? keystore.getCertificate(alias) : null;
+        if (cert != null) {
+          JWSVerifier verifier = createVerifier(cert.getPublicKey());
+          if (verifier != null) {
+            String keyId = getKeyId(cert.getPublicKey());
+            verifiers.put(keyId, verifier);
+            if (alias.equalsIgnoreCase(getSigningKeyAlias())) {
+              currentKeyId = keyId;
+            }
+          }
+        }
       }
-      JWSVerifier verifier = new RSASSAVerifier((RSAPublicKey) key);
-      // TODO: interrogate the token for issuer claim in order to determine the public key to use for verification
-      // consider jwk for specifying the key too
-      rc = token.verify(verifier);
     } catch (KeyStoreException e) {
       throw new TokenServiceException("Cannot verify token.", e);
     } catch (KeystoreServiceException e) {
       throw new TokenServiceException("Cannot verify token.", e);
+    } catch (JOSEException e) {
+      throw new TokenServiceException("Cannot verify token.", e);
     }
-    return rc;
+    keyring = verifiers;
+    signingKeyId = currentKeyId;
+    return true;
   }
 
   @Override
@@ -212,12 +368,12 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
     signingKeyAlias = config.getSigningKeyAlias();
 
     @SuppressWarnings("unused")
-    RSAPrivateKey key;
+    Key key;
     char[] passphrase = null;
     try {
       passphrase = as.getPasswordFromAliasForGateway(SIGNING_KEY_PASSPHRASE);
       if (passphrase != null) {
-        key = (RSAPrivateKey) ks.getSigningKey(getSigningKeyAlias(),
+        key = ks.getSigningKey(getSigningKeyAlias(),
             passphrase);
         if (key == null) {
           throw new ServiceLifecycleException("Provisioned passphrase cannot be used to acquire signing key.");
@@ -237,4 +393,14 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
   @Override
   public void stop() throws ServiceLifecycleException {
   }
+
+  private static class KeyedSigner {
+    private final String keyId;
+    private final JWSSigner signer;
+
+    KeyedSigner(String keyId, JWSSigner signer) {
+      this.keyId = keyId;
+      this.signer = signer;
+    }
+  }
 }
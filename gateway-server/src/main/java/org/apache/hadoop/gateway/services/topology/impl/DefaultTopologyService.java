@@ -25,8 +25,6 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.monitor.FileAlterationListener;
 import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
-import org.apache.commons.io.monitor.FileAlterationMonitor;
-import org.apache.commons.io.monitor.FileAlterationObserver;
 import org.apache.hadoop.gateway.GatewayMessages;
 import org.apache.hadoop.gateway.GatewayServer;
 import org.apache.hadoop.gateway.audit.api.Action;
@@ -96,7 +94,7 @@ public class DefaultTopologyService
 
   private static GatewayMessages log = MessagesFactory.get(GatewayMessages.class);
   private static DigesterLoader digesterLoader = newLoader(new KnoxFormatXmlTopologyRules(), new AmbariFormatXmlTopologyRules());
-  private List<FileAlterationMonitor> monitors = new ArrayList<>();
+  private List<DirectoryMonitor> monitors = new ArrayList<>();
   private File topologiesDirectory;
   private File sharedProvidersDirectory;
   private File descriptorsDirectory;
@@ -161,6 +159,9 @@ public class DefaultTopologyService
         throw new SAXException(tv.getErrorString());
       }
 
+      // The content is unchanged, so the monitor has to be told to report the touch
+      DirectoryMonitor.forceChange(topologyFile);
+
       long start = System.currentTimeMillis();
       long limit = 1000L; // One second.
       long elapsed = 1;
@@ -246,20 +247,10 @@ public class DefaultTopologyService
     return configDir.getAbsoluteFile();
   }
 
-  private void  initListener(FileAlterationMonitor  monitor,
-                            File                   directory,
-                            FileFilter             filter,
-                            FileAlterationListener listener) {
-    monitors.add(monitor);
-    FileAlterationObserver observer = new FileAlterationObserver(directory, filter);
-    observer.addListener(listener);
-    monitor.addObserver(observer);
-  }
-
   private void initListener(File directory, FileFilter filter, FileAlterationListener listener) throws IOException, SAXException {
-    // Increasing the monitoring interval to 5 seconds as profiling has shown
-    // this is rather expensive in terms of generated garbage objects.
-    initListener(new FileAlterationMonitor(5000L), directory, filter, listener);
+    // Changes are normally noticed through native file system notifications; the 5 second interval only applies where
+    // the directory has to be polled, as profiling has shown polling is rather expensive in terms of generated garbage.
+    monitors.add(new DirectoryMonitor(directory, filter, listener, 5000L));
   }
 
   private Map<File, Topology> loadTopologies(File directory) {
@@ -486,7 +477,7 @@ public class DefaultTopologyService
   @Override
   public void startMonitor() throws Exception {
     // Start the local configuration monitors
-    for (FileAlterationMonitor monitor : monitors) {
+    for (DirectoryMonitor monitor : monitors) {
       monitor.start();
     }
 
@@ -503,7 +494,7 @@ public class DefaultTopologyService
   @Override
   public void stopMonitor() throws Exception {
     // Stop the local configuration monitors
-    for (FileAlterationMonitor monitor : monitors) {
+    for (DirectoryMonitor monitor : monitors) {
       monitor.stop();
     }
 
@@ -828,6 +819,7 @@ public class DefaultTopologyService
     public void onFileChange(File file) {
       // For shared provider configuration, we need to update any simple descriptors that reference it
       for (File descriptor : getReferencingDescriptors(file)) {
+        DirectoryMonitor.forceChange(descriptor);
         descriptor.setLastModified(System.currentTimeMillis());
       }
     }
@@ -882,6 +874,7 @@ public class DefaultTopologyService
             if (descriptorContent.contains(clusterName)) {
               log.triggeringTopologyRegeneration(source, clusterName, descriptor.getAbsolutePath());
               // 'Touch' the descriptor to trigger re-generation of the associated topology
+              DirectoryMonitor.forceChange(descriptor);
               descriptor.setLastModified(System.currentTimeMillis());
             }
           }
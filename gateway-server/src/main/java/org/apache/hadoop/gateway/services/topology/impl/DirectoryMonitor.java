@@ -0,0 +1,331 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.topology.impl;
+
+import org.apache.commons.io.monitor.FileAlterationListener;
+import org.apache.hadoop.gateway.GatewayMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monitors a directory for created, changed and deleted files, and notifies a FileAlterationListener of them.
+ *
+ * Changes are detected with native file system notifications where they are available. Events that arrive in quick
+ * succession, like those of an editor saving a file, are coalesced and reported together once the directory has been
+ * quiet for a moment. Where the platform only emulates notifications by polling, the directory is polled instead,
+ * and only files whose size or modification time changed are inspected.
+ *
+ * A change is only reported when the content of a file actually changed, so a file that is merely touched does not
+ * trigger a redeployment. Use {@link #forceChange(File)} before touching a file that must be reprocessed regardless.
+ */
+class DirectoryMonitor {
+
+  private static final GatewayMessages log = MessagesFactory.get(GatewayMessages.class);
+
+  static final long QUIET_PERIOD = 100L;
+
+  static final long MAX_DELAY = 1000L;
+
+  private static final Set<String> forcedChanges = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  private final File directory;
+  private final FileFilter filter;
+  private final FileAlterationListener listener;
+  private final long pollInterval;
+  private final boolean allowNativeWatch;
+
+  // Only accessed by the monitoring thread once it has been started
+  private final Map<String, FileState> states = new HashMap<>();
+
+  private volatile WatchService watchService;
+  private volatile Thread thread;
+
+  DirectoryMonitor(File directory, FileFilter filter, FileAlterationListener listener, long pollInterval) {
+    this(directory, filter, listener, pollInterval, true);
+  }
+
+  DirectoryMonitor(File directory, FileFilter filter, FileAlterationListener listener, long pollInterval, boolean allowNativeWatch) {
+    this.directory        = directory;
+    this.filter           = filter;
+    this.listener         = listener;
+    this.pollInterval     = pollInterval;
+    this.allowNativeWatch = allowNativeWatch;
+  }
+
+  /**
+   * Marks the file so that the next time it is noticed it is reported as changed, even if its content is unchanged.
+   */
+  static void forceChange(File file) {
+    forcedChanges.add(file.getAbsolutePath());
+  }
+
+  synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+
+    states.clear();
+    for (String name : listNames()) {
+      File file = new File(directory, name);
+      if (filter.accept(file)) {
+        FileState state = FileState.of(file);
+        if (state != null) {
+          states.put(name, state);
+        }
+      }
+    }
+
+    watchService = allowNativeWatch ? createWatchService() : null;
+    final Runnable monitor;
+    if (watchService != null) {
+      log.watchingDirectory(directory.getAbsolutePath());
+      monitor = new Runnable() {
+        @Override
+        public void run() {
+          watch();
+        }
+      };
+    } else {
+      log.pollingDirectory(directory.getAbsolutePath(), pollInterval);
+      monitor = new Runnable() {
+        @Override
+        public void run() {
+          poll();
+        }
+      };
+    }
+
+    thread = new Thread(monitor, "DirectoryMonitor-" + directory.getName());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  synchronized void stop() throws InterruptedException {
+    Thread current = thread;
+    thread = null;
+    if (current != null) {
+      closeWatchService();
+      current.interrupt();
+      if (current != Thread.currentThread()) {
+        current.join(MAX_DELAY);
+      }
+    }
+  }
+
+  private WatchService createWatchService() {
+    WatchService service = null;
+    try {
+      service = FileSystems.getDefault().newWatchService();
+      // The JDK falls back to a polling implementation on platforms without native support, which polls every file
+      // of the directory on its own schedule; polling here is cheaper because unchanged files are not hashed.
+      if (service.getClass().getName().endsWith("PollingWatchService")) {
+        service.close();
+        service = null;
+      } else {
+        directory.toPath().register(service,
+                                    StandardWatchEventKinds.ENTRY_CREATE,
+                                    StandardWatchEventKinds.ENTRY_MODIFY,
+                                    StandardWatchEventKinds.ENTRY_DELETE);
+      }
+    } catch (Exception e) {
+      // The directory does not exist (yet), or it cannot be watched
+      if (service != null) {
+        try {
+          service.close();
+        } catch (IOException ignored) {
+        }
+        service = null;
+      }
+    }
+    return service;
+  }
+
+  private void closeWatchService() {
+    WatchService service = watchService;
+    watchService = null;
+    if (service != null) {
+      try {
+        service.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  private void watch() {
+    WatchService service = watchService;
+    try {
+      boolean valid = true;
+      while (valid && isRunning()) {
+        WatchKey key = service.take();
+        Set<String> names = new TreeSet<>();
+        boolean overflow = false;
+        long deadline = System.currentTimeMillis() + MAX_DELAY;
+        while (key != null) {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              overflow = true;
+            } else {
+              names.add(((Path) event.context()).toString());
+            }
+          }
+          valid = key.reset();
+          long remaining = deadline - System.currentTimeMillis();
+          key = (valid && remaining > 0) ? service.poll(Math.min(QUIET_PERIOD, remaining), TimeUnit.MILLISECONDS) : null;
+        }
+        scan(overflow || !valid ? null : names);
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      return;
+    }
+
+    // The directory itself went away, so poll until it comes back
+    if (isRunning()) {
+      closeWatchService();
+      log.pollingDirectory(directory.getAbsolutePath(), pollInterval);
+      poll();
+    }
+  }
+
+  private void poll() {
+    try {
+      while (isRunning()) {
+        Thread.sleep(pollInterval);
+        scan(null);
+      }
+    } catch (InterruptedException e) {
+      // Stopped
+    }
+  }
+
+  private boolean isRunning() {
+    return thread == Thread.currentThread() && !Thread.currentThread().isInterrupted();
+  }
+
+  /**
+   * @param changed The names of the files that native notifications reported, or null to inspect the whole directory,
+   *                in which case a file is only hashed when its size or modification time changed.
+   */
+  private void scan(Collection<String> changed) {
+    Set<String> names = new TreeSet<>();
+    if (changed != null) {
+      names.addAll(changed);
+    } else {
+      names.addAll(states.keySet());
+      names.addAll(Arrays.asList(listNames()));
+    }
+
+    for (String name : names) {
+      if (!isRunning()) {
+        return;
+      }
+      File file = new File(directory, name);
+      boolean forced = forcedChanges.remove(file.getAbsolutePath());
+      FileState previous = states.get(name);
+      try {
+        if (filter.accept(file)) {
+          if (previous == null) {
+            FileState current = FileState.of(file);
+            if (current != null) {
+              states.put(name, current);
+              listener.onFileCreate(file);
+            }
+          } else if (forced || changed != null || previous.isModified(file)) {
+            // A file that cannot be read right now is left alone, and looked at again when it is next reported
+            FileState current = FileState.of(file);
+            if (current != null) {
+              states.put(name, current);
+              if (forced || !Arrays.equals(previous.hash, current.hash)) {
+                listener.onFileChange(file);
+              }
+            }
+          }
+        } else if (previous != null) {
+          states.remove(name);
+          listener.onFileDelete(file);
+        }
+      } catch (RuntimeException e) {
+        log.errorProcessingDirectoryChanges(directory.getAbsolutePath(), e);
+      }
+    }
+  }
+
+  private String[] listNames() {
+    String[] names = directory.list();
+    return names != null ? names : new String[0];
+  }
+
+  private static class FileState {
+
+    private final long lastModified;
+    private final long length;
+    private final byte[] hash;
+
+    private FileState(long lastModified, long length, byte[] hash) {
+      this.lastModified = lastModified;
+      this.length       = length;
+      this.hash         = hash;
+    }
+
+    /**
+     * @return The state of the file, or null if it could not be read.
+     */
+    static FileState of(File file) {
+      long lastModified = file.lastModified();
+      long length = file.length();
+      try (InputStream in = Files.newInputStream(file.toPath())) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+        }
+        return new FileState(lastModified, length, digest.digest());
+      } catch (IOException | NoSuchAlgorithmException e) {
+        return null;
+      }
+    }
+
+    boolean isModified(File file) {
+      return file.lastModified() != lastModified || file.length() != length;
+    }
+  }
+
+}
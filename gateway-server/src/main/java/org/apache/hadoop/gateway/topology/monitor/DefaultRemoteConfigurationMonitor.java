@@ -28,9 +28,20 @@ import org.apache.zookeeper.ZooDefs;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 
 class DefaultRemoteConfigurationMonitor implements RemoteConfigurationMonitor {
@@ -42,6 +53,12 @@ class DefaultRemoteConfigurationMonitor implements RemoteConfigurationMonitor {
 
     private static GatewayMessages log = MessagesFactory.get(GatewayMessages.class);
 
+    // Changes are written locally once no further change has arrived for this long (ms)
+    static final long SYNC_QUIET_PERIOD = 25L;
+
+    // ... but a continuous stream of changes is not held back for longer than this (ms)
+    static final long SYNC_MAX_DELAY = 500L;
+
     // N.B. This is ZooKeeper-specific, and should be abstracted when another registry is supported
     private static final RemoteConfigurationRegistryClient.EntryACL AUTHENTICATED_USERS_ALL;
     static {
@@ -73,6 +90,8 @@ class DefaultRemoteConfigurationMonitor implements RemoteConfigurationMonitor {
     private File providersDir;
     private File descriptorsDir;
 
+    private final LocalConfigSync sync = new LocalConfigSync();
+
     /**
      * @param config                The gateway configuration
      * @param registryClientService The service from which the remote registry client should be acquired.
@@ -121,11 +140,13 @@ class DefaultRemoteConfigurationMonitor implements RemoteConfigurationMonitor {
             throw new IllegalStateException("Unable to access remote path: " + NODE_KNOX_DESCRIPTORS);
         }
 
+        sync.start();
+
         // Register a listener for provider config znode additions/removals
-        client.addChildEntryListener(NODE_KNOX_PROVIDERS, new ConfigDirChildEntryListener(providersDir));
+        client.addChildEntryListener(NODE_KNOX_PROVIDERS, new ConfigDirChildEntryListener(providersDir, sync));
 
         // Register a listener for descriptor znode additions/removals
-        client.addChildEntryListener(NODE_KNOX_DESCRIPTORS, new ConfigDirChildEntryListener(descriptorsDir));
+        client.addChildEntryListener(NODE_KNOX_DESCRIPTORS, new ConfigDirChildEntryListener(descriptorsDir, sync));
 
         log.monitoringRemoteConfigurationSource(monitorSource);
     }
@@ -135,6 +156,14 @@ class DefaultRemoteConfigurationMonitor implements RemoteConfigurationMonitor {
     public void stop() throws Exception {
         client.removeEntryListener(NODE_KNOX_PROVIDERS);
         client.removeEntryListener(NODE_KNOX_DESCRIPTORS);
+        sync.stop();
+    }
+
+    /**
+     * @return The number of batches of remote changes which have been applied locally.
+     */
+    int getAppliedBatchCount() {
+        return sync.batches;
     }
 
     private void ensureEntries() {
@@ -171,9 +200,11 @@ class DefaultRemoteConfigurationMonitor implements RemoteConfigurationMonitor {
 
     private static class ConfigDirChildEntryListener implements ChildEntryListener {
         File localDir;
+        LocalConfigSync sync;
 
-        ConfigDirChildEntryListener(File localDir) {
+        ConfigDirChildEntryListener(File localDir, LocalConfigSync sync) {
             this.localDir = localDir;
+            this.sync = sync;
         }
 
         @Override
@@ -182,8 +213,7 @@ class DefaultRemoteConfigurationMonitor implements RemoteConfigurationMonitor {
 
             switch (type) {
                 case REMOVED:
-                    FileUtils.deleteQuietly(localFile);
-                    log.deletedRemoteConfigFile(localDir.getName(), localFile.getName());
+                    sync.delete(path, localFile);
                     try {
                         client.removeEntryListener(path);
                     } catch (Exception e) {
@@ -192,7 +222,7 @@ class DefaultRemoteConfigurationMonitor implements RemoteConfigurationMonitor {
                     break;
                 case ADDED:
                     try {
-                        client.addEntryListener(path, new ConfigEntryListener(localDir));
+                        client.addEntryListener(path, new ConfigEntryListener(localDir, sync));
                     } catch (Exception e) {
                         log.errorAddingRemoteConfigurationListenerForPath(path, e);
                     }
@@ -203,26 +233,180 @@ class DefaultRemoteConfigurationMonitor implements RemoteConfigurationMonitor {
 
     private static class ConfigEntryListener implements EntryListener {
         private File localDir;
+        private LocalConfigSync sync;
 
-        ConfigEntryListener(File localDir) {
+        ConfigEntryListener(File localDir, LocalConfigSync sync) {
             this.localDir = localDir;
+            this.sync = sync;
         }
 
         @Override
         public void entryChanged(RemoteConfigurationRegistryClient client, String path, byte[] data) {
-            File localFile = new File(localDir, path.substring(path.lastIndexOf("/")));
+            entryChanged(client, path, data, -1);
+        }
+
+        @Override
+        public void entryChanged(RemoteConfigurationRegistryClient client, String path, byte[] data, int version) {
+            File localFile = new File(localDir, path.substring(path.lastIndexOf("/") + 1));
             if (data != null) {
+                sync.write(path, localFile, data, version);
+            } else {
+                sync.delete(path, localFile);
+            }
+        }
+    }
+
+    /**
+     * Collects the remote changes, and applies each burst of them to the local configuration directories at once.
+     *
+     * The local directories are monitored for changes which trigger topology generation, so writing a burst together,
+     * with the shared provider configurations ahead of the descriptors referencing them, lets the gateway regenerate
+     * each affected topology once rather than once per remote event. Files are replaced atomically so a partially
+     * written file is never observed, and entries whose version or content is unchanged are not rewritten at all.
+     */
+    private class LocalConfigSync {
+        private final Map<File, Change> pending = new LinkedHashMap<>();
+        private final Map<String, Integer> versions = new HashMap<>();
+        private ScheduledExecutorService executor;
+        private ScheduledFuture<?> scheduled;
+        private long burstStart;
+        private int events;
+        private volatile int batches;
+
+        synchronized void start() {
+            if (executor == null) {
+                executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "RemoteConfigurationSync");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+        }
+
+        void stop() {
+            ScheduledExecutorService current;
+            synchronized (this) {
+                current = executor;
+                executor = null;
+            }
+            if (current != null) {
+                current.shutdownNow();
+            }
+            flush();
+        }
+
+        synchronized void write(String path, File localFile, byte[] data, int version) {
+            Integer applied = versions.get(path);
+            if (version >= 0 && applied != null && applied >= version) {
+                return; // Already seen, e.g. an event replayed after a reconnect
+            }
+            if (version >= 0) {
+                versions.put(path, version);
+            }
+            enqueue(localFile, new Change(path, data));
+        }
+
+        synchronized void delete(String path, File localFile) {
+            // A node re-created with the same name starts over at version 0
+            versions.remove(path);
+            enqueue(localFile, new Change(path, null));
+        }
+
+        private void enqueue(File localFile, Change change) {
+            long now = System.currentTimeMillis();
+            if (pending.isEmpty()) {
+                burstStart = now;
+            }
+            pending.remove(localFile); // Keep the order of the latest change
+            pending.put(localFile, change);
+            events++;
+
+            if (executor == null) {
+                return;
+            }
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            long delay = Math.max(0L, Math.min(SYNC_QUIET_PERIOD, burstStart + SYNC_MAX_DELAY - now));
+            scheduled = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        void flush() {
+            Map<File, Change> changes;
+            int burstEvents;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                changes = new LinkedHashMap<>(pending);
+                burstEvents = events;
+                pending.clear();
+                events = 0;
+                scheduled = null;
+            }
+
+            // Descriptors may reference provider configurations, so those are applied first
+            int applied = 0;
+            for (File dir : Arrays.asList(providersDir, descriptorsDir)) {
+                for (Map.Entry<File, Change> change : changes.entrySet()) {
+                    if (dir.equals(change.getKey().getParentFile()) && apply(change.getKey(), change.getValue())) {
+                        applied++;
+                    }
+                }
+            }
+            batches++;
+            log.appliedRemoteConfigChanges(applied, burstEvents);
+        }
+
+        private boolean apply(File localFile, Change change) {
+            String type = localFile.getParentFile().getName();
+            if (change.data == null) {
+                if (localFile.exists()) {
+                    FileUtils.deleteQuietly(localFile);
+                    log.deletedRemoteConfigFile(type, localFile.getName());
+                    return true;
+                }
+                return false;
+            }
+
+            try {
+                if (localFile.exists() && Arrays.equals(change.data, FileUtils.readFileToByteArray(localFile))) {
+                    return false;
+                }
+                // Write next to the destination, and move it into place so the change appears all at once
+                File tempFile = new File(localFile.getParentFile(), "." + localFile.getName() + ".sync");
+                FileUtils.writeByteArrayToFile(tempFile, change.data);
                 try {
-                    FileUtils.writeByteArrayToFile(localFile, data);
-                    log.downloadedRemoteConfigFile(localDir.getName(), localFile.getName());
-                } catch (IOException e) {
-                    log.errorDownloadingRemoteConfiguration(path, e);
+                    Files.move(tempFile.toPath(), localFile.toPath(),
+                               StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile.toPath(), localFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
                 }
-            } else {
-                FileUtils.deleteQuietly(localFile);
-                log.deletedRemoteConfigFile(localDir.getName(), localFile.getName());
+                log.downloadedRemoteConfigFile(type, localFile.getName());
+                return true;
+            } catch (IOException e) {
+                log.errorDownloadingRemoteConfiguration(change.path, e);
+                return false;
             }
         }
     }
 
+    private static class Change {
+        private final String path;
+        private final byte[] data;
+
+        Change(String path, byte[] data) {
+            this.path = path;
+            this.data = data;
+        }
+    }
+
 }
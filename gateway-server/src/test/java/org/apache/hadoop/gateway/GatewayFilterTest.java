@@ -34,6 +34,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -217,4 +222,190 @@ public class GatewayFilterTest {
     assertThat( (String)filter.url, is("http://host:8443/gateway/sandbox/test-role/test-path/test-resource"));
 
   }
+
+  public static class CountingFilter implements Filter {
+
+    public static int instances;
+    public static int destroyed;
+
+    public CountingFilter() {
+      instances++;
+    }
+
+    @Override
+    public void init( FilterConfig filterConfig ) throws ServletException {
+    }
+
+    @Override
+    public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain ) throws IOException, ServletException {
+      chain.doFilter( request, response );
+    }
+
+    @Override
+    public void destroy() {
+      destroyed++;
+    }
+
+  }
+
+  @Test
+  public void testAdoptFiltersOfReplacedFilter() throws Exception {
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.replay( config );
+
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    GatewayConfig gatewayConfig = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( request.getPathInfo() ).andReturn( "/test-path/test-resource" ).anyTimes();
+    EasyMock.expect( request.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.expect( context.getAttribute(
+        GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+    EasyMock.replay( request );
+    EasyMock.replay( context );
+    EasyMock.replay( gatewayConfig );
+
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+
+    CountingFilter.instances = 0;
+    CountingFilter.destroyed = 0;
+    String type = CountingFilter.class.getName();
+    Map<String,String> params = new HashMap<>();
+    params.put( "name", "value" );
+
+    GatewayFilter previous = new GatewayFilter();
+    previous.addFilter( "test-path/**", "unchanged", type, params, "test-role" );
+    previous.addFilter( "test-path/**", "changed", type, null, "test-role" );
+    previous.init( config );
+    previous.doFilter( request, response );
+    assertThat( CountingFilter.instances, is( 2 ) );
+
+    GatewayFilter next = new GatewayFilter();
+    next.addFilter( "test-path/**", "unchanged", type, new HashMap<>( params ), "test-role" );
+    next.addFilter( "test-path/**", "changed", type, params, "test-role" );
+    next.adoptFilters( previous );
+    next.init( config );
+
+    assertThat( previous.retire( 1000L ), is( true ) );
+    previous.destroy();
+    assertThat( CountingFilter.destroyed, is( 1 ) );
+
+    next.doFilter( request, response );
+    assertThat( CountingFilter.instances, is( 3 ) );
+    next.destroy();
+    assertThat( CountingFilter.destroyed, is( 3 ) );
+
+  }
+
+  public static class BlockingFilter implements Filter {
+
+    public static volatile CountDownLatch entered;
+    public static volatile CountDownLatch proceed;
+
+    @Override
+    public void init( FilterConfig filterConfig ) throws ServletException {
+    }
+
+    @Override
+    public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain ) throws IOException, ServletException {
+      CountDownLatch latch = proceed;
+      if( latch != null ) {
+        entered.countDown();
+        try {
+          latch.await();
+        } catch( InterruptedException e ) {
+          throw new ServletException( e );
+        }
+      }
+      chain.doFilter( request, response );
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+  }
+
+  @Test( timeout = 10000 )
+  public void testReplacedFilterServesInFlightRequestsDuringHandover() throws Exception {
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.replay( config );
+
+    final HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    GatewayConfig gatewayConfig = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( request.getPathInfo() ).andReturn( "/test-path/test-resource" ).anyTimes();
+    EasyMock.expect( request.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.expect( context.getAttribute(
+        GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+    EasyMock.replay( request );
+    EasyMock.replay( context );
+    EasyMock.replay( gatewayConfig );
+
+    final HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+
+    CountingFilter.instances = 0;
+    CountingFilter.destroyed = 0;
+    BlockingFilter.proceed = null;
+
+    final GatewayFilter previous = new GatewayFilter();
+    previous.addFilter( "test-path/**", "blocking", BlockingFilter.class.getName(), null, "test-role" );
+    previous.addFilter( "test-path/**", "unchanged", CountingFilter.class.getName(), null, "test-role" );
+    previous.init( config );
+    previous.doFilter( request, response );
+    assertThat( CountingFilter.instances, is( 1 ) );
+
+    // Hold a request inside the previous chain ahead of the filter that is about to be handed over.
+    BlockingFilter.entered = new CountDownLatch( 1 );
+    BlockingFilter.proceed = new CountDownLatch( 1 );
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    assertThat( previous.enterRequest(), is( true ) );
+    Thread inFlight = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        AuditServiceFactory.getAuditService().createContext();
+        try {
+          previous.doFilter( request, response );
+        } catch( Throwable e ) {
+          failure.set( e );
+        } finally {
+          previous.exitRequest();
+          AuditServiceFactory.getAuditService().detachContext();
+        }
+      }
+    } );
+    inFlight.start();
+    assertThat( BlockingFilter.entered.await( 5, TimeUnit.SECONDS ), is( true ) );
+
+    GatewayFilter next = new GatewayFilter();
+    next.addFilter( "test-path/**", "blocking", BlockingFilter.class.getName(), null, "test-role" );
+    next.addFilter( "test-path/**", "unchanged", CountingFilter.class.getName(), null, "test-role" );
+    next.adoptFilters( previous );
+    next.init( config );
+
+    // The previous filter waits for the held request and refuses new ones.
+    assertThat( previous.retire( 100L ), is( false ) );
+    assertThat( previous.enterRequest(), is( false ) );
+
+    BlockingFilter.proceed.countDown();
+    inFlight.join();
+    assertThat( failure.get(), is( (Throwable)null ) );
+    assertThat( previous.retire( 1000L ), is( true ) );
+
+    // The held request finished on the handed over instance instead of creating a new one.
+    previous.destroy();
+    assertThat( CountingFilter.instances, is( 1 ) );
+    assertThat( CountingFilter.destroyed, is( 0 ) );
+
+    BlockingFilter.proceed = null;
+    next.doFilter( request, response );
+    assertThat( CountingFilter.instances, is( 1 ) );
+    next.destroy();
+    assertThat( CountingFilter.destroyed, is( 1 ) );
+
+  }
+
 }
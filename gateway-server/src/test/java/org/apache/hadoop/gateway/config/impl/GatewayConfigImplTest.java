@@ -260,4 +260,20 @@ public class GatewayConfigImplTest {
 
   }
 
+  @Test
+  public void testAdaptiveConcurrencyLimits() {
+    GatewayConfigImpl config = new GatewayConfigImpl();
+    assertFalse(config.isAdaptiveConcurrencyEnabled());
+    assertEquals(config.getAdaptiveConcurrencyMaxLimit(), config.getThreadPoolMax() * 3 / 4);
+    assertThat(config.getAdaptiveConcurrencyCriticalPaths(), hasItems("admin", "*/health"));
+    assertTrue(config.getAdaptiveConcurrencyLowPriorityPaths().isEmpty());
+
+    config.set(GatewayConfigImpl.ADAPTIVE_CONCURRENCY_MIN_LIMIT, "10");
+    config.set(GatewayConfigImpl.ADAPTIVE_CONCURRENCY_MAX_LIMIT, "40");
+    config.set(GatewayConfigImpl.ADAPTIVE_CONCURRENCY_INITIAL_LIMIT, "400");
+    config.set(GatewayConfigImpl.ADAPTIVE_CONCURRENCY_LOW_PRIORITY_PATHS, " */yarnui, */sparkhistoryui ");
+    assertEquals(config.getAdaptiveConcurrencyInitialLimit(), 40);
+    assertThat(config.getAdaptiveConcurrencyLowPriorityPaths(), hasItems("*/yarnui", "*/sparkhistoryui"));
+  }
+
 }
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.hadoop.test.TestUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class AdaptiveConcurrencyHandlerTest {
+
+  private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+  @Test
+  public void testLimitGrowsWhileLatencyIsSteady() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit( 10, 2, 100 );
+    for( int i = 0; i < 1000; i++ ) {
+      limit.onSample( 10 * MILLIS, limit.getLimit() );
+    }
+    assertThat( limit.getLimit(), is( 100 ) );
+  }
+
+  @Test
+  public void testLimitShrinksWhenLatencyRises() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit( 50, 2, 100 );
+    for( int i = 0; i < 200; i++ ) {
+      limit.onSample( 10 * MILLIS, limit.getLimit() );
+    }
+    int steady = limit.getLimit();
+    for( int i = 0; i < 20; i++ ) {
+      int previous = limit.getLimit();
+      limit.onSample( 100 * MILLIS, previous );
+      assertThat( limit.getLimit(), greaterThanOrEqualTo( (int)( previous * 0.9 ) ) );
+    }
+    assertThat( limit.getLimit(), lessThan( steady / 2 ) );
+    for( int i = 0; i < 50; i++ ) {
+      limit.onSample( 100 * MILLIS, limit.getLimit() );
+    }
+    assertThat( limit.getLimit(), lessThan( steady / 10 ) );
+  }
+
+  @Test
+  public void testUnderusedLimitIsNotChanged() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit( 50, 2, 100 );
+    for( int i = 0; i < 100; i++ ) {
+      limit.onSample( 10 * MILLIS, 1 );
+    }
+    for( int i = 0; i < 100; i++ ) {
+      limit.onSample( 1000 * MILLIS, 1 );
+    }
+    assertThat( limit.getLimit(), is( 50 ) );
+  }
+
+  @Test
+  public void testPriorities() {
+    AdaptiveConcurrencyHandler handler = new AdaptiveConcurrencyHandler( "gateway",
+        Arrays.asList( "admin", "*/health" ), Collections.singletonList( "/sandbox/yarnui/" ),
+        new AdaptiveConcurrencyLimit( 10, 1, 10 ) );
+    assertThat( handler.getPriority( "/gateway/admin/api/v1/topologies" ), is( AdaptiveConcurrencyHandler.Priority.CRITICAL ) );
+    assertThat( handler.getPriority( "/gateway/health/health/v1/ping" ), is( AdaptiveConcurrencyHandler.Priority.CRITICAL ) );
+    assertThat( handler.getPriority( "/gateway/sandbox/health" ), is( AdaptiveConcurrencyHandler.Priority.CRITICAL ) );
+    assertThat( handler.getPriority( "/gateway/administration/webhdfs" ), is( AdaptiveConcurrencyHandler.Priority.NORMAL ) );
+    assertThat( handler.getPriority( "/gateway/sandbox/webhdfs/v1/tmp" ), is( AdaptiveConcurrencyHandler.Priority.NORMAL ) );
+    assertThat( handler.getPriority( "/gateway/sandbox/yarnui/cluster" ), is( AdaptiveConcurrencyHandler.Priority.LOW ) );
+    assertThat( handler.getPriority( "/other/admin" ), is( AdaptiveConcurrencyHandler.Priority.NORMAL ) );
+  }
+
+  @Test( timeout = TestUtils.MEDIUM_TIMEOUT )
+  public void testExcessRequestsShedAgainstSlowBackend() throws Exception {
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final AtomicInteger waiting = new AtomicInteger();
+    AdaptiveConcurrencyHandler handler = new AdaptiveConcurrencyHandler( "gateway",
+        Collections.singletonList( "admin" ), Collections.<String>emptyList(),
+        new AdaptiveConcurrencyLimit( 2, 2, 2 ) );
+    MetricRegistry registry = new MetricRegistry();
+    handler.registerMetrics( registry );
+    handler.setHandler( new AbstractHandler() {
+      @Override
+      public void handle( String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response ) {
+        if( !target.startsWith( "/gateway/admin" ) ) {
+          waiting.incrementAndGet();
+          try {
+            release.await();
+          } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        response.setStatus( HttpServletResponse.SC_OK );
+        baseRequest.setHandled( true );
+      }
+    } );
+    Server server = new Server();
+    ServerConnector connector = new ServerConnector( server );
+    connector.setPort( 0 );
+    server.addConnector( connector );
+    server.setHandler( handler );
+    server.start();
+    ExecutorService clients = Executors.newFixedThreadPool( 6 );
+    try {
+      String base = "http://localhost:" + connector.getLocalPort() + "/gateway";
+      List<Future<Integer>> slow = new ArrayList<>();
+      for( int i = 0; i < 2; i++ ) {
+        slow.add( clients.submit( get( base + "/sandbox/webhdfs/v1/tmp" ) ) );
+      }
+      while( waiting.get() < 2 ) {
+        Thread.sleep( 10 );
+      }
+
+      // The limit is taken, so further requests are turned away at once, except for the critical ones
+      for( int i = 0; i < 3; i++ ) {
+        assertThat( clients.submit( get( base + "/sandbox/webhdfs/v1/tmp" ) ).get(), is( 503 ) );
+      }
+      assertThat( clients.submit( get( base + "/admin/api/v1/version" ) ).get(), is( 200 ) );
+      assertThat( handler.getShedCount(), is( 3L ) );
+      assertThat( registry.getCounters().get( "gateway.concurrency.shed" ).getCount(), is( 3L ) );
+      assertThat( handler.getInFlight(), is( 2 ) );
+
+      release.countDown();
+      for( Future<Integer> future : slow ) {
+        assertThat( future.get(), is( 200 ) );
+      }
+      assertThat( clients.submit( get( base + "/sandbox/webhdfs/v1/tmp" ) ).get(), is( 200 ) );
+      assertThat( handler.getInFlight(), is( 0 ) );
+      assertThat( handler.getLimit().getLimit(), greaterThan( 0 ) );
+    } finally {
+      release.countDown();
+      clients.shutdownNow();
+      server.stop();
+    }
+  }
+
+  private static Callable<Integer> get( final String url ) {
+    return new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection)new URL( url ).openConnection();
+        try {
+          int status = connection.getResponseCode();
+          if( status == HttpServletResponse.SC_SERVICE_UNAVAILABLE ) {
+            assertThat( connection.getHeaderField( "Retry-After" ), is( "1" ) );
+          }
+          return status;
+        } finally {
+          connection.disconnect();
+        }
+      }
+    };
+  }
+
+}
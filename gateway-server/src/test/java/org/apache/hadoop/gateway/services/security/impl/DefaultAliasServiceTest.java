@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.security.impl;
+
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.services.security.KeystoreService;
+import org.apache.hadoop.gateway.services.security.KeystoreServiceException;
+import org.apache.hadoop.gateway.services.security.MasterService;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DefaultAliasServiceTest {
+
+  private final AtomicInteger reads = new AtomicInteger();
+
+  private DefaultAliasService createService(boolean enabled, long checkInterval, String keystorePath) throws Exception {
+    GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(config.isAliasCacheEnabled()).andReturn(enabled).anyTimes();
+    EasyMock.expect(config.getAliasCacheCheckInterval()).andReturn(checkInterval).anyTimes();
+    EasyMock.replay(config);
+
+    KeystoreService keystoreService = EasyMock.createNiceMock(KeystoreService.class);
+    EasyMock.expect(keystoreService.getKeystorePath()).andReturn(keystorePath).anyTimes();
+    EasyMock.expect(keystoreService.getCredentialForCluster("cluster", "password")).andAnswer(new IAnswer<char[]>() {
+      @Override
+      public char[] answer() throws Throwable {
+        reads.incrementAndGet();
+        return "secret".toCharArray();
+      }
+    }).anyTimes();
+    EasyMock.expect(keystoreService.getCredentialForCluster("cluster", "missing")).andAnswer(new IAnswer<char[]>() {
+      @Override
+      public char[] answer() throws Throwable {
+        reads.incrementAndGet();
+        return null;
+      }
+    }).anyTimes();
+    EasyMock.replay(keystoreService);
+
+    DefaultAliasService service = new DefaultAliasService();
+    service.setKeystoreService(keystoreService);
+    service.init(config, Collections.<String, String>emptyMap());
+    service.start();
+    return service;
+  }
+
+  @Test
+  public void testLookupsAreCached() throws Exception {
+    DefaultAliasService service = createService(true, 0L, null);
+    char[] first = service.getPasswordFromAliasForCluster("cluster", "password");
+    char[] second = service.getPasswordFromAliasForCluster("cluster", "password");
+    assertThat(new String(first), is("secret"));
+    assertThat(new String(second), is("secret"));
+    assertThat(first, not(sameInstance(second)));
+    assertThat(service.getPasswordFromAliasForCluster("cluster", "missing"), nullValue());
+    assertThat(service.getPasswordFromAliasForCluster("cluster", "missing"), nullValue());
+    assertThat(reads.get(), is(2));
+
+    // Callers may zero the passwords they receive without affecting the cache
+    Arrays.fill(first, '\0');
+    assertThat(new String(service.getPasswordFromAliasForCluster("cluster", "password")), is("secret"));
+    assertThat(reads.get(), is(2));
+  }
+
+  @Test
+  public void testCacheDisabled() throws Exception {
+    DefaultAliasService service = createService(false, 0L, null);
+    service.getPasswordFromAliasForCluster("cluster", "password");
+    service.getPasswordFromAliasForCluster("cluster", "password");
+    assertThat(reads.get(), is(2));
+  }
+
+  @Test
+  public void testWritesInvalidateCache() throws Exception {
+    DefaultAliasService service = createService(true, 0L, null);
+    service.getPasswordFromAliasForCluster("cluster", "password");
+    service.addAliasForCluster("cluster", "other", "value");
+    service.getPasswordFromAliasForCluster("cluster", "password");
+    assertThat(reads.get(), is(2));
+    service.removeAliasForCluster("cluster", "other");
+    service.getPasswordFromAliasForCluster("cluster", "password");
+    assertThat(reads.get(), is(3));
+    // Other clusters are not affected
+    service.addAliasForCluster("another", "other", "value");
+    service.getPasswordFromAliasForCluster("cluster", "password");
+    assertThat(reads.get(), is(3));
+  }
+
+  @Test
+  public void testExternalChangesDetected() throws Exception {
+    File dir = Files.createTempDirectory("alias-cache").toFile();
+    File store = new File(dir, "cluster" + DefaultKeystoreService.CREDENTIALS_SUFFIX);
+    try {
+      Files.write(store.toPath(), new byte[]{1});
+      DefaultAliasService service = createService(true, 1L, new File(dir, DefaultKeystoreService.GATEWAY_KEYSTORE).getPath());
+      service.getPasswordFromAliasForCluster("cluster", "password");
+      Thread.sleep(10);
+      service.getPasswordFromAliasForCluster("cluster", "password");
+      assertThat(reads.get(), is(1));
+
+      Files.write(store.toPath(), new byte[]{1, 2});
+      Thread.sleep(10);
+      service.getPasswordFromAliasForCluster("cluster", "password");
+      assertThat(reads.get(), is(2));
+      service.getPasswordFromAliasForCluster("cluster", "password");
+      assertThat(reads.get(), is(2));
+    } finally {
+      store.delete();
+      dir.delete();
+    }
+  }
+
+  private DefaultAliasService createStoreBackedService(File dir, final AtomicInteger loads) throws Exception {
+    GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(config.getGatewaySecurityDir()).andReturn(dir.getPath()).anyTimes();
+    EasyMock.expect(config.isAliasCacheEnabled()).andReturn(true).anyTimes();
+    EasyMock.replay(config);
+    MasterService masterService = EasyMock.createNiceMock(MasterService.class);
+    EasyMock.expect(masterService.getMasterSecret()).andReturn("master".toCharArray()).anyTimes();
+    EasyMock.replay(masterService);
+
+    DefaultKeystoreService keystoreService = new DefaultKeystoreService() {
+      @Override
+      public KeyStore getCredentialStoreForCluster(String clusterName) throws KeystoreServiceException {
+        loads.incrementAndGet();
+        return super.getCredentialStoreForCluster(clusterName);
+      }
+    };
+    keystoreService.setMasterService(masterService);
+    keystoreService.init(config, Collections.<String, String>emptyMap());
+    keystoreService.createCredentialStoreForCluster("cluster");
+
+    DefaultAliasService service = new DefaultAliasService();
+    service.setKeystoreService(keystoreService);
+    service.init(config, Collections.<String, String>emptyMap());
+    return service;
+  }
+
+  private static void deleteStoreDir(File dir) {
+    for (File file : new File(dir, "keystores").listFiles()) {
+      file.delete();
+    }
+    new File(dir, "keystores").delete();
+    dir.delete();
+  }
+
+  @Test
+  public void testGenerateAfterCachedMiss() throws Exception {
+    File dir = Files.createTempDirectory("alias-generate").toFile();
+    try {
+      DefaultAliasService service = createStoreBackedService(dir, new AtomicInteger());
+      assertThat(service.getPasswordFromAliasForCluster("cluster", "single"), nullValue());
+      assertThat(service.getPasswordsFromAliasesForCluster("cluster", Arrays.asList("bulk")).isEmpty(), is(true));
+
+      char[] single = service.getPasswordFromAliasForCluster("cluster", "single", true);
+      char[] bulk = service.getPasswordFromAliasForCluster("cluster", "bulk", true);
+      assertThat(single, notNullValue());
+      assertThat(bulk, notNullValue());
+      assertThat(new String(service.getPasswordFromAliasForCluster("cluster", "single")), is(new String(single)));
+      assertThat(new String(service.getPasswordFromAliasForCluster("cluster", "bulk", true)), is(new String(bulk)));
+    } finally {
+      deleteStoreDir(dir);
+    }
+  }
+
+  @Test
+  public void testBulkReadsAndWritesOpenTheStoreOnce() throws Exception {
+    File dir = Files.createTempDirectory("alias-bulk").toFile();
+    try {
+      final AtomicInteger loads = new AtomicInteger();
+      DefaultAliasService service = createStoreBackedService(dir, loads);
+
+      Map<String, String> credentials = new LinkedHashMap<>();
+      for (int i = 0; i < 50; i++) {
+        credentials.put("alias" + i, "secret" + i);
+      }
+      loads.set(0);
+      service.addAliasesForCluster("cluster", credentials);
+      assertThat(loads.get(), is(1));
+      assertThat(service.getAliasesForCluster("cluster"), hasItems("alias0", "alias49"));
+
+      loads.set(0);
+      Map<String, char[]> passwords = service.getPasswordsFromAliasesForCluster("cluster",
+          Arrays.asList("alias7", "missing", "alias3"));
+      assertThat(loads.get(), is(1));
+      assertThat(passwords.keySet().toString(), is("[alias7, alias3]"));
+      assertThat(new String(passwords.get("alias3")), is("secret3"));
+
+      // Hits and misses are served from the cache, and only new aliases are read
+      passwords = service.getPasswordsFromAliasesForCluster("cluster", Arrays.asList("alias3", "missing", "alias9"));
+      assertThat(loads.get(), is(2));
+      assertThat(new String(passwords.get("alias9")), is("secret9"));
+      service.getPasswordsFromAliasesForCluster("cluster", Arrays.asList("alias3", "missing", "alias9"));
+      assertThat(loads.get(), is(2));
+    } finally {
+      deleteStoreDir(dir);
+    }
+  }
+
+}
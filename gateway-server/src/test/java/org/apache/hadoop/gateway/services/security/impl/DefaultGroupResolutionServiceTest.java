@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.security.impl;
+
+import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.services.security.GroupResolutionService.GroupLookup;
+import org.apache.hadoop.test.TestUtils;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DefaultGroupResolutionServiceTest {
+
+  private DefaultGroupResolutionService service;
+
+  @After
+  public void tearDown() throws Exception {
+    if (service != null) {
+      service.stop();
+    }
+  }
+
+  private DefaultGroupResolutionService createService(int maxEntries, long ttl, long staleTtl, long negativeTtl) throws Exception {
+    GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(config.getGroupCacheMaxEntries()).andReturn(maxEntries).anyTimes();
+    EasyMock.expect(config.getGroupCacheTtl()).andReturn(ttl).anyTimes();
+    EasyMock.expect(config.getGroupCacheStaleTtl()).andReturn(staleTtl).anyTimes();
+    EasyMock.expect(config.getGroupCacheNegativeTtl()).andReturn(negativeTtl).anyTimes();
+    EasyMock.replay(config);
+    service = new DefaultGroupResolutionService();
+    service.init(config, Collections.<String, String>emptyMap());
+    service.start();
+    return service;
+  }
+
+  @Test( timeout = TestUtils.MEDIUM_TIMEOUT )
+  public void testConcurrentLookupsCollapsed() throws Exception {
+    createService(100, 60000L, 60000L, 60000L);
+    final SlowLookup slow = new SlowLookup();
+    final GroupLookup lookup = service.getCachingLookup("test", slow);
+    ExecutorService clients = Executors.newFixedThreadPool(5);
+    try {
+      List<Future<List<String>>> results = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        results.add(clients.submit(new Callable<List<String>>() {
+          @Override
+          public List<String> call() throws Exception {
+            return lookup.getGroups("alice");
+          }
+        }));
+      }
+      slow.started.await();
+      // Give the other clients the chance to pile up behind the first lookup
+      Thread.sleep(200);
+      slow.release.countDown();
+      for (Future<List<String>> result : results) {
+        assertThat(result.get(), is(Arrays.asList("alice-1")));
+      }
+      assertThat(slow.count("alice"), is(1));
+
+      assertThat(lookup.getGroups("alice"), is(Arrays.asList("alice-1")));
+      assertThat(slow.count("alice"), is(1));
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  @Test( timeout = TestUtils.MEDIUM_TIMEOUT )
+  public void testStaleGroupsServedWhileRefreshed() throws Exception {
+    createService(100, 50L, 60000L, 60000L);
+    SlowLookup slow = new SlowLookup();
+    slow.release.countDown();
+    GroupLookup lookup = service.getCachingLookup("test", slow);
+    assertThat(lookup.getGroups("alice"), is(Arrays.asList("alice-1")));
+
+    Thread.sleep(100);
+    slow.release = new CountDownLatch(1);
+    // The expired groups are served at once while the lookup is still blocked
+    assertThat(lookup.getGroups("alice"), is(Arrays.asList("alice-1")));
+    assertThat(lookup.getGroups("alice"), is(Arrays.asList("alice-1")));
+    slow.release.countDown();
+    while (!lookup.getGroups("alice").equals(Arrays.asList("alice-2"))) {
+      Thread.sleep(10);
+    }
+    assertThat(slow.count("alice"), is(2));
+  }
+
+  @Test
+  public void testExpiredGroupsLookedUpAgain() throws Exception {
+    createService(100, 50L, 50L, 60000L);
+    SlowLookup slow = new SlowLookup();
+    slow.release.countDown();
+    GroupLookup lookup = service.getCachingLookup("test", slow);
+    assertThat(lookup.getGroups("alice"), is(Arrays.asList("alice-1")));
+    Thread.sleep(100);
+    assertThat(lookup.getGroups("alice"), is(Arrays.asList("alice-2")));
+  }
+
+  @Test
+  public void testUsersWithoutGroupsCached() throws Exception {
+    createService(100, 60000L, 60000L, 50L);
+    SlowLookup slow = new SlowLookup();
+    slow.release.countDown();
+    GroupLookup lookup = service.getCachingLookup("test", slow);
+    assertThat(lookup.getGroups("nobody"), is(Collections.<String>emptyList()));
+    assertThat(lookup.getGroups("nobody"), is(Collections.<String>emptyList()));
+    assertThat(slow.count("nobody"), is(1));
+    Thread.sleep(100);
+    lookup.getGroups("nobody");
+    assertThat(slow.count("nobody"), is(2));
+  }
+
+  @Test
+  public void testFailuresNotCached() throws Exception {
+    createService(100, 60000L, 60000L, 60000L);
+    SlowLookup slow = new SlowLookup();
+    slow.release.countDown();
+    GroupLookup lookup = service.getCachingLookup("test", slow);
+    for (int i = 1; i <= 2; i++) {
+      try {
+        lookup.getGroups("broken");
+        fail("Expected the lookup failure to be propagated");
+      } catch (IOException e) {
+        assertThat(slow.count("broken"), is(i));
+      }
+    }
+  }
+
+  @Test
+  public void testSourcesAndBounds() throws Exception {
+    createService(2, 60000L, 60000L, 60000L);
+    SlowLookup first = new SlowLookup();
+    first.release.countDown();
+    SlowLookup second = new SlowLookup();
+    second.release.countDown();
+    GroupLookup lookup = service.getCachingLookup("test", first);
+    assertThat(service.getCachingLookup("test", second), sameInstance(lookup));
+    GroupLookup other = service.getCachingLookup("other", second);
+
+    lookup.getGroups("alice");
+    other.getGroups("alice");
+    assertThat(first.count("alice"), is(1));
+    assertThat(second.count("alice"), is(1));
+
+    lookup.getGroups("bob");
+    assertThat(service.getEntryCount(), is(2));
+    // The least recently used entry was evicted
+    lookup.getGroups("alice");
+    assertThat(first.count("alice"), is(2));
+
+    service.invalidate("bob");
+    lookup.getGroups("bob");
+    assertThat(first.count("bob"), is(2));
+  }
+
+  @Test
+  public void testReleasedSourceDropped() throws Exception {
+    createService(100, 60000L, 60000L, 60000L);
+    SlowLookup first = new SlowLookup();
+    first.release.countDown();
+    SlowLookup second = new SlowLookup();
+    second.release.countDown();
+    GroupLookup lookup = service.getCachingLookup("test", first);
+    service.getCachingLookup("test", first);
+    service.getCachingLookup("other", second).getGroups("alice");
+    lookup.getGroups("alice");
+    assertThat(service.getEntryCount(), is(2));
+
+    // Still in use by another topology
+    service.releaseCachingLookup("test");
+    lookup.getGroups("alice");
+    assertThat(first.count("alice"), is(1));
+
+    service.releaseCachingLookup("test");
+    assertThat(service.getEntryCount(), is(1));
+    // A later registration brings its own lookup
+    assertThat(service.getCachingLookup("test", second).getGroups("alice"), is(Arrays.asList("alice-2")));
+    assertThat(first.count("alice"), is(1));
+  }
+
+  /**
+   * Stands in for a slow directory, numbering the groups it returns by lookup.
+   */
+  private static class SlowLookup implements GroupLookup {
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+    final CountDownLatch started = new CountDownLatch(1);
+    volatile CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public List<String> getGroups(String user) throws IOException {
+      counts.putIfAbsent(user, new AtomicInteger());
+      int count = counts.get(user).incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (user.equals("broken")) {
+        throw new IOException("Directory unavailable");
+      }
+      if (user.equals("nobody")) {
+        return Collections.emptyList();
+      }
+      return Collections.singletonList(user + "-" + count);
+    }
+
+    int count(String user) {
+      AtomicInteger count = counts.get(user);
+      return count == null ? 0 : count.get();
+    }
+  }
+
+}
@@ -18,7 +18,11 @@
 package org.apache.hadoop.gateway.services.token.impl;
 
 import java.io.File;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
 import java.security.Principal;
+import java.security.cert.Certificate;
 import java.util.HashMap;
 
 import org.apache.hadoop.gateway.config.GatewayConfig;
@@ -26,9 +30,11 @@ import org.apache.hadoop.gateway.services.security.AliasService;
 import org.apache.hadoop.gateway.services.security.KeystoreService;
 import org.apache.hadoop.gateway.services.security.MasterService;
 import org.apache.hadoop.gateway.services.security.impl.DefaultKeystoreService;
+import org.apache.hadoop.gateway.services.security.impl.X509CertificateUtil;
 import org.apache.hadoop.gateway.services.security.token.JWTokenAuthority;
 import org.apache.hadoop.gateway.services.security.token.TokenServiceException;
 import org.apache.hadoop.gateway.services.security.token.impl.JWT;
+import org.apache.hadoop.gateway.services.security.token.impl.JWTToken;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
@@ -250,4 +256,122 @@ public class DefaultTokenAuthorityServiceTest extends org.junit.Assert {
     }
   }
 
+  @Test
+  public void testTokenCarriesKeyId() throws Exception {
+
+    Principal principal = EasyMock.createNiceMock(Principal.class);
+    EasyMock.expect(principal.getName()).andReturn("john.doe@example.com").anyTimes();
+
+    GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    String basedir = System.getProperty("basedir");
+    if (basedir == null) {
+      basedir = new File(".").getCanonicalPath();
+    }
+
+    EasyMock.expect(config.getGatewaySecurityDir()).andReturn(basedir + "/target/test-classes");
+    EasyMock.expect(config.getSigningKeystoreName()).andReturn("server-keystore.jks");
+    EasyMock.expect(config.getSigningKeyAlias()).andReturn("server").anyTimes();
+
+    MasterService ms = EasyMock.createNiceMock(MasterService.class);
+    EasyMock.expect(ms.getMasterSecret()).andReturn("horton".toCharArray());
+
+    AliasService as = EasyMock.createNiceMock(AliasService.class);
+    EasyMock.expect(as.getGatewayIdentityPassphrase()).andReturn("horton".toCharArray()).anyTimes();
+
+    EasyMock.replay(principal, config, ms, as);
+
+    KeystoreService ks = new DefaultKeystoreService();
+    ((DefaultKeystoreService)ks).setMasterService(ms);
+
+    ((DefaultKeystoreService)ks).init(config, new HashMap<String, String>());
+
+    JWTokenAuthority ta = new DefaultTokenAuthorityService();
+    ((DefaultTokenAuthorityService)ta).setAliasService(as);
+    ((DefaultTokenAuthorityService)ta).setKeystoreService(ks);
+
+    ((DefaultTokenAuthorityService)ta).init(config, new HashMap<String, String>());
+
+    JWT token = ta.issueToken(principal, "RS256");
+    String keyId = DefaultTokenAuthorityService.getKeyId(
+        ks.getSigningKeystore().getCertificate("server").getPublicKey());
+    assertEquals(keyId, token.getKeyId());
+    assertTrue(ta.verifyToken(token));
+
+    // The signer and verifier are reused
+    JWT second = ta.issueToken(principal, "RS384");
+    assertEquals(keyId, second.getKeyId());
+    assertTrue(ta.verifyToken(second));
+
+    // Only RSA algorithms can be used with an RSA key
+    try {
+      ta.issueToken(principal, "ES256");
+      fail("Failure expected on an algorithm that does not match the signing key");
+    } catch (TokenServiceException ex) {
+      // expected
+    }
+
+    // A token signed with an unknown key cannot be verified
+    JWT unknown = new JWTToken("RS256", new String[] {"KNOXSSO", "john.doe@example.com", null, null}, null, "unknown");
+    assertFalse(ta.verifyToken(unknown));
+  }
+
+  @Test
+  public void testECTokensAndKeyRotation() throws Exception {
+
+    Principal principal = EasyMock.createNiceMock(Principal.class);
+    EasyMock.expect(principal.getName()).andReturn("john.doe@example.com").anyTimes();
+
+    KeyStore keystore = KeyStore.getInstance("JKS");
+    keystore.load(null, null);
+    KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+    kpg.initialize(256);
+    KeyPair oldKey = kpg.generateKeyPair();
+    KeyPair newKey = kpg.generateKeyPair();
+    keystore.setKeyEntry("old", oldKey.getPrivate(), "horton".toCharArray(), new Certificate[] {
+        X509CertificateUtil.generateCertificate("CN=old", oldKey, 1, "SHA256withECDSA") });
+    keystore.setKeyEntry("new", newKey.getPrivate(), "horton".toCharArray(), new Certificate[] {
+        X509CertificateUtil.generateCertificate("CN=new", newKey, 1, "SHA256withECDSA") });
+
+    KeystoreService ks = EasyMock.createNiceMock(KeystoreService.class);
+    EasyMock.expect(ks.getSigningKeystore()).andReturn(keystore).anyTimes();
+    EasyMock.expect(ks.getSigningKey(EasyMock.eq("old"), EasyMock.<char[]>anyObject())).andReturn(oldKey.getPrivate()).anyTimes();
+    EasyMock.expect(ks.getSigningKey(EasyMock.eq("new"), EasyMock.<char[]>anyObject())).andReturn(newKey.getPrivate()).anyTimes();
+
+    AliasService as = EasyMock.createNiceMock(AliasService.class);
+
+    GatewayConfig oldConfig = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(oldConfig.getSigningKeyAlias()).andReturn("old").anyTimes();
+    GatewayConfig newConfig = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(newConfig.getSigningKeyAlias()).andReturn("new").anyTimes();
+
+    EasyMock.replay(principal, ks, as, oldConfig, newConfig);
+
+    DefaultTokenAuthorityService oldAuthority = new DefaultTokenAuthorityService();
+    oldAuthority.setAliasService(as);
+    oldAuthority.setKeystoreService(ks);
+    oldAuthority.init(oldConfig, new HashMap<String, String>());
+
+    JWT oldToken = oldAuthority.issueToken(principal, "ES256");
+    assertTrue(oldToken.getHeader().contains("ES256"));
+    assertTrue(oldAuthority.verifyToken(oldToken));
+    try {
+      oldAuthority.issueToken(principal, "RS256");
+      fail("Failure expected on an algorithm that does not match the signing key");
+    } catch (TokenServiceException ex) {
+      // expected
+    }
+
+    // After rotating to the new key outstanding tokens remain valid
+    DefaultTokenAuthorityService newAuthority = new DefaultTokenAuthorityService();
+    newAuthority.setAliasService(as);
+    newAuthority.setKeystoreService(ks);
+    newAuthority.init(newConfig, new HashMap<String, String>());
+
+    JWT newToken = newAuthority.issueToken(principal, "ES256");
+    assertNotEquals(oldToken.getKeyId(), newToken.getKeyId());
+    assertTrue(newAuthority.verifyToken(newToken));
+    assertTrue(newAuthority.verifyToken(oldToken));
+    assertTrue(oldAuthority.verifyToken(newToken));
+  }
+
 }
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.topology.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DirectoryMonitorTest {
+
+  private static final FileFilter XML_FILTER = new FileFilter() {
+    @Override
+    public boolean accept(File file) {
+      return file.isFile() && file.getName().endsWith(".xml");
+    }
+  };
+
+  private File dir;
+  private RecordingListener listener;
+  private DirectoryMonitor monitor;
+
+  @Before
+  public void setUp() {
+    dir = new File(System.getProperty("java.io.tmpdir"), "directory-monitor-" + UUID.randomUUID());
+    dir.mkdirs();
+    listener = new RecordingListener();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (monitor != null) {
+      monitor.stop();
+    }
+    FileUtils.deleteQuietly(dir);
+  }
+
+  @Test
+  public void testNativeWatch() throws Exception {
+    monitor = new DirectoryMonitor(dir, XML_FILTER, listener, 60000L);
+    verifyChangesAreReported();
+  }
+
+  @Test
+  public void testPollingFallback() throws Exception {
+    monitor = new DirectoryMonitor(dir, XML_FILTER, listener, 50L, false);
+    verifyChangesAreReported();
+  }
+
+  @Test
+  public void testRewritingSameContentIsReportedOnce() throws Exception {
+    write("burst.xml", "<topology/>");
+    monitor = new DirectoryMonitor(dir, XML_FILTER, listener, 60000L);
+    monitor.start();
+
+    for (int i = 0; i < 5; i++) {
+      write("burst.xml", "<topology><gateway/></topology>");
+    }
+    assertThat(listener.next(), is("change:burst.xml"));
+    assertThat(listener.none(), is(true));
+  }
+
+  private void verifyChangesAreReported() throws Exception {
+    write("existing.xml", "<topology/>");
+    monitor.start();
+
+    // Files present at start up are not reported
+    assertThat(listener.none(), is(true));
+
+    write("one.xml", "<topology/>");
+    assertThat(listener.next(), is("create:one.xml"));
+
+    write("ignored.txt", "text");
+    assertThat(listener.none(), is(true));
+
+    write("one.xml", "<topology><gateway/></topology>");
+    assertThat(listener.next(), is("change:one.xml"));
+
+    // Touching a file without changing its content is not a change...
+    File one = new File(dir, "one.xml");
+    one.setLastModified(one.lastModified() + 10000L);
+    assertThat(listener.none(), is(true));
+
+    // ...unless the change is forced
+    DirectoryMonitor.forceChange(one);
+    one.setLastModified(one.lastModified() + 10000L);
+    assertThat(listener.next(), is("change:one.xml"));
+
+    one.delete();
+    assertThat(listener.next(), is("delete:one.xml"));
+  }
+
+  private File write(String name, String content) throws Exception {
+    File file = new File(dir, name);
+    FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  private static class RecordingListener extends FileAlterationListenerAdaptor {
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    @Override
+    public void onFileCreate(File file) {
+      events.add("create:" + file.getName());
+    }
+
+    @Override
+    public void onFileChange(File file) {
+      events.add("change:" + file.getName());
+    }
+
+    @Override
+    public void onFileDelete(File file) {
+      events.add("delete:" + file.getName());
+    }
+
+    String next() throws InterruptedException {
+      return events.poll(10, TimeUnit.SECONDS);
+    }
+
+    boolean none() throws InterruptedException {
+      String event = events.poll(DirectoryMonitor.MAX_DELAY, TimeUnit.MILLISECONDS);
+      assertThat(event, nullValue());
+      return true;
+    }
+  }
+
+}
@@ -134,6 +134,95 @@ public class ZooKeeperConfigurationMonitorTest {
         testTmp.delete();
     }
 
+    @Test
+    public void testBurstOfRemoteChangesIsAppliedTogether() throws Exception {
+        DefaultRemoteConfigurationMonitor cm = createMonitor("remoteConfigBurstMonitorClient");
+        cm.start();
+
+        final int count = 30;
+        try {
+            final String pc_znode = getProviderPath("burst-providers.xml");
+            final File pc         = new File(providersDir, "burst-providers.xml");
+
+            // Push a provider configuration and the descriptors referencing it all at once
+            int initialBatches = cm.getAppliedBatchCount();
+            client.create().withMode(CreateMode.PERSISTENT).forPath(pc_znode, TEST_PROVIDERS_CONFIG_1.getBytes());
+            for (int i = 0; i < count; i++) {
+                client.create().withMode(CreateMode.PERSISTENT)
+                               .forPath(getDescriptorPath("burst" + i + ".json"), TEST_DESCRIPTOR_1.getBytes());
+            }
+
+            long expiration = System.currentTimeMillis() + 10000;
+            while (!new File(descriptorsDir, "burst" + (count - 1) + ".json").exists()
+                                                                    && System.currentTimeMillis() < expiration) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(DefaultRemoteConfigurationMonitor.SYNC_MAX_DELAY);
+
+            assertTrue(pc.exists());
+            for (int i = 0; i < count; i++) {
+                File desc = new File(descriptorsDir, "burst" + i + ".json");
+                assertTrue(desc.exists());
+                assertEquals(TEST_DESCRIPTOR_1, FileUtils.readFileToString(desc));
+            }
+            int burstBatches = cm.getAppliedBatchCount() - initialBatches;
+            assertTrue("Expected the burst to be applied in a few batches, but was " + burstBatches,
+                       burstBatches > 0 && burstBatches < count / 3);
+
+            // Rewriting identical content must not touch the local file
+            File desc = new File(descriptorsDir, "burst0.json");
+            long lastModified = System.currentTimeMillis() - 60000;
+            assertTrue(desc.setLastModified(lastModified));
+            client.setData().forPath(getDescriptorPath("burst0.json"), TEST_DESCRIPTOR_1.getBytes());
+            Thread.sleep(DefaultRemoteConfigurationMonitor.SYNC_MAX_DELAY);
+            assertEquals(lastModified / 1000, desc.lastModified() / 1000);
+
+            // Deleting and re-creating the same node must not be mistaken for a replayed version
+            client.delete().forPath(getDescriptorPath("burst1.json"));
+            client.create().withMode(CreateMode.PERSISTENT)
+                           .forPath(getDescriptorPath("burst1.json"), TEST_DESCRIPTOR_2.getBytes());
+            Thread.sleep(DefaultRemoteConfigurationMonitor.SYNC_MAX_DELAY);
+            assertEquals(TEST_DESCRIPTOR_2, FileUtils.readFileToString(new File(descriptorsDir, "burst1.json")));
+
+            for (int i = 0; i < count; i++) {
+                client.delete().forPath(getDescriptorPath("burst" + i + ".json"));
+            }
+            client.delete().forPath(pc_znode);
+            Thread.sleep(DefaultRemoteConfigurationMonitor.SYNC_MAX_DELAY);
+            assertFalse(pc.exists());
+            assertFalse(new File(descriptorsDir, "burst0.json").exists());
+        } finally {
+            cm.stop();
+        }
+    }
+
+    private DefaultRemoteConfigurationMonitor createMonitor(String configMonitorName) throws Exception {
+        GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+        EasyMock.expect(config.getGatewayProvidersConfigDir()).andReturn(providersDir.getAbsolutePath()).anyTimes();
+        EasyMock.expect(config.getGatewayDescriptorsDir()).andReturn(descriptorsDir.getAbsolutePath()).anyTimes();
+        EasyMock.expect(config.getRemoteRegistryConfigurationNames())
+                .andReturn(Collections.singletonList(configMonitorName))
+                .anyTimes();
+        final String registryConfig =
+                                GatewayConfig.REMOTE_CONFIG_REGISTRY_TYPE + "=" + ZooKeeperClientService.TYPE + ";" +
+                                GatewayConfig.REMOTE_CONFIG_REGISTRY_ADDRESS + "=" + zkCluster.getConnectString();
+        EasyMock.expect(config.getRemoteRegistryConfiguration(configMonitorName))
+                .andReturn(registryConfig)
+                .anyTimes();
+        EasyMock.expect(config.getRemoteConfigurationMonitorClientName()).andReturn(configMonitorName).anyTimes();
+        EasyMock.replay(config);
+
+        AliasService aliasService = EasyMock.createNiceMock(AliasService.class);
+        EasyMock.replay(aliasService);
+
+        RemoteConfigurationRegistryClientService clientService = (new ZooKeeperClientServiceProvider()).newInstance();
+        clientService.setAliasService(aliasService);
+        clientService.init(config, Collections.emptyMap());
+        clientService.start();
+
+        return new DefaultRemoteConfigurationMonitor(config, clientService);
+    }
+
     @Test
     public void testZooKeeperConfigMonitor() throws Exception {
         String configMonitorName = "remoteConfigMonitorClient";
@@ -408,15 +408,19 @@ class CuratorClientService implements ZooKeeperClientService {
         public void nodeChanged() throws Exception {
             String path = null;
             byte[] data = null;
+            int version = -1;
 
             ChildData cd = nodeCache.getCurrentData();
             if (cd != null) {
                 path = cd.getPath();
                 data = cd.getData();
+                if (cd.getStat() != null) {
+                    version = cd.getStat().getVersion();
+                }
             }
 
             if (path != null) {
-                delegate.entryChanged(client, path, data);
+                delegate.entryChanged(client, path, data, version);
             }
         }
     }
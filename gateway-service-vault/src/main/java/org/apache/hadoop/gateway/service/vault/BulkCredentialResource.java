@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.service.vault;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.security.AliasService;
+import org.apache.hadoop.gateway.services.security.AliasServiceException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static javax.ws.rs.core.Response.noContent;
+import static javax.ws.rs.core.Response.notModified;
+import static javax.ws.rs.core.Response.ok;
+import static javax.ws.rs.core.Response.serverError;
+import static javax.ws.rs.core.Response.status;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+
+/**
+ * Reads and writes sets of credentials of the topology's cluster with one request.
+ *
+ * A set is resolved from a single read of the credential store and streamed back as a JSON array of objects with an
+ * alias and a credential, the same form PUT accepts. Responses carry an entity tag derived from their content, so a
+ * client presenting it in If-None-Match gets 304 Not Modified while the set is unchanged. Sets can be paged with
+ * offset and limit, in which case a Link header points to the next page.
+ */
+@Path( "/vault/bulk/credentials" )
+public class BulkCredentialResource {
+
+  private static final JsonFactory JSON = new JsonFactory();
+
+  @Context
+  private HttpServletRequest request;
+
+  @Context
+  private UriInfo uriInfo;
+
+  /**
+   * Streams the credentials of the given aliases, or of every alias if none are given.
+   */
+  @GET
+  @Produces(APPLICATION_JSON)
+  public Response getCredentials(@QueryParam("alias") List<String> aliases,
+      @QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
+    return getCredentialsResponse(aliases, offset, limit);
+  }
+
+  /**
+   * Streams the credentials of the aliases given as a JSON array, for sets too large for a query string.
+   */
+  @POST
+  @Consumes(APPLICATION_JSON)
+  @Produces(APPLICATION_JSON)
+  public Response postCredentials(InputStream body,
+      @QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
+    return getCredentialsResponse(readAliases(body), offset, limit);
+  }
+
+  /**
+   * Adds or replaces the given credentials, writing the credential store once.
+   */
+  @PUT
+  @Consumes(APPLICATION_JSON)
+  public Response putCredentials(InputStream body) {
+    Map<String, String> credentials = readCredentials(body);
+    if (!credentials.isEmpty()) {
+      try {
+        getAliasService().addAliasesForCluster(getClusterName(), credentials);
+      } catch (AliasServiceException e) {
+        return serverError().build();
+      }
+    }
+    return noContent().build();
+  }
+
+  private Response getCredentialsResponse(List<String> aliases, Integer offset, Integer limit) {
+    AliasService as = getAliasService();
+    String clusterName = getClusterName();
+    final Map<String, char[]> values;
+    int total;
+    try {
+      if (aliases == null || aliases.isEmpty()) {
+        List<String> all = as.getAliasesForCluster(clusterName);
+        if (all == null) {
+          return status(NOT_FOUND).build();
+        }
+        aliases = new ArrayList<>(all);
+        Collections.sort(aliases);
+      }
+      total = aliases.size();
+      aliases = CredentialPages.getPage(aliases, offset, limit);
+      values = as.getPasswordsFromAliasesForCluster(clusterName, aliases);
+    } catch (AliasServiceException e) {
+      return serverError().build();
+    }
+    EntityTag tag = CredentialPages.getEntityTag(aliases, values);
+    ResponseBuilder builder;
+    if (CredentialPages.isNotModified(request, tag)) {
+      clear(values);
+      builder = notModified(tag);
+    } else {
+      builder = ok(new StreamingOutput() {
+        @Override
+        public void write(OutputStream output) throws IOException {
+          writeCredentials(output, values);
+        }
+      }, APPLICATION_JSON_TYPE).tag(tag);
+    }
+    return CredentialPages.addNextLink(builder, uriInfo, total, offset, limit).build();
+  }
+
+  // Writes the credentials straight from their arrays, which are cleared afterwards
+  static void writeCredentials(OutputStream output, Map<String, char[]> values) throws IOException {
+    try (JsonGenerator generator = JSON.createGenerator(output)) {
+      generator.writeStartArray();
+      for (Map.Entry<String, char[]> value : values.entrySet()) {
+        char[] credential = value.getValue();
+        generator.writeStartObject();
+        generator.writeStringField("alias", value.getKey());
+        generator.writeFieldName("credential");
+        generator.writeString(credential, 0, credential.length);
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+    } finally {
+      clear(values);
+    }
+  }
+
+  private static void clear(Map<String, char[]> values) {
+    for (char[] value : values.values()) {
+      Arrays.fill(value, '\0');
+    }
+  }
+
+  static List<String> readAliases(InputStream body) {
+    String message = "Please provide a JSON array of credential aliases";
+    List<String> aliases = new ArrayList<>();
+    try (JsonParser parser = JSON.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw CredentialPages.badRequest(message);
+      }
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.VALUE_STRING) {
+        aliases.add(parser.getText());
+      }
+      if (token != JsonToken.END_ARRAY) {
+        throw CredentialPages.badRequest(message);
+      }
+    } catch (IOException e) {
+      throw CredentialPages.badRequest(message);
+    }
+    return aliases;
+  }
+
+  static Map<String, String> readCredentials(InputStream body) {
+    String message = "Please provide a JSON array of objects with an alias and a credential";
+    Map<String, String> credentials = new LinkedHashMap<>();
+    try (JsonParser parser = JSON.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw CredentialPages.badRequest(message);
+      }
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        String alias = null;
+        String credential = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          JsonToken value = parser.nextToken();
+          if ("alias".equals(field) && value == JsonToken.VALUE_STRING) {
+            alias = parser.getText();
+          } else if ("credential".equals(field) && value == JsonToken.VALUE_STRING) {
+            credential = parser.getText();
+          } else {
+            parser.skipChildren();
+          }
+        }
+        if (alias == null || alias.isEmpty() || credential == null) {
+          throw CredentialPages.badRequest(message);
+        }
+        credentials.put(alias, credential);
+      }
+      if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+        throw CredentialPages.badRequest(message);
+      }
+    } catch (IOException e) {
+      throw CredentialPages.badRequest(message);
+    }
+    return credentials;
+  }
+
+  private AliasService getAliasService() {
+    GatewayServices services = (GatewayServices)request.getServletContext().
+        getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
+    return services.getService(GatewayServices.ALIAS_SERVICE);
+  }
+
+  private String getClusterName() {
+    return (String) request.getServletContext().getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE);
+  }
+
+}
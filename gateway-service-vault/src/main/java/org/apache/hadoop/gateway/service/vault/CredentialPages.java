@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.service.vault;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.UriInfo;
+
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
+import static javax.ws.rs.core.Response.status;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+
+/**
+ * Paging and change detection shared by the credential resources.
+ */
+final class CredentialPages {
+
+  private static final String TAG_ALGORITHM = "HmacSHA256";
+  // Keys the entity tags so they reveal nothing about the credentials they cover
+  private static final byte[] TAG_KEY = new byte[32];
+  static {
+    new SecureRandom().nextBytes(TAG_KEY);
+  }
+
+  private CredentialPages() {
+  }
+
+  /**
+   * @param offset The index of the first alias to return, or null to start at the first.
+   * @param limit The maximum number of aliases to return, or null to return all remaining.
+   * @return The requested slice of the aliases.
+   */
+  static List<String> getPage(List<String> aliases, Integer offset, Integer limit) {
+    if ((offset != null && offset < 0) || (limit != null && limit <= 0)) {
+      throw badRequest("The offset must not be negative and the limit must be positive");
+    }
+    int from = offset == null ? 0 : Math.min(offset, aliases.size());
+    int to = limit == null ? aliases.size() : (int)Math.min((long)from + limit, aliases.size());
+    return from == 0 && to == aliases.size() ? aliases : new ArrayList<>(aliases.subList(from, to));
+  }
+
+  /**
+   * Adds a Link to the next page when a limit was given and more aliases follow.
+   */
+  static ResponseBuilder addNextLink(ResponseBuilder builder, UriInfo uriInfo, int total, Integer offset, Integer limit) {
+    if (limit != null) {
+      long next = (offset == null ? 0L : offset) + limit;
+      if (next < total) {
+        builder.link(uriInfo.getRequestUriBuilder().replaceQueryParam("offset", next).build(), "next");
+      }
+    }
+    return builder;
+  }
+
+  /**
+   * @param values The credentials of the aliases, or null if only the aliases are returned.
+   * @return A tag that changes whenever the aliases or their credentials do.
+   */
+  static EntityTag getEntityTag(List<String> aliases, Map<String, char[]> values) {
+    try {
+      Mac mac = Mac.getInstance(TAG_ALGORITHM);
+      mac.init(new SecretKeySpec(TAG_KEY, TAG_ALGORITHM));
+      for (String alias : aliases) {
+        mac.update(alias.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte)0);
+        char[] value = values == null ? null : values.get(alias);
+        if (value != null) {
+          ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(value));
+          mac.update(bytes.duplicate());
+          if (bytes.hasArray()) {
+            Arrays.fill(bytes.array(), (byte)0);
+          }
+        }
+        mac.update((byte)0);
+      }
+      StringBuilder tag = new StringBuilder();
+      for (byte b : mac.doFinal()) {
+        tag.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return new EntityTag(tag.toString());
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Evaluates If-None-Match directly rather than through the JAX-RS Request, which answers a match on anything but
+   * GET and HEAD with 412, so that POST queries for large sets of aliases can be made conditional too.
+   */
+  static boolean isNotModified(HttpServletRequest request, EntityTag tag) {
+    List<String> headers = Collections.list(request.getHeaders("If-None-Match"));
+    String quoted = tag.toString();
+    for (String header : headers) {
+      for (String candidate : header.split(",")) {
+        candidate = candidate.trim();
+        if (candidate.startsWith("W/")) {
+          candidate = candidate.substring(2);
+        }
+        if (candidate.equals("*") || candidate.equals(quoted)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  static WebApplicationException badRequest(String message) {
+    return new WebApplicationException(status(BAD_REQUEST).entity(message).type(TEXT_PLAIN_TYPE).build());
+  }
+
+}
@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.gateway.service.vault;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
@@ -24,8 +26,12 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.UriInfo;
 
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.security.AliasService;
@@ -35,6 +41,7 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.APPLICATION_XML;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
 import static javax.ws.rs.core.Response.created;
+import static javax.ws.rs.core.Response.notModified;
 import static javax.ws.rs.core.Response.ok;
 import static javax.ws.rs.core.Response.serverError;
 import static javax.ws.rs.core.Response.status;
@@ -45,6 +52,9 @@ import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 public class CredentialResource {
   @Context 
   private HttpServletRequest request;
+
+  @Context
+  private UriInfo uriInfo;
   
   @GET
   @Path("{alias}")
@@ -66,10 +76,15 @@ public class CredentialResource {
 
   @GET
   @Produces({APPLICATION_JSON, APPLICATION_XML})
-  public Response getCredentials() {
+  public Response getCredentials(@QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
     List<String> aliases = getCredentialsList();
     if (aliases != null) {
-        return ok(aliases).build();
+        aliases = new ArrayList<>(aliases);
+        Collections.sort(aliases);
+        List<String> page = CredentialPages.getPage(aliases, offset, limit);
+        EntityTag tag = CredentialPages.getEntityTag(page, null);
+        ResponseBuilder builder = CredentialPages.isNotModified(request, tag) ? notModified(tag) : ok(page).tag(tag);
+        return CredentialPages.addNextLink(builder, uriInfo, aliases.size(), offset, limit).build();
     } else {
         return status(NOT_FOUND).build();
     }
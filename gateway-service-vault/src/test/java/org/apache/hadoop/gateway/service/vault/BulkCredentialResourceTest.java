@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.service.vault;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.security.AliasService;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BulkCredentialResourceTest {
+
+  private static Map<String, char[]> credentials(String... pairs) {
+    Map<String, char[]> values = new LinkedHashMap<>();
+    for (int i = 0; i < pairs.length; i += 2) {
+      values.put(pairs[i], pairs[i + 1].toCharArray());
+    }
+    return values;
+  }
+
+  private static void inject(Object target, String name, Object value) throws Exception {
+    Field field = target.getClass().getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  private static BulkCredentialResource createResource(String ifNoneMatch, String... pairs) throws Exception {
+    AliasService as = EasyMock.createNiceMock(AliasService.class);
+    EasyMock.expect(as.getAliasesForCluster("cluster")).andReturn(Arrays.asList("c", "a", "b")).anyTimes();
+    EasyMock.expect(as.getPasswordsFromAliasesForCluster(EasyMock.eq("cluster"), EasyMock.<List<String>>anyObject()))
+        .andReturn(credentials(pairs)).anyTimes();
+    GatewayServices services = EasyMock.createNiceMock(GatewayServices.class);
+    EasyMock.expect(services.getService(GatewayServices.ALIAS_SERVICE)).andReturn(as).anyTimes();
+    ServletContext context = EasyMock.createNiceMock(ServletContext.class);
+    EasyMock.expect(context.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE)).andReturn(services).anyTimes();
+    EasyMock.expect(context.getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE)).andReturn("cluster").anyTimes();
+    HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(request.getServletContext()).andReturn(context).anyTimes();
+    EasyMock.expect(request.getHeaders("If-None-Match")).andReturn(Collections.enumeration(
+        ifNoneMatch == null ? Collections.<String>emptyList() : Collections.singletonList(ifNoneMatch))).anyTimes();
+    UriInfo uriInfo = EasyMock.createNiceMock(UriInfo.class);
+    EasyMock.expect(uriInfo.getRequestUriBuilder()).andReturn(
+        UriBuilder.fromUri("https://localhost:8443/gateway/sandbox/vault/bulk/credentials?limit=2")).anyTimes();
+    EasyMock.replay(as, services, context, request, uriInfo);
+
+    BulkCredentialResource resource = new BulkCredentialResource();
+    inject(resource, "request", request);
+    inject(resource, "uriInfo", uriInfo);
+    return resource;
+  }
+
+  @Test
+  public void testPagedCredentialsAreStreamed() throws Exception {
+    BulkCredentialResource resource = createResource(null, "a", "secret-a", "b", "secret-b");
+    Response response = resource.getCredentials(null, null, 2);
+    assertThat(response.getStatus(), is(200));
+    assertThat(response.getLink("next").getUri().toString(),
+        is("https://localhost:8443/gateway/sandbox/vault/bulk/credentials?offset=2&limit=2"));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ((StreamingOutput)response.getEntity()).write(output);
+    assertThat(output.toString("UTF-8"),
+        is("[{\"alias\":\"a\",\"credential\":\"secret-a\"},{\"alias\":\"b\",\"credential\":\"secret-b\"}]"));
+
+    // The tag of an unchanged set turns the next request into 304 Not Modified
+    String tag = response.getEntityTag().toString();
+    response = createResource(tag, "a", "secret-a", "b", "secret-b").getCredentials(null, null, 2);
+    assertThat(response.getStatus(), is(304));
+    response = createResource(tag, "a", "secret-a", "b", "changed").getCredentials(null, null, 2);
+    assertThat(response.getStatus(), is(200));
+  }
+
+  @Test
+  public void testWrittenCredentialsAreCleared() throws Exception {
+    Map<String, char[]> values = credentials("a", "x\"y");
+    char[] value = values.get("a");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    BulkCredentialResource.writeCredentials(output, values);
+    assertThat(output.toString("UTF-8"), is("[{\"alias\":\"a\",\"credential\":\"x\\\"y\"}]"));
+    assertThat(value, is(new char[3]));
+
+    // What is written can be read back for PUT
+    Map<String, String> read = BulkCredentialResource.readCredentials(
+        new ByteArrayInputStream(output.toByteArray()));
+    assertThat(read, is(Collections.singletonMap("a", "x\"y")));
+  }
+
+  @Test
+  public void testMalformedBodiesAreRejected() {
+    String[] bodies = { "{}", "[{\"alias\":\"a\"}]", "[{\"credential\":\"x\"}]", "[1]", "[" };
+    for (String body : bodies) {
+      try {
+        BulkCredentialResource.readCredentials(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        fail(body);
+      } catch (WebApplicationException e) {
+        assertThat(e.getResponse().getStatus(), is(400));
+      }
+    }
+    assertThat(BulkCredentialResource.readAliases(new ByteArrayInputStream("[\"a\",\"b\"]".getBytes(StandardCharsets.UTF_8))),
+        is(Arrays.asList("a", "b")));
+  }
+
+  @Test
+  public void testPages() {
+    List<String> aliases = Arrays.asList("a", "b", "c");
+    assertThat(CredentialPages.getPage(aliases, null, null), is(aliases));
+    assertThat(CredentialPages.getPage(aliases, 1, null), is(Arrays.asList("b", "c")));
+    assertThat(CredentialPages.getPage(aliases, 1, 1), is(Collections.singletonList("b")));
+    assertThat(CredentialPages.getPage(aliases, 5, 1), is(Collections.<String>emptyList()));
+    assertThat(CredentialPages.getPage(aliases, 0, Integer.MAX_VALUE), is(aliases));
+    try {
+      CredentialPages.getPage(aliases, 0, 0);
+      fail();
+    } catch (WebApplicationException e) {
+      assertThat(e.getResponse().getStatus(), is(400));
+    }
+  }
+
+  @Test
+  public void testEntityTags() {
+    List<String> aliases = Arrays.asList("a", "b");
+    EntityTag names = CredentialPages.getEntityTag(aliases, null);
+    assertThat(CredentialPages.getEntityTag(aliases, null), is(names));
+    assertThat(CredentialPages.getEntityTag(Arrays.asList("ab"), null), not(names));
+    EntityTag values = CredentialPages.getEntityTag(aliases, credentials("a", "1", "b", "2"));
+    assertThat(values, not(names));
+    assertThat(CredentialPages.getEntityTag(aliases, credentials("a", "1", "b", "3")), not(values));
+    assertThat(CredentialPages.getEntityTag(aliases, credentials("a", "1", "b", "2")), is(values));
+    assertThat(names.isWeak(), is(false));
+  }
+
+}
@@ -73,4 +73,10 @@ public interface SpiGatewayMessages {
 
   @Message( level = MessageLevel.WARN, text = "Error ocurred while accessing params in query string: {0}" )
   void unableToGetParamsFromQueryString(@StackTrace(level=MessageLevel.WARN) Exception e);
+
+  @Message( level = MessageLevel.DEBUG, text = "Dispatch of {0} {1} was served by a concurrent identical request." )
+  void coalescedDispatchRequest( String method, URI uri );
+
+  @Message( level = MessageLevel.DEBUG, text = "Response to {0} {1} is too large to share with concurrent identical requests." )
+  void dispatchResponseTooLargeToCoalesce( String method, URI uri );
 }
@@ -134,6 +134,12 @@ public interface GatewayConfig {
 
   boolean isXForwardedEnabled();
 
+  /**
+   * @return The addresses, CIDR blocks or wildcards of the proxies whose X-Forwarded headers are trusted, or an empty
+   * list to trust the headers of every client.
+   */
+  List<String> getXForwardedTrustedProxies();
+
   String getEphemeralDHKeySize();
 
   int getHttpClientMaxConnections();
@@ -349,4 +355,114 @@ public interface GatewayConfig {
    */
   String getRemoteConfigurationMonitorClientName();
 
+  /**
+   * @return Whether trace spans recorded by the gateway are exported.
+   */
+  boolean isTracingEnabled();
+
+  /**
+   * @return The class name of the SpanExporter used to export trace spans.
+   */
+  String getTracingExporter();
+
+  /**
+   * @return The options passed to the SpanExporter, taken from the gateway.tracing.exporter.* properties.
+   */
+  Map<String, String> getTracingExporterOptions();
+
+  /**
+   * @return The maximum number of finished spans held for export before spans are dropped.
+   */
+  int getTracingQueueSize();
+
+  /**
+   * @return The maximum number of spans handed to the exporter at once.
+   */
+  int getTracingBatchSize();
+
+  /**
+   * @return The maximum time in milliseconds finished spans wait before being exported.
+   */
+  long getTracingFlushInterval();
+
+  /**
+   * @return The maximum number of topologies built and exported concurrently.
+   */
+  int getGatewayDeploymentThreads();
+
+  /**
+   * @return Whether deployment descriptors are handed to activated topologies in memory instead of
+   * being parsed back from the exploded deployment.
+   */
+  boolean isDeploymentInMemoryActivationEnabled();
+
+  /**
+   * @return Whether a changed topology whose deployment differs only in its filter chains is
+   * reloaded in place instead of restarting its web applications. Only changes confined to
+   * gateway.xml are reloaded in place; any other change, such as to the HA provider parameters
+   * in ha.xml, still restarts the topology.
+   */
+  boolean isDeploymentHotSwapEnabled();
+
+  /**
+   * @return Whether requests are shed once more are in flight than the adaptive concurrency limit allows.
+   */
+  boolean isAdaptiveConcurrencyEnabled();
+
+  /**
+   * @return The concurrency limit used until enough request latencies have been measured.
+   */
+  int getAdaptiveConcurrencyInitialLimit();
+
+  /**
+   * @return The lowest the adaptive concurrency limit is lowered to.
+   */
+  int getAdaptiveConcurrencyMinLimit();
+
+  /**
+   * @return The highest the adaptive concurrency limit is raised to.
+   */
+  int getAdaptiveConcurrencyMaxLimit();
+
+  /**
+   * @return The paths below the gateway path that are never shed, where * matches any one path segment.
+   */
+  List<String> getAdaptiveConcurrencyCriticalPaths();
+
+  /**
+   * @return The paths below the gateway path that are shed first, where * matches any one path segment.
+   */
+  List<String> getAdaptiveConcurrencyLowPriorityPaths();
+
+  /**
+   * @return The maximum number of users whose groups are cached.
+   */
+  int getGroupCacheMaxEntries();
+
+  /**
+   * @return The time in milliseconds cached groups are served without looking them up again.
+   */
+  long getGroupCacheTtl();
+
+  /**
+   * @return The time in milliseconds expired groups are still served while they are looked up in the background.
+   */
+  long getGroupCacheStaleTtl();
+
+  /**
+   * @return The time in milliseconds users without groups are cached.
+   */
+  long getGroupCacheNegativeTtl();
+
+  /**
+   * @return True if resolved aliases are kept in memory rather than read from the credential stores on every lookup.
+   */
+  boolean isAliasCacheEnabled();
+
+  /**
+   * @return The minimum time in milliseconds between checks of a credential store for changes made outside the
+   * gateway, or 0 to never check.
+   */
+  long getAliasCacheCheckInterval();
+
 }
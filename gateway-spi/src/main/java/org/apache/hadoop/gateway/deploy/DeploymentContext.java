@@ -30,6 +30,12 @@ import java.util.List;
 
 public interface DeploymentContext {
 
+  /**
+   * Prefix of the servlet context attributes used to hand the descriptors added via
+   * {@link #addDescriptor(String, Object)} directly to an activated deployment.
+   */
+  String DESCRIPTOR_ATTRIBUTE_PREFIX = "org.apache.hadoop.gateway.deploy.descriptor.";
+
   GatewayConfig getGatewayConfig();
 
   Topology getTopology();
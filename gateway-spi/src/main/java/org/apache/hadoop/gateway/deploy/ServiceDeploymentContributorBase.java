@@ -87,6 +87,18 @@ public abstract class ServiceDeploymentContributorBase extends DeploymentContrib
     }
   }
 
+  protected void addThrottleFilter( DeploymentContext context, Service service, ResourceDescriptor resource) {
+    if (topologyContainsProviderType(context, "throttle")) {
+      context.contributeFilter( service, resource, "throttle", null, null );
+    }
+  }
+
+  protected void addCacheFilter( DeploymentContext context, Service service, ResourceDescriptor resource) {
+    if (topologyContainsProviderType(context, "cache")) {
+      context.contributeFilter( service, resource, "cache", null, null );
+    }
+  }
+
 //    Temp - TODO refactor xForwardedHeaderFilter
   protected void addXForwardedFilter(DeploymentContext context, Service service, ResourceDescriptor resource) {
     final String XFORWARDED_FILTER_NAME = "XForwardedHeaderFilter";
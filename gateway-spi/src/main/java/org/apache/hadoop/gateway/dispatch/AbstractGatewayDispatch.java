@@ -18,6 +18,8 @@
 package org.apache.hadoop.gateway.dispatch;
 
 import org.apache.hadoop.gateway.filter.GatewayResponse;
+import org.apache.hadoop.gateway.tracing.TraceContext;
+import org.apache.hadoop.gateway.tracing.Tracer;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
@@ -130,11 +132,24 @@ public abstract class AbstractGatewayDispatch implements Dispatch {
     while( headerNames.hasMoreElements() ) {
       String name = headerNames.nextElement();
       if ( !outboundRequest.containsHeader( name )
-          && !getOutboundRequestExcludeHeaders().contains( name ) ) {
+          && !getOutboundRequestExcludeHeaders().contains( name )
+          && !TraceContext.TRACEPARENT_HEADER.equalsIgnoreCase( name ) ) {
         String value = inboundRequest.getHeader( name );
         outboundRequest.addHeader( name, value );
       }
     }
+    addTraceContext( outboundRequest );
+  }
+
+  /**
+   * Propagates the trace context active on this thread so that backend spans join the gateway's trace.
+   * Any traceparent sent by the client is replaced since the gateway is now the parent.
+   */
+  protected void addTraceContext( HttpUriRequest outboundRequest ) {
+    TraceContext context = Tracer.currentContext();
+    if( context != null ) {
+      outboundRequest.setHeader( TraceContext.TRACEPARENT_HEADER, context.toTraceParent() );
+    }
   }
 
   public Set<String> getOutboundRequestExcludeHeaders() {
@@ -30,6 +30,8 @@ import org.apache.hadoop.gateway.config.Default;
 import org.apache.hadoop.gateway.config.GatewayConfig;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
+import org.apache.hadoop.gateway.tracing.Span;
+import org.apache.hadoop.gateway.tracing.Tracer;
 import org.apache.hadoop.gateway.util.MimeTypes;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -50,6 +52,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -61,6 +64,9 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
   protected static final String SET_COOKIE = "SET-COOKIE";
   protected static final String WWW_AUTHENTICATE = "WWW-AUTHENTICATE";
 
+  private static final String DEFAULT_COALESCE_HEADERS = "Accept,Accept-Encoding,Accept-Language,Cookie";
+  private static final String DEFAULT_COALESCE_MAX_RESPONSE_SIZE = "1048576";
+
   protected static SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
   protected static SpiGatewayResources RES = ResourcesFactory.get(SpiGatewayResources.class);
   protected static Auditor auditor = AuditServiceFactory.getAuditService().getAuditor(AuditConstants.DEFAULT_AUDITOR_NAME,
@@ -71,12 +77,20 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
   //Buffer size in bytes
   private int replayBufferSize = -1;
 
+  private boolean coalesceRequests = false;
+  private String coalesceHeaders = DEFAULT_COALESCE_HEADERS;
+  private int coalesceMaxResponseSize = Integer.parseInt(DEFAULT_COALESCE_MAX_RESPONSE_SIZE);
+  private RequestCoalescer coalescer;
+
   @Override
   public void init() {
     super.init();
     outboundResponseExcludeHeaders = new HashSet<>();
     outboundResponseExcludeHeaders.add(SET_COOKIE);
     outboundResponseExcludeHeaders.add(WWW_AUTHENTICATE);
+    if (coalesceRequests) {
+      coalescer = new RequestCoalescer(new HashSet<>(Arrays.asList(coalesceHeaders.split(","))), coalesceMaxResponseSize);
+    }
   }
 
   @Override
@@ -96,6 +110,31 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
     setReplayBufferSizeInBytes(size);
   }
 
+  /**
+   * Enables collapsing concurrent identical GET and HEAD requests into a single request to the backend.
+   */
+  @Configure
+  protected void setCoalesceRequests(@Default("false") boolean coalesceRequests) {
+    this.coalesceRequests = coalesceRequests;
+  }
+
+  /**
+   * The request headers, besides the method, URL, effective user and credentials, that must match for requests to be
+   * coalesced.
+   */
+  @Configure
+  protected void setCoalesceHeaders(@Default(DEFAULT_COALESCE_HEADERS) String coalesceHeaders) {
+    this.coalesceHeaders = coalesceHeaders;
+  }
+
+  /**
+   * The size in bytes of the largest response that is shared by coalesced requests.
+   */
+  @Configure
+  protected void setCoalesceMaxResponseSize(@Default(DEFAULT_COALESCE_MAX_RESPONSE_SIZE) int coalesceMaxResponseSize) {
+    this.coalesceMaxResponseSize = coalesceMaxResponseSize;
+  }
+
   protected int getReplayBufferSizeInBytes() {
     return replayBufferSize;
   }
@@ -117,10 +156,23 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
    }
 
-  protected HttpResponse executeOutboundRequest( HttpUriRequest outboundRequest ) throws IOException {
+  protected HttpResponse executeOutboundRequest( final HttpUriRequest outboundRequest ) throws IOException {
+    if( coalescer != null && RequestCoalescer.isCoalescable( outboundRequest ) ) {
+      return coalescer.execute( outboundRequest, new RequestCoalescer.Execution() {
+        @Override
+        public HttpResponse execute() throws IOException {
+          return executeOutboundRequestDirectly( outboundRequest );
+        }
+      } );
+    }
+    return executeOutboundRequestDirectly( outboundRequest );
+  }
+
+  private HttpResponse executeOutboundRequestDirectly( HttpUriRequest outboundRequest ) throws IOException {
     LOG.dispatchRequest( outboundRequest.getMethod(), outboundRequest.getURI() );
     HttpResponse inboundResponse;
 
+    Span span = startDispatchSpan( outboundRequest );
     try {
       auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.UNAVAILABLE, RES.requestMethod( outboundRequest.getMethod() ) );
       if( !"true".equals( System.getProperty( GatewayConfig.HADOOP_KERBEROS_SECURED ) ) ) {
@@ -141,15 +193,30 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
         }
       }
       auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.SUCCESS, RES.responseStatus( statusCode ) );
+      span.setAttribute( "http.status", statusCode );
     } catch( Exception e ) {
       // We do not want to expose back end host. port end points to clients, see JIRA KNOX-58
       auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.FAILURE );
       LOG.dispatchServiceConnectionException( outboundRequest.getURI(), e );
+      span.setAttribute( "error", e.getClass().getName() );
       throw new IOException( RES.dispatchConnectionError() );
+    } finally {
+      span.end();
     }
     return inboundResponse;
   }
 
+  private Span startDispatchSpan( HttpUriRequest outboundRequest ) {
+    Span span = Tracer.startSpan( "dispatch" );
+    URI uri = outboundRequest.getURI();
+    span.setAttribute( "http.method", outboundRequest.getMethod() );
+    // Only the endpoint is recorded since query strings may carry delegation tokens.
+    span.setAttribute( "http.host", uri.getHost() + ":" + uri.getPort() );
+    span.setAttribute( "http.path", uri.getPath() );
+    addTraceContext( outboundRequest );
+    return span;
+  }
+
   protected void writeOutboundResponse(HttpUriRequest outboundRequest, HttpServletRequest inboundRequest, HttpServletResponse outboundResponse, HttpResponse inboundResponse) throws IOException {
     // Copy the client respond header to the server respond.
     outboundResponse.setStatus(inboundResponse.getStatusLine().getStatusCode());
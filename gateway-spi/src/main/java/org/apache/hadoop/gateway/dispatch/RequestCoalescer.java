@@ -0,0 +1,307 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.hadoop.gateway.SpiGatewayMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.security.SubjectUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collapses concurrent identical GET and HEAD requests into a single outbound request.
+ *
+ * Requests are identical when they have the same method, URL, effective user, credentials and values of the configured
+ * headers. The Authorization and Proxy-Authorization headers always count, whatever the configured headers are, so a
+ * response is never shared between callers that authenticate to the backend differently.
+ * The first of them is executed, and its response is buffered and handed to every request that arrived while it was
+ * in flight. Responses larger than the configured size are not buffered; the requests that waited for one are then
+ * executed on their own.
+ */
+class RequestCoalescer {
+
+  private static final SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
+
+  private static final String[] CREDENTIAL_HEADERS = { "Authorization", "Proxy-Authorization" };
+
+  /**
+   * Executes the outbound request on behalf of all the identical requests.
+   */
+  interface Execution {
+    HttpResponse execute() throws IOException;
+  }
+
+  private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final Set<String> headers;
+  private final int maxResponseSize;
+
+  /**
+   * @param headers The names of the request headers that distinguish otherwise identical requests.
+   * @param maxResponseSize The size in bytes of the largest response body that is shared.
+   */
+  RequestCoalescer(Set<String> headers, int maxResponseSize) {
+    this.headers = new TreeSet<>();
+    for (String header : headers) {
+      this.headers.add(header.trim().toLowerCase(Locale.ROOT));
+    }
+    this.maxResponseSize = maxResponseSize;
+  }
+
+  static boolean isCoalescable(HttpUriRequest request) {
+    String method = request.getMethod();
+    return ("GET".equals(method) || "HEAD".equals(method)) && !(request instanceof HttpEntityEnclosingRequest);
+  }
+
+  HttpResponse execute(HttpUriRequest request, Execution execution) throws IOException {
+    String key = getKey(request);
+    Flight flight = new Flight();
+    Flight existing = flights.putIfAbsent(key, flight);
+    if (existing != null) {
+      BufferedResponse shared;
+      waiting.incrementAndGet();
+      try {
+        shared = existing.await();
+      } finally {
+        waiting.decrementAndGet();
+      }
+      if (shared == null) {
+        return execution.execute();
+      }
+      LOG.coalescedDispatchRequest(request.getMethod(), request.getURI());
+      return shared.newResponse();
+    }
+
+    HttpResponse response = null;
+    BufferedResponse buffered = null;
+    Exception failure = null;
+    try {
+      response = execution.execute();
+      buffered = BufferedResponse.of(response, maxResponseSize);
+      if (buffered == null) {
+        LOG.dispatchResponseTooLargeToCoalesce(request.getMethod(), request.getURI());
+        return response;
+      }
+      return buffered.newResponse();
+    } catch (IOException | RuntimeException e) {
+      failure = e;
+      if (response instanceof Closeable) {
+        ((Closeable) response).close();
+      }
+      throw e;
+    } finally {
+      // Requests arriving from now on start a new outbound request
+      flights.remove(key, flight);
+      flight.complete(buffered, failure);
+    }
+  }
+
+  /**
+   * @return The number of requests currently waiting for the response to an identical request.
+   */
+  int getWaitingCount() {
+    return waiting.get();
+  }
+
+  String getKey(HttpUriRequest request) {
+    StringBuilder key = new StringBuilder();
+    key.append(request.getMethod()).append(' ').append(request.getURI().toString());
+    String user = SubjectUtils.getCurrentEffectivePrincipalName();
+    key.append('\n').append(user == null ? "" : user);
+    key.append('\n').append(getCredentialsDigest(request));
+    for (String name : headers) {
+      for (Header header : request.getHeaders(name)) {
+        key.append('\n').append(name).append(':').append(header.getValue());
+      }
+    }
+    return key.toString();
+  }
+
+  // Keys are kept for as long as the request is in flight, so the credentials themselves must not be part of them.
+  private static String getCredentialsDigest(HttpUriRequest request) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (String name : CREDENTIAL_HEADERS) {
+        for (Header header : request.getHeaders(name)) {
+          digest.update(header.getValue().getBytes(StandardCharsets.UTF_8));
+          digest.update((byte) '\n');
+        }
+        digest.update((byte) 0);
+      }
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class Flight {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile BufferedResponse response;
+    private volatile Exception failure;
+
+    void complete(BufferedResponse response, Exception failure) {
+      this.response = response;
+      this.failure = failure;
+      done.countDown();
+    }
+
+    /**
+     * @return The shared response, or null if the waiting request has to be executed on its own.
+     */
+    BufferedResponse await() throws IOException {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+      if (failure instanceof IOException) {
+        throw new IOException(failure.getMessage());
+      }
+      return failure == null ? response : null;
+    }
+  }
+
+  private static class BufferedResponse {
+
+    private final StatusLine statusLine;
+    private final Header[] headers;
+    private final Header contentType;
+    private final Header contentEncoding;
+    private final byte[] body;
+
+    private BufferedResponse(StatusLine statusLine, Header[] headers, Header contentType, Header contentEncoding, byte[] body) {
+      this.statusLine = statusLine;
+      this.headers = headers;
+      this.contentType = contentType;
+      this.contentEncoding = contentEncoding;
+      this.body = body;
+    }
+
+    /**
+     * Reads and releases the response.
+     *
+     * @return The buffered response, or null if the body is too large, in which case the response is left readable.
+     */
+    static BufferedResponse of(HttpResponse response, int maxSize) throws IOException {
+      HttpEntity entity = response.getEntity();
+      byte[] body = null;
+      Header contentType = null;
+      Header contentEncoding = null;
+      if (entity != null) {
+        if (entity.getContentLength() > maxSize) {
+          return null;
+        }
+        contentType = entity.getContentType();
+        contentEncoding = entity.getContentEncoding();
+        InputStream stream = entity.getContent();
+        if (stream != null) {
+          ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+          byte[] chunk = new byte[4096];
+          int read;
+          while (buffer.size() <= maxSize && (read = stream.read(chunk, 0, Math.min(chunk.length, maxSize + 1 - buffer.size()))) != -1) {
+            buffer.write(chunk, 0, read);
+          }
+          if (buffer.size() > maxSize) {
+            response.setEntity(new ResumedEntity(entity, buffer.toByteArray(), stream));
+            return null;
+          }
+          stream.close();
+          body = buffer.toByteArray();
+        }
+      }
+      if (response instanceof Closeable) {
+        ((Closeable) response).close();
+      }
+      return new BufferedResponse(response.getStatusLine(), response.getAllHeaders(), contentType, contentEncoding, body);
+    }
+
+    HttpResponse newResponse() {
+      HttpResponse response = new BasicHttpResponse(statusLine);
+      response.setHeaders(headers);
+      if (body != null) {
+        ByteArrayEntity entity = new ByteArrayEntity(body);
+        entity.setContentType(contentType);
+        entity.setContentEncoding(contentEncoding);
+        response.setEntity(entity);
+      }
+      return response;
+    }
+  }
+
+  /**
+   * The body of a response that was partially read while attempting to buffer it.
+   */
+  private static class ResumedEntity extends HttpEntityWrapper {
+
+    private final InputStream stream;
+
+    ResumedEntity(HttpEntity entity, byte[] prefix, InputStream remainder) {
+      super(entity);
+      this.stream = new SequenceInputStream(new ByteArrayInputStream(prefix), remainder);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return false;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      return stream;
+    }
+
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+      byte[] chunk = new byte[4096];
+      int read;
+      while ((read = stream.read(chunk)) != -1) {
+        output.write(chunk, 0, read);
+      }
+      stream.close();
+    }
+  }
+
+}
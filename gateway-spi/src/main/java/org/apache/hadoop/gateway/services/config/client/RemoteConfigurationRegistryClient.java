@@ -67,6 +67,14 @@ public interface RemoteConfigurationRegistryClient {
 
     interface EntryListener {
         void entryChanged(RemoteConfigurationRegistryClient client, String path, byte[] data);
+
+        /**
+         * Notification of an entry change, which includes the version of the entry data.
+         * Listeners which do not track versions need not override this.
+         */
+        default void entryChanged(RemoteConfigurationRegistryClient client, String path, byte[] data, int version) {
+            entryChanged(client, path, data);
+        }
     }
 
     interface EntryACL {
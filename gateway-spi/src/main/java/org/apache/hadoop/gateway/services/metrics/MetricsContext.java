@@ -19,6 +19,11 @@ package org.apache.hadoop.gateway.services.metrics;
 
 public interface MetricsContext {
 
+  /**
+   * The name of the property holding the MetricRegistry that metrics are registered with.
+   */
+  String METRICS_REGISTRY = "metrics-registry";
+
   MetricsService getMetricsService();
 
   void setProperty(String name, Object value);
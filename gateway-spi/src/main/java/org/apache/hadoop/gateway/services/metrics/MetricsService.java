@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.gateway.services.metrics;
 
+import com.codahale.metrics.MetricRegistry;
+import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.Service;
 
 public interface MetricsService extends Service {
@@ -25,4 +27,30 @@ public interface MetricsService extends Service {
 
   <T> T getInstrumented(Class<T> clazz);
 
+  /**
+   * @return The context holding the metrics registry, or null if the service does not expose one.
+   */
+  default MetricsContext getContext() {
+    return null;
+  }
+
+  /**
+   * Looks up the registry that gateway metrics are registered with.
+   *
+   * @param services The gateway services, may be null.
+   * @return The registry or null if there is no metrics service.
+   */
+  static MetricRegistry getMetricRegistry(GatewayServices services) {
+    if (services != null) {
+      MetricsService metricsService = services.getService(GatewayServices.METRICS_SERVICE);
+      if (metricsService != null && metricsService.getContext() != null) {
+        Object registry = metricsService.getContext().getProperty(MetricsContext.METRICS_REGISTRY);
+        if (registry instanceof MetricRegistry) {
+          return (MetricRegistry) registry;
+        }
+      }
+    }
+    return null;
+  }
+
 }
@@ -18,7 +18,10 @@
 package org.apache.hadoop.gateway.services.security;
 
 import java.security.cert.Certificate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.gateway.services.Service;
 
@@ -30,6 +33,18 @@ public interface AliasService extends Service {
   void addAliasForCluster(String clusterName, String alias,
       String value) throws AliasServiceException;
 
+  /**
+   * Adds or replaces several aliases at once, so implementations can write the credential store a single time.
+   *
+   * @param credentials The values keyed by alias.
+   */
+  default void addAliasesForCluster(String clusterName, Map<String, String> credentials)
+      throws AliasServiceException {
+    for (Map.Entry<String, String> credential : credentials.entrySet()) {
+      addAliasForCluster(clusterName, credential.getKey(), credential.getValue());
+    }
+  }
+
   void removeAliasForCluster(String clusterName, String alias)
       throws AliasServiceException;
 
@@ -39,6 +54,23 @@ public interface AliasService extends Service {
   char[] getPasswordFromAliasForCluster(String clusterName,
       String alias, boolean generate) throws AliasServiceException;
 
+  /**
+   * Resolves several aliases at once, so implementations can open the credential store a single time.
+   *
+   * @return The passwords keyed by alias, in the order of the given aliases. Aliases that do not exist are omitted.
+   */
+  default Map<String, char[]> getPasswordsFromAliasesForCluster(String clusterName,
+      Collection<String> aliases) throws AliasServiceException {
+    Map<String, char[]> passwords = new LinkedHashMap<>();
+    for (String alias : aliases) {
+      char[] password = getPasswordFromAliasForCluster(clusterName, alias);
+      if (password != null) {
+        passwords.put(alias, password);
+      }
+    }
+    return passwords;
+  }
+
   void generateAliasForCluster(String clusterName, String alias)
       throws AliasServiceException;
 
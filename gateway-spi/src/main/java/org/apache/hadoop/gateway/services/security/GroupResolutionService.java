@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.services.security;
+
+import org.apache.hadoop.gateway.services.Service;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Caches the groups of users for the identity assertion providers of all topologies.
+ *
+ * Cached groups are served until they expire. Groups that are only somewhat stale are still served while they are
+ * looked up again in the background, so a slow group mapping only delays the first request of a user. Users without
+ * groups are cached too, for a shorter time. Concurrent lookups of the same user are collapsed into one.
+ */
+public interface GroupResolutionService extends Service {
+
+  /**
+   * Looks up groups at their source, such as a directory.
+   */
+  interface GroupLookup {
+
+    /**
+     * @return The groups of the user, empty if the user has none.
+     */
+    List<String> getGroups(String user) throws IOException;
+
+  }
+
+  /**
+   * @param source Identifies the lookup. Lookups with the same source share cached groups, so the source must
+   *               capture everything that determines the result, such as the group mapping configuration. It is
+   *               held for as long as the lookup is in use, so it must not contain secrets such as passwords.
+   * @param lookup The lookup to use for the source, unless one was already registered for it.
+   * @return A lookup that serves the groups of the source from the cache.
+   */
+  GroupLookup getCachingLookup(String source, GroupLookup lookup);
+
+  /**
+   * Releases a lookup obtained from {@link #getCachingLookup}, such as when its topology is undeployed. Once every
+   * lookup of the source has been released its cached groups are dropped.
+   */
+  void releaseCachingLookup(String source);
+
+  /**
+   * Drops the cached groups of a user for all sources.
+   */
+  void invalidate(String user);
+
+}
@@ -19,6 +19,9 @@ package org.apache.hadoop.gateway.services.security;
 
 import java.security.Key;
 import java.security.KeyStore;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public interface KeystoreService {
 
@@ -46,9 +49,34 @@ public interface KeystoreService {
 
   public void addCredentialForCluster(String clusterName, String alias, String key) throws KeystoreServiceException;
 
+  /**
+   * Adds or replaces the credentials, keyed by alias, writing the credential store once.
+   */
+  default void addCredentialsForCluster(String clusterName, Map<String, String> credentials) throws KeystoreServiceException {
+    for (Map.Entry<String, String> credential : credentials.entrySet()) {
+      addCredentialForCluster(clusterName, credential.getKey(), credential.getValue());
+    }
+  }
+
   public void removeCredentialForCluster(String clusterName, String alias) throws KeystoreServiceException;
 
   public char[] getCredentialForCluster(String clusterName, String alias) throws KeystoreServiceException;
 
+  /**
+   * Reads the credentials from a single load of the credential store.
+   *
+   * @return The credentials keyed by alias, in the order of the given aliases. Aliases that do not exist are omitted.
+   */
+  default Map<String, char[]> getCredentialsForCluster(String clusterName, Collection<String> aliases) throws KeystoreServiceException {
+    Map<String, char[]> credentials = new LinkedHashMap<>();
+    for (String alias : aliases) {
+      char[] credential = getCredentialForCluster(clusterName, alias);
+      if (credential != null) {
+        credentials.put(alias, credential);
+      }
+    }
+    return credentials;
+  }
+
   public String getKeystorePath();
 }
@@ -57,6 +57,8 @@ public interface JWT {
 
   String getHeader();
 
+  String getKeyId();
+
   String getClaims();
 
   void sign(JWSSigner signer);
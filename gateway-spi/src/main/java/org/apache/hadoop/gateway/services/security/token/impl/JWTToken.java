@@ -57,7 +57,14 @@ public class JWTToken implements JWT {
   }
 
   public JWTToken(String alg, String[] claimsArray, List<String> audiences) {
-    JWSHeader header = new JWSHeader(new JWSAlgorithm(alg));
+    this(alg, claimsArray, audiences, null);
+  }
+
+  /**
+   * @param keyId the "kid" header identifying the key the token is signed with, or null.
+   */
+  public JWTToken(String alg, String[] claimsArray, List<String> audiences, String keyId) {
+    JWSHeader header = new JWSHeader.Builder(new JWSAlgorithm(alg)).keyID(keyId).build();
 
     if (claimsArray[2] != null) {
       if (audiences == null) {
@@ -88,6 +95,14 @@ public class JWTToken implements JWT {
     return header.toString();
   }
 
+  /* (non-Javadoc)
+   * @see org.apache.hadoop.gateway.services.security.token.impl.JWT#getKeyId()
+   */
+  @Override
+  public String getKeyId() {
+    return jwt.getHeader().getKeyID();
+  }
+
   /* (non-Javadoc)
    * @see org.apache.hadoop.gateway.services.security.token.impl.JWT#getPayloadToSign()
    */
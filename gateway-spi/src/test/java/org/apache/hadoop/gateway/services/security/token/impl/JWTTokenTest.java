@@ -20,6 +20,8 @@ package org.apache.hadoop.gateway.services.security.token.impl;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.text.ParseException;
@@ -33,6 +35,8 @@ import org.junit.Test;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jose.crypto.RSASSAVerifier;
 
@@ -224,6 +228,29 @@ public class JWTTokenTest extends org.junit.Assert {
     assertEquals(token.getExpiresDate(), new Date(Long.valueOf(token.getExpires())));
   }
 
+  @Test
+  public void testTokenSignatureES256WithKeyId() throws Exception {
+    String[] claims = new String[4];
+    claims[0] = "KNOXSSO";
+    claims[1] = "john.doe@example.com";
+    claims[2] = "https://login.example.com";
+    claims[3] = Long.toString( ( System.currentTimeMillis()/1000 ) + 300);
+    JWT token = new JWTToken(JWSAlgorithm.ES256.getName(), claims, null, "key-1");
+    assertEquals("key-1", token.getKeyId());
+    assertTrue(token.getHeader().contains("\"kid\":\"key-1\""));
+
+    KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+    kpg.initialize(256);
+    KeyPair kp = kpg.genKeyPair();
+    token.sign(new ECDSASigner((ECPrivateKey) kp.getPrivate()));
+    assertTrue(token.verify(new ECDSAVerifier((ECPublicKey) kp.getPublic())));
+
+    // The key id survives serialization
+    JWT parsed = new JWTToken(token.toString());
+    assertEquals("key-1", parsed.getKeyId());
+    assertNull(new JWTToken("RS256", claims).getKeyId());
+  }
+
   @Test
   public void testUnsignedToken() throws Exception {
       String unsignedToken = "eyJhbGciOiJub25lIn0.eyJzdWIiOiJhbGljZSIsImp0aSI6ImY2YmNj"
@@ -25,6 +25,7 @@ import java.io.File;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +66,7 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
   private ConcurrentHashMap<String, Integer> topologyPortMapping = new ConcurrentHashMap<>();
   private int backupVersionLimit = -1;
   private long backupAgeLimit = -1;
+  private int gatewayDeploymentThreads = 4;
 
   public void setGatewayHomeDir( String gatewayHomeDir ) {
     this.gatewayHomeDir = gatewayHomeDir;
@@ -338,6 +340,11 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return xForwardedEnabled;
   }
 
+  @Override
+  public List<String> getXForwardedTrustedProxies() {
+    return Collections.emptyList();
+  }
+
   public void setXForwardedEnabled(boolean enabled) {
     xForwardedEnabled = enabled;
   }
@@ -650,4 +657,113 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
   public boolean isClusterMonitorEnabled(String type) {
     return false;
   }
+  @Override
+  public boolean isTracingEnabled() {
+    return false;
+  }
+
+  @Override
+  public String getTracingExporter() {
+    return null;
+  }
+
+  @Override
+  public Map<String, String> getTracingExporterOptions() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public int getTracingQueueSize() {
+    return 8192;
+  }
+
+  @Override
+  public int getTracingBatchSize() {
+    return 512;
+  }
+
+  @Override
+  public long getTracingFlushInterval() {
+    return 5000L;
+  }
+
+  @Override
+  public int getGatewayDeploymentThreads() {
+    return gatewayDeploymentThreads;
+  }
+
+  public void setGatewayDeploymentThreads( int gatewayDeploymentThreads ) {
+    this.gatewayDeploymentThreads = gatewayDeploymentThreads;
+  }
+
+  @Override
+  public boolean isDeploymentInMemoryActivationEnabled() {
+    return true;
+  }
+
+  @Override
+  public boolean isDeploymentHotSwapEnabled() {
+    return true;
+  }
+
+  @Override
+  public boolean isAdaptiveConcurrencyEnabled() {
+    return false;
+  }
+
+  @Override
+  public int getAdaptiveConcurrencyInitialLimit() {
+    return 64;
+  }
+
+  @Override
+  public int getAdaptiveConcurrencyMinLimit() {
+    return 4;
+  }
+
+  @Override
+  public int getAdaptiveConcurrencyMaxLimit() {
+    return 192;
+  }
+
+  @Override
+  public List<String> getAdaptiveConcurrencyCriticalPaths() {
+    return Arrays.asList("admin", "*/health");
+  }
+
+  @Override
+  public List<String> getAdaptiveConcurrencyLowPriorityPaths() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public int getGroupCacheMaxEntries() {
+    return 10000;
+  }
+
+  @Override
+  public long getGroupCacheTtl() {
+    return 300000L;
+  }
+
+  @Override
+  public long getGroupCacheStaleTtl() {
+    return 3600000L;
+  }
+
+  @Override
+  public long getGroupCacheNegativeTtl() {
+    return 30000L;
+  }
+
+  @Override
+  public boolean isAliasCacheEnabled() {
+    return true;
+  }
+
+  @Override
+  public long getAliasCacheCheckInterval() {
+    return 5000L;
+  }
+
 }
@@ -0,0 +1,345 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway;
+
+import io.restassured.response.Response;
+import com.mycila.xmltool.XMLDoc;
+import com.mycila.xmltool.XMLTag;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.gateway.services.DefaultGatewayServices;
+import org.apache.hadoop.test.TestUtils;
+import org.apache.hadoop.test.log.CollectAppender;
+import org.apache.http.HttpStatus;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static io.restassured.RestAssured.given;
+import static org.apache.hadoop.test.TestUtils.LOG_ENTER;
+import static org.apache.hadoop.test.TestUtils.LOG_EXIT;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Verifies that topologies found at startup are deployed on the deployment thread pool and that
+ * a redeployed topology reuses the existing deployment only when its content is unchanged.
+ */
+public class GatewayParallelDeployFuncTest {
+
+  private static final int TOPOLOGY_COUNT = 6;
+  private static final String USERNAME = "guest";
+  private static final String PASSWORD = "guest-password";
+  private static final long SLEEP = 200;
+
+  private static GatewayTestDriver driver = new GatewayTestDriver();
+
+  private GatewayTestConfig config;
+  private GatewayServer gateway;
+  private File gatewayHome;
+  private Logger logger;
+  private Level level;
+  private boolean additivity;
+  private CollectAppender appender;
+
+  @BeforeClass
+  public static void setupSuite() throws Exception {
+    LOG_ENTER();
+    driver.setupLdap(0);
+    LOG_EXIT();
+  }
+
+  @AfterClass
+  public static void cleanupSuite() throws Exception {
+    LOG_ENTER();
+    driver.cleanup();
+    LOG_EXIT();
+  }
+
+  @Before
+  public void setupGateway() throws Exception {
+    File targetDir = new File( System.getProperty( "user.dir" ), "target" );
+    gatewayHome = new File( targetDir, "gateway-home-" + UUID.randomUUID() );
+    gatewayHome.mkdirs();
+
+    config = new GatewayTestConfig();
+    config.setGatewayHomeDir( gatewayHome.getAbsolutePath() );
+    new File( config.getGatewayTopologyDir() ).mkdirs();
+    new File( config.getGatewayDeploymentDir() ).mkdirs();
+
+    logger = Logger.getLogger( "org.apache.hadoop.gateway" );
+    level = logger.getLevel();
+    additivity = logger.getAdditivity();
+    appender = new CollectAppender();
+    CollectAppender.queue.clear();
+    logger.setLevel( Level.INFO );
+    logger.setAdditivity( false );
+    logger.addAppender( appender );
+  }
+
+  @After
+  public void cleanupGateway() throws Exception {
+    logger.removeAppender( appender );
+    logger.setAdditivity( additivity );
+    logger.setLevel( level );
+    CollectAppender.queue.clear();
+    if( gateway != null ) {
+      gateway.stop();
+    }
+    FileUtils.deleteQuietly( gatewayHome );
+  }
+
+  @Test( timeout = TestUtils.LONG_TIMEOUT )
+  public void testStartupTopologiesAreDeployedInParallel() throws Exception {
+    LOG_ENTER();
+    config.setGatewayDeploymentThreads( 4 );
+    startGatewayWithTopologies();
+
+    List<String> messages = new ArrayList<>();
+    for( LoggingEvent event : drainEvents() ) {
+      String message = event.getRenderedMessage();
+      messages.add( message );
+      assertThat( message, event.getLevel().isGreaterOrEqual( Level.ERROR ), is( false ) );
+      if( message.startsWith( "Deploying topology parallel-" ) ) {
+        assertThat( message, event.getThreadName(), startsWith( "gateway-deployer-" ) );
+      }
+    }
+    assertThat( countStartingWith( messages, "Deploying topology parallel-" ), is( TOPOLOGY_COUNT ) );
+    assertThat( messages.toString(), containsString( "Deployed " + TOPOLOGY_COUNT + " topologies in " ) );
+    assertThat( messages.toString(), containsString( "using 4 threads." ) );
+
+    File deployDir = new File( config.getGatewayDeploymentDir() );
+    for( int i = 1; i <= TOPOLOGY_COUNT; i++ ) {
+      File[] deployments = listDeployments( deployDir, "parallel-" + i );
+      assertThat( deployments.length, is( 1 ) );
+      assertThat( new File( deployments[ 0 ], "deployment.sha256" ).isFile(), is( true ) );
+      waitForAccess( getServiceUrl( "parallel-" + i ) );
+    }
+    LOG_EXIT();
+  }
+
+  @Test( timeout = TestUtils.LONG_TIMEOUT )
+  public void testSingleDeploymentThreadDeploysOnCallingThread() throws Exception {
+    LOG_ENTER();
+    config.setGatewayDeploymentThreads( 1 );
+    startGatewayWithTopologies();
+
+    List<String> messages = new ArrayList<>();
+    for( LoggingEvent event : drainEvents() ) {
+      messages.add( event.getRenderedMessage() );
+      assertThat( event.getThreadName(), not( startsWith( "gateway-deployer-" ) ) );
+    }
+    assertThat( countStartingWith( messages, "Deploying topology parallel-" ), is( TOPOLOGY_COUNT ) );
+    assertThat( messages.toString(), containsString( "using 1 threads." ) );
+    for( int i = 1; i <= TOPOLOGY_COUNT; i++ ) {
+      waitForAccess( getServiceUrl( "parallel-" + i ) );
+    }
+    LOG_EXIT();
+  }
+
+  @Test( timeout = TestUtils.LONG_TIMEOUT )
+  public void testRedeployReusesUnchangedDeployment() throws Exception {
+    LOG_ENTER();
+    startGatewayWithTopologies();
+    File deployDir = new File( config.getGatewayDeploymentDir() );
+    File descriptor = new File( config.getGatewayTopologyDir(), "parallel-1.xml" );
+    String original = readHash( listDeployments( deployDir, "parallel-1" )[ 0 ] );
+    drainEvents();
+
+    // Redeploying an untouched topology copies the existing deployment.
+    waitForNewTimestamp( descriptor );
+    GatewayServer.redeployTopologies( "parallel-1" );
+    File[] deployments = waitForDeployments( deployDir, "parallel-1", 2 );
+    assertThat( readHash( deployments[ 1 ] ), is( original ) );
+    List<String> messages = getMessages( drainEvents() );
+    assertThat( messages.toString(), containsString( "Copying deployment " + deployments[ 0 ].getAbsolutePath() + " for topology parallel-1" ) );
+    assertThat( countStartingWith( messages, "Deploying topology parallel-1" ), is( 0 ) );
+    waitForAccess( getServiceUrl( "parallel-1" ) );
+
+    // Changing the topology content forces a rebuild.
+    waitForNewTimestamp( descriptor );
+    writeTopology( "parallel-1", createTopology( "60" ) );
+    deployments = waitForDeployments( deployDir, "parallel-1", 3 );
+    assertThat( readHash( deployments[ 2 ] ), not( is( original ) ) );
+    messages = getMessages( drainEvents() );
+    assertThat( countStartingWith( messages, "Deploying topology parallel-1" ), is( 1 ) );
+    assertThat( messages.toString(), not( containsString( "Copying deployment" ) ) );
+    waitForAccess( getServiceUrl( "parallel-1" ) );
+    LOG_EXIT();
+  }
+
+  private void startGatewayWithTopologies() throws Exception {
+    // Topologies that exist at startup are deployed as a single batch.
+    for( int i = 1; i <= TOPOLOGY_COUNT; i++ ) {
+      writeTopology( "parallel-" + i, createTopology( "30" ) );
+    }
+    DefaultGatewayServices srvcs = new DefaultGatewayServices();
+    Map<String,String> options = new HashMap<>();
+    options.put( "persist-master", "false" );
+    options.put( "master", "password" );
+    srvcs.init( config, options );
+    gateway = GatewayServer.startGateway( config, srvcs );
+    assertThat( "Failed to start gateway.", gateway, notNullValue() );
+  }
+
+  private String getServiceUrl( String topology ) {
+    return "http://localhost:" + gateway.getAddresses()[ 0 ].getPort() + "/" + config.getGatewayPath() +
+        "/" + topology + "/test-service-path/test-service-resource";
+  }
+
+  private static XMLTag createTopology( String sessionTimeout ) {
+    return XMLDoc.newDocument( true )
+        .addRoot( "topology" )
+        .addTag( "gateway" )
+        .addTag( "provider" )
+        .addTag( "role" ).addText( "authentication" )
+        .addTag( "name" ).addText( "ShiroProvider" )
+        .addTag( "enabled" ).addText( "true" )
+        .addTag( "param" )
+        .addTag( "name" ).addText( "main.ldapRealm" )
+        .addTag( "value" ).addText( "org.apache.hadoop.gateway.shirorealm.KnoxLdapRealm" ).gotoParent()
+        .addTag( "param" )
+        .addTag( "name" ).addText( "main.ldapRealm.userDnTemplate" )
+        .addTag( "value" ).addText( "uid={0},ou=people,dc=hadoop,dc=apache,dc=org" ).gotoParent()
+        .addTag( "param" )
+        .addTag( "name" ).addText( "main.ldapRealm.contextFactory.url" )
+        .addTag( "value" ).addText( driver.getLdapUrl() ).gotoParent()
+        .addTag( "param" )
+        .addTag( "name" ).addText( "main.ldapRealm.contextFactory.authenticationMechanism" )
+        .addTag( "value" ).addText( "simple" ).gotoParent()
+        .addTag( "param" )
+        .addTag( "name" ).addText( "sessionTimeout" )
+        .addTag( "value" ).addText( sessionTimeout ).gotoParent()
+        .addTag( "param" )
+        .addTag( "name" ).addText( "urls./**" )
+        .addTag( "value" ).addText( "authcBasic" ).gotoParent().gotoParent()
+        .addTag( "provider" )
+        .addTag( "role" ).addText( "identity-assertion" )
+        .addTag( "enabled" ).addText( "true" )
+        .addTag( "name" ).addText( "Default" ).gotoParent()
+        .gotoRoot()
+        .addTag( "service" )
+        .addTag( "role" ).addText( "test-service-role" )
+        .gotoRoot();
+  }
+
+  private File writeTopology( String name, XMLTag xml ) throws IOException {
+    File tempFile = new File( config.getGatewayTopologyDir(), name + ".xml." + UUID.randomUUID() );
+    FileOutputStream stream = new FileOutputStream( tempFile );
+    xml.toStream( stream );
+    stream.close();
+    File descriptor = new File( config.getGatewayTopologyDir(), name + ".xml" );
+    tempFile.renameTo( descriptor );
+    return descriptor;
+  }
+
+  // The deployment directory name is derived from the topology timestamp so it has to change.
+  private static void waitForNewTimestamp( File descriptor ) throws InterruptedException {
+    long modified = descriptor.lastModified();
+    while( System.currentTimeMillis() - modified < 1000 ) {
+      Thread.sleep( SLEEP );
+    }
+  }
+
+  private static File[] listDeployments( File deployDir, String topology ) {
+    final Pattern pattern = Pattern.compile( Pattern.quote( topology ) + "\\.topo\\.[0-9A-Fa-f]+" );
+    File[] files = deployDir.listFiles( new FilenameFilter() {
+      @Override
+      public boolean accept( File dir, String name ) {
+        return pattern.matcher( name ).matches();
+      }
+    } );
+    // The suffix is the hex timestamp of the topology so name order is deployment order.
+    Arrays.sort( files );
+    return files;
+  }
+
+  private static File[] waitForDeployments( File deployDir, String topology, int count ) throws InterruptedException {
+    while( true ) {
+      File[] files = listDeployments( deployDir, topology );
+      if( files.length == count && new File( files[ count - 1 ], "deployment.sha256" ).isFile() ) {
+        return files;
+      }
+      Thread.sleep( SLEEP );
+    }
+  }
+
+  private static String readHash( File deployment ) throws IOException {
+    return FileUtils.readFileToString( new File( deployment, "deployment.sha256" ), StandardCharsets.UTF_8 );
+  }
+
+  private static void waitForAccess( String url ) throws InterruptedException {
+    while( true ) {
+      Response response = given()
+          .auth().preemptive().basic( USERNAME, PASSWORD )
+          .when().get( url ).andReturn();
+      if( response.getStatusCode() == HttpStatus.SC_NOT_FOUND ) {
+        Thread.sleep( SLEEP );
+        continue;
+      }
+      assertThat( response.getBody().asString(), is( "test-service-response" ) );
+      break;
+    }
+  }
+
+  private static List<LoggingEvent> drainEvents() {
+    List<LoggingEvent> events = new ArrayList<>();
+    CollectAppender.queue.drainTo( events );
+    return events;
+  }
+
+  private static List<String> getMessages( List<LoggingEvent> events ) {
+    List<String> messages = new ArrayList<>( events.size() );
+    for( LoggingEvent event : events ) {
+      messages.add( event.getRenderedMessage() );
+    }
+    return messages;
+  }
+
+  private static int countStartingWith( List<String> messages, String prefix ) {
+    int count = 0;
+    for( String message : messages ) {
+      if( message.startsWith( prefix ) ) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+}
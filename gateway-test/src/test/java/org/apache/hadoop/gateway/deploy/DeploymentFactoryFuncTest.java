@@ -600,7 +600,8 @@ public class DeploymentFactoryFuncTest {
     app.addUrl( "/minimal-test-app-path-two" );
     topology.addApplication( app );
 
-    EnterpriseArchive archive = DeploymentFactory.createDeployment( config, topology );
+    Map<String, DeploymentContext> contexts = new HashMap<>();
+    EnterpriseArchive archive = DeploymentFactory.createDeployment( config, topology, contexts );
     assertThat( archive, notNullValue() );
 
     Document doc;
@@ -632,6 +633,15 @@ public class DeploymentFactoryFuncTest {
     doc = XmlUtils.readXml( node.getAsset().openStream() );
     assertThat( "Parse %2Fminimal-test-app-path-two/WEB-INF/gateway.xml", doc, notNullValue() );
 
+    // The descriptors of each archive are also available for in memory activation.
+    assertThat( contexts.size(), is( 3 ) );
+    for( String name : Arrays.asList( "%2F", "%2Fminimal-test-app-path-one", "%2Fminimal-test-app-path-two" ) ) {
+      DeploymentContext context = contexts.get( name );
+      assertThat( name, context, notNullValue() );
+      assertThat( name, context.getGatewayDescriptor(), notNullValue() );
+      assertThat( name, context.getDescriptor( "rewrite" ), notNullValue() );
+    }
+
     LOG_EXIT();
   }
 
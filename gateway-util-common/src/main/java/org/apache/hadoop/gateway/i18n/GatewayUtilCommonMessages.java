@@ -33,4 +33,10 @@ public interface GatewayUtilCommonMessages {
   @Message( level = MessageLevel.ERROR, text = "Failed to get map from Json string {0}: {1}" )
   void failedToGetMapFromJsonString( String json, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
 
+  @Message( level = MessageLevel.WARN, text = "Failed to export {0} trace spans: {1}" )
+  void failedToExportSpans( int count, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.ERROR, text = "Failed to initialize trace span exporter {0}: {1}" )
+  void failedToInitializeSpanExporter( String exporter, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
 }
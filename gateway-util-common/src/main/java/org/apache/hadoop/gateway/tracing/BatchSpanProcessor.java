@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.tracing;
+
+import org.apache.hadoop.gateway.i18n.GatewayUtilCommonMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects finished spans on a bounded queue and hands them to a {@link SpanExporter} in batches
+ * from a single daemon thread.  Request threads never block on export; spans are dropped when the
+ * queue is full.
+ */
+public class BatchSpanProcessor implements Runnable {
+
+  private static final GatewayUtilCommonMessages LOG = MessagesFactory.get( GatewayUtilCommonMessages.class );
+
+  private final SpanExporter exporter;
+  private final BlockingQueue<Span> queue;
+  private final int batchSize;
+  private final long flushInterval;
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread worker;
+  private volatile boolean running = true;
+
+  /**
+   * @param exporter The sink for finished spans.
+   * @param queueSize The maximum number of spans waiting for export.
+   * @param batchSize The maximum number of spans handed to the exporter at once.
+   * @param flushInterval The maximum time in milliseconds a span waits for a batch to fill.
+   */
+  public BatchSpanProcessor( SpanExporter exporter, int queueSize, int batchSize, long flushInterval ) {
+    this.exporter = exporter;
+    this.queue = new ArrayBlockingQueue<>( Math.max( 1, queueSize ) );
+    this.batchSize = Math.max( 1, batchSize );
+    this.flushInterval = Math.max( 1L, flushInterval );
+    this.worker = new Thread( this, "gateway-span-exporter" );
+    this.worker.setDaemon( true );
+    this.worker.start();
+  }
+
+  public void submit( Span span ) {
+    if( !running || !queue.offer( span ) ) {
+      dropped.incrementAndGet();
+    }
+  }
+
+  /**
+   * @return The number of spans discarded because the queue was full or the processor was shut down.
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  @Override
+  public void run() {
+    List<Span> batch = new ArrayList<>( batchSize );
+    long deadline = System.currentTimeMillis() + flushInterval;
+    while( running ) {
+      try {
+        long wait = Math.max( 0L, deadline - System.currentTimeMillis() );
+        Span span = queue.poll( wait, TimeUnit.MILLISECONDS );
+        if( span != null ) {
+          batch.add( span );
+          queue.drainTo( batch, batchSize - batch.size() );
+        }
+        if( batch.size() >= batchSize || System.currentTimeMillis() >= deadline ) {
+          export( batch );
+          deadline = System.currentTimeMillis() + flushInterval;
+        }
+      } catch( InterruptedException e ) {
+        break;
+      }
+    }
+    queue.drainTo( batch );
+    export( batch );
+  }
+
+  private void export( List<Span> batch ) {
+    if( !batch.isEmpty() ) {
+      try {
+        exporter.export( batch );
+      } catch( Exception e ) {
+        LOG.failedToExportSpans( batch.size(), e );
+      }
+      batch.clear();
+    }
+  }
+
+  /**
+   * Stops accepting spans, exports everything still queued and closes the exporter.
+   */
+  public void shutdown() {
+    running = false;
+    worker.interrupt();
+    try {
+      worker.join( TimeUnit.SECONDS.toMillis( 10 ) );
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+    exporter.close();
+  }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.tracing;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends spans to a local file as one JSON object per line.
+ */
+public class JsonFileSpanExporter implements SpanExporter {
+
+  public static final String FILE_OPTION = "file";
+
+  private final JsonFactory factory = new JsonFactory();
+  private File file;
+  private OutputStream output;
+
+  public JsonFileSpanExporter() {
+    factory.setRootValueSeparator( null );
+  }
+
+  public JsonFileSpanExporter( File file ) throws IOException {
+    this();
+    open( file );
+  }
+
+  @Override
+  public void init( Map<String,String> options ) throws IOException {
+    String name = options == null ? null : options.get( FILE_OPTION );
+    if( name == null || name.trim().isEmpty() ) {
+      throw new IOException( "No span export file configured." );
+    }
+    open( new File( name.trim() ) );
+  }
+
+  private void open( File file ) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if( dir != null && !dir.exists() && !dir.mkdirs() ) {
+      throw new IOException( "Failed to create span export directory: " + dir.getAbsolutePath() );
+    }
+    this.file = file;
+    this.output = new FileOutputStream( file, true );
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  @Override
+  public void export( List<Span> spans ) throws IOException {
+    JsonGenerator json = factory.createGenerator( output, JsonEncoding.UTF8 );
+    json.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+    for( Span span : spans ) {
+      TraceContext context = span.getContext();
+      json.writeStartObject();
+      json.writeStringField( "name", span.getName() );
+      json.writeStringField( "traceId", context.getTraceId() );
+      json.writeStringField( "spanId", context.getSpanId() );
+      if( context.getParentSpanId() != null ) {
+        json.writeStringField( "parentSpanId", context.getParentSpanId() );
+      }
+      json.writeNumberField( "start", span.getStartTime() );
+      json.writeNumberField( "durationMicros", span.getDuration() );
+      Map<String,String> attributes = span.getAttributes();
+      if( !attributes.isEmpty() ) {
+        json.writeObjectFieldStart( "attributes" );
+        for( Map.Entry<String,String> attribute : attributes.entrySet() ) {
+          json.writeStringField( attribute.getKey(), attribute.getValue() );
+        }
+        json.writeEndObject();
+      }
+      json.writeEndObject();
+      json.writeRaw( '\n' );
+    }
+    json.close();
+    output.flush();
+  }
+
+  @Override
+  public void close() {
+    if( output != null ) {
+      try {
+        output.close();
+      } catch( IOException e ) {
+        // Ignore.
+      }
+      output = null;
+    }
+  }
+
+}
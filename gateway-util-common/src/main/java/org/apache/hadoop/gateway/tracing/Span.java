@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed operation within a trace.
+ * Spans are created by {@link Tracer#startSpan(String)} and must be ended on the thread that started them.
+ */
+public class Span {
+
+  private final TraceContext context;
+  private final String name;
+  private final long startTime;
+  private final long startNanos;
+  private long duration = -1;
+  private Map<String,String> attributes;
+  private Span previous;
+
+  Span( String name, TraceContext context, Span previous ) {
+    this.name = name;
+    this.context = context;
+    this.previous = previous;
+    this.startTime = System.currentTimeMillis();
+    this.startNanos = System.nanoTime();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public TraceContext getContext() {
+    return context;
+  }
+
+  /**
+   * @return The wall clock start time of the span in milliseconds since the epoch.
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * @return The duration of the span in microseconds or -1 if the span has not ended.
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  public boolean isEnded() {
+    return duration >= 0;
+  }
+
+  public Span setAttribute( String key, String value ) {
+    if( key != null && value != null ) {
+      if( attributes == null ) {
+        attributes = new LinkedHashMap<>();
+      }
+      attributes.put( key, value );
+    }
+    return this;
+  }
+
+  public Span setAttribute( String key, long value ) {
+    return setAttribute( key, Long.toString( value ) );
+  }
+
+  public Map<String,String> getAttributes() {
+    if( attributes == null ) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap( attributes );
+  }
+
+  /**
+   * Ends the span, restores the previously active span on this thread and hands the span to the exporter.
+   * Ending a span more than once has no effect.
+   */
+  public void end() {
+    if( duration < 0 ) {
+      duration = ( System.nanoTime() - startNanos ) / 1000L;
+      Tracer.finish( this );
+    }
+  }
+
+  Span getPrevious() {
+    return previous;
+  }
+
+  void clearPrevious() {
+    previous = null;
+  }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.tracing;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sink for finished spans.
+ * Implementations are instantiated by class name and must have a public no argument constructor.
+ * Exports are always invoked from a single background thread.
+ */
+public interface SpanExporter {
+
+  /**
+   * @param options Exporter specific configuration.
+   */
+  void init( Map<String,String> options ) throws IOException;
+
+  /**
+   * @param spans A batch of finished spans.
+   */
+  void export( List<Span> spans ) throws IOException;
+
+  void close();
+
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.tracing;
+
+/**
+ * An immutable W3C trace context as carried by the traceparent header.
+ * See https://www.w3.org/TR/trace-context/
+ */
+public final class TraceContext {
+
+  public static final String TRACEPARENT_HEADER = "traceparent";
+  public static final String TRACESTATE_HEADER = "tracestate";
+
+  private static final String VERSION = "00";
+  private static final int TRACEPARENT_LENGTH = 55;
+  private static final int FLAG_SAMPLED = 0x01;
+
+  private final String traceId;
+  private final String spanId;
+  private final String parentSpanId;
+  private final int flags;
+
+  TraceContext( String traceId, String spanId, String parentSpanId, int flags ) {
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.flags = flags;
+  }
+
+  /**
+   * @return A new sampled root context with a fresh trace id.
+   */
+  public static TraceContext newRoot() {
+    return new TraceContext( TraceIds.newTraceId(), TraceIds.newSpanId(), null, FLAG_SAMPLED );
+  }
+
+  /**
+   * Parses a traceparent header value.
+   *
+   * @param header The traceparent header value, may be null.
+   * @return The parsed context or null if the value is missing or malformed.
+   */
+  public static TraceContext parse( String header ) {
+    if( header == null ) {
+      return null;
+    }
+    // Only lowercase hex is valid, so the value is not normalized before it is checked.
+    String value = header.trim();
+    if( value.length() < TRACEPARENT_LENGTH ) {
+      return null;
+    }
+    // Future versions may append fields but must keep the version 00 prefix layout.
+    if( value.length() > TRACEPARENT_LENGTH && value.charAt( TRACEPARENT_LENGTH ) != '-' ) {
+      return null;
+    }
+    if( value.charAt( 2 ) != '-' || value.charAt( 35 ) != '-' || value.charAt( 52 ) != '-' ) {
+      return null;
+    }
+    if( !isLowerHex( value, 0, 2 ) || !isLowerHex( value, 53, 55 ) ) {
+      return null;
+    }
+    String version = value.substring( 0, 2 );
+    if( "ff".equals( version ) || ( VERSION.equals( version ) && value.length() != TRACEPARENT_LENGTH ) ) {
+      return null;
+    }
+    String traceId = value.substring( 3, 35 );
+    String spanId = value.substring( 36, 52 );
+    if( !TraceIds.isHex( traceId, 32 ) || !TraceIds.isHex( spanId, 16 ) ) {
+      return null;
+    }
+    int flags = Integer.parseInt( value.substring( 53, 55 ), 16 );
+    return new TraceContext( traceId, spanId, null, flags );
+  }
+
+  private static boolean isLowerHex( String value, int start, int end ) {
+    for( int i = start; i < end; i++ ) {
+      char c = value.charAt( i );
+      if( ( c < '0' || c > '9' ) && ( c < 'a' || c > 'f' ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Creates the context for a new span within the same trace whose parent is this context.
+   *
+   * @return A child context with a fresh span id.
+   */
+  public TraceContext newChild() {
+    return new TraceContext( traceId, TraceIds.newSpanId(), spanId, flags );
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public String getSpanId() {
+    return spanId;
+  }
+
+  public String getParentSpanId() {
+    return parentSpanId;
+  }
+
+  public boolean isSampled() {
+    return ( flags & FLAG_SAMPLED ) != 0;
+  }
+
+  /**
+   * @return The value of the traceparent header that propagates this context.
+   */
+  public String toTraceParent() {
+    StringBuilder sb = new StringBuilder( TRACEPARENT_LENGTH );
+    sb.append( VERSION ).append( '-' ).append( traceId ).append( '-' ).append( spanId ).append( '-' );
+    if( flags < 0x10 ) {
+      sb.append( '0' );
+    }
+    sb.append( Integer.toHexString( flags ) );
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    return toTraceParent();
+  }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.tracing;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates trace, span and request identifiers.
+ * The identifiers only need to be unique, not unpredictable, so they are drawn from
+ * ThreadLocalRandom instead of the SecureRandom backing UUID.randomUUID() which
+ * serializes concurrent request threads.
+ */
+public final class TraceIds {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private TraceIds() {
+  }
+
+  /**
+   * @return A new random 32 character lower case hex trace id that is never all zeros.
+   */
+  public static String newTraceId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long high;
+    long low;
+    do {
+      high = random.nextLong();
+      low = random.nextLong();
+    } while( high == 0L && low == 0L );
+    char[] chars = new char[ 32 ];
+    appendHex( chars, 0, high );
+    appendHex( chars, 16, low );
+    return new String( chars );
+  }
+
+  /**
+   * @return A new random 16 character lower case hex span id that is never all zeros.
+   */
+  public static String newSpanId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long id;
+    do {
+      id = random.nextLong();
+    } while( id == 0L );
+    char[] chars = new char[ 16 ];
+    appendHex( chars, 0, id );
+    return new String( chars );
+  }
+
+  /**
+   * @return A new random request id formatted as a version 4 UUID.
+   */
+  public static String newRequestId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long msb = ( random.nextLong() & 0xffffffffffff0fffL ) | 0x0000000000004000L;
+    long lsb = ( random.nextLong() & 0x3fffffffffffffffL ) | 0x8000000000000000L;
+    return new UUID( msb, lsb ).toString();
+  }
+
+  static boolean isHex( String s, int length ) {
+    if( s == null || s.length() != length ) {
+      return false;
+    }
+    boolean zero = true;
+    for( int i = 0; i < length; i++ ) {
+      char c = s.charAt( i );
+      if( ( c < '0' || c > '9' ) && ( c < 'a' || c > 'f' ) ) {
+        return false;
+      }
+      if( c != '0' ) {
+        zero = false;
+      }
+    }
+    return !zero;
+  }
+
+  private static void appendHex( char[] chars, int offset, long value ) {
+    for( int i = 15; i >= 0; i-- ) {
+      chars[ offset + i ] = HEX[ (int)( value & 0xF ) ];
+      value >>>= 4;
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.tracing;
+
+import org.apache.hadoop.gateway.i18n.GatewayUtilCommonMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+
+import java.util.Map;
+
+/**
+ * Entry point for recording spans.
+ * The active span is tracked per thread so that the trace context started by the
+ * CorrelationHandler is visible to the filter chain and the dispatch without being threaded
+ * through every call.  Spans are always created so that the trace context can be propagated to
+ * backends, but they are only exported once an exporter has been configured.
+ */
+public final class Tracer {
+
+  private static final GatewayUtilCommonMessages LOG = MessagesFactory.get( GatewayUtilCommonMessages.class );
+
+  private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+  private static volatile BatchSpanProcessor processor;
+
+  // To prevent instantiation.
+  private Tracer() {
+  }
+
+  /**
+   * Enables span export.  Any previously configured exporter is shut down first.
+   */
+  public static synchronized void configure( SpanExporter exporter, int queueSize, int batchSize, long flushInterval ) {
+    shutdown();
+    processor = new BatchSpanProcessor( exporter, queueSize, batchSize, flushInterval );
+  }
+
+  /**
+   * Enables span export using an exporter loaded by class name.
+   *
+   * @return True if the exporter was created and initialized.
+   */
+  public static synchronized boolean configure( String exporterClass, Map<String,String> options, int queueSize, int batchSize, long flushInterval ) {
+    try {
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      if( loader == null ) {
+        loader = Tracer.class.getClassLoader();
+      }
+      SpanExporter exporter = (SpanExporter)loader.loadClass( exporterClass ).newInstance();
+      exporter.init( options );
+      configure( exporter, queueSize, batchSize, flushInterval );
+      return true;
+    } catch( Exception e ) {
+      LOG.failedToInitializeSpanExporter( exporterClass, e );
+      return false;
+    }
+  }
+
+  /**
+   * Disables span export after flushing any queued spans.
+   */
+  public static synchronized void shutdown() {
+    BatchSpanProcessor current = processor;
+    processor = null;
+    if( current != null ) {
+      current.shutdown();
+    }
+  }
+
+  public static boolean isExporting() {
+    return processor != null;
+  }
+
+  /**
+   * Starts a span as a child of the span active on this thread or as the root of a new trace.
+   */
+  public static Span startSpan( String name ) {
+    Span current = CURRENT.get();
+    return startSpan( name, current == null ? null : current.getContext() );
+  }
+
+  /**
+   * Starts a span as a child of the given context, typically one received from a client.
+   *
+   * @param parent The parent context or null to start a new trace.
+   */
+  public static Span startSpan( String name, TraceContext parent ) {
+    TraceContext context = parent == null ? TraceContext.newRoot() : parent.newChild();
+    Span span = new Span( name, context, CURRENT.get() );
+    CURRENT.set( span );
+    return span;
+  }
+
+  /**
+   * @return The span active on this thread or null.
+   */
+  public static Span currentSpan() {
+    return CURRENT.get();
+  }
+
+  /**
+   * @return The trace context active on this thread or null.
+   */
+  public static TraceContext currentContext() {
+    Span span = CURRENT.get();
+    return span == null ? null : span.getContext();
+  }
+
+  static void finish( Span span ) {
+    if( CURRENT.get() == span ) {
+      Span previous = span.getPrevious();
+      if( previous == null ) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set( previous );
+      }
+    }
+    span.clearPrevious();
+    BatchSpanProcessor current = processor;
+    if( current != null && span.getContext().isSampled() ) {
+      current.submit( span );
+    }
+  }
+
+}
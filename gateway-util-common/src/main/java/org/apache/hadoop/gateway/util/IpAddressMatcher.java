@@ -0,0 +1,433 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compiled matcher for a list of IP address patterns.
+ * <p/>
+ * The supported patterns are:
+ * <ul>
+ *   <li>exact IPv4 or IPv6 addresses - 192.168.1.1, 0:0:0:0:0:0:0:1, ::1</li>
+ *   <li>CIDR blocks - 10.0.0.0/8, 2001:db8::/32</li>
+ *   <li>trailing wildcards - 192.168.*, 0:0:0:0:0:0:*</li>
+ *   <li>a lone * which matches any address</li>
+ * </ul>
+ * Addresses and prefixes are stored in one binary trie per address family so a lookup costs
+ * at most one step per address bit regardless of the number of patterns.  Wildcards that do not
+ * end on an octet or group boundary (e.g. 19*) and entries that are not IP addresses at all are
+ * kept and matched as plain strings, exactly as the previous IpAddressValidator did.
+ * <p/>
+ * IPv4 mapped IPv6 addresses (::ffff:a.b.c.d) are matched against the IPv4 patterns, octet
+ * wildcards included.  The previous IpAddressValidator compared the text, so 192.168.* did not
+ * match ::ffff:192.168.1.1.
+ */
+public class IpAddressMatcher {
+
+  private static final int IPV4_BITS = 32;
+  private static final int IPV6_BITS = 128;
+
+  private final Node ipv4 = new Node();
+  private final Node ipv6 = new Node();
+  private final Set<String> literals = new HashSet<>();
+  private final List<String> prefixes = new ArrayList<>();
+  private boolean any = false;
+  private boolean empty = true;
+
+  /**
+   * @param patterns The address patterns. Blank entries are ignored and an empty list matches nothing.
+   */
+  public IpAddressMatcher( Collection<String> patterns ) {
+    if( patterns != null ) {
+      for( String pattern : patterns ) {
+        add( pattern );
+      }
+    }
+  }
+
+  /**
+   * @param commaSeparatedPatterns A comma separated list of address patterns, may be null.
+   */
+  public static IpAddressMatcher compile( String commaSeparatedPatterns ) {
+    List<String> patterns = new ArrayList<>();
+    if( commaSeparatedPatterns != null ) {
+      for( String pattern : commaSeparatedPatterns.split( "," ) ) {
+        patterns.add( pattern );
+      }
+    }
+    return new IpAddressMatcher( patterns );
+  }
+
+  private void add( String pattern ) {
+    if( pattern == null ) {
+      return;
+    }
+    pattern = pattern.trim();
+    if( pattern.isEmpty() ) {
+      return;
+    }
+    empty = false;
+    if( "*".equals( pattern ) ) {
+      any = true;
+      return;
+    }
+    int star = pattern.indexOf( '*' );
+    if( star >= 0 ) {
+      addWildcard( pattern, star );
+      return;
+    }
+    int slash = pattern.indexOf( '/' );
+    if( slash >= 0 ) {
+      byte[] address = parseAddress( pattern.substring( 0, slash ) );
+      int bits = parseBits( pattern.substring( slash + 1 ) );
+      if( address != null && bits >= 0 && bits <= address.length * 8 ) {
+        insert( address, bits );
+        return;
+      }
+    } else {
+      byte[] address = parseAddress( pattern );
+      if( address != null ) {
+        insert( address, address.length * 8 );
+        return;
+      }
+    }
+    literals.add( pattern );
+  }
+
+  // Wildcard entries historically matched any address starting with the text before the last '*'.
+  private void addWildcard( String pattern, int star ) {
+    String prefix = pattern.substring( 0, pattern.lastIndexOf( '*' ) );
+    if( star == pattern.length() - 1 ) {
+      if( prefix.endsWith( "." ) && addGroupPrefix( prefix, '.', 4, 10, 8 ) ) {
+        return;
+      }
+      if( prefix.endsWith( ":" ) && addGroupPrefix( prefix, ':', 8, 16, 16 ) ) {
+        return;
+      }
+    }
+    prefixes.add( prefix );
+  }
+
+  private boolean addGroupPrefix( String prefix, char separator, int groups, int radix, int groupBits ) {
+    String[] parts = prefix.substring( 0, prefix.length() - 1 ).split( separator == '.' ? "\\." : ":", -1 );
+    if( parts.length >= groups ) {
+      return false;
+    }
+    byte[] address = new byte[ groups * groupBits / 8 ];
+    for( int i = 0; i < parts.length; i++ ) {
+      int value = parseGroup( parts[ i ], radix, groupBits == 8 ? 255 : 0xFFFF );
+      if( value < 0 ) {
+        return false;
+      }
+      if( groupBits == 8 ) {
+        address[ i ] = (byte)value;
+      } else {
+        address[ i * 2 ] = (byte)( value >>> 8 );
+        address[ i * 2 + 1 ] = (byte)value;
+      }
+    }
+    insert( address, parts.length * groupBits );
+    return true;
+  }
+
+  private void insert( byte[] address, int bits ) {
+    Node node = address.length == 4 ? ipv4 : ipv6;
+    for( int i = 0; i < bits && !node.terminal; i++ ) {
+      int bit = bit( address, i );
+      Node next = node.children[ bit ];
+      if( next == null ) {
+        next = new Node();
+        node.children[ bit ] = next;
+      }
+      node = next;
+    }
+    // Anything below a matching prefix is redundant.
+    node.terminal = true;
+    node.children[ 0 ] = null;
+    node.children[ 1 ] = null;
+  }
+
+  /**
+   * @return True if the pattern list contained a lone *.
+   */
+  public boolean allowsAnyAddress() {
+    return any;
+  }
+
+  /**
+   * @return True if no patterns were provided.
+   */
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  /**
+   * Matches a textual address, parsing it once.
+   *
+   * @param address The address as returned by ServletRequest.getRemoteAddr().
+   * @return True if the address matches any pattern.
+   */
+  public boolean matches( String address ) {
+    if( address == null ) {
+      return false;
+    }
+    return matches( any ? null : parseAddress( address ), address );
+  }
+
+  /**
+   * Matches an address that has already been parsed with {@link #parseAddress(String)}.
+   *
+   * @param parsed The parsed address or null if it could not be parsed.
+   * @param address The textual address used for entries that could not be compiled.
+   * @return True if the address matches any pattern.
+   */
+  public boolean matches( byte[] parsed, String address ) {
+    if( address == null ) {
+      return false;
+    }
+    if( any || matches( parsed ) ) {
+      return true;
+    }
+    return matchesText( address );
+  }
+
+  /**
+   * Matches a parsed address against the compiled patterns only.
+   */
+  public boolean matches( byte[] address ) {
+    if( address == null ) {
+      return false;
+    }
+    if( any ) {
+      return true;
+    }
+    if( address.length == 4 ) {
+      return lookup( ipv4, address, 0, IPV4_BITS );
+    }
+    if( lookup( ipv6, address, 0, IPV6_BITS ) ) {
+      return true;
+    }
+    // IPv4 mapped IPv6 addresses (::ffff:a.b.c.d) also match IPv4 patterns.
+    return isIpv4Mapped( address ) && lookup( ipv4, address, 96, IPV4_BITS );
+  }
+
+  private boolean matchesText( String address ) {
+    if( prefixes.isEmpty() && literals.isEmpty() ) {
+      return false;
+    }
+    if( literals.contains( address ) ) {
+      return true;
+    }
+    for( int i = 0, n = prefixes.size(); i < n; i++ ) {
+      if( address.startsWith( prefixes.get( i ) ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean lookup( Node node, byte[] address, int offset, int bits ) {
+    for( int i = 0; i < bits; i++ ) {
+      if( node.terminal ) {
+        return true;
+      }
+      node = node.children[ bit( address, offset + i ) ];
+      if( node == null ) {
+        return false;
+      }
+    }
+    return node.terminal;
+  }
+
+  private static int bit( byte[] address, int index ) {
+    return ( address[ index >>> 3 ] >>> ( 7 - ( index & 7 ) ) ) & 1;
+  }
+
+  private static boolean isIpv4Mapped( byte[] address ) {
+    for( int i = 0; i < 10; i++ ) {
+      if( address[ i ] != 0 ) {
+        return false;
+      }
+    }
+    return address[ 10 ] == (byte)0xFF && address[ 11 ] == (byte)0xFF;
+  }
+
+  /**
+   * Parses a literal IPv4 or IPv6 address without any name resolution.
+   *
+   * @param text The address, optionally with a %zone suffix or surrounding brackets for IPv6.
+   * @return The 4 or 16 byte address or null if the text is not an IP address literal.
+   */
+  public static byte[] parseAddress( String text ) {
+    if( text == null ) {
+      return null;
+    }
+    int start = 0;
+    int end = text.length();
+    if( end > 1 && text.charAt( 0 ) == '[' && text.charAt( end - 1 ) == ']' ) {
+      start++;
+      end--;
+    }
+    int zone = text.indexOf( '%', start );
+    if( zone >= 0 && zone < end ) {
+      end = zone;
+    }
+    if( start >= end ) {
+      return null;
+    }
+    if( text.indexOf( ':', start ) >= 0 ) {
+      return parseIpv6( text, start, end );
+    }
+    byte[] address = new byte[ 4 ];
+    return parseIpv4( text, start, end, address, 0 ) ? address : null;
+  }
+
+  private static boolean parseIpv4( String text, int start, int end, byte[] address, int offset ) {
+    int octet = 0;
+    int value = 0;
+    int digits = 0;
+    for( int i = start; i < end; i++ ) {
+      char c = text.charAt( i );
+      if( c >= '0' && c <= '9' ) {
+        value = value * 10 + ( c - '0' );
+        if( ++digits > 3 || value > 255 ) {
+          return false;
+        }
+      } else if( c == '.' ) {
+        if( digits == 0 || octet == 3 ) {
+          return false;
+        }
+        address[ offset + octet++ ] = (byte)value;
+        value = 0;
+        digits = 0;
+      } else {
+        return false;
+      }
+    }
+    if( digits == 0 || octet != 3 ) {
+      return false;
+    }
+    address[ offset + octet ] = (byte)value;
+    return true;
+  }
+
+  private static byte[] parseIpv6( String text, int start, int end ) {
+    byte[] address = new byte[ 16 ];
+    int group = 0;
+    int compress = -1;
+    int i = start;
+    if( text.startsWith( "::", i ) ) {
+      compress = 0;
+      i += 2;
+      if( i == end ) {
+        return address;
+      }
+    }
+    while( i < end ) {
+      if( group >= 8 ) {
+        return null;
+      }
+      int groupEnd = i;
+      int value = 0;
+      while( groupEnd < end && groupEnd - i < 5 ) {
+        int digit = Character.digit( text.charAt( groupEnd ), 16 );
+        if( digit < 0 ) {
+          break;
+        }
+        value = ( value << 4 ) | digit;
+        groupEnd++;
+      }
+      if( groupEnd < end && text.charAt( groupEnd ) == '.' ) {
+        // Embedded IPv4 address in the last 32 bits.
+        if( group > 6 || !parseIpv4( text, i, end, address, group * 2 ) ) {
+          return null;
+        }
+        group += 2;
+        break;
+      }
+      int length = groupEnd - i;
+      if( length == 0 || length > 4 ) {
+        return null;
+      }
+      address[ group * 2 ] = (byte)( value >>> 8 );
+      address[ group * 2 + 1 ] = (byte)value;
+      group++;
+      i = groupEnd;
+      if( i < end ) {
+        if( text.charAt( i ) != ':' ) {
+          return null;
+        }
+        i++;
+        if( i < end && text.charAt( i ) == ':' ) {
+          if( compress >= 0 ) {
+            return null;
+          }
+          compress = group;
+          i++;
+        } else if( i == end ) {
+          return null;
+        }
+      }
+    }
+    if( compress >= 0 ) {
+      if( group >= 8 ) {
+        return null;
+      }
+      int shift = 8 - group;
+      for( int g = group - 1; g >= compress; g-- ) {
+        address[ ( g + shift ) * 2 ] = address[ g * 2 ];
+        address[ ( g + shift ) * 2 + 1 ] = address[ g * 2 + 1 ];
+        address[ g * 2 ] = 0;
+        address[ g * 2 + 1 ] = 0;
+      }
+    } else if( group != 8 ) {
+      return null;
+    }
+    return address;
+  }
+
+  private static int parseGroup( String text, int radix, int max ) {
+    if( text.isEmpty() || text.length() > ( radix == 10 ? 3 : 4 ) ) {
+      return -1;
+    }
+    int value = 0;
+    for( int i = 0; i < text.length(); i++ ) {
+      int digit = Character.digit( text.charAt( i ), radix );
+      if( digit < 0 ) {
+        return -1;
+      }
+      value = value * radix + digit;
+    }
+    return value > max ? -1 : value;
+  }
+
+  private static int parseBits( String text ) {
+    return parseGroup( text.trim(), 10, IPV6_BITS );
+  }
+
+  private static final class Node {
+    private final Node[] children = new Node[ 2 ];
+    private boolean terminal;
+  }
+
+}
@@ -22,6 +22,7 @@ import java.util.Collections;
 
 /**
  * Validate a given IP Address against a list of comma separated list of addresses.
+ * Entries may be exact addresses, CIDR blocks or trailing wildcards, see {@link IpAddressMatcher}.
  */
 public class IpAddressValidator {
   
@@ -31,9 +32,9 @@ public class IpAddressValidator {
   private ArrayList<String> ipaddr = new ArrayList<String>();
   
   /**
-   * IP addresses from the ipaddr list that contain a wildcard character '*'
+   * The compiled form of the ipaddr list
    */
-  private ArrayList<String> wildCardIPs = new ArrayList<String>();
+  private IpAddressMatcher matcher;
   
   /**
    * Optimization based on empty IP address list or an explicit '*' wildcard
@@ -58,46 +59,30 @@ public class IpAddressValidator {
   private void parseIpAddesses(String commaSeparatedIpAddresses) {
     String[] ips = commaSeparatedIpAddresses.split(",");
     ipaddr = new ArrayList<String>();
-    wildCardIPs = new ArrayList<String>();
     Collections.addAll(ipaddr, ips);
     if (!ipaddr.contains("*")) {
       anyIP = false;
-      // check whether there are any wildcarded ip's - example: 192.* or 192.168.* or 192.168.1.*
-      for (String addr : ipaddr) {
-        if (addr.contains("*")) {
-          wildCardIPs.add(addr.substring(0, addr.lastIndexOf('*')));
-        }
-      }
+      matcher = new IpAddressMatcher(ipaddr);
     }
   }
   
   public boolean validateIpAddress(String addr) {
-    boolean valid = false;
     if (addr == null) {
       // LJM TODO: log as possible programming error
       return false;
     }
-    
-    if (anyIP) {
-      valid = true;
-    }
-    else {
-      if (ipaddr.contains(addr)) {
-        valid = true;
-      }
-      else {
-        // check for wildcards if there are wildcardIP acls configured
-        if (!wildCardIPs.isEmpty()) {
-          for (String ip : wildCardIPs) {
-            if (addr.startsWith(ip)) {
-              valid = true;
-              break;
-            }
-          }
-        }
-      }
+    return anyIP || matcher.matches(addr);
+  }
+
+  /**
+   * Validate an address already parsed with {@link IpAddressMatcher#parseAddress(String)}.
+   * The textual form is only used for entries that could not be compiled.
+   */
+  public boolean validateIpAddress(byte[] parsedAddr, String addr) {
+    if (addr == null) {
+      return false;
     }
-    return valid;
+    return anyIP || matcher.matches(parsedAddr, addr);
   }
 
   /**
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.tracing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TracerTest {
+
+  @After
+  public void tearDown() {
+    Tracer.shutdown();
+  }
+
+  @Test
+  public void testParseAndFormatTraceParent() {
+    String header = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+    TraceContext context = TraceContext.parse( header );
+    assertThat( context, notNullValue() );
+    assertThat( context.getTraceId(), is( "0af7651916cd43dd8448eb211c80319c" ) );
+    assertThat( context.getSpanId(), is( "b7ad6b7169203331" ) );
+    assertThat( context.isSampled(), is( true ) );
+    assertThat( context.toTraceParent(), is( header ) );
+
+    TraceContext child = context.newChild();
+    assertThat( child.getTraceId(), is( context.getTraceId() ) );
+    assertThat( child.getParentSpanId(), is( context.getSpanId() ) );
+    assertThat( child.getSpanId().length(), is( 16 ) );
+    assertThat( child.getSpanId().equals( context.getSpanId() ), is( false ) );
+  }
+
+  @Test
+  public void testRejectMalformedTraceParent() {
+    assertThat( TraceContext.parse( null ), nullValue() );
+    assertThat( TraceContext.parse( "" ), nullValue() );
+    assertThat( TraceContext.parse( "garbage" ), nullValue() );
+    // All zero ids are invalid.
+    assertThat( TraceContext.parse( "00-00000000000000000000000000000000-b7ad6b7169203331-01" ), nullValue() );
+    assertThat( TraceContext.parse( "00-0af7651916cd43dd8448eb211c80319c-0000000000000000-01" ), nullValue() );
+    // Version ff is forbidden and version 00 must not carry extra fields.
+    assertThat( TraceContext.parse( "ff-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01" ), nullValue() );
+    assertThat( TraceContext.parse( "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-xx" ), nullValue() );
+    assertThat( TraceContext.parse( "00-0af7651916cd43dd8448eb211c80319z-b7ad6b7169203331-01" ), nullValue() );
+    // Only lowercase hex is valid, so uppercase ids, versions and flags start a new trace.
+    assertThat( TraceContext.parse( "00-0AF7651916CD43DD8448EB211C80319C-b7ad6b7169203331-01" ), nullValue() );
+    assertThat( TraceContext.parse( "00-0af7651916cd43dd8448eb211c80319c-B7AD6B7169203331-01" ), nullValue() );
+    assertThat( TraceContext.parse( "0A-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01" ), nullValue() );
+    assertThat( TraceContext.parse( "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-0F" ), nullValue() );
+    assertThat( TraceContext.parse( "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-+1" ), nullValue() );
+    // Later versions may append fields.
+    assertThat( TraceContext.parse( "01-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-00-extra" ), notNullValue() );
+  }
+
+  @Test
+  public void testRequestIdsAreUuids() {
+    String id = TraceIds.newRequestId();
+    UUID uuid = UUID.fromString( id );
+    assertThat( uuid.version(), is( 4 ) );
+    assertThat( uuid.toString(), is( id ) );
+  }
+
+  @Test
+  public void testNestedSpansShareTrace() {
+    Span root = Tracer.startSpan( "gateway" );
+    Span child = Tracer.startSpan( "dispatch" );
+    assertThat( Tracer.currentSpan(), is( child ) );
+    assertThat( child.getContext().getTraceId(), is( root.getContext().getTraceId() ) );
+    assertThat( child.getContext().getParentSpanId(), is( root.getContext().getSpanId() ) );
+    child.end();
+    assertThat( Tracer.currentSpan(), is( root ) );
+    root.end();
+    assertThat( Tracer.currentSpan(), nullValue() );
+  }
+
+  @Test
+  public void testSpansExportedToJsonFile() throws Exception {
+    File file = new File( new File( System.getProperty( "java.io.tmpdir" ), "tracer-test-" + TraceIds.newSpanId() ), "spans.json" );
+    try {
+      Tracer.configure( new JsonFileSpanExporter( file ), 16, 2, 50L );
+      TraceContext inbound = TraceContext.parse( "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01" );
+      Span root = Tracer.startSpan( "gateway", inbound );
+      Span child = Tracer.startSpan( "dispatch" );
+      child.setAttribute( "http.status", 200 );
+      child.end();
+      root.end();
+      Tracer.shutdown();
+
+      List<String> lines = Files.readAllLines( file.toPath(), StandardCharsets.UTF_8 );
+      assertThat( lines.size(), is( 2 ) );
+      ObjectMapper mapper = new ObjectMapper();
+      JsonNode dispatch = mapper.readTree( lines.get( 0 ) );
+      assertThat( dispatch.get( "name" ).asText(), is( "dispatch" ) );
+      assertThat( dispatch.get( "traceId" ).asText(), is( "0af7651916cd43dd8448eb211c80319c" ) );
+      assertThat( dispatch.get( "parentSpanId" ).asText(), is( root.getContext().getSpanId() ) );
+      assertThat( dispatch.get( "attributes" ).get( "http.status" ).asText(), is( "200" ) );
+      JsonNode gateway = mapper.readTree( lines.get( 1 ) );
+      assertThat( gateway.get( "parentSpanId" ).asText(), is( "b7ad6b7169203331" ) );
+    } finally {
+      file.delete();
+      file.getParentFile().delete();
+    }
+  }
+
+}
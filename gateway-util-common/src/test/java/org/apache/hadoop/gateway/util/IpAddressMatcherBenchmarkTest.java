@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.util;
+
+import org.apache.hadoop.test.category.ManualTests;
+import org.apache.hadoop.test.category.SlowTests;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Compares lookups in large ACL address lists against the linear scan of the original IpAddressValidator.
+ * This module's surefire version ignores test categories, so it only runs when asked for explicitly:
+ * mvn test -pl gateway-util-common -Dtest=IpAddressMatcherBenchmarkTest -Dbenchmark=true
+ */
+@Category( { ManualTests.class, SlowTests.class } )
+public class IpAddressMatcherBenchmarkTest {
+
+  private static final int LOOKUPS = 200000;
+
+  @Test
+  public void benchmarkLargeAclLists() {
+    Assume.assumeTrue( Boolean.getBoolean( "benchmark" ) );
+    for( int size : new int[]{ 10, 100, 1000, 10000 } ) {
+      Random random = new Random( size );
+      List<String> patterns = new ArrayList<>();
+      for( int i = 0; i < size; i++ ) {
+        // Mostly exact addresses with some octet wildcards, as ACLs are typically written.
+        if( i % 10 == 0 ) {
+          patterns.add( "10." + random.nextInt( 256 ) + ".*" );
+        } else {
+          patterns.add( randomAddress( random ) );
+        }
+      }
+      StringBuilder list = new StringBuilder();
+      for( String pattern : patterns ) {
+        list.append( list.length() == 0 ? "" : "," ).append( pattern );
+      }
+      IpAddressMatcher matcher = IpAddressMatcher.compile( list.toString() );
+      LinearMatcher linear = new LinearMatcher( patterns );
+
+      String[] addresses = new String[ 1024 ];
+      for( int i = 0; i < addresses.length; i++ ) {
+        addresses[ i ] = i % 2 == 0 ? patterns.get( random.nextInt( size ) ).replace( "*", "1.1" ) : randomAddress( random );
+        assertThat( addresses[ i ], matcher.matches( addresses[ i ] ), is( linear.matches( addresses[ i ] ) ) );
+      }
+
+      // Warm up both before measuring.
+      run( matcher, linear, addresses );
+      long trie = 0;
+      long scan = 0;
+      for( int round = 0; round < 3; round++ ) {
+        long[] times = run( matcher, linear, addresses );
+        trie += times[ 0 ];
+        scan += times[ 1 ];
+      }
+      System.out.println( String.format( "%6d patterns: trie %8.1f ns/lookup, linear scan %10.1f ns/lookup",
+          size, trie / ( 3.0 * LOOKUPS ), scan / ( 3.0 * LOOKUPS ) ) );
+    }
+  }
+
+  private static long[] run( IpAddressMatcher matcher, LinearMatcher linear, String[] addresses ) {
+    int hits = 0;
+    long start = System.nanoTime();
+    for( int i = 0; i < LOOKUPS; i++ ) {
+      hits += matcher.matches( addresses[ i & 1023 ] ) ? 1 : 0;
+    }
+    long trie = System.nanoTime() - start;
+    start = System.nanoTime();
+    for( int i = 0; i < LOOKUPS; i++ ) {
+      hits -= linear.matches( addresses[ i & 1023 ] ) ? 1 : 0;
+    }
+    long scan = System.nanoTime() - start;
+    assertThat( hits, is( 0 ) );
+    return new long[]{ trie, scan };
+  }
+
+  private static String randomAddress( Random random ) {
+    return "10." + random.nextInt( 256 ) + "." + random.nextInt( 256 ) + "." + random.nextInt( 256 );
+  }
+
+  // The lookup of the IpAddressValidator before addresses were compiled.
+  private static class LinearMatcher {
+    private final List<String> addresses = new ArrayList<>();
+    private final List<String> wildcards = new ArrayList<>();
+
+    LinearMatcher( List<String> patterns ) {
+      for( String pattern : patterns ) {
+        addresses.add( pattern );
+        if( pattern.contains( "*" ) ) {
+          wildcards.add( pattern.substring( 0, pattern.lastIndexOf( '*' ) ) );
+        }
+      }
+    }
+
+    boolean matches( String address ) {
+      if( addresses.contains( address ) ) {
+        return true;
+      }
+      for( String wildcard : wildcards ) {
+        if( address.startsWith( wildcard ) ) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.util;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+public class IpAddressMatcherTest extends org.junit.Assert {
+
+  @Test
+  public void testParseAddress() throws Exception {
+    String[] addresses = {
+        "127.0.0.1", "0.0.0.0", "255.255.255.255",
+        "0:0:0:0:0:0:0:1", "::1", "::", "2001:db8::8a2e:370:7334", "fe80::1%eth0",
+        "::ffff:192.168.1.1", "1:2:3:4:5:6:7:8", "1::", "[::1]" };
+    for( String address : addresses ) {
+      String literal = address.replace( "[", "" ).replace( "]", "" );
+      byte[] expected = InetAddress.getByName( literal.contains( "%" ) ? literal.substring( 0, literal.indexOf( '%' ) ) : literal ).getAddress();
+      byte[] actual = IpAddressMatcher.parseAddress( address );
+      if( expected.length == 4 && actual != null && actual.length == 16 ) {
+        // InetAddress collapses IPv4 mapped addresses to IPv4.
+        actual = Arrays.copyOfRange( actual, 12, 16 );
+      }
+      assertArrayEquals( address, expected, actual );
+    }
+  }
+
+  @Test
+  public void testParseInvalidAddress() {
+    String[] addresses = {
+        "", "localhost", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3", "1.2.3.4.",
+        "1:2:3:4:5:6:7:8:9", "1::2::3", "12345::", "1:", "g::1", "293.168.1.1" };
+    for( String address : addresses ) {
+      assertNull( address, IpAddressMatcher.parseAddress( address ) );
+    }
+  }
+
+  @Test
+  public void testCidr() {
+    IpAddressMatcher matcher = IpAddressMatcher.compile( "10.0.0.0/8,192.168.1.128/25,2001:db8::/32,172.16.5.4/32" );
+    assertTrue( matcher.matches( "10.255.1.2" ) );
+    assertFalse( matcher.matches( "11.0.0.1" ) );
+    assertTrue( matcher.matches( "192.168.1.200" ) );
+    assertFalse( matcher.matches( "192.168.1.127" ) );
+    assertTrue( matcher.matches( "172.16.5.4" ) );
+    assertFalse( matcher.matches( "172.16.5.5" ) );
+    assertTrue( matcher.matches( "2001:db8:1:2:3:4:5:6" ) );
+    assertTrue( matcher.matches( "2001:0db8:0:0:0:0:0:1" ) );
+    assertFalse( matcher.matches( "2001:db9::1" ) );
+    // IPv4 mapped IPv6 addresses match IPv4 patterns.
+    assertTrue( matcher.matches( "::ffff:10.1.1.1" ) );
+    assertFalse( matcher.matches( "::ffff:11.1.1.1" ) );
+  }
+
+  @Test
+  public void testAllAddressesCidr() {
+    IpAddressMatcher matcher = IpAddressMatcher.compile( "0.0.0.0/0" );
+    assertTrue( matcher.matches( "1.2.3.4" ) );
+    assertFalse( matcher.matches( "::1" ) );
+    assertFalse( matcher.allowsAnyAddress() );
+  }
+
+  @Test
+  public void testExactAddressesInDifferentForms() {
+    IpAddressMatcher matcher = IpAddressMatcher.compile( "::1,127.0.0.1" );
+    assertTrue( matcher.matches( "0:0:0:0:0:0:0:1" ) );
+    assertTrue( matcher.matches( "::1" ) );
+    assertTrue( matcher.matches( "127.0.0.1" ) );
+    assertFalse( matcher.matches( "127.0.0.2" ) );
+  }
+
+  @Test
+  public void testWildcards() {
+    IpAddressMatcher matcher = IpAddressMatcher.compile( "192.168.*,0:0:0:0:0:0:*,29*, 172.16.1.* " );
+    assertTrue( matcher.matches( "192.168.7.7" ) );
+    assertFalse( matcher.matches( "192.169.7.7" ) );
+    assertTrue( matcher.matches( "172.16.1.9" ) );
+    assertTrue( matcher.matches( "0:0:0:0:0:0:0:2" ) );
+    assertTrue( matcher.matches( "::2" ) );
+    assertFalse( matcher.matches( "0:0:0:0:0:2:2:2" ) );
+    // Wildcards that are not on an octet boundary keep their string prefix semantics.
+    assertTrue( matcher.matches( "29.1.1.1" ) );
+    assertTrue( matcher.matches( "293.168.1.1" ) );
+    assertFalse( matcher.matches( "30.1.1.1" ) );
+  }
+
+  @Test
+  public void testOctetWildcardsMatchIpv4MappedAddresses() {
+    // Unlike the previous string prefix comparison, octet wildcards apply to IPv4 mapped IPv6 addresses.
+    IpAddressMatcher matcher = IpAddressMatcher.compile( "192.168.*,10.1.2.3" );
+    assertTrue( matcher.matches( "::ffff:192.168.7.7" ) );
+    assertTrue( matcher.matches( "0:0:0:0:0:ffff:c0a8:0101" ) );
+    assertTrue( matcher.matches( "::ffff:10.1.2.3" ) );
+    assertFalse( matcher.matches( "::ffff:192.169.7.7" ) );
+    // Only the mapped form is treated as IPv4, not the IPv4 compatible or other IPv6 forms.
+    assertFalse( matcher.matches( "::192.168.7.7" ) );
+    assertFalse( matcher.matches( "64:ff9b::192.168.7.7" ) );
+  }
+
+  @Test
+  public void testAnyAndEmpty() {
+    assertTrue( IpAddressMatcher.compile( "10.0.0.1,*" ).allowsAnyAddress() );
+    assertTrue( IpAddressMatcher.compile( "10.0.0.1,*" ).matches( "anything" ) );
+    IpAddressMatcher empty = IpAddressMatcher.compile( "" );
+    assertTrue( empty.isEmpty() );
+    assertFalse( empty.matches( "10.0.0.1" ) );
+    assertFalse( IpAddressMatcher.compile( null ).matches( "10.0.0.1" ) );
+  }
+
+  @Test
+  public void testNonAddressLiterals() {
+    IpAddressMatcher matcher = IpAddressMatcher.compile( "localhost,10.0.0.0/33" );
+    assertTrue( matcher.matches( "localhost" ) );
+    assertTrue( matcher.matches( "10.0.0.0/33" ) );
+    assertFalse( matcher.matches( "10.0.0.0" ) );
+    assertFalse( matcher.matches( (String)null ) );
+  }
+
+  @Test
+  public void testParsedAddress() {
+    IpAddressMatcher matcher = IpAddressMatcher.compile( "10.0.0.0/8,19*" );
+    String address = "10.1.2.3";
+    assertTrue( matcher.matches( IpAddressMatcher.parseAddress( address ), address ) );
+    address = "19.1.2.3";
+    assertFalse( matcher.matches( IpAddressMatcher.parseAddress( address ) ) );
+    assertTrue( matcher.matches( IpAddressMatcher.parseAddress( address ), address ) );
+  }
+
+}